@@ -0,0 +1,457 @@
+package main.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//key -> long counter table for frequency counting, buckets are AVL trees like in
+//HashTableWithAVL but every node holds its count as a primitive long, so an increment is
+//one descent and a CAS with no boxing and no second search to write the value back
+//
+//increments of a key that is already present take no lock: the descent runs optimistically
+//and the count is added with a CAS on the node found, nodes keep their identity through
+//rotations and resizes so a node found is the key's node until it is removed
+//
+//a key whose CAS fails, because other threads increment it at the same time, switches to
+//striped cells like LongAdder: each thread adds to its own padded cell and reads sum them up
+//
+//the count and the cells hold value << 1 with the low bit marking a removed node, so no
+//value a count can reach looks removed, counts wrap at 63 bits rather than 64
+//
+//new keys, removals and resizes lock a stripe of buckets (the whole table for a resize),
+//the stripe lock word is also a version so lookups of absent keys run without the lock
+//and retry when a writer overlapped
+public class CounterTable<K extends Comparable<K>> {
+    private static final int STRIPES = 64;
+    private static final int STRIPE_PADDING = 16;
+    private static final int CELL_PADDING = 16;
+    private static final int CELL_COUNT = Math.min(64,
+        Integer.highestOneBit(Math.max(2, Runtime.getRuntime().availableProcessors() * 2) - 1) << 1);
+    private static final int SPINS_BEFORE_YIELD = 64;
+    //no AVL path is this long, a longer walk is a torn read of a tree being rebuilt
+    private static final int MAX_DESCENT = 96;
+
+    //set in a removed node's count and cells so late increments see it and start over
+    private static final long REMOVED = 1;
+    private static final AtomicLongArray REMOVED_CELLS = new AtomicLongArray(0);
+
+    private static final VarHandle COUNT;
+    private static final VarHandle CELLS;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            COUNT = lookup.findVarHandle(Node.class, "count", long.class);
+            CELLS = lookup.findVarHandle(Node.class, "cells", AtomicLongArray.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    static final class Node<K> {
+        final K key;
+        volatile long count;
+        volatile AtomicLongArray cells;
+        Node<K> left, right;
+        int height;
+
+        Node(K key, long count) {
+            this.key = key;
+            this.count = count;
+            this.height = 1;
+        }
+    }
+
+    private volatile Node<K>[] roots;
+    private final double loadFactorThreshold;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger contendedKeys = new AtomicInteger();
+    //per stripe: version << 1, with the low bit set while a writer holds it
+    private final AtomicLongArray stripeLocks = new AtomicLongArray(STRIPES * STRIPE_PADDING);
+
+    public CounterTable() {
+        this(16, 0.75);
+    }
+
+    //initialCapacity is rounded up to a power of two
+    @SuppressWarnings("unchecked")
+    public CounterTable(int initialCapacity, double loadFactorThreshold) {
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity - 1, 1)) << 1;
+        this.roots = new Node[capacity];
+        this.loadFactorThreshold = loadFactorThreshold;
+    }
+
+    //spread the hashCode so keys with similar low bits still land in different buckets
+    private static int indexFor(Object key, int capacity) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+
+    private static int stripeSlot(int index) {
+        return (index & (STRIPES - 1)) * STRIPE_PADDING;
+    }
+
+    public void increment(K key) {
+        add(key, 1);
+    }
+
+    //add delta to the key's count, a missing key starts at 0, returns the new count wrapped to 63 bits
+    //(for a key on cells the sum at the time of the call, like LongAdder.sum)
+    public long addAndGet(K key, long delta) {
+        return sum(add(key, delta));
+    }
+
+    private Node<K> add(K key, long delta) {
+        while (true) {
+            Node<K> node = findOptimistic(key);
+            if (node != null && addTo(node, delta)) return node;
+            //missing, or a node removed under us that a torn read may still reach, ask under the lock
+            node = addLocked(key, delta);
+            if (node != null) return node;
+        }
+    }
+
+    //current count of the key, 0 when absent
+    public long get(K key) {
+        Node<K> node = find(key);
+        return node == null ? 0 : sum(node);
+    }
+
+    public boolean containsKey(K key) {
+        return find(key) != null;
+    }
+
+    //return the key's count and set it to 0, increments that run at the same time end up
+    //either in the returned sum or in what is left, none is lost
+    public long sumThenReset(K key) {
+        Node<K> node = find(key);
+        if (node == null) return 0;
+        long total = takeAll(node);
+        AtomicLongArray cells = node.cells;
+        if (cells != null && cells != REMOVED_CELLS) {
+            for (int i = 0; i < CELL_COUNT; i++) {
+                total += takeCell(cells, i * CELL_PADDING);
+            }
+        }
+        return total;
+    }
+
+    private static long takeAll(Node<?> node) {
+        while (true) {
+            long count = node.count;
+            if ((count & REMOVED) != 0) return 0;
+            if (COUNT.compareAndSet(node, count, 0L)) return count >> 1;
+        }
+    }
+
+    private static long takeCell(AtomicLongArray cells, int slot) {
+        while (true) {
+            long count = cells.get(slot);
+            if ((count & REMOVED) != 0) return 0;
+            if (cells.compareAndSet(slot, count, 0L)) return count >> 1;
+        }
+    }
+
+    //remove the key, returns its final count or 0 when absent
+    public long remove(K key) {
+        Node<K>[] current;
+        int index;
+        int slot;
+        while (true) {
+            current = roots;
+            index = indexFor(key, current.length);
+            slot = stripeSlot(index);
+            lock(slot);
+            if (current == roots) break;
+            unlock(slot);
+        }
+        Node<K> node;
+        try {
+            node = findIn(current[index], key);
+            if (node == null) return 0;
+            current[index] = delete(current[index], key);
+            size.decrementAndGet();
+        } finally {
+            unlock(slot);
+        }
+
+        //unlinked, now close the count and every cell so no increment lands after we sum
+        long total = (long) COUNT.getAndBitwiseOr(node, REMOVED) >> 1;
+        AtomicLongArray cells = (AtomicLongArray) CELLS.getAndSet(node, REMOVED_CELLS);
+        if (cells != null) {
+            contendedKeys.decrementAndGet();
+            for (int i = 0; i < CELL_COUNT; i++) {
+                total += cells.getAndAccumulate(i * CELL_PADDING, REMOVED, (cell, mark) -> cell | mark) >> 1;
+            }
+        }
+        return total;
+    }
+
+    //add to the node's count, false if it was removed
+    private boolean addTo(Node<K> node, long delta) {
+        AtomicLongArray cells = node.cells;
+        if (cells == null) {
+            long count = node.count;
+            if ((count & REMOVED) != 0) return false;
+            if (COUNT.compareAndSet(node, count, count + (delta << 1))) return true;
+            //another thread got there first, this key is contended
+            if ((node.count & REMOVED) != 0) return false;
+            cells = node.cells;
+            if (cells == null) {
+                AtomicLongArray fresh = new AtomicLongArray(CELL_COUNT * CELL_PADDING);
+                if (CELLS.compareAndSet(node, null, fresh)) {
+                    contendedKeys.incrementAndGet();
+                    cells = fresh;
+                } else {
+                    cells = node.cells;
+                }
+            }
+        }
+        if (cells == REMOVED_CELLS) return false;
+
+        int cell = cellFor(Thread.currentThread());
+        while (true) {
+            int slot = cell * CELL_PADDING;
+            long count = cells.get(slot);
+            if ((count & REMOVED) != 0) return false;
+            if (cells.compareAndSet(slot, count, count + (delta << 1))) return true;
+            cell = (cell + 1) & (CELL_COUNT - 1);
+        }
+    }
+
+    private static int cellFor(Thread thread) {
+        int h = (int) thread.getId() * 0x9E3779B9;
+        return (h >>> 16) & (CELL_COUNT - 1);
+    }
+
+    private static long sum(Node<?> node) {
+        long total = node.count >> 1;
+        AtomicLongArray cells = node.cells;
+        if (cells != null) {
+            for (int i = 0; i < cells.length(); i += CELL_PADDING) {
+                total += cells.get(i) >> 1;
+            }
+        }
+        return total;
+    }
+
+    //the key's node if a lock-free descent finds it, null means absent or a torn read
+    private Node<K> findOptimistic(K key) {
+        Node<K>[] current = roots;
+        Node<K> node = current[indexFor(key, current.length)];
+        try {
+            for (int steps = 0; node != null && steps < MAX_DESCENT; steps++) {
+                int cmp = key.compareTo(node.key);
+                if (cmp == 0) return node;
+                node = cmp < 0 ? node.left : node.right;
+            }
+        } catch (RuntimeException e) {
+            //a torn read of a tree being changed, let the caller take the lock
+        }
+        return null;
+    }
+
+    //the key's node or null, a miss is trusted only if no writer touched the stripe meanwhile
+    private Node<K> find(K key) {
+        while (true) {
+            Node<K> node = findOptimistic(key);
+            if (node != null) return node;
+            Node<K>[] current = roots;
+            int index = indexFor(key, current.length);
+            int slot = stripeSlot(index);
+            long version = stripeLocks.get(slot);
+            if ((version & 1) == 0 && current == roots) {
+                node = findOptimistic(key);
+                if (node != null) return node;
+                if (stripeLocks.get(slot) == version && current == roots) return null;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    //add under the stripe lock, inserting the key when it is missing, null if the table
+    //was resized before we got the lock
+    private Node<K> addLocked(K key, long delta) {
+        Node<K>[] current = roots;
+        int index = indexFor(key, current.length);
+        int slot = stripeSlot(index);
+        lock(slot);
+        boolean grow;
+        Node<K> node;
+        try {
+            if (current != roots) return null;
+            node = findIn(current[index], key);
+            if (node != null) {
+                //nodes reachable under the lock are never removed
+                addTo(node, delta);
+                return node;
+            }
+            node = new Node<>(key, delta << 1);
+            current[index] = insert(current[index], node);
+            grow = size.incrementAndGet() > current.length * loadFactorThreshold;
+        } finally {
+            unlock(slot);
+        }
+        if (grow) resize();
+        return node;
+    }
+
+    private static <K extends Comparable<K>> Node<K> findIn(Node<K> node, K key) {
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private void lock(int slot) {
+        int spins = 0;
+        while (true) {
+            long version = stripeLocks.get(slot);
+            if ((version & 1) == 0 && stripeLocks.compareAndSet(slot, version, version + 1)) return;
+            //the holder may be descheduled, let it run
+            if (++spins % SPINS_BEFORE_YIELD == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private void unlock(int slot) {
+        stripeLocks.set(slot, stripeLocks.get(slot) + 1);
+    }
+
+    //double the bucket count with every stripe held, the nodes themselves move so counts
+    //and cells stay where concurrent increments find them
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        for (int i = 0; i < STRIPES; i++) {
+            lock(i * STRIPE_PADDING);
+        }
+        try {
+            Node<K>[] old = roots;
+            if (size.get() <= old.length * loadFactorThreshold) return;
+            Node<K>[] grown = new Node[old.length * 2];
+            List<Node<K>> nodes = new ArrayList<>();
+            for (Node<K> root : old) {
+                nodes.clear();
+                collect(root, nodes);
+                for (Node<K> node : nodes) {
+                    node.left = null;
+                    node.right = null;
+                    node.height = 1;
+                    int index = indexFor(node.key, grown.length);
+                    grown[index] = insert(grown[index], node);
+                }
+            }
+            roots = grown;
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) {
+                unlock(i * STRIPE_PADDING);
+            }
+        }
+    }
+
+    private static <K> void collect(Node<K> node, List<Node<K>> out) {
+        if (node == null) return;
+        collect(node.left, out);
+        out.add(node);
+        collect(node.right, out);
+    }
+
+    //AVL insert of a node known to be absent
+    private static <K extends Comparable<K>> Node<K> insert(Node<K> node, Node<K> added) {
+        if (node == null) return added;
+        if (added.key.compareTo(node.key) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return balance(node);
+    }
+
+    //AVL delete that relinks nodes instead of copying keys, so no live node changes key
+    private static <K extends Comparable<K>> Node<K> delete(Node<K> node, K key) {
+        if (node == null) return null;
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = delete(node.left, key);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, key);
+        } else {
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+            //the inorder successor takes the removed node's place
+            Node<K> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            return balance(successor);
+        }
+        return balance(node);
+    }
+
+    private static <K> Node<K> removeMin(Node<K> node) {
+        if (node.left == null) return node.right;
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <K> Node<K> balance(Node<K> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static <K> Node<K> rotateRight(Node<K> y) {
+        Node<K> x = y.left;
+        y.left = x.right;
+        x.right = y;
+        y.height = 1 + Math.max(height(y.left), height(y.right));
+        x.height = 1 + Math.max(height(x.left), height(x.right));
+        return x;
+    }
+
+    private static <K> Node<K> rotateLeft(Node<K> x) {
+        Node<K> y = x.right;
+        x.right = y.left;
+        y.left = x;
+        x.height = 1 + Math.max(height(x.left), height(x.right));
+        y.height = 1 + Math.max(height(y.left), height(y.right));
+        return y;
+    }
+
+    //get total number of keys
+    public int getSize() {
+        return size.get();
+    }
+
+    //get number of buckets
+    public int getCapacity() {
+        return roots.length;
+    }
+
+    //get number of keys that were incremented concurrently enough to switch to cells
+    public int getContendedKeyCount() {
+        return contendedKeys.get();
+    }
+}
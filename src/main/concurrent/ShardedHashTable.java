@@ -0,0 +1,335 @@
+package main.concurrent;
+
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+//hash table split into independent HashTableWithAVL shards by the high bits of the hash,
+//every shard is owned by one writer thread and nothing else ever touches its table
+//
+//callers hand operations to the owner through a lock-free multi-producer queue and get a
+//CompletableFuture back, the writer drains up to MAX_BATCH operations per wake-up so one
+//handoff is paid per batch rather than per operation, futures complete on the writer
+//thread so dependent stages should be cheap or moved off with CompletableFuture's *Async stages
+//
+//reads skip the queue: each shard table runs in optimistic-read mode, so any thread
+//searches it directly and sees every write whose future has completed
+public class ShardedHashTable<K extends Comparable<K>, V> implements AutoCloseable {
+    private static final int MAX_BATCH = 256;
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    private static final int INSERT = 1;
+    private static final int DELETE = 2;
+    private static final int INSERT_ALL = 3;
+    private static final int DELETE_ALL = 4;
+
+    private final Shard<K, V>[] shards;
+    private final HashFunction<K> hashFunction;
+    private final int shardShift;
+    private volatile boolean closed;
+
+    private static final class Op<K, V> {
+        final int type;
+        final K key;
+        final V value;
+        final K[] keys;
+        final V[] values;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        Op(int type, K key, V value, K[] keys, V[] values) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    private static final class Shard<K extends Comparable<K>, V> implements Runnable {
+        final HashTableWithAVL<K, V> table;
+        final ConcurrentLinkedQueue<Op<K, V>> queue = new ConcurrentLinkedQueue<>();
+        final Thread writer;
+        volatile boolean idle;
+        volatile boolean closed;
+        //set by the writer on its way out, ops offered after it are failed by whoever sees them
+        volatile boolean exited;
+        volatile int size;
+        volatile long appliedOps;
+        volatile long batches;
+
+        Shard(int index, HashFunction<K> hashFunction) {
+            table = new HashTableWithAVL<>(16, 0.75, hashFunction);
+            table.enableOptimisticReads();
+            writer = new Thread(this, "shard-writer-" + index);
+            writer.setDaemon(true);
+        }
+
+        void submit(Op<K, V> op) {
+            queue.offer(op);
+            //offer before reading exited, the writer sets exited before its last poll, so
+            //either it takes the op or we see it gone
+            if (exited) {
+                failQueued();
+            } else if (idle) {
+                LockSupport.unpark(writer);
+            }
+        }
+
+        private void failQueued() {
+            Op<K, V> op;
+            while ((op = queue.poll()) != null) {
+                op.future.completeExceptionally(new IllegalStateException("Table is closed"));
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                drain();
+            } finally {
+                exited = true;
+                failQueued();
+            }
+        }
+
+        private void drain() {
+            List<Op<K, V>> batch = new ArrayList<>(MAX_BATCH);
+            int spins = 0;
+            while (true) {
+                Op<K, V> op;
+                while (batch.size() < MAX_BATCH && (op = queue.poll()) != null) {
+                    batch.add(op);
+                }
+
+                if (batch.isEmpty()) {
+                    if (closed) return;
+                    if (++spins < SPINS_BEFORE_PARK) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    //publish idle before the last look so a producer either sees it or we see its op
+                    idle = true;
+                    if (queue.isEmpty() && !closed) LockSupport.park(this);
+                    idle = false;
+                    spins = 0;
+                    continue;
+                }
+
+                for (Op<K, V> next : batch) {
+                    apply(next);
+                }
+                appliedOps += batch.size();
+                batches++;
+                batch.clear();
+                spins = 0;
+            }
+        }
+
+        private void apply(Op<K, V> op) {
+            try {
+                Object result;
+                switch (op.type) {
+                    case INSERT:
+                        result = table.insert(op.key, op.value);
+                        break;
+                    case DELETE:
+                        result = table.delete(op.key);
+                        break;
+                    case INSERT_ALL:
+                        table.insertAll(op.keys, op.values);
+                        result = null;
+                        break;
+                    case DELETE_ALL:
+                        result = table.deleteAll(op.keys);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown operation: " + op.type);
+                }
+                //publish the size before the caller can observe the completion
+                size = table.getSize();
+                op.future.complete(result);
+            } catch (Throwable e) {
+                //an Error from a user compareTo or hash function fails this op, not the writer
+                op.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    public ShardedHashTable(int shardCount) {
+        this(shardCount, new HashTableWithAVL.DefaultHashFunction<>());
+    }
+
+    //shardCount is rounded up to a power of two so a shard is picked by the top hash bits
+    @SuppressWarnings("unchecked")
+    public ShardedHashTable(int shardCount, HashFunction<K> hashFunction) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        }
+        int shardBits = 32 - Integer.numberOfLeadingZeros(shardCount - 1);
+        this.hashFunction = hashFunction;
+        this.shardShift = 32 - shardBits;
+        this.shards = new Shard[1 << shardBits];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard<>(i, hashFunction);
+        }
+        for (Shard<K, V> shard : shards) {
+            shard.writer.start();
+        }
+    }
+
+    //the shards use the low hash bits for their buckets, so pick the shard from the high
+    //bits of a scrambled hash, plain Integer hash codes have nothing up there
+    private int shardFor(K key) {
+        if (shards.length == 1) return 0;
+        int hash = hashFunction.hash(key) * 0x9E3779B9;
+        return hash >>> shardShift;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> CompletableFuture<R> submit(int shard, Op<K, V> op) {
+        if (closed) {
+            throw new IllegalStateException("Table is closed");
+        }
+        shards[shard].submit(op);
+        return (CompletableFuture<R>) (CompletableFuture<?>) op.future;
+    }
+
+    //insert a key-value pair, completes with the previous value or null
+    public CompletableFuture<V> insertAsync(K key, V value) {
+        return submit(shardFor(key), new Op<>(INSERT, key, value, null, null));
+    }
+
+    //delete a key, completes with the removed value or null
+    public CompletableFuture<V> deleteAsync(K key) {
+        return submit(shardFor(key), new Op<>(DELETE, key, null, null, null));
+    }
+
+    //reads run on the calling thread, the future is already complete
+    public CompletableFuture<V> searchAsync(K key) {
+        return CompletableFuture.completedFuture(search(key));
+    }
+
+    public V insert(K key, V value) {
+        return insertAsync(key, value).join();
+    }
+
+    public V delete(K key) {
+        return deleteAsync(key).join();
+    }
+
+    public V search(K key) {
+        if (closed) {
+            throw new IllegalStateException("Table is closed");
+        }
+        return shards[shardFor(key)].table.search(key);
+    }
+
+    //insert a batch, split into one sub-batch per shard so each shard takes a single handoff
+    public CompletableFuture<Void> insertAll(K[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys and values must have the same length");
+        }
+        int[][] split = splitByShard(keys);
+        CompletableFuture<?>[] parts = new CompletableFuture<?>[shards.length];
+        for (int s = 0; s < shards.length; s++) {
+            int[] positions = split[s];
+            K[] shardKeys = Arrays.copyOf(keys, positions.length);
+            V[] shardValues = Arrays.copyOf(values, positions.length);
+            for (int i = 0; i < positions.length; i++) {
+                shardKeys[i] = keys[positions[i]];
+                shardValues[i] = values[positions[i]];
+            }
+            parts[s] = positions.length == 0 ? CompletableFuture.completedFuture(null)
+                : submit(s, new Op<>(INSERT_ALL, null, null, shardKeys, shardValues));
+        }
+        return CompletableFuture.allOf(parts);
+    }
+
+    //delete a batch, completes with the number of keys that were present
+    public CompletableFuture<Integer> deleteAll(K[] keys) {
+        int[][] split = splitByShard(keys);
+        List<CompletableFuture<Integer>> parts = new ArrayList<>();
+        for (int s = 0; s < shards.length; s++) {
+            int[] positions = split[s];
+            if (positions.length == 0) continue;
+            K[] shardKeys = Arrays.copyOf(keys, positions.length);
+            for (int i = 0; i < positions.length; i++) {
+                shardKeys[i] = keys[positions[i]];
+            }
+            parts.add(submit(s, new Op<>(DELETE_ALL, null, null, shardKeys, null)));
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> parts.stream().mapToInt(CompletableFuture::join).sum());
+    }
+
+    //positions of the keys that belong to each shard, in batch order
+    private int[][] splitByShard(K[] keys) {
+        int[] shardOf = new int[keys.length];
+        int[] counts = new int[shards.length];
+        for (int i = 0; i < keys.length; i++) {
+            shardOf[i] = shardFor(keys[i]);
+            counts[shardOf[i]]++;
+        }
+        int[][] split = new int[shards.length][];
+        for (int s = 0; s < shards.length; s++) {
+            split[s] = new int[counts[s]];
+            counts[s] = 0;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            split[shardOf[i]][counts[shardOf[i]]++] = i;
+        }
+        return split;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    //total entries as last published by the writers, exact once all submitted operations completed
+    public int getSize() {
+        int total = 0;
+        for (Shard<K, V> shard : shards) {
+            total += shard.size;
+        }
+        return total;
+    }
+
+    //average number of operations a writer applied per wake-up
+    public double getAverageBatchSize() {
+        long ops = 0;
+        long batches = 0;
+        for (Shard<K, V> shard : shards) {
+            ops += shard.appliedOps;
+            batches += shard.batches;
+        }
+        return batches == 0 ? 0 : (double) ops / batches;
+    }
+
+    //stop accepting operations, let the writers drain what is queued and wait for them,
+    //an interrupt doesn't cut the wait short, it is passed on once the writers are done
+    @Override
+    public void close() {
+        closed = true;
+        for (Shard<K, V> shard : shards) {
+            shard.closed = true;
+            LockSupport.unpark(shard.writer);
+        }
+        boolean interrupted = false;
+        for (Shard<K, V> shard : shards) {
+            while (true) {
+                try {
+                    shard.writer.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,89 @@
+package main.concurrent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+//the view of a TransactionalHashTable inside atomically(): reads see the table as of the
+//transaction's start plus its own writes, writes are buffered and reach the table only
+//when the whole transaction commits
+//
+//a read that finds its stripe changed since the start throws a conflict that restarts the
+//transaction, so the body must not catch RuntimeException around table calls and may run
+//more than once, side effects outside the table belong after atomically() returns
+public final class Transaction<K extends Comparable<K>, V> {
+    private static final Object DELETED = new Object();
+
+    private final TransactionalHashTable<K, V> table;
+    //keyed by compareTo like the table, a key's equals and hashCode need not agree with it
+    private final Map<K, Object> writes = new TreeMap<>();
+    private int[] readStripes = new int[8];
+    private int readCount;
+    private long readVersion;
+
+    Transaction(TransactionalHashTable<K, V> table) {
+        this.table = table;
+    }
+
+    //start over at the table's current version
+    void begin(long version) {
+        writes.clear();
+        readCount = 0;
+        readVersion = version;
+    }
+
+    //the value of the key or null, as of the start of the transaction or as last written in it
+    @SuppressWarnings("unchecked")
+    public V search(K key) {
+        Object written = writes.get(key);
+        if (written != null) return written == DELETED ? null : (V) written;
+        return table.read(this, key);
+    }
+
+    public boolean containsKey(K key) {
+        return search(key) != null;
+    }
+
+    //insert or replace, returns the previous value or null
+    public V insert(K key, V value) {
+        Objects.requireNonNull(value, "value");
+        V previous = search(key);
+        writes.put(key, value);
+        return previous;
+    }
+
+    //delete a key, returns the removed value or null
+    public V delete(K key) {
+        V previous = search(key);
+        if (previous != null) writes.put(key, DELETED);
+        return previous;
+    }
+
+    void recordRead(int stripe) {
+        if (readCount == readStripes.length) {
+            readStripes = Arrays.copyOf(readStripes, readCount * 2);
+        }
+        readStripes[readCount++] = stripe;
+    }
+
+    long getReadVersion() {
+        return readVersion;
+    }
+
+    int[] getReadStripes() {
+        return readStripes;
+    }
+
+    int getReadCount() {
+        return readCount;
+    }
+
+    Map<K, Object> getWrites() {
+        return writes;
+    }
+
+    static boolean isDelete(Object written) {
+        return written == DELETED;
+    }
+}
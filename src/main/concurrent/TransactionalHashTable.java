@@ -0,0 +1,277 @@
+package main.concurrent;
+
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+//hash table for many concurrent writers with multi-key atomic transactions and no global
+//lock, keys are split over stripes by the high bits of the hash, each stripe is a
+//HashTableWithAVL with optimistic reads behind a versioned lock, one version word per stripe
+//
+//atomically() runs the body against a Transaction that buffers writes and remembers which
+//stripes it read, commit locks the written stripes in index order, takes a new version from
+//a shared clock, checks that no stripe it read has moved past the version it started at and
+//then applies every write and releases the stripes at the new version, or applies nothing
+//and runs the body again (TL2)
+//
+//a read inside a transaction that finds its stripe locked or newer than the start restarts
+//right away, so the body only ever sees one consistent state of the table
+//
+//versions are per stripe rather than per bucket: a HashTableWithAVL moves entries between
+//buckets when it resizes, a stripe is fixed by the hash for the life of the table
+public class TransactionalHashTable<K extends Comparable<K>, V> {
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    private final Stripe<K, V>[] stripes;
+    private final HashFunction<K> hashFunction;
+    private final int stripeShift;
+    //version given to the last commit, a transaction reads at the value it starts with
+    private final AtomicLong clock = new AtomicLong();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    //thrown from a read or commit that has to start over, carries no stack trace
+    private static final class Conflict extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Conflict() {
+            super("transaction conflict", null, false, false);
+        }
+    }
+
+    private static final Conflict CONFLICT = new Conflict();
+
+    private static final class Stripe<K extends Comparable<K>, V> {
+        final HashTableWithAVL<K, V> table;
+        //version << 1, with the low bit set while a writer holds the stripe
+        final AtomicLong versionLock = new AtomicLong();
+        volatile int size;
+
+        Stripe(HashFunction<K> hashFunction) {
+            table = new HashTableWithAVL<>(16, 0.75, hashFunction);
+            table.enableOptimisticReads();
+        }
+    }
+
+    public TransactionalHashTable(int stripeCount) {
+        this(stripeCount, new HashTableWithAVL.DefaultHashFunction<>());
+    }
+
+    //stripeCount is rounded up to a power of two, more stripes mean fewer false conflicts
+    @SuppressWarnings("unchecked")
+    public TransactionalHashTable(int stripeCount, HashFunction<K> hashFunction) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("stripeCount must be at least 1");
+        }
+        int stripeBits = 32 - Integer.numberOfLeadingZeros(stripeCount - 1);
+        this.hashFunction = hashFunction;
+        this.stripeShift = 32 - stripeBits;
+        this.stripes = new Stripe[1 << stripeBits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe<>(hashFunction);
+        }
+    }
+
+    //the stripes use the low hash bits for their buckets, so pick the stripe from the high
+    //bits of a scrambled hash, like ShardedHashTable does
+    private int stripeFor(K key) {
+        if (stripes.length == 1) return 0;
+        int hash = hashFunction.hash(key) * 0x9E3779B9;
+        return hash >>> stripeShift;
+    }
+
+    //run the body as one atomic step, it is run again until it commits without a conflict,
+    //an exception thrown by the body discards its writes and is passed on
+    public void atomically(Consumer<Transaction<K, V>> body) {
+        atomicallyGet(tx -> {
+            body.accept(tx);
+            return null;
+        });
+    }
+
+    public <R> R atomicallyGet(Function<Transaction<K, V>, R> body) {
+        Transaction<K, V> tx = new Transaction<>(this);
+        for (int attempt = 0; ; attempt++) {
+            tx.begin(clock.get());
+            try {
+                R result = body.apply(tx);
+                if (commit(tx)) {
+                    commits.increment();
+                    return result;
+                }
+            } catch (Conflict e) {
+                //read a stripe that changed under us, start over
+            }
+            retries.increment();
+            backOff(attempt);
+        }
+    }
+
+    //read inside a transaction, consistent with everything else it read
+    V read(Transaction<K, V> tx, K key) {
+        int index = stripeFor(key);
+        Stripe<K, V> stripe = stripes[index];
+        long before = stripe.versionLock.get();
+        if ((before & 1) != 0 || (before >>> 1) > tx.getReadVersion()) throw CONFLICT;
+        V value = stripe.table.search(key);
+        if (stripe.versionLock.get() != before) throw CONFLICT;
+        tx.recordRead(index);
+        return value;
+    }
+
+    private boolean commit(Transaction<K, V> tx) {
+        Map<K, Object> writes = tx.getWrites();
+        //every read was checked against the start version already
+        if (writes.isEmpty()) return true;
+
+        int[] locked = writeStripes(writes);
+        long[] lockedWords = new long[locked.length];
+        for (int i = 0; i < locked.length; i++) {
+            lockedWords[i] = lock(stripes[locked[i]]);
+        }
+
+        long writeVersion = clock.incrementAndGet();
+        //nobody committed since we started, nothing we read can have changed
+        if (writeVersion != tx.getReadVersion() + 1 && !readsStillValid(tx, locked, lockedWords)) {
+            for (int i = 0; i < locked.length; i++) {
+                stripes[locked[i]].versionLock.set(lockedWords[i]);
+            }
+            return false;
+        }
+
+        //a write that throws (a user compareTo, out of memory in a resize) is passed on, but the
+        //stripes are released at the new version either way so readers notice what was applied
+        try {
+            for (Map.Entry<K, Object> write : writes.entrySet()) {
+                apply(stripes[stripeFor(write.getKey())], write.getKey(), write.getValue());
+            }
+        } finally {
+            for (int index : locked) {
+                unlock(stripes[index], writeVersion);
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Stripe<K, V> stripe, K key, Object written) {
+        if (Transaction.isDelete(written)) {
+            stripe.table.delete(key);
+        } else {
+            stripe.table.insert(key, (V) written);
+        }
+    }
+
+    //distinct stripes of the written keys in ascending order, the order every commit locks in
+    private int[] writeStripes(Map<K, Object> writes) {
+        int[] indexes = new int[writes.size()];
+        int count = 0;
+        for (K key : writes.keySet()) {
+            indexes[count++] = stripeFor(key);
+        }
+        Arrays.sort(indexes);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || indexes[distinct - 1] != indexes[i]) indexes[distinct++] = indexes[i];
+        }
+        return Arrays.copyOf(indexes, distinct);
+    }
+
+    //every stripe read is unlocked, or locked by us, and no newer than the start version
+    private boolean readsStillValid(Transaction<K, V> tx, int[] locked, long[] lockedWords) {
+        int[] reads = tx.getReadStripes();
+        for (int i = 0; i < tx.getReadCount(); i++) {
+            long word = stripes[reads[i]].versionLock.get();
+            if ((word & 1) != 0) {
+                int mine = Arrays.binarySearch(locked, reads[i]);
+                if (mine < 0) return false;
+                word = lockedWords[mine];
+            }
+            if ((word >>> 1) > tx.getReadVersion()) return false;
+        }
+        return true;
+    }
+
+    //spin until the stripe is free and take it, returns the word it had before
+    private static long lock(Stripe<?, ?> stripe) {
+        int spins = 0;
+        while (true) {
+            long word = stripe.versionLock.get();
+            if ((word & 1) == 0 && stripe.versionLock.compareAndSet(word, word | 1)) return word;
+            //the holder may be descheduled, let it run
+            if (++spins % SPINS_BEFORE_YIELD == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private void unlock(Stripe<K, V> stripe, long version) {
+        stripe.size = stripe.table.getSize();
+        stripe.versionLock.set(version << 1);
+    }
+
+    private static void backOff(int attempt) {
+        if (attempt < 4) {
+            for (int i = 0; i < 1 << attempt; i++) {
+                Thread.onSpinWait();
+            }
+        } else {
+            Thread.yield();
+        }
+    }
+
+    //a single-key write is a transaction of its own without the buffering
+    public V insert(K key, V value) {
+        Stripe<K, V> stripe = stripes[stripeFor(key)];
+        lock(stripe);
+        try {
+            return stripe.table.insert(key, value);
+        } finally {
+            unlock(stripe, clock.incrementAndGet());
+        }
+    }
+
+    public V delete(K key) {
+        Stripe<K, V> stripe = stripes[stripeFor(key)];
+        lock(stripe);
+        try {
+            return stripe.table.delete(key);
+        } finally {
+            unlock(stripe, clock.incrementAndGet());
+        }
+    }
+
+    //a read outside any transaction sees every commit that has completed
+    public V search(K key) {
+        return stripes[stripeFor(key)].table.search(key);
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    //total entries as of the last commit on each stripe
+    public int getSize() {
+        int total = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            total += stripe.size;
+        }
+        return total;
+    }
+
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    //how many times a transaction body had to run again
+    public long getRetryCount() {
+        return retries.sum();
+    }
+}
@@ -2,17 +2,30 @@ package main.datastructure;
 
 import main.utils.KeyValuePair;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
-public class AVLTree<K extends Comparable<K>, V> {
-    private Node root;
+public class AVLTree<K extends Comparable<K>, V> implements Bucket<K, V> {
+    private Node<K, V> root;
     private int size;
     private int rotationCount;
     
-    private class Node {
+    //free list to take nodes from and return them to, null allocates as usual
+    private NodePool<K, V> pool;
+    
+    //outcome of the last descent: the value found, the value left behind, and whether a
+    //node was added or removed (only then do heights need fixing on the way back up)
+    private V previous;
+    private V current;
+    private boolean structureChanged;
+    
+    static final class Node<K, V> {
         K key;
         V value;
-        Node left, right;
+        Node<K, V> left, right;
         int height;
         
         Node(K key, V value) {
@@ -25,45 +38,67 @@ public class AVLTree<K extends Comparable<K>, V> {
     }
     
     public AVLTree() {
+        this(null);
+    }
+    
+    AVLTree(NodePool<K, V> pool) {
         this.root = null;
         this.size = 0;
         this.rotationCount = 0;
+        this.pool = pool;
     }
     
+    @Override
     public int getSize() {
         return size;
     }
     
+    @Override
     public int getHeight() {
         return height(root);
     }
     
+    @Override
     public int getRotationCount() {
         return rotationCount;
     }
     
+    //root access for code that walks or rebuilds the tree shape (snapshots)
+    Node<K, V> getRoot() {
+        return root;
+    }
+    
+    void setRoot(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+    
+    void setPool(NodePool<K, V> pool) {
+        this.pool = pool;
+    }
+    
     //get height of a node (null nodes have height 0)
-    private int height(Node node) {
+    private int height(Node<K, V> node) {
         if (node == null) return 0;
         return node.height;
     }
     
     //update height of a node based on its children
-    private void updateHeight(Node node) {
+    private void updateHeight(Node<K, V> node) {
         if (node == null) return;
         node.height = 1 + Math.max(height(node.left), height(node.right));
     }
     
     //get balance factor of a node (difference between left and right subtree heights)
-    private int getBalanceFactor(Node node) {
+    private int getBalanceFactor(Node<K, V> node) {
         if (node == null) return 0;
         return height(node.left) - height(node.right);
     }
     
     //right rotation
-    private Node rightRotate(Node y) {
-        Node x = y.left;
-        Node T2 = x.right;
+    private Node<K, V> rightRotate(Node<K, V> y) {
+        Node<K, V> x = y.left;
+        Node<K, V> T2 = x.right;
         
         x.right = y;
         y.left = T2;
@@ -76,9 +111,9 @@ public class AVLTree<K extends Comparable<K>, V> {
     }
     
     //left rotation
-    private Node leftRotate(Node x) {
-        Node y = x.right;
-        Node T2 = y.left;
+    private Node<K, V> leftRotate(Node<K, V> x) {
+        Node<K, V> y = x.right;
+        Node<K, V> T2 = y.left;
         
         y.left = x;
         x.right = T2;
@@ -90,15 +125,20 @@ public class AVLTree<K extends Comparable<K>, V> {
         return y;
     }
     
-    //insert a key-value pair
-    public void insert(K key, V value) {
+    //insert a key-value pair, returns the previous value or null
+    @Override
+    public V insert(K key, V value) {
+        previous = null;
+        structureChanged = false;
         root = insertRec(root, key, value);
+        return previous;
     }
     
-    private Node insertRec(Node node, K key, V value) {
+    private Node<K, V> insertRec(Node<K, V> node, K key, V value) {
         if (node == null) {
             size++;
-            return new Node(key, value);
+            structureChanged = true;
+            return newNode(key, value);
         }
         
         int cmp = key.compareTo(node.key);
@@ -108,10 +148,14 @@ public class AVLTree<K extends Comparable<K>, V> {
             node.right = insertRec(node.right, key, value);
         } else {
             //key already exists, update value
+            previous = node.value;
             node.value = value;
             return node;
         }
         
+        //a value update leaves the shape alone, no need to touch heights on the way up
+        if (!structureChanged) return node;
+        
         updateHeight(node);
         
         int balance = getBalanceFactor(node);
@@ -139,101 +183,273 @@ public class AVLTree<K extends Comparable<K>, V> {
         return node;
     }
     
-    //search for a key
-    public V search(K key) {
-        Node result = searchRec(root, key);
-        return result == null ? null : result.value;
+    //insert only if the key is absent, returns the existing value or null
+    @Override
+    public V putIfAbsent(K key, V value) {
+        remap(key, null, k -> value);
+        return previous;
     }
     
-    private Node searchRec(Node node, K key) {
-        if (node == null) return null;
-        
-        int cmp = key.compareTo(node.key);
-        if (cmp == 0) return node;
-        if (cmp < 0) return searchRec(node.left, key);
-        return searchRec(node.right, key);
+    //returns the existing value, or the computed one if the key was absent
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return remap(key, null, mappingFunction);
     }
     
-    //find node with minimum key value
-    private Node minValueNode(Node node) {
-        Node current = node;
-        while (current.left != null)
-            current = current.left;
-        return current;
+    //remap an existing value, a null result removes the key, returns the new value
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return remap(key, remappingFunction, null);
     }
     
-    //delete a key
-    public void delete(K key) {
-        Node node = searchRec(root, key);
-        if (node != null) { 
-            size--;
-            root = deleteRec(root, key);
-        }
+    //remap the value or null if absent, a null result removes the key, returns the new value
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return remap(key, remappingFunction, k -> remappingFunction.apply(k, null));
     }
     
-    private Node deleteRec(Node root, K key) {
-        if (root == null) return root;
-        
-        int cmp = key.compareTo(root.key);
+    //insert the value if absent, otherwise combine it with the existing one (null removes), returns the new value
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return remap(key, (k, old) -> remappingFunction.apply(old, value), k -> value);
+    }
+    
+    //single-descent update behind the compute family, onPresent maps the current value
+    //(null removes the node) and onAbsent creates one (null adds nothing), either function
+    //may itself be null to leave that case untouched, returns the value left in the tree
+    private V remap(K key, BiFunction<? super K, ? super V, ? extends V> onPresent,
+                    Function<? super K, ? extends V> onAbsent) {
+        previous = null;
+        current = null;
+        structureChanged = false;
+        root = remapRec(root, key, onPresent, onAbsent);
+        return current;
+    }
+    
+    private Node<K, V> remapRec(Node<K, V> node, K key, BiFunction<? super K, ? super V, ? extends V> onPresent,
+                                Function<? super K, ? extends V> onAbsent) {
+        if (node == null) {
+            if (onAbsent == null) return null;
+            V value = onAbsent.apply(key);
+            if (value == null) return null;
+            
+            size++;
+            structureChanged = true;
+            current = value;
+            return newNode(key, value);
+        }
         
+        int cmp = key.compareTo(node.key);
         if (cmp < 0) {
-            root.left = deleteRec(root.left, key);
+            node.left = remapRec(node.left, key, onPresent, onAbsent);
         } else if (cmp > 0) {
-            root.right = deleteRec(root.right, key);
+            node.right = remapRec(node.right, key, onPresent, onAbsent);
         } else {
-            //node found
+            previous = node.value;
+            current = node.value;
+            if (onPresent == null) return node;
             
-            //node with only one child or no child
-            if (root.left == null)
-                return root.right;
-            else if (root.right == null)
-                return root.left;
+            V value = onPresent.apply(key, node.value);
+            if (value != null) {
+                node.value = value;
+                current = value;
+                return node;
+            }
             
-            //node with two children, get inorder successor
-            Node temp = minValueNode(root.right);
-        
-            root.key = temp.key;
-            root.value = temp.value;
-
-            root.right = deleteRec(root.right, temp.key);
+            current = null;
+            size--;
+            structureChanged = true;
+            Node<K, V> replacement = removeNode(node);
+            if (pool != null) pool.releaseNode(node);
+            return replacement;
         }
+        
+        if (!structureChanged) return node;
+        return rebalance(node);
+    }
     
-        if (root == null) return null;
+    private Node<K, V> newNode(K key, V value) {
+        return pool == null ? new Node<>(key, value) : pool.acquireNode(key, value);
+    }
+    
+    //unlink a node, a node with two children is replaced by its inorder successor node
+    private Node<K, V> removeNode(Node<K, V> node) {
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
         
-        updateHeight(root);
+        Node<K, V> successor = minValueNode(node.right);
+        successor.right = removeMin(node.right);
+        successor.left = node.left;
+        return rebalance(successor);
+    }
+    
+    private Node<K, V> removeMin(Node<K, V> node) {
+        if (node.left == null) return node.right;
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+    
+    //restore the AVL property at a node whose subtree changed by at most one level
+    private Node<K, V> rebalance(Node<K, V> node) {
+        updateHeight(node);
         
-        int balance = getBalanceFactor(root);
+        int balance = getBalanceFactor(node);
         
-        //LL
-        if (balance > 1 && getBalanceFactor(root.left) >= 0)
-            return rightRotate(root);
+        if (balance > 1) {
+            //LR
+            if (getBalanceFactor(node.left) < 0)
+                node.left = leftRotate(node.left);
+            //LL
+            return rightRotate(node);
+        }
         
-        //LR
-        if (balance > 1 && getBalanceFactor(root.left) < 0) {
-            root.left = leftRotate(root.left);
-            return rightRotate(root);
+        if (balance < -1) {
+            //RL
+            if (getBalanceFactor(node.right) > 0)
+                node.right = rightRotate(node.right);
+            //RR
+            return leftRotate(node);
         }
         
-        //RR
-        if (balance < -1 && getBalanceFactor(root.right) <= 0)
-            return leftRotate(root);
+        return node;
+    }
+    
+    //search for a key
+    @Override
+    public V search(K key) {
+        Node<K, V> result = searchRec(root, key);
+        return result == null ? null : result.value;
+    }
+    
+    private Node<K, V> searchRec(Node<K, V> node, K key) {
+        if (node == null) return null;
         
-        //RL
-        if (balance < -1 && getBalanceFactor(root.right) > 0) {
-            root.right = rightRotate(root.right);
-            return leftRotate(root);
+        int cmp = key.compareTo(node.key);
+        if (cmp == 0) return node;
+        if (cmp < 0) return searchRec(node.left, key);
+        return searchRec(node.right, key);
+    }
+    
+    @Override
+    public V searchOptimistic(K key) {
+        //a torn read can show a cycle mid-rotation, no real path is longer than the size
+        int budget = size + 1;
+        Node<K, V> node = root;
+        while (node != null) {
+            if (--budget < 0) throw new ConcurrentModificationException();
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.value;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+    
+    //merged traversal for a sorted batch: each node splits the batch into the keys that
+    //go left and right, so every node is visited at most once however many keys share a path
+    @Override
+    public void searchSorted(K[] keys, int from, int to, int[] slots, V[] out) {
+        searchSortedRec(root, keys, from, to, slots, out);
+    }
+    
+    private void searchSortedRec(Node<K, V> node, K[] keys, int from, int to, int[] slots, V[] out) {
+        if (from >= to) return;
+        if (to - from == 1) {
+            Node<K, V> found = searchRec(node, keys[from]);
+            out[slots[from]] = found == null ? null : found.value;
+            return;
+        }
+        if (node == null) {
+            for (int i = from; i < to; i++) {
+                out[slots[i]] = null;
+            }
+            return;
         }
         
-        return root;
+        //first key not smaller than the node's
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(node.key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int equalEnd = lo;
+        while (equalEnd < to && keys[equalEnd].compareTo(node.key) == 0) {
+            out[slots[equalEnd++]] = node.value;
+        }
+        
+        searchSortedRec(node.left, keys, from, lo, slots, out);
+        searchSortedRec(node.right, keys, equalEnd, to, slots, out);
+    }
+    
+    //find node with minimum key value
+    private Node<K, V> minValueNode(Node<K, V> node) {
+        Node<K, V> current = node;
+        while (current.left != null)
+            current = current.left;
+        return current;
+    }
+    
+    //delete a key, returns the removed value or null
+    @Override
+    public V delete(K key) {
+        remap(key, (k, v) -> null, null);
+        return previous;
+    }
+    
+    //fill an empty tree from sorted, distinct pairs as a perfectly balanced tree
+    @Override
+    public void loadSorted(List<KeyValuePair<K, V>> pairs) {
+        root = buildBalanced(pairs, 0, pairs.size() - 1);
+        size = pairs.size();
+    }
+    
+    private Node<K, V> buildBalanced(List<KeyValuePair<K, V>> pairs, int lo, int hi) {
+        if (lo > hi) return null;
+        
+        int mid = (lo + hi) >>> 1;
+        Node<K, V> node = newNode(pairs.get(mid).getKey(), pairs.get(mid).getValue());
+        node.left = buildBalanced(pairs, lo, mid - 1);
+        node.right = buildBalanced(pairs, mid + 1, hi);
+        updateHeight(node);
+        return node;
+    }
+    
+    //hand every entry to the sink (if any) and empty the tree as if it were new, each node
+    //goes back to the pool before its entry is handed on, so a sink that re-inserts the
+    //entry into a pooled tree gets the very same node back
+    void drainTo(BiConsumer<K, V> sink) {
+        Node<K, V> node = root;
+        root = null;
+        size = 0;
+        rotationCount = 0;
+        drainRec(node, sink);
+    }
+    
+    private void drainRec(Node<K, V> node, BiConsumer<K, V> sink) {
+        if (node == null) return;
+        
+        Node<K, V> left = node.left;
+        Node<K, V> right = node.right;
+        K key = node.key;
+        V value = node.value;
+        if (pool != null) pool.releaseNode(node);
+        if (sink != null) sink.accept(key, value);
+        drainRec(left, sink);
+        drainRec(right, sink);
     }
     
+    @Override
     public List<KeyValuePair<K, V>> getAllKeyValuePairs() {
         List<KeyValuePair<K, V>> pairs = new ArrayList<>();
         collectKeyValuePairs(root, pairs);
         return pairs;
     }
     
-    private void collectKeyValuePairs(Node node, List<KeyValuePair<K, V>> pairs) {
+    private void collectKeyValuePairs(Node<K, V> node, List<KeyValuePair<K, V>> pairs) {
         if (node == null) return;
         
         collectKeyValuePairs(node.left, pairs);
@@ -0,0 +1,331 @@
+package main.datastructure;
+
+import main.utils.KeyValuePair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+//B+-tree bucket for heavily collided buckets
+//
+//every node keeps up to 32 keys in one contiguous array, so a lookup touches a few
+//wide nodes instead of one cache miss per AVL level, inner nodes only route and all
+//entries live in the leaves, internal keys[i] is the smallest key under children[i]
+//(keys[0] is unused)
+//
+//deletion is relaxed: nodes may run underfull and are only unlinked once empty, the
+//table swaps a bucket that shrank this far back to a plain tree anyway
+public class BTreeBucket<K extends Comparable<K>, V> implements Bucket<K, V> {
+    private static final int MAX_KEYS = 32;
+    private static final int MIN_SPLIT = MAX_KEYS / 2;
+
+    private Node root;
+    private int size;
+    private int depth;
+
+    //outcome of the last descent: the value found and the right half of a split
+    private V previous;
+    private Object splitKey;
+    private Node splitNode;
+
+    static final class Node {
+        final boolean leaf;
+        final Object[] keys = new Object[MAX_KEYS];
+        final Object[] values;
+        final Node[] children;
+        int count;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+            this.values = leaf ? new Object[MAX_KEYS] : null;
+            this.children = leaf ? null : new Node[MAX_KEYS];
+        }
+    }
+
+    public BTreeBucket() {
+        this.root = new Node(true);
+        this.size = 0;
+        this.depth = 1;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    //nodes on a search path, every leaf sits at the same depth
+    @Override
+    public int getHeight() {
+        return size == 0 ? 0 : depth;
+    }
+
+    @Override
+    public int getRotationCount() {
+        return 0;
+    }
+
+    //index of the key in a leaf, or -(insertion point) - 1 if absent
+    @SuppressWarnings("unchecked")
+    private static <K extends Comparable<K>> int leafIndex(Node leaf, K key) {
+        int lo = 0;
+        int hi = leaf.count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = ((K) leaf.keys[mid]).compareTo(key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    //child that covers the key: the last one whose smallest key is <= key
+    @SuppressWarnings("unchecked")
+    private static <K extends Comparable<K>> int childIndex(Node inner, K key) {
+        int lo = 1;
+        int hi = inner.count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (((K) inner.keys[mid]).compareTo(key) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo - 1;
+    }
+
+    //search for a key
+    @Override
+    @SuppressWarnings("unchecked")
+    public V search(K key) {
+        Node node = root;
+        while (!node.leaf) {
+            node = node.children[childIndex(node, key)];
+        }
+        int index = leafIndex(node, key);
+        return index >= 0 ? (V) node.values[index] : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V searchOptimistic(K key) {
+        //a torn read may see a stale root or counts, bound the walk by the tree depth
+        int budget = depth + 1;
+        Node node = root;
+        while (!node.leaf) {
+            if (--budget < 0) throw new ConcurrentModificationException();
+            node = node.children[childIndex(node, key)];
+        }
+        int index = leafIndex(node, key);
+        return index >= 0 ? (V) node.values[index] : null;
+    }
+
+    //insert a key-value pair, returns the previous value or null
+    @Override
+    public V insert(K key, V value) {
+        previous = null;
+        splitNode = null;
+        insertRec(root, key, value);
+
+        //the root split, grow a level
+        if (splitNode != null) {
+            Node newRoot = new Node(false);
+            newRoot.children[0] = root;
+            newRoot.keys[1] = splitKey;
+            newRoot.children[1] = splitNode;
+            newRoot.count = 2;
+            root = newRoot;
+            depth++;
+            splitNode = null;
+            splitKey = null;
+        }
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insertRec(Node node, K key, V value) {
+        if (node.leaf) {
+            int index = leafIndex(node, key);
+            if (index >= 0) {
+                //key already exists, update value
+                previous = (V) node.values[index];
+                node.values[index] = value;
+                return;
+            }
+            size++;
+            insertAt(node, -index - 1, key, value, null);
+            return;
+        }
+
+        int index = childIndex(node, key);
+        insertRec(node.children[index], key, value);
+        if (splitNode != null) {
+            Object routingKey = splitKey;
+            Node sibling = splitNode;
+            splitNode = null;
+            insertAt(node, index + 1, routingKey, null, sibling);
+        }
+    }
+
+    //put an entry (leaf) or a child with its smallest key (inner) at a position, splitting a full node
+    private void insertAt(Node node, int index, Object key, Object value, Node child) {
+        if (node.count == MAX_KEYS) {
+            Node right = new Node(node.leaf);
+            int moved = node.count - MIN_SPLIT;
+            System.arraycopy(node.keys, MIN_SPLIT, right.keys, 0, moved);
+            if (node.leaf) {
+                System.arraycopy(node.values, MIN_SPLIT, right.values, 0, moved);
+                Arrays.fill(node.values, MIN_SPLIT, node.count, null);
+            } else {
+                System.arraycopy(node.children, MIN_SPLIT, right.children, 0, moved);
+                Arrays.fill(node.children, MIN_SPLIT, node.count, null);
+            }
+            Arrays.fill(node.keys, MIN_SPLIT, node.count, null);
+            node.count = MIN_SPLIT;
+            right.count = moved;
+
+            if (index < MIN_SPLIT) {
+                insertAt(node, index, key, value, child);
+            } else {
+                insertAt(right, index - MIN_SPLIT, key, value, child);
+            }
+
+            //the right half is routed by its smallest key, for inner nodes that is keys[0]
+            splitKey = right.keys[0];
+            splitNode = right;
+            if (!right.leaf) right.keys[0] = null;
+            return;
+        }
+
+        System.arraycopy(node.keys, index, node.keys, index + 1, node.count - index);
+        node.keys[index] = key;
+        if (node.leaf) {
+            System.arraycopy(node.values, index, node.values, index + 1, node.count - index);
+            node.values[index] = value;
+        } else {
+            System.arraycopy(node.children, index, node.children, index + 1, node.count - index);
+            node.children[index] = child;
+        }
+        node.count++;
+    }
+
+    //delete a key, returns the removed value or null
+    @Override
+    public V delete(K key) {
+        previous = null;
+        deleteRec(root, key);
+
+        //drop root levels that only route to a single child
+        while (!root.leaf && root.count == 1) {
+            root = root.children[0];
+            depth--;
+        }
+        if (!root.leaf && root.count == 0) {
+            root = new Node(true);
+            depth = 1;
+        }
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deleteRec(Node node, K key) {
+        if (node.leaf) {
+            int index = leafIndex(node, key);
+            if (index < 0) return;
+            previous = (V) node.values[index];
+            size--;
+            removeAt(node, index);
+            return;
+        }
+
+        int index = childIndex(node, key);
+        Node child = node.children[index];
+        deleteRec(child, key);
+        if (child.count == 0) {
+            removeAt(node, index);
+        }
+    }
+
+    private void removeAt(Node node, int index) {
+        int moved = node.count - index - 1;
+        System.arraycopy(node.keys, index + 1, node.keys, index, moved);
+        if (node.leaf) {
+            System.arraycopy(node.values, index + 1, node.values, index, moved);
+            node.values[node.count - 1] = null;
+        } else {
+            System.arraycopy(node.children, index + 1, node.children, index, moved);
+            node.children[node.count - 1] = null;
+        }
+        node.count--;
+        node.keys[node.count] = null;
+    }
+
+    //fill an empty bucket from sorted, distinct pairs, leaves are packed 3/4 full so
+    //early inserts don't split every node
+    @Override
+    public void loadSorted(List<KeyValuePair<K, V>> pairs) {
+        int fill = MAX_KEYS * 3 / 4;
+        List<Node> level = new ArrayList<>();
+        List<Object> firstKeys = new ArrayList<>();
+        for (int i = 0; i < pairs.size(); i += fill) {
+            Node leaf = new Node(true);
+            int end = Math.min(pairs.size(), i + fill);
+            for (int j = i; j < end; j++) {
+                leaf.keys[leaf.count] = pairs.get(j).getKey();
+                leaf.values[leaf.count] = pairs.get(j).getValue();
+                leaf.count++;
+            }
+            level.add(leaf);
+            firstKeys.add(leaf.keys[0]);
+        }
+
+        int levels = 1;
+        while (level.size() > 1) {
+            List<Node> parents = new ArrayList<>();
+            List<Object> parentKeys = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += fill) {
+                Node inner = new Node(false);
+                int end = Math.min(level.size(), i + fill);
+                for (int j = i; j < end; j++) {
+                    inner.children[inner.count] = level.get(j);
+                    if (inner.count > 0) inner.keys[inner.count] = firstKeys.get(j);
+                    inner.count++;
+                }
+                parents.add(inner);
+                parentKeys.add(firstKeys.get(i));
+            }
+            level = parents;
+            firstKeys = parentKeys;
+            levels++;
+        }
+
+        root = level.isEmpty() ? new Node(true) : level.get(0);
+        depth = levels;
+        size = pairs.size();
+    }
+
+    @Override
+    public List<KeyValuePair<K, V>> getAllKeyValuePairs() {
+        List<KeyValuePair<K, V>> pairs = new ArrayList<>(size);
+        collectKeyValuePairs(root, pairs);
+        return pairs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collectKeyValuePairs(Node node, List<KeyValuePair<K, V>> pairs) {
+        if (node.leaf) {
+            for (int i = 0; i < node.count; i++) {
+                pairs.add(new KeyValuePair<>((K) node.keys[i], (V) node.values[i]));
+            }
+            return;
+        }
+        for (int i = 0; i < node.count; i++) {
+            collectKeyValuePairs(node.children[i], pairs);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package main.datastructure;
+
+import main.utils.KeyValuePair;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+//an ordered collision bucket of HashTableWithAVL
+//
+//the compute family has defaults built on search + insert/delete (two descents, null
+//values count as absent like java.util.Map), buckets that can do better override them
+public interface Bucket<K extends Comparable<K>, V> {
+    //insert a key-value pair, returns the previous value or null
+    V insert(K key, V value);
+
+    V search(K key);
+
+    //search run while a writer may be changing this bucket (optimistic reads), it may
+    //return a wrong value or throw but has to terminate, the caller validates afterwards
+    default V searchOptimistic(K key) {
+        return search(key);
+    }
+
+    //delete a key, returns the removed value or null
+    V delete(K key);
+
+    int getSize();
+
+    //longest search path, must be O(1) since the table polls it after writes
+    int getHeight();
+
+    int getRotationCount();
+
+    //all entries in key order
+    List<KeyValuePair<K, V>> getAllKeyValuePairs();
+
+    //look up keys[from..to), sorted ascending, and write each value (or null) to out[slots[i]]
+    default void searchSorted(K[] keys, int from, int to, int[] slots, V[] out) {
+        for (int i = from; i < to; i++) {
+            out[slots[i]] = search(keys[i]);
+        }
+    }
+
+    //fill an empty bucket from pairs sorted by distinct keys
+    default void loadSorted(List<KeyValuePair<K, V>> pairs) {
+        for (KeyValuePair<K, V> pair : pairs) {
+            insert(pair.getKey(), pair.getValue());
+        }
+    }
+
+    default V putIfAbsent(K key, V value) {
+        V existing = search(key);
+        if (existing == null) insert(key, value);
+        return existing;
+    }
+
+    default V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V existing = search(key);
+        if (existing != null) return existing;
+        V value = mappingFunction.apply(key);
+        if (value != null) insert(key, value);
+        return value;
+    }
+
+    default V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        V existing = search(key);
+        if (existing == null) return null;
+        V value = remappingFunction.apply(key, existing);
+        if (value == null) {
+            delete(key);
+        } else {
+            insert(key, value);
+        }
+        return value;
+    }
+
+    default V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        V existing = search(key);
+        V value = remappingFunction.apply(key, existing);
+        if (value != null) {
+            insert(key, value);
+        } else if (existing != null) {
+            delete(key);
+        }
+        return value;
+    }
+
+    default V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        V existing = search(key);
+        V merged = existing == null ? value : remappingFunction.apply(existing, value);
+        if (merged == null) {
+            delete(key);
+        } else {
+            insert(key, merged);
+        }
+        return merged;
+    }
+}
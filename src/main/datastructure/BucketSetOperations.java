@@ -0,0 +1,174 @@
+package main.datastructure;
+
+import main.hash.HashFunction;
+import main.utils.KeyValuePair;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+//union, intersection, difference and equality of two HashTableWithAVL instances done
+//bucket by bucket: with the same capacity and hash function a key can only be in bucket i
+//of both tables, and every bucket lists its entries in key order, so each pair of buckets
+//is a linear merge of two sorted lists without hashing or searching a single key
+//
+//when the capacities differ and one divides the other, bucket i of the smaller capacity
+//is the merge of buckets i, i + smaller, i + 2 * smaller... of the larger one, still without
+//hashing, any other pair of capacities hashes the second table into the first one's
+//layout once before merging
+//
+//large tables are merged in chunks of buckets on the common fork-join pool, neither table
+//may change while an operation runs
+final class BucketSetOperations {
+    //below this many buckets handing chunks to other threads costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    private static final int CHUNK_BUCKETS = 4096;
+
+    enum Operation {
+        UNION, INTERSECTION, DIFFERENCE
+    }
+
+    private BucketSetOperations() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<K>, V> HashTableWithAVL<K, V> combine(HashTableWithAVL<K, V> a, HashTableWithAVL<K, V> b,
+                                                                       Operation operation) {
+        int target = alignedCapacity(a.getCapacity(), b.getCapacity());
+        IntFunction<List<KeyValuePair<K, V>>> left = alignedTo(a, target, a.getHashFunction());
+        IntFunction<List<KeyValuePair<K, V>>> right = alignedTo(b, target, a.getHashFunction());
+
+        Bucket<K, V>[] merged = new Bucket[target];
+        forEachChunk(target, chunk -> {
+            int to = Math.min(target, (chunk + 1) * CHUNK_BUCKETS);
+            for (int i = chunk * CHUNK_BUCKETS; i < to; i++) {
+                merged[i] = a.bucketFor(merge(operation, left.apply(i), right.apply(i)));
+            }
+        });
+
+        int size = 0;
+        for (Bucket<K, V> bucket : merged) {
+            size += bucket.getSize();
+        }
+        return a.withBuckets(merged, size);
+    }
+
+    //same keys mapped to equal values, stops at the first chunk that differs
+    static <K extends Comparable<K>, V> boolean contentEquals(HashTableWithAVL<K, V> a, HashTableWithAVL<K, V> b) {
+        if (a.getSize() != b.getSize()) return false;
+        int target = alignedCapacity(a.getCapacity(), b.getCapacity());
+        IntFunction<List<KeyValuePair<K, V>>> left = alignedTo(a, target, a.getHashFunction());
+        IntFunction<List<KeyValuePair<K, V>>> right = alignedTo(b, target, a.getHashFunction());
+
+        IntStream chunks = IntStream.range(0, chunkCount(target));
+        return (target >= PARALLEL_THRESHOLD ? chunks.parallel() : chunks).allMatch(chunk -> {
+            int to = Math.min(target, (chunk + 1) * CHUNK_BUCKETS);
+            for (int i = chunk * CHUNK_BUCKETS; i < to; i++) {
+                if (!sameEntries(left.apply(i), right.apply(i))) return false;
+            }
+            return true;
+        });
+    }
+
+    //the layout both tables are merged in, the smaller capacity when it divides the larger
+    private static int alignedCapacity(int a, int b) {
+        if (a != b && a % b == 0) return b;
+        return a;
+    }
+
+    //bucket i of the table as it would be at the target capacity, in key order
+    @SuppressWarnings("unchecked")
+    private static <K extends Comparable<K>, V> IntFunction<List<KeyValuePair<K, V>>> alignedTo(
+            HashTableWithAVL<K, V> table, int target, HashFunction<K> hashFunction) {
+        int capacity = table.getCapacity();
+        if (capacity == target) {
+            return i -> entries(table.getBucket(i));
+        }
+        if (capacity % target == 0) {
+            return i -> {
+                List<KeyValuePair<K, V>> pairs = entries(table.getBucket(i));
+                for (int j = i + target; j < capacity; j += target) {
+                    pairs = merge(Operation.UNION, pairs, entries(table.getBucket(j)));
+                }
+                return pairs;
+            };
+        }
+
+        //no bucket of one table lines up with a bucket of the other, rehash it once
+        List<KeyValuePair<K, V>>[] rehashed = new List[target];
+        for (int i = 0; i < capacity; i++) {
+            for (KeyValuePair<K, V> pair : table.getBucket(i).getAllKeyValuePairs()) {
+                int index = HashTableWithAVL.indexFor(hashFunction.hash(pair.getKey()), target);
+                if (rehashed[index] == null) rehashed[index] = new ArrayList<>();
+                rehashed[index].add(pair);
+            }
+        }
+        Comparator<KeyValuePair<K, V>> byKey = (x, y) -> x.getKey().compareTo(y.getKey());
+        for (List<KeyValuePair<K, V>> pairs : rehashed) {
+            if (pairs != null) pairs.sort(byKey);
+        }
+        return i -> rehashed[i] == null ? List.of() : rehashed[i];
+    }
+
+    //most buckets of a well spread table hold zero or one entry, skip the list for the empty ones
+    private static <K extends Comparable<K>, V> List<KeyValuePair<K, V>> entries(Bucket<K, V> bucket) {
+        return bucket.getSize() == 0 ? List.of() : bucket.getAllKeyValuePairs();
+    }
+
+    //merge two key-ordered lists, a union keeps b's value for a key in both and an
+    //intersection keeps a's
+    static <K extends Comparable<K>, V> List<KeyValuePair<K, V>> merge(Operation operation, List<KeyValuePair<K, V>> a,
+                                                                       List<KeyValuePair<K, V>> b) {
+        if (b.isEmpty()) return operation == Operation.INTERSECTION ? List.of() : a;
+        if (a.isEmpty()) return operation == Operation.UNION ? b : List.of();
+
+        List<KeyValuePair<K, V>> merged = new ArrayList<>(operation == Operation.UNION ? a.size() + b.size() : a.size());
+        int i = 0, j = 0;
+        while (i < a.size() && j < b.size()) {
+            int cmp = a.get(i).getKey().compareTo(b.get(j).getKey());
+            if (cmp < 0) {
+                if (operation != Operation.INTERSECTION) merged.add(a.get(i));
+                i++;
+            } else if (cmp > 0) {
+                if (operation == Operation.UNION) merged.add(b.get(j));
+                j++;
+            } else {
+                if (operation == Operation.UNION) {
+                    merged.add(b.get(j));
+                } else if (operation == Operation.INTERSECTION) {
+                    merged.add(a.get(i));
+                }
+                i++;
+                j++;
+            }
+        }
+        if (operation != Operation.INTERSECTION) {
+            while (i < a.size()) merged.add(a.get(i++));
+        }
+        if (operation == Operation.UNION) {
+            while (j < b.size()) merged.add(b.get(j++));
+        }
+        return merged;
+    }
+
+    private static <K extends Comparable<K>, V> boolean sameEntries(List<KeyValuePair<K, V>> a, List<KeyValuePair<K, V>> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).getKey().compareTo(b.get(i).getKey()) != 0) return false;
+            if (!Objects.equals(a.get(i).getValue(), b.get(i).getValue())) return false;
+        }
+        return true;
+    }
+
+    private static int chunkCount(int buckets) {
+        return (buckets + CHUNK_BUCKETS - 1) / CHUNK_BUCKETS;
+    }
+
+    private static void forEachChunk(int buckets, IntConsumer chunk) {
+        IntStream chunks = IntStream.range(0, chunkCount(buckets));
+        (buckets >= PARALLEL_THRESHOLD ? chunks.parallel() : chunks).forEach(chunk);
+    }
+}
@@ -0,0 +1,466 @@
+package main.datastructure;
+
+import main.hash.HashFunction;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//String -> V hash table with AVL buckets specialized for long keys that share prefixes
+//(tenant ids, urls): instead of a node, a String and its byte array per entry, every node
+//is a small header followed by the key's UTF-8 bytes in one shared byte arena, nodes link
+//to each other by arena offset like OffHeapLongTable links by index, so an entry costs its
+//key bytes plus ~28 bytes and a step of a descent reads a single spot of memory
+//
+//nodes cache the key's hash (a resize relinks nodes without looking at their keys) and its
+//length, and a descent remembers how many leading bytes the probe shares with the closest
+//smaller and larger ancestor, every key in between starts with the shorter of the two
+//prefixes, so each comparison skips it and starts where the keys can actually differ
+//
+//keys compare as unsigned UTF-8 bytes, i.e. by code point, deleted nodes leave holes in the
+//arena that are compacted once they make up half, compaction lays every tree out top-down
+//
+//not thread-safe, the encoded probe key is kept in a field
+public class CompactStringTable<V> {
+    //node layout: left(4) right(4) hash(4) value slot(4) height(1) key length(3) key bytes, 4-byte aligned
+    private static final int LEFT = 0;
+    private static final int RIGHT = 4;
+    private static final int HASH = 8;
+    private static final int VALUE_SLOT = 12;
+    private static final int HEIGHT_LENGTH = 16;
+    private static final int KEY = 20;
+    private static final int MAX_KEY_BYTES = (1 << 24) - 1;
+
+    //offset 0 is the null link
+    private static final int NIL = 0;
+    private static final int MIN_COMPACT_BYTES = 1 << 16;
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final HashFunction<String> hashFunction;
+    private int[] buckets;
+    private int size;
+    private int capacity;
+    private double loadFactorThreshold;
+    private long rotationCount;
+
+    private byte[] arena;
+    private int arenaEnd;
+    private int garbageBytes;
+
+    private Object[] values;
+    private int nextSlot;
+    private int[] freeSlots;
+    private int freeSlotCount;
+
+    //encoded probe key
+    private byte[] probe;
+    private int probeLength;
+
+    //result of the last insert/delete descent
+    private boolean changed;
+    private V previous;
+    private int removedMin;
+
+    //common prefix length of the probe and the key of the last compareProbe
+    private int matched;
+
+    public CompactStringTable() {
+        this(16, 0.75, new HashTableWithAVL.DefaultHashFunction<>());
+    }
+
+    public CompactStringTable(int initialCapacity, double loadFactorThreshold, HashFunction<String> hashFunction) {
+        this.capacity = Integer.highestOneBit(Math.max(initialCapacity - 1, 1)) << 1;
+        this.loadFactorThreshold = loadFactorThreshold;
+        this.hashFunction = hashFunction;
+        this.buckets = new int[capacity];
+        this.size = 0;
+
+        arena = new byte[1024];
+        arenaEnd = 4;
+        values = new Object[16];
+        freeSlots = new int[16];
+    }
+
+    //insert a key-value pair, returns the previous value or null
+    public V insert(String key, V value) {
+        int hash = hashFunction.hash(key);
+        encode(key);
+        int bucketIndex = bucketFor(hash);
+        changed = false;
+        previous = null;
+        buckets[bucketIndex] = insertRec(buckets[bucketIndex], hash, value, 0, 0);
+
+        if (changed) {
+            size++;
+            if ((double) size / capacity > loadFactorThreshold) {
+                resize();
+            }
+        }
+        return previous;
+    }
+
+    //search for a key
+    @SuppressWarnings("unchecked")
+    public V search(String key) {
+        int node = find(key);
+        return node == NIL ? null : (V) values[getInt(node, VALUE_SLOT)];
+    }
+
+    public boolean containsKey(String key) {
+        return find(key) != NIL;
+    }
+
+    //delete a key, returns the removed value or null
+    public V delete(String key) {
+        int hash = hashFunction.hash(key);
+        encode(key);
+        int bucketIndex = bucketFor(hash);
+        changed = false;
+        previous = null;
+        buckets[bucketIndex] = deleteRec(buckets[bucketIndex], 0, 0);
+
+        if (changed) {
+            size--;
+            if (garbageBytes > MIN_COMPACT_BYTES && garbageBytes > arenaEnd / 2) {
+                compactArena();
+            }
+        }
+        return previous;
+    }
+
+    private int find(String key) {
+        int hash = hashFunction.hash(key);
+        encode(key);
+        int node = buckets[bucketFor(hash)];
+        int lcpLow = 0;
+        int lcpHigh = 0;
+        while (node != NIL) {
+            int cmp = compareProbe(node, Math.min(lcpLow, lcpHigh));
+            if (cmp == 0) return node;
+            if (cmp < 0) {
+                lcpHigh = matched;
+                node = getInt(node, LEFT);
+            } else {
+                lcpLow = matched;
+                node = getInt(node, RIGHT);
+            }
+        }
+        return NIL;
+    }
+
+    //compare the probe with a node's key, the first skip bytes are known to be equal,
+    //sets matched to the length of their common prefix
+    private int compareProbe(int node, int skip) {
+        int length = keyLength(node);
+        int limit = Math.min(length, probeLength);
+        int offset = node + KEY;
+        int mismatch = skip >= limit ? -1 : Arrays.mismatch(probe, skip, limit, arena, offset + skip, offset + limit);
+        if (mismatch < 0) {
+            matched = limit;
+            return probeLength - length;
+        }
+        int i = skip + mismatch;
+        matched = i;
+        return (probe[i] & 0xFF) - (arena[offset + i] & 0xFF);
+    }
+
+    private int bucketFor(int hash) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+
+    //for ASCII and Latin-1 strings this is an intrinsic range check and an array copy
+    private void encode(String key) {
+        probe = key.getBytes(StandardCharsets.UTF_8);
+        probeLength = probe.length;
+        if (probeLength > MAX_KEY_BYTES) throw new IllegalArgumentException("Key is longer than " + MAX_KEY_BYTES + " bytes");
+    }
+
+    @SuppressWarnings("unchecked")
+    private int insertRec(int node, int hash, V value, int lcpLow, int lcpHigh) {
+        if (node == NIL) {
+            changed = true;
+            return allocateNode(hash, value);
+        }
+
+        int cmp = compareProbe(node, Math.min(lcpLow, lcpHigh));
+        if (cmp < 0) {
+            putInt(node, LEFT, insertRec(getInt(node, LEFT), hash, value, lcpLow, matched));
+        } else if (cmp > 0) {
+            putInt(node, RIGHT, insertRec(getInt(node, RIGHT), hash, value, matched, lcpHigh));
+        } else {
+            //key already exists, update value
+            int slot = getInt(node, VALUE_SLOT);
+            previous = (V) values[slot];
+            values[slot] = value;
+            return node;
+        }
+
+        return changed ? rebalance(node) : node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int deleteRec(int node, int lcpLow, int lcpHigh) {
+        if (node == NIL) return NIL;
+
+        int cmp = compareProbe(node, Math.min(lcpLow, lcpHigh));
+        if (cmp < 0) {
+            putInt(node, LEFT, deleteRec(getInt(node, LEFT), lcpLow, matched));
+        } else if (cmp > 0) {
+            putInt(node, RIGHT, deleteRec(getInt(node, RIGHT), matched, lcpHigh));
+        } else {
+            changed = true;
+            previous = (V) values[getInt(node, VALUE_SLOT)];
+            int left = getInt(node, LEFT);
+            int right = getInt(node, RIGHT);
+            freeNode(node);
+
+            //node with only one child or no child
+            if (left == NIL || right == NIL) {
+                return left == NIL ? right : left;
+            }
+
+            //node with two children, keys can't be moved between nodes of different
+            //sizes, so the inorder successor is unlinked and takes the node's place
+            int newRight = removeMin(right);
+            int successor = removedMin;
+            putInt(successor, LEFT, left);
+            putInt(successor, RIGHT, newRight);
+            return rebalance(successor);
+        }
+
+        return changed ? rebalance(node) : node;
+    }
+
+    //unlink the smallest node of a subtree into removedMin, returns the new subtree root
+    private int removeMin(int node) {
+        int left = getInt(node, LEFT);
+        if (left == NIL) {
+            removedMin = node;
+            return getInt(node, RIGHT);
+        }
+        putInt(node, LEFT, removeMin(left));
+        return rebalance(node);
+    }
+
+    private int rebalance(int node) {
+        updateHeight(node);
+        int balance = getBalanceFactor(node);
+
+        if (balance > 1) {
+            int left = getInt(node, LEFT);
+            if (getBalanceFactor(left) < 0) {
+                putInt(node, LEFT, leftRotate(left));
+            }
+            return rightRotate(node);
+        }
+        if (balance < -1) {
+            int right = getInt(node, RIGHT);
+            if (getBalanceFactor(right) > 0) {
+                putInt(node, RIGHT, rightRotate(right));
+            }
+            return leftRotate(node);
+        }
+        return node;
+    }
+
+    private int height(int node) {
+        return node == NIL ? 0 : getInt(node, HEIGHT_LENGTH) & 0xFF;
+    }
+
+    private int keyLength(int node) {
+        return getInt(node, HEIGHT_LENGTH) >>> 8;
+    }
+
+    private void setHeight(int node, int height) {
+        putInt(node, HEIGHT_LENGTH, (getInt(node, HEIGHT_LENGTH) & ~0xFF) | height);
+    }
+
+    private void updateHeight(int node) {
+        setHeight(node, 1 + Math.max(height(getInt(node, LEFT)), height(getInt(node, RIGHT))));
+    }
+
+    private int getBalanceFactor(int node) {
+        if (node == NIL) return 0;
+        return height(getInt(node, LEFT)) - height(getInt(node, RIGHT));
+    }
+
+    private int rightRotate(int y) {
+        int x = getInt(y, LEFT);
+        putInt(y, LEFT, getInt(x, RIGHT));
+        putInt(x, RIGHT, y);
+        updateHeight(y);
+        updateHeight(x);
+        rotationCount++;
+        return x;
+    }
+
+    private int leftRotate(int x) {
+        int y = getInt(x, RIGHT);
+        putInt(x, RIGHT, getInt(y, LEFT));
+        putInt(y, LEFT, x);
+        updateHeight(x);
+        updateHeight(y);
+        rotationCount++;
+        return y;
+    }
+
+    //double the bucket count and relink every existing node into its new bucket by its cached hash
+    private void resize() {
+        int oldCapacity = capacity;
+        int[] oldBuckets = buckets;
+        capacity *= 2;
+        buckets = new int[capacity];
+
+        int[] stack = new int[128];
+        for (int i = 0; i < oldCapacity; i++) {
+            int root = oldBuckets[i];
+            if (root == NIL) continue;
+
+            //walk the old tree with an explicit stack, detaching nodes as we go
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int node = stack[--top];
+                int left = getInt(node, LEFT);
+                int right = getInt(node, RIGHT);
+                if (left != NIL) stack[top++] = left;
+                if (right != NIL) stack[top++] = right;
+
+                putInt(node, LEFT, NIL);
+                putInt(node, RIGHT, NIL);
+                setHeight(node, 1);
+                int bucketIndex = bucketFor(getInt(node, HASH));
+                buckets[bucketIndex] = insertNode(buckets[bucketIndex], node);
+            }
+        }
+    }
+
+    private int insertNode(int node, int detached) {
+        if (node == NIL) return detached;
+
+        if (compareKeys(detached, node) < 0) {
+            putInt(node, LEFT, insertNode(getInt(node, LEFT), detached));
+        } else {
+            putInt(node, RIGHT, insertNode(getInt(node, RIGHT), detached));
+        }
+        return rebalance(node);
+    }
+
+    private int compareKeys(int a, int b) {
+        return Arrays.compareUnsigned(arena, a + KEY, a + KEY + keyLength(a), arena, b + KEY, b + KEY + keyLength(b));
+    }
+
+    private static int nodeBytes(int keyLength) {
+        return (KEY + keyLength + 3) & ~3;
+    }
+
+    //append a node for the probe key to the arena
+    private int allocateNode(int hash, V value) {
+        int bytes = nodeBytes(probeLength);
+        if (arenaEnd + bytes > arena.length) {
+            long wanted = Math.max((long) arena.length * 2, (long) arenaEnd + bytes);
+            if (wanted > Integer.MAX_VALUE - 8) throw new IllegalStateException("Key arena is full");
+            arena = Arrays.copyOf(arena, (int) wanted);
+        }
+        int node = arenaEnd;
+        arenaEnd += bytes;
+
+        int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        } else {
+            slot = nextSlot++;
+            if (slot == values.length) {
+                values = Arrays.copyOf(values, slot * 2);
+            }
+        }
+        values[slot] = value;
+
+        putInt(node, LEFT, NIL);
+        putInt(node, RIGHT, NIL);
+        putInt(node, HASH, hash);
+        putInt(node, VALUE_SLOT, slot);
+        putInt(node, HEIGHT_LENGTH, probeLength << 8 | 1);
+        System.arraycopy(probe, 0, arena, node + KEY, probeLength);
+        return node;
+    }
+
+    //the node's bytes stay in the arena until the next compaction, its value slot is reused
+    private void freeNode(int node) {
+        int slot = getInt(node, VALUE_SLOT);
+        values[slot] = null;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+        garbageBytes += nodeBytes(keyLength(node));
+    }
+
+    //copy the live nodes into a fresh arena, each tree in preorder so its top levels sit together
+    private void compactArena() {
+        byte[] old = arena;
+        arena = new byte[Math.max(1024, arenaEnd - garbageBytes)];
+        arenaEnd = 4;
+        for (int i = 0; i < capacity; i++) {
+            buckets[i] = copyTree(old, buckets[i]);
+        }
+        garbageBytes = 0;
+    }
+
+    private int copyTree(byte[] old, int node) {
+        if (node == NIL) return NIL;
+
+        int copy = arenaEnd;
+        int bytes = nodeBytes((int) INT.get(old, node + HEIGHT_LENGTH) >>> 8);
+        System.arraycopy(old, node, arena, copy, bytes);
+        arenaEnd += bytes;
+        putInt(copy, LEFT, copyTree(old, getInt(copy, LEFT)));
+        putInt(copy, RIGHT, copyTree(old, getInt(copy, RIGHT)));
+        return copy;
+    }
+
+    private int getInt(int node, int field) {
+        return (int) INT.get(arena, node + field);
+    }
+
+    private void putInt(int node, int field, int value) {
+        INT.set(arena, node + field, value);
+    }
+
+    //get total number of entries
+    public int getSize() {
+        return size;
+    }
+
+    //get number of buckets
+    public int getCapacity() {
+        return capacity;
+    }
+
+    //get current load factor
+    public double getCurrentLoadFactor() {
+        return (double) size / capacity;
+    }
+
+    //get bytes used in the arena by nodes and keys, holes left by deleted nodes included
+    public long getArenaBytes() {
+        return arenaEnd;
+    }
+
+    //get max height of all AVL trees
+    public int getMaxHeight() {
+        int maxHeight = 0;
+        for (int i = 0; i < capacity; i++) {
+            maxHeight = Math.max(maxHeight, height(buckets[i]));
+        }
+        return maxHeight;
+    }
+
+    //get total rotation count
+    public long getTotalRotationCount() {
+        return rotationCount;
+    }
+}
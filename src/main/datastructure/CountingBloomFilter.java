@@ -0,0 +1,93 @@
+package main.datastructure;
+
+//counting Bloom filter over 32-bit key hashes, used in front of HashTableWithAVL so a
+//search for an absent key usually stops after a few counter probes instead of walking a tree
+//
+//every counter is 4 bits, 16 of them packed per long, a key bumps HASH_COUNT counters on
+//add and drops them again on remove, a counter that reaches 15 sticks there for good
+//(it can no longer tell how many keys share it) which only costs a little precision
+//
+//the filter is blocked: all counters of one key sit in the same 64-byte block of 8 longs,
+//so a probe costs one cache miss instead of one per counter, for a slightly higher rate
+//of false positives than an unblocked filter of the same size
+//
+//keys with the same hash share the same counters, so the filter can never tell them apart
+public class CountingBloomFilter {
+    //~10 counters per expected key and 7 probes give about 1% false positives when full
+    private static final int COUNTERS_PER_KEY = 10;
+    private static final int HASH_COUNT = 7;
+    private static final int COUNTER_MAX = 15;
+    private static final int BLOCK_LONGS = 8;
+
+    private final long[] counters;
+    private final int blockCount;
+
+    public CountingBloomFilter(int expectedEntries) {
+        long wanted = Math.max(1, (long) expectedEntries * COUNTERS_PER_KEY / (BLOCK_LONGS * 16));
+        this.blockCount = (int) Math.min(wanted, Integer.MAX_VALUE / BLOCK_LONGS);
+        this.counters = new long[blockCount * BLOCK_LONGS];
+    }
+
+    //register one more key with this hash
+    public void add(int hash) {
+        long h = mix(hash);
+        int base = block(h);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int position = (int) (h >>> (7 * i)) & 127;
+            int counter = get(base, position);
+            if (counter < COUNTER_MAX) set(base, position, counter + 1);
+        }
+    }
+
+    //forget one key with this hash, the caller must only remove what it added
+    public void remove(int hash) {
+        long h = mix(hash);
+        int base = block(h);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int position = (int) (h >>> (7 * i)) & 127;
+            int counter = get(base, position);
+            if (counter > 0 && counter < COUNTER_MAX) set(base, position, counter - 1);
+        }
+    }
+
+    //false means no key with this hash was added, true means there may be one
+    public boolean mightContain(int hash) {
+        long h = mix(hash);
+        int base = block(h);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            if (get(base, (int) (h >>> (7 * i)) & 127) == 0) return false;
+        }
+        return true;
+    }
+
+    //counter positions come from the low 49 bits of the mix, the block from the high 32
+    private int block(long h) {
+        return (int) (((h >>> 32) * blockCount) >>> 32) * BLOCK_LONGS;
+    }
+
+    private int get(int base, int position) {
+        return (int) (counters[base + (position >>> 4)] >>> ((position & 15) << 2)) & 0xF;
+    }
+
+    private void set(int base, int position, int value) {
+        int shift = (position & 15) << 2;
+        int word = base + (position >>> 4);
+        counters[word] = (counters[word] & ~(0xFL << shift)) | ((long) value << shift);
+    }
+
+    //spread the 32-bit key hash over 64 bits (murmur3 finalizer)
+    private static long mix(int hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    public int getCounterCount() {
+        return counters.length * 16;
+    }
+
+    public long getMemoryBytes() {
+        return counters.length * 8L;
+    }
+}
@@ -0,0 +1,170 @@
+package main.datastructure;
+
+import main.utils.BinaryCodec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+//HashTableWithAVL persisted as a snapshot plus a write-ahead log in one directory
+//
+//on open the snapshot is loaded and the log replayed on top of it, checkpoint() writes a
+//new snapshot and starts an empty log, and runs by itself once the log passes
+//compactionBytes, replaying a log over a newer snapshot is harmless since every record
+//sets or removes a key outright
+public class DurableHashTable<K extends Comparable<K>, V> implements Closeable {
+    private static final String SNAPSHOT_FILE = "table.snapshot";
+    private static final String LOG_FILE = "table.wal";
+
+    private final Path directory;
+    private final BinaryCodec<K> keyCodec;
+    private final BinaryCodec<V> valueCodec;
+    private final WriteAheadLog.SyncPolicy syncPolicy;
+    private final long syncIntervalMillis;
+    private final long compactionBytes;
+    private final Object mutex = new Object();
+    private final HashTableWithAVL<K, V> table;
+    private WriteAheadLog<K, V> log;
+    private long recoveredRecords;
+
+    public DurableHashTable(Path directory, BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec,
+                            WriteAheadLog.SyncPolicy syncPolicy, long syncIntervalMillis,
+                            long compactionBytes) throws IOException {
+        this.directory = directory;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.compactionBytes = compactionBytes;
+
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            table = TableSnapshot.open(snapshot, keyCodec, valueCodec, new HashTableWithAVL.DefaultHashFunction<K>())
+                .toTable(0.75);
+        } else {
+            table = new HashTableWithAVL<>();
+        }
+
+        recoveredRecords = WriteAheadLog.replay(directory.resolve(LOG_FILE), table, keyCodec, valueCodec);
+        log = new WriteAheadLog<>(directory.resolve(LOG_FILE), keyCodec, valueCodec, syncPolicy, syncIntervalMillis);
+    }
+
+    //insert a key-value pair, returns once the record is durable under the sync policy
+    public void insert(K key, V value) throws IOException {
+        long seq;
+        WriteAheadLog<K, V> current;
+        synchronized (mutex) {
+            current = log;
+            seq = current.append(WriteAheadLog.INSERT, key, value);
+            table.insert(key, value);
+        }
+        //wait outside the mutex so other writers can join the same fsync
+        current.await(seq);
+        maybeCompact();
+    }
+
+    //delete a key, returns once the record is durable under the sync policy
+    public void delete(K key) throws IOException {
+        long seq;
+        WriteAheadLog<K, V> current;
+        synchronized (mutex) {
+            current = log;
+            seq = current.append(WriteAheadLog.DELETE, key, null);
+            table.delete(key);
+        }
+        current.await(seq);
+        maybeCompact();
+    }
+
+    public V search(K key) {
+        synchronized (mutex) {
+            return table.search(key);
+        }
+    }
+
+    //write a snapshot of the current state and start a new empty log
+    public void checkpoint() throws IOException {
+        synchronized (mutex) {
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            Path logFile = directory.resolve(LOG_FILE);
+            //the log stays open until the snapshot is safely written, a failed write leaves it in use
+            try {
+                TableSnapshot.write(table, temp, keyCodec, valueCodec);
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            } catch (IOException | RuntimeException e) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+                throw e;
+            }
+
+            try {
+                log.close();
+                Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                //the rename has to be durable before the log goes, or a crash could keep the
+                //deletion and lose the rename, leaving the old snapshot with no log
+                syncDirectory();
+                Files.deleteIfExists(logFile);
+            } finally {
+                //a fresh log on success, otherwise the old one reopened for appending, replaying
+                //it over either snapshot is harmless
+                log = new WriteAheadLog<>(logFile, keyCodec, valueCodec, syncPolicy, syncIntervalMillis);
+            }
+        }
+    }
+
+    //some platforms (Windows) can't open a directory to sync it, there the move is as durable as it gets
+    private void syncDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private void maybeCompact() throws IOException {
+        if (compactionBytes <= 0) return;
+        synchronized (mutex) {
+            if (log.getFileSize() > compactionBytes) {
+                checkpoint();
+            }
+        }
+    }
+
+    public int getSize() {
+        synchronized (mutex) {
+            return table.getSize();
+        }
+    }
+
+    //number of log records applied during recovery
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    public long getSyncCount() {
+        synchronized (mutex) {
+            return log.getSyncCount();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (mutex) {
+            log.close();
+        }
+    }
+}
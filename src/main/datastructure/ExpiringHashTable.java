@@ -0,0 +1,131 @@
+package main.datastructure;
+
+import main.hash.HashFunction;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+//hash table whose entries expire after a ttl, expiry is tracked by a timer wheel
+//and processed on every write (or by an optional maintenance thread), so expired
+//entries are reclaimed without scanning the buckets
+public class ExpiringHashTable<K extends Comparable<K>, V> {
+    private final HashTableWithAVL<K, TimerWheel.Entry<K, V>> table;
+    private final TimerWheel<K, V> timerWheel;
+    private final long defaultTtlNanos;
+    private final boolean expireAfterAccess;
+    private final LongSupplier ticker;
+    private ScheduledExecutorService maintenance;
+    private long expiredCount;
+
+    public ExpiringHashTable(long ttl, TimeUnit unit, boolean expireAfterAccess) {
+        this(16, 0.75, new HashTableWithAVL.DefaultHashFunction<>(), ttl, unit, expireAfterAccess, System::nanoTime);
+    }
+
+    public ExpiringHashTable(int initialCapacity, double loadFactorThreshold, HashFunction<K> hashFunction,
+                             long ttl, TimeUnit unit, boolean expireAfterAccess, LongSupplier ticker) {
+        this.table = new HashTableWithAVL<>(initialCapacity, loadFactorThreshold, hashFunction);
+        this.defaultTtlNanos = unit.toNanos(ttl);
+        this.expireAfterAccess = expireAfterAccess;
+        this.ticker = ticker;
+        this.expiredCount = 0;
+        this.timerWheel = new TimerWheel<>(ticker.getAsLong(), entry -> {
+            table.delete(entry.key);
+            expiredCount++;
+        });
+    }
+
+    //insert a key-value pair with the default ttl
+    public synchronized void insert(K key, V value) {
+        insert(key, value, defaultTtlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    //insert a key-value pair with its own ttl
+    public synchronized void insert(K key, V value, long ttl, TimeUnit unit) {
+        long now = ticker.getAsLong();
+        timerWheel.advance(now);
+
+        TimerWheel.Entry<K, V> entry = table.search(key);
+        if (entry == null) {
+            entry = new TimerWheel.Entry<>(key, value, unit.toNanos(ttl));
+            entry.expiresAt = now + entry.ttl;
+            table.insert(key, entry);
+            timerWheel.schedule(entry);
+        } else {
+            //reuse the entry so the table and the wheel never hold stale copies
+            entry.value = value;
+            entry.ttl = unit.toNanos(ttl);
+            entry.expiresAt = now + entry.ttl;
+            timerWheel.reschedule(entry);
+        }
+    }
+
+    //search for a key, entries past their deadline are treated as absent
+    public synchronized V search(K key) {
+        TimerWheel.Entry<K, V> entry = table.search(key);
+        if (entry == null) return null;
+
+        long now = ticker.getAsLong();
+        if (entry.expiresAt - now <= 0) {
+            //already found it, so reclaim it now instead of waiting for the wheel
+            timerWheel.deschedule(entry);
+            table.delete(key);
+            expiredCount++;
+            return null;
+        }
+
+        if (expireAfterAccess) {
+            entry.expiresAt = now + entry.ttl;
+            timerWheel.reschedule(entry);
+        }
+        return entry.value;
+    }
+
+    //delete a key
+    public synchronized void delete(K key) {
+        timerWheel.advance(ticker.getAsLong());
+
+        TimerWheel.Entry<K, V> entry = table.search(key);
+        if (entry != null) {
+            timerWheel.deschedule(entry);
+            table.delete(key);
+        }
+    }
+
+    //process every expiry that is due now
+    public synchronized void cleanUp() {
+        timerWheel.advance(ticker.getAsLong());
+    }
+
+    //start a daemon thread that runs cleanUp() periodically, for tables with few writes
+    public synchronized void startMaintenance(long period, TimeUnit unit) {
+        if (maintenance != null) return;
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiring-hashtable-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleAtFixedRate(this::cleanUp, period, period, unit);
+    }
+
+    public synchronized void stopMaintenance() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+            maintenance = null;
+        }
+    }
+
+    //get number of entries, including expired ones the wheel has not reached yet
+    public synchronized int getSize() {
+        return table.getSize();
+    }
+
+    //get number of entries removed because their ttl ran out
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    public synchronized int getCapacity() {
+        return table.getCapacity();
+    }
+}
@@ -0,0 +1,164 @@
+package main.datastructure;
+
+import main.hash.HashFunction;
+import main.utils.KeyValuePair;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+//immutable read-only copy of a HashTableWithAVL in flat arrays, built by freeze()
+//
+//buckets are a power of two and laid out back to back like a CSR matrix: bucket i owns
+//positions offsets[i] until offsets[i + 1] of the parallel hashes/keys/values arrays, so a
+//lookup reads two adjacent offsets and then one short run of entries, no nodes involved
+//
+//short buckets are scanned comparing the cached hash first, longer ones (collided keys)
+//are stored in Eytzinger order: the sorted keys laid out as an implicit binary tree in
+//BFS order, so the first few levels of every search share the same cache lines
+//
+//an optional xor filter over the keys' own hashCodes rejects most absent keys before the
+//offsets are read, even ones that collide with a present key under the table's hash function
+public class FrozenTable<K extends Comparable<K>, V> {
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    private final HashFunction<K> hashFunction;
+    private final int mask;
+    private final int[] offsets;
+    private final int[] hashes;
+    private final Object[] keys;
+    private final Object[] values;
+    private final int longestBucket;
+    private final XorFilter filter;
+
+    FrozenTable(HashFunction<K> hashFunction, List<KeyValuePair<K, V>> pairs, boolean membershipFilter) {
+        this.hashFunction = hashFunction;
+        int size = pairs.size();
+        int bucketCount = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.mask = bucketCount - 1;
+
+        //counting sort by bucket
+        int[] entryHashes = new int[size];
+        int[] entryBuckets = new int[size];
+        offsets = new int[bucketCount + 1];
+        for (int i = 0; i < size; i++) {
+            entryHashes[i] = hashFunction.hash(pairs.get(i).getKey());
+            entryBuckets[i] = bucketFor(entryHashes[i]);
+            offsets[entryBuckets[i] + 1]++;
+        }
+        int longest = 0;
+        for (int b = 0; b < bucketCount; b++) {
+            longest = Math.max(longest, offsets[b + 1]);
+            offsets[b + 1] += offsets[b];
+        }
+        longestBucket = longest;
+
+        Integer[] order = new Integer[size];
+        int[] fill = Arrays.copyOf(offsets, bucketCount);
+        for (int i = 0; i < size; i++) {
+            order[fill[entryBuckets[i]]++] = i;
+        }
+
+        hashes = new int[size];
+        keys = new Object[size];
+        values = new Object[size];
+        Comparator<Integer> byKey = (a, b) -> pairs.get(a).getKey().compareTo(pairs.get(b).getKey());
+        for (int b = 0; b < bucketCount; b++) {
+            int start = offsets[b];
+            int length = offsets[b + 1] - start;
+            if (length == 0) continue;
+
+            Arrays.sort(order, start, start + length, byKey);
+            if (length <= LINEAR_SCAN_LIMIT) {
+                for (int j = 0; j < length; j++) {
+                    place(start + j, order[start + j], pairs, entryHashes);
+                }
+            } else {
+                placeEytzinger(order, start, length, 0, 1, pairs, entryHashes);
+            }
+        }
+        if (membershipFilter) {
+            int[] keyHashes = new int[size];
+            for (int i = 0; i < size; i++) {
+                keyHashes[i] = pairs.get(i).getKey().hashCode();
+            }
+            filter = new XorFilter(keyHashes);
+        } else {
+            filter = null;
+        }
+    }
+
+    //the sorted run order[start..start+length) goes to Eytzinger slot k (1-based) in-order
+    private int placeEytzinger(Integer[] order, int start, int length, int next, int k,
+                               List<KeyValuePair<K, V>> pairs, int[] entryHashes) {
+        if (k > length) return next;
+        next = placeEytzinger(order, start, length, next, 2 * k, pairs, entryHashes);
+        place(start + k - 1, order[start + next], pairs, entryHashes);
+        next++;
+        return placeEytzinger(order, start, length, next, 2 * k + 1, pairs, entryHashes);
+    }
+
+    private void place(int position, int entry, List<KeyValuePair<K, V>> pairs, int[] entryHashes) {
+        hashes[position] = entryHashes[entry];
+        keys[position] = pairs.get(entry).getKey();
+        values[position] = pairs.get(entry).getValue();
+    }
+
+    //the live table only uses the low bits (mod capacity), spread the high bits down too
+    private int bucketFor(int hash) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    //search for a key
+    @SuppressWarnings("unchecked")
+    public V search(K key) {
+        if (filter != null && !filter.mightContain(key.hashCode())) return null;
+        int hash = hashFunction.hash(key);
+        int bucket = bucketFor(hash);
+        int start = offsets[bucket];
+        int length = offsets[bucket + 1] - start;
+
+        if (length <= LINEAR_SCAN_LIMIT) {
+            for (int i = start; i < start + length; i++) {
+                if (hashes[i] == hash && key.compareTo((K) keys[i]) == 0) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        int k = 1;
+        while (k <= length) {
+            int cmp = key.compareTo((K) keys[start + k - 1]);
+            if (cmp == 0) return (V) values[start + k - 1];
+            k = 2 * k + (cmp > 0 ? 1 : 0);
+        }
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        return search(key) != null;
+    }
+
+    public int getSize() {
+        return keys.length;
+    }
+
+    public int getBucketCount() {
+        return mask + 1;
+    }
+
+    public boolean hasMembershipFilter() {
+        return filter != null;
+    }
+
+    //bytes taken by the membership filter, 0 without one
+    public long getMembershipFilterBytes() {
+        return filter == null ? 0 : filter.getMemoryBytes();
+    }
+
+    //entries in the largest bucket
+    public int getLongestBucket() {
+        return longestBucket;
+    }
+}
@@ -1,15 +1,73 @@
 package main.datastructure;
 
 import main.hash.HashFunction;
+import main.utils.BinaryCodec;
 import main.utils.KeyValuePair;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class HashTableWithAVL<K extends Comparable<K>, V> {
-    private AVLTree<K, V>[] buckets;
+    //buckets past this many entries are swapped for a B+-tree and back below half of it
+    public static final int DEFAULT_WIDE_BUCKET_THRESHOLD = 1024;
+    
+    //a key in a bucket of at most this many entries is found about as fast as the hot-key cache would find it
+    private static final int HOT_KEY_MIN_BUCKET_SIZE = 4;
+    
+    private static final int STAMP_STRIPES = 64;
+    private static final int STAMP_PADDING = 16;
+    
+    private Bucket<K, V>[] buckets;
     private int size; 
     private int capacity; 
     private double loadFactorThreshold;
+    private double shrinkLoadFactorThreshold;
+    private int minCapacity;
     private HashFunction<K> hashFunction;
+    private Supplier<Bucket<K, V>> bucketFactory;
+    private int wideBucketThreshold;
+    private boolean deferShrink;
+    
+    //bucket statistics kept up to date by every write rather than scanned for,
+    //heightCounts[h] is the number of buckets of height h
+    private int[] heightCounts;
+    private long heightTotal;
+    private long rotationTotal;
+    private int occupiedBuckets;
+    
+    //striped sequence counters for optimistic reads, null unless enabled
+    private AtomicLongArray stamps;
+    private boolean allStampsHeld;
+    
+    //counting Bloom filter over the keys' hashCodes, null unless enabled
+    private CountingBloomFilter filter;
+    
+    //free lists for AVL nodes and buckets, null unless enabled
+    private NodePool<K, V> pool;
+    
+    //every key in order for range queries, null unless enabled
+    private OrderedIndex<K> orderedIndex;
+    
+    //per-bucket digests under a Merkle tree for diffing replicas, null unless enabled
+    private MerkleDigests merkle;
+    
+    //recently found keys and their values, consulted before the buckets, null unless enabled
+    private HotKeyCache<K, V> hotKeys;
+    
+    //publisher of every change to an entry, null unless enabled
+    private MutationStream<K, V> mutations;
+    
+    //the value the bucket handed the remapping function of the running compute or merge,
+    //null if it was not called, so the old value comes out of the same descent
+    private V remapped;
     
     //default hash function
     public static class DefaultHashFunction<K> implements HashFunction<K> {
@@ -23,79 +81,1162 @@ public class HashTableWithAVL<K extends Comparable<K>, V> {
         this(16, 0.75, new DefaultHashFunction<>());
     }
 
-    @SuppressWarnings("unchecked")
     public HashTableWithAVL(int initialCapacity, double loadFactorThreshold, HashFunction<K> hashFunction) {
+        this(initialCapacity, loadFactorThreshold, hashFunction, AVLTree::new);
+    }
+    
+    //use another bucket implementation (red-black, WAVL, treap, sorted array) in place of AVL trees
+    @SuppressWarnings("unchecked")
+    public HashTableWithAVL(int initialCapacity, double loadFactorThreshold, HashFunction<K> hashFunction,
+                            Supplier<Bucket<K, V>> bucketFactory) {
         this.capacity = initialCapacity;
         this.loadFactorThreshold = loadFactorThreshold;
+        this.shrinkLoadFactorThreshold = shrinkThresholdFor(loadFactorThreshold);
+        this.minCapacity = initialCapacity;
         this.hashFunction = hashFunction;
+        this.bucketFactory = bucketFactory;
+        this.wideBucketThreshold = DEFAULT_WIDE_BUCKET_THRESHOLD;
         this.size = 0;
         
-        //init buckets where each bucket is an AVL tree
-        buckets = new AVLTree[capacity];
+        //init buckets where each bucket is an AVL tree unless another factory was given
+        buckets = new Bucket[capacity];
         for (int i = 0; i < capacity; i++) {
-            buckets[i] = new AVLTree<>();
+            buckets[i] = bucketFactory.get();
         }
+        recountStats();
+    }
+    
+    //build a table around buckets that were already filled (snapshot loading)
+    HashTableWithAVL(Bucket<K, V>[] buckets, int size, double loadFactorThreshold, HashFunction<K> hashFunction) {
+        this(buckets, size, loadFactorThreshold, hashFunction, AVLTree::new);
+    }
+    
+    HashTableWithAVL(Bucket<K, V>[] buckets, int size, double loadFactorThreshold, HashFunction<K> hashFunction,
+                     Supplier<Bucket<K, V>> bucketFactory) {
+        this.buckets = buckets;
+        this.capacity = buckets.length;
+        this.size = size;
+        this.loadFactorThreshold = loadFactorThreshold;
+        this.shrinkLoadFactorThreshold = shrinkThresholdFor(loadFactorThreshold);
+        this.minCapacity = Math.min(16, buckets.length);
+        this.hashFunction = hashFunction;
+        this.bucketFactory = bucketFactory;
+        this.wideBucketThreshold = DEFAULT_WIDE_BUCKET_THRESHOLD;
+        recountStats();
+    }
+    
+    //halving doubles the load factor, so shrinking below a quarter of the grow threshold
+    //leaves the table at most half way to the next grow and the two never ping-pong
+    private static double shrinkThresholdFor(double loadFactorThreshold) {
+        return loadFactorThreshold / 4;
     }
     
     //get the bucket index for a key
     private int getBucketIndex(K key) {
-        int hash = hashFunction.hash(key);
+        return indexFor(hashFunction.hash(key), capacity);
+    }
+    
+    static int indexFor(int hash, int capacity) {
         return Math.abs(hash) % capacity;
     }
     
-    //insert a key-value pair
-    public void insert(K key, V value) {
+    Bucket<K, V> getBucket(int index) {
+        return buckets[index];
+    }
+    
+    HashFunction<K> getHashFunction() {
+        return hashFunction;
+    }
+    
+    //insert a key-value pair, returns the previous value or null
+    public V insert(K key, V value) {
+        if (hotKeys != null) hotKeys.invalidate(key, key.hashCode());
+        int index = getBucketIndex(key);
+        Bucket<K, V> bucket = buckets[index];
+        int oldSize = bucket.getSize();
+        long oldShape = shapeOf(bucket);
+        V previous;
+        beginWrite(index);
+        try {
+            previous = bucket.insert(key, value);
+            bucketStatsChanged(bucket, oldSize, oldShape);
+        } finally {
+            endWrite(index);
+        }
+        if (tracksChanges()) entryChanged(index, key, previous, value);
+        bucketSizeChanged(key, index, oldSize, bucket.getSize());
+        return previous;
+    }
+    
+    //search for a key
+    public V search(K key) {
+        if (stamps != null) return searchOptimistic(key);
+        if (hotKeys != null) return searchCached(key);
+        if (filter != null && !filter.mightContain(key.hashCode())) return null;
         int bucketIndex = getBucketIndex(key);
-        int oldSize = buckets[bucketIndex].getSize();
-        buckets[bucketIndex].insert(key, value);
-        
-        if (buckets[bucketIndex].getSize() > oldSize) {
+        return buckets[bucketIndex].search(key);
+    }
+    
+    //answer from the hot-key cache or search the bucket, keys found in a bucket deep enough
+    //for the cache to be faster are offered to it
+    private V searchCached(K key) {
+        boolean probe = hotKeys.shouldProbe();
+        int hash = key.hashCode();
+        if (probe) {
+            V value = hotKeys.get(key, hash);
+            if (value != null) return value;
+        }
+        if (filter != null && !filter.mightContain(hash)) return null;
+        Bucket<K, V> bucket = buckets[getBucketIndex(key)];
+        V value = bucket.search(key);
+        if (probe && value != null && bucket.getSize() > HOT_KEY_MIN_BUCKET_SIZE) hotKeys.offer(key, hash, value);
+        return value;
+    }
+    
+    //lock-free read against a concurrent writer: take the bucket's stripe stamp, search,
+    //and keep the result only if the stamp was even and is unchanged afterwards, the
+    //bucket array is re-read after the stamp so a resize that finished in between is seen
+    private V searchOptimistic(K key) {
+        int hash = hashFunction.hash(key);
+        while (true) {
+            Bucket<K, V>[] current = buckets;
+            int index = indexFor(hash, current.length);
+            int slot = stampSlot(index);
+            long stamp = stamps.getAcquire(slot);
+            if ((stamp & 1) == 0 && current == buckets) {
+                try {
+                    //the filter is replaced with every stripe held, so a miss is validated like a search
+                    CountingBloomFilter currentFilter = filter;
+                    V value = currentFilter != null && !currentFilter.mightContain(key.hashCode())
+                        ? null : current[index].searchOptimistic(key);
+                    VarHandle.acquireFence();
+                    if (stamps.get(slot) == stamp) return value;
+                } catch (RuntimeException e) {
+                    //a torn read of a bucket being changed, unless nothing changed and the error is real
+                    VarHandle.acquireFence();
+                    if (stamps.get(slot) == stamp) throw e;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+    
+    //switch to single-writer, many-reader mode: search() may then run on any number of
+    //threads alongside one writing thread, readers never block or write shared memory
+    //and retry when a write to their bucket overlaps, enable before sharing the table
+    public void enableOptimisticReads() {
+        if (stamps == null) {
+            stamps = new AtomicLongArray(STAMP_STRIPES * STAMP_PADDING);
+        }
+    }
+    
+    public boolean isOptimisticReadsEnabled() {
+        return stamps != null;
+    }
+    
+    //stripes are spread a cache line pair apart so readers of different stripes don't share lines
+    private static int stampSlot(int index) {
+        return (index & (STAMP_STRIPES - 1)) * STAMP_PADDING;
+    }
+    
+    //stamps go odd while a bucket of their stripe is being changed and even again after,
+    //a bulk change (resize) holds every stripe odd and skips the per-bucket bumps
+    private void beginWrite(int index) {
+        if (stamps != null && !allStampsHeld) {
+            stamps.getAndIncrement(stampSlot(index));
+        }
+    }
+    
+    private void endWrite(int index) {
+        if (stamps != null && !allStampsHeld) {
+            int slot = stampSlot(index);
+            stamps.setRelease(slot, stamps.getPlain(slot) + 1);
+        }
+    }
+    
+    private boolean beginWriteAll() {
+        if (stamps == null || allStampsHeld) return false;
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            stamps.getAndIncrement(i * STAMP_PADDING);
+        }
+        allStampsHeld = true;
+        return true;
+    }
+    
+    private void endWriteAll(boolean held) {
+        if (!held) return;
+        allStampsHeld = false;
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            stamps.setRelease(i * STAMP_PADDING, stamps.getPlain(i * STAMP_PADDING) + 1);
+        }
+    }
+    
+    //delete a key, returns the removed value or null
+    public V delete(K key) {
+        if (hotKeys != null) hotKeys.invalidate(key, key.hashCode());
+        int index = getBucketIndex(key);
+        Bucket<K, V> bucket = buckets[index];
+        int oldSize = bucket.getSize();
+        long oldShape = shapeOf(bucket);
+        V removed;
+        beginWrite(index);
+        try {
+            removed = bucket.delete(key);
+            bucketStatsChanged(bucket, oldSize, oldShape);
+        } finally {
+            endWrite(index);
+        }
+        if (tracksChanges()) entryChanged(index, key, removed, null);
+        bucketSizeChanged(key, index, oldSize, bucket.getSize());
+        return removed;
+    }
+    
+    //insert only if the key is absent, returns the existing value or null
+    public V putIfAbsent(K key, V value) {
+        if (hotKeys != null) hotKeys.invalidate(key, key.hashCode());
+        int index = getBucketIndex(key);
+        Bucket<K, V> bucket = buckets[index];
+        int oldSize = bucket.getSize();
+        long oldShape = shapeOf(bucket);
+        V existing;
+        beginWrite(index);
+        try {
+            existing = bucket.putIfAbsent(key, value);
+            bucketStatsChanged(bucket, oldSize, oldShape);
+        } finally {
+            endWrite(index);
+        }
+        if (existing == null && tracksChanges()) entryChanged(index, key, null, value);
+        bucketSizeChanged(key, index, oldSize, bucket.getSize());
+        return existing;
+    }
+    
+    //returns the existing value, or the computed one if the key was absent
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        if (hotKeys != null) hotKeys.invalidate(key, key.hashCode());
+        int index = getBucketIndex(key);
+        Bucket<K, V> bucket = buckets[index];
+        int oldSize = bucket.getSize();
+        long oldShape = shapeOf(bucket);
+        V value;
+        beginWrite(index);
+        try {
+            value = bucket.computeIfAbsent(key, mappingFunction);
+            bucketStatsChanged(bucket, oldSize, oldShape);
+        } finally {
+            endWrite(index);
+        }
+        if (bucket.getSize() > oldSize && tracksChanges()) entryChanged(index, key, null, value);
+        bucketSizeChanged(key, index, oldSize, bucket.getSize());
+        return value;
+    }
+    
+    //remap an existing value, a null result removes the key, returns the new value
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (hotKeys != null) hotKeys.invalidate(key, key.hashCode());
+        int index = getBucketIndex(key);
+        Bucket<K, V> bucket = buckets[index];
+        int oldSize = bucket.getSize();
+        long oldShape = shapeOf(bucket);
+        remapped = null;
+        V value;
+        beginWrite(index);
+        try {
+            value = bucket.computeIfPresent(key, (k, old) -> {
+                remapped = old;
+                return remappingFunction.apply(k, old);
+            });
+            bucketStatsChanged(bucket, oldSize, oldShape);
+        } finally {
+            endWrite(index);
+        }
+        V before = takeRemapped();
+        if (tracksChanges()) entryChanged(index, key, before, value);
+        bucketSizeChanged(key, index, oldSize, bucket.getSize());
+        return value;
+    }
+    
+    //remap the value or null if absent, a null result removes the key, returns the new value
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (hotKeys != null) hotKeys.invalidate(key, key.hashCode());
+        int index = getBucketIndex(key);
+        Bucket<K, V> bucket = buckets[index];
+        int oldSize = bucket.getSize();
+        long oldShape = shapeOf(bucket);
+        remapped = null;
+        V value;
+        beginWrite(index);
+        try {
+            value = bucket.compute(key, (k, old) -> {
+                remapped = old;
+                return remappingFunction.apply(k, old);
+            });
+            bucketStatsChanged(bucket, oldSize, oldShape);
+        } finally {
+            endWrite(index);
+        }
+        V before = takeRemapped();
+        if (tracksChanges()) entryChanged(index, key, before, value);
+        bucketSizeChanged(key, index, oldSize, bucket.getSize());
+        return value;
+    }
+    
+    //insert the value if absent, otherwise combine it with the existing one (null removes), returns the new value
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (hotKeys != null) hotKeys.invalidate(key, key.hashCode());
+        int index = getBucketIndex(key);
+        Bucket<K, V> bucket = buckets[index];
+        int oldSize = bucket.getSize();
+        long oldShape = shapeOf(bucket);
+        remapped = null;
+        V merged;
+        beginWrite(index);
+        try {
+            merged = bucket.merge(key, value, (old, given) -> {
+                remapped = old;
+                return remappingFunction.apply(old, given);
+            });
+            bucketStatsChanged(bucket, oldSize, oldShape);
+        } finally {
+            endWrite(index);
+        }
+        V before = takeRemapped();
+        if (tracksChanges()) entryChanged(index, key, before, merged);
+        bucketSizeChanged(key, index, oldSize, bucket.getSize());
+        return merged;
+    }
+    
+    //hand out the value seen by the last remap and drop the reference to it
+    private V takeRemapped() {
+        V old = remapped;
+        remapped = null;
+        return old;
+    }
+    
+    //whether a mutator has to hand the old and new value of what it changes to entryChanged
+    private boolean tracksChanges() {
+        return merkle != null || mutations != null && mutations.hasSubscribers();
+    }
+    
+    //fold a change of one entry into its bucket's digest and publish it to the mutation
+    //stream, a null value stands for absent
+    private void entryChanged(int index, K key, V oldValue, V newValue) {
+        if (oldValue == null && newValue == null) return;
+        if (merkle != null) {
+            if (oldValue == null) {
+                merkle.add(index, merkle.entryHash(key, newValue));
+            } else if (newValue == null) {
+                merkle.remove(index, merkle.entryHash(key, oldValue));
+            } else {
+                merkle.replace(index, merkle.entryHash(key, oldValue), merkle.entryHash(key, newValue));
+            }
+        }
+        if (mutations != null) mutations.publish(key, oldValue, newValue);
+    }
+    
+    //keep the entry count in step with a bucket and grow or shrink when it crosses a threshold
+    private void bucketSizeChanged(K key, int index, int oldSize, int newSize) {
+        if (newSize > oldSize) {
             size++;
+            if (filter != null) filter.add(key.hashCode());
+            if (orderedIndex != null) orderedIndex.add(key);
+            if (wideBucketThreshold > 0 && newSize > wideBucketThreshold && !(buckets[index] instanceof BTreeBucket)) {
+                swapBucket(index, new BTreeBucket<>());
+            }
             if ((double) size / capacity > loadFactorThreshold) {
                 resize();
             }
+        } else if (newSize < oldSize) {
+            size--;
+            if (filter != null) filter.remove(key.hashCode());
+            if (orderedIndex != null) orderedIndex.remove(key);
+            if (newSize < wideBucketThreshold / 2 && buckets[index] instanceof BTreeBucket) {
+                swapBucket(index, bucketFactory.get());
+            }
+            if (!deferShrink) {
+                shrinkIfNeeded();
+            }
         }
     }
     
-    //search for a key
-    public V search(K key) {
-        int bucketIndex = getBucketIndex(key);
-        return buckets[bucketIndex].search(key);
+    private void shrinkIfNeeded() {
+        while ((double) size / capacity < shrinkLoadFactorThreshold && capacity % 2 == 0 && capacity / 2 >= minCapacity) {
+            halve();
+        }
     }
     
-    //delete a key
-    public void delete(K key) {
-        int bucketIndex = getBucketIndex(key);
-        int oldSize = buckets[bucketIndex].getSize();
-        buckets[bucketIndex].delete(key);
+    //look up a batch of keys, out[i] receives the value for keys[i] or null
+    //
+    //keys are grouped by bucket and sorted within each bucket first, so buckets are
+    //visited in index order and a collided bucket answers its whole group in one traversal
+    public void searchAll(K[] keys, V[] out) {
+        if (keys.length != out.length) {
+            throw new IllegalArgumentException("keys and out must have the same length");
+        }
+        //readers in optimistic mode validate key by key
+        if (stamps != null) {
+            for (int i = 0; i < keys.length; i++) {
+                out[i] = searchOptimistic(keys[i]);
+            }
+            return;
+        }
+        K[] sorted = keys.clone();
+        int[] slots = new int[keys.length];
+        int[] bucketIndexes = sortByBucket(keys, sorted, slots);
         
-        if (buckets[bucketIndex].getSize() < oldSize) {
-            size--;
+        int from = 0;
+        while (from < keys.length) {
+            int to = groupEnd(bucketIndexes, from);
+            Bucket<K, V> bucket = buckets[bucketIndexes[from]];
+            if (to - from == 1) {
+                out[slots[from]] = bucket.search(sorted[from]);
+            } else {
+                bucket.searchSorted(sorted, from, to, slots, out);
+            }
+            from = to;
         }
     }
     
-    //resize the hash table
+    //insert a batch of pairs, a key that appears twice keeps the later value
+    //
+    //the table is grown up front for the whole batch so no resize happens half way through
+    public void insertAll(K[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys and values must have the same length");
+        }
+        int target = capacity;
+        while ((double) (size + keys.length) / target > loadFactorThreshold) {
+            target *= 2;
+        }
+        if (target != capacity) {
+            rehashTo(target);
+        }
+        
+        K[] sorted = keys.clone();
+        int[] slots = new int[keys.length];
+        int[] bucketIndexes = sortByBucket(keys, sorted, slots);
+        
+        for (int i = 0; i < keys.length; i++) {
+            //re-read the bucket, it may have been swapped for a wide one by the last insert
+            int index = bucketIndexes[i];
+            Bucket<K, V> bucket = buckets[index];
+            int oldSize = bucket.getSize();
+            long oldShape = shapeOf(bucket);
+            if (hotKeys != null) hotKeys.invalidate(sorted[i], sorted[i].hashCode());
+            V previous;
+            beginWrite(index);
+            try {
+                previous = bucket.insert(sorted[i], values[slots[i]]);
+                bucketStatsChanged(bucket, oldSize, oldShape);
+            } finally {
+                endWrite(index);
+            }
+            if (tracksChanges()) entryChanged(index, sorted[i], previous, values[slots[i]]);
+            bucketSizeChanged(sorted[i], index, oldSize, bucket.getSize());
+        }
+    }
+    
+    //delete a batch of keys, returns how many were present
+    //
+    //shrinking waits until the whole batch is gone so bucket indexes stay valid
+    public int deleteAll(K[] keys) {
+        K[] sorted = keys.clone();
+        int[] slots = new int[keys.length];
+        int[] bucketIndexes = sortByBucket(keys, sorted, slots);
+        
+        int removed = 0;
+        deferShrink = true;
+        try {
+            for (int i = 0; i < keys.length; i++) {
+                int index = bucketIndexes[i];
+                Bucket<K, V> bucket = buckets[index];
+                int oldSize = bucket.getSize();
+                long oldShape = shapeOf(bucket);
+                if (hotKeys != null) hotKeys.invalidate(sorted[i], sorted[i].hashCode());
+                V removedValue;
+                beginWrite(index);
+                try {
+                    removedValue = bucket.delete(sorted[i]);
+                    bucketStatsChanged(bucket, oldSize, oldShape);
+                } finally {
+                    endWrite(index);
+                }
+                if (removedValue != null) {
+                    removed++;
+                    if (tracksChanges()) entryChanged(index, sorted[i], removedValue, null);
+                }
+                bucketSizeChanged(sorted[i], index, oldSize, bucket.getSize());
+            }
+        } finally {
+            deferShrink = false;
+        }
+        shrinkIfNeeded();
+        return removed;
+    }
+    
+    //order a batch by bucket index and then by key, sorted[i] is keys[slots[i]] and the
+    //returned array holds the bucket index of sorted[i], equal keys keep their batch order
+    private int[] sortByBucket(K[] keys, K[] sorted, int[] slots) {
+        long[] packed = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            packed[i] = ((long) getBucketIndex(keys[i]) << 32) | i;
+        }
+        Arrays.sort(packed);
+        
+        int[] bucketIndexes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            bucketIndexes[i] = (int) (packed[i] >>> 32);
+            slots[i] = (int) packed[i];
+            sorted[i] = keys[slots[i]];
+        }
+        
+        K[] keyBuffer = keys.clone();
+        int[] slotBuffer = new int[keys.length];
+        int from = 0;
+        while (from < keys.length) {
+            int to = groupEnd(bucketIndexes, from);
+            if (to - from > 1) {
+                sortByKey(sorted, slots, from, to, keyBuffer, slotBuffer);
+            }
+            from = to;
+        }
+        return bucketIndexes;
+    }
+    
+    private static int groupEnd(int[] bucketIndexes, int from) {
+        int to = from + 1;
+        while (to < bucketIndexes.length && bucketIndexes[to] == bucketIndexes[from]) to++;
+        return to;
+    }
+    
+    //stable merge sort of keys[from..to) carrying slots along, insertion sort for short runs
+    private static <K extends Comparable<K>> void sortByKey(K[] keys, int[] slots, int from, int to,
+                                                             K[] keyBuffer, int[] slotBuffer) {
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                K key = keys[i];
+                int slot = slots[i];
+                int j = i - 1;
+                while (j >= from && keys[j].compareTo(key) > 0) {
+                    keys[j + 1] = keys[j];
+                    slots[j + 1] = slots[j];
+                    j--;
+                }
+                keys[j + 1] = key;
+                slots[j + 1] = slot;
+            }
+            return;
+        }
+        
+        int mid = (from + to) >>> 1;
+        sortByKey(keys, slots, from, mid, keyBuffer, slotBuffer);
+        sortByKey(keys, slots, mid, to, keyBuffer, slotBuffer);
+        
+        System.arraycopy(keys, from, keyBuffer, from, to - from);
+        System.arraycopy(slots, from, slotBuffer, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            if (keyBuffer[j].compareTo(keyBuffer[i]) < 0) {
+                keys[k] = keyBuffer[j];
+                slots[k++] = slotBuffer[j++];
+            } else {
+                keys[k] = keyBuffer[i];
+                slots[k++] = slotBuffer[i++];
+            }
+        }
+        while (i < mid) {
+            keys[k] = keyBuffer[i];
+            slots[k++] = slotBuffer[i++];
+        }
+        while (j < to) {
+            keys[k] = keyBuffer[j];
+            slots[k++] = slotBuffer[j++];
+        }
+    }
+    
+    //copy the entries into an immutable flat layout for read-only use, later changes to
+    //this table are not reflected in it
+    public FrozenTable<K, V> freeze() {
+        return freeze(false);
+    }
+    
+    //same, optionally with an xor filter in front that rejects most absent keys
+    public FrozenTable<K, V> freeze(boolean membershipFilter) {
+        List<KeyValuePair<K, V>> pairs = new ArrayList<>(size);
+        for (Bucket<K, V> bucket : buckets) {
+            pairs.addAll(bucket.getAllKeyValuePairs());
+        }
+        return new FrozenTable<>(hashFunction, pairs, membershipFilter);
+    }
+    
+    //put a counting Bloom filter in front of the buckets so searches for absent keys are
+    //mostly answered by a few counter probes, it is kept up to date by every insert and
+    //delete and rebuilt at the new size whenever the table is rehashed
+    //
+    //the filter uses the keys' own hashCode, not the table's hash function, so keys that
+    //share a bucket because of a weak hash function can still be told apart
+    public void enableMembershipFilter() {
+        if (filter != null) return;
+        boolean held = beginWriteAll();
+        try {
+            rebuildFilter();
+        } finally {
+            endWriteAll(held);
+        }
+    }
+    
+    public boolean isMembershipFilterEnabled() {
+        return filter != null;
+    }
+    
+    //bytes taken by the membership filter, 0 when disabled
+    public long getMembershipFilterBytes() {
+        return filter == null ? 0 : filter.getMemoryBytes();
+    }
+    
+    //size the filter for as many entries as the current capacity holds before growing
+    private void rebuildFilter() {
+        int expected = (int) Math.min(Integer.MAX_VALUE / 16, Math.ceil(capacity * loadFactorThreshold));
+        CountingBloomFilter rebuilt = new CountingBloomFilter(expected);
+        for (Bucket<K, V> bucket : buckets) {
+            for (KeyValuePair<K, V> pair : bucket.getAllKeyValuePairs()) {
+                rebuilt.add(pair.getKey().hashCode());
+            }
+        }
+        filter = rebuilt;
+    }
+    
+    //keep keys that search() finds often in a small 2-way set-associative cache of about
+    //the given number of entries, a repeated search for one of them is a hashCode and an
+    //equals instead of a hash, a modulo and a descent through a possibly deep bucket, every
+    //write to a key drops it from the cache first, the cache is bypassed by optimistic reads
+    //
+    //pays off for skewed searches over collided buckets, on uniform traffic it turns itself
+    //off for stretches but each probe window still costs a little
+    public void enableHotKeyCache(int entries) {
+        if (hotKeys != null) return;
+        hotKeys = new HotKeyCache<>(entries);
+    }
+    
+    public boolean isHotKeyCacheEnabled() {
+        return hotKeys != null;
+    }
+    
+    //fraction of searches answered by the hot-key cache, 0 when disabled
+    public double getHotKeyHitRate() {
+        return hotKeys == null ? 0 : hotKeys.getHitRate();
+    }
+    
+    //keep every key in a table-wide ordered index as well, point lookups still go through
+    //the hash path while floor, ceiling and range queries walk the index in O(log n + k),
+    //each insert and delete of a key pays an extra O(log n) to keep it in step, ordered
+    //queries are for the writing thread only, optimistic readers don't cover them
+    public void enableOrderedIndex() {
+        if (orderedIndex != null) return;
+        List<K> keys = new ArrayList<>(size);
+        for (Bucket<K, V> bucket : buckets) {
+            for (KeyValuePair<K, V> pair : bucket.getAllKeyValuePairs()) {
+                keys.add(pair.getKey());
+            }
+        }
+        keys.sort(null);
+        OrderedIndex<K> index = new OrderedIndex<>();
+        index.loadSorted(keys);
+        orderedIndex = index;
+    }
+    
+    public boolean isOrderedIndexEnabled() {
+        return orderedIndex != null;
+    }
+    
+    //entry with the greatest key less than or equal to the given one, or null
+    public KeyValuePair<K, V> floor(K key) {
+        return entryFor(requireOrderedIndex().floor(key));
+    }
+    
+    //entry with the least key greater than or equal to the given one, or null
+    public KeyValuePair<K, V> ceiling(K key) {
+        return entryFor(requireOrderedIndex().ceiling(key));
+    }
+    
+    //entries with fromInclusive <= key < toExclusive in key order
+    public List<KeyValuePair<K, V>> range(K fromInclusive, K toExclusive) {
+        List<KeyValuePair<K, V>> pairs = new ArrayList<>();
+        Iterator<KeyValuePair<K, V>> iterator = orderedIterator(fromInclusive, toExclusive);
+        while (iterator.hasNext()) {
+            pairs.add(iterator.next());
+        }
+        return pairs;
+    }
+    
+    //all entries in key order, produced one at a time
+    public Iterator<KeyValuePair<K, V>> orderedIterator() {
+        return orderedIterator(null, null);
+    }
+    
+    //entries with fromInclusive <= key < toExclusive in key order, produced one at a time,
+    //a null bound is open, changing the table while iterating fails the next call to next()
+    public Iterator<KeyValuePair<K, V>> orderedIterator(K fromInclusive, K toExclusive) {
+        Iterator<K> keys = requireOrderedIndex().iterator(fromInclusive, toExclusive);
+        return new Iterator<KeyValuePair<K, V>>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+            
+            @Override
+            public KeyValuePair<K, V> next() {
+                return entryFor(keys.next());
+            }
+        };
+    }
+    
+    private OrderedIndex<K> requireOrderedIndex() {
+        if (orderedIndex == null) {
+            throw new IllegalStateException("Ordered index is not enabled");
+        }
+        return orderedIndex;
+    }
+    
+    private KeyValuePair<K, V> entryFor(K key) {
+        if (key == null) return null;
+        return new KeyValuePair<>(key, buckets[getBucketIndex(key)].search(key));
+    }
+    
+    //keep a digest per bucket under a Merkle tree over bucket ranges, so replicas with the
+    //same capacity and hash function can find the buckets they disagree on in
+    //O(d log capacity) and exchange only those, every change to an entry adjusts its
+    //bucket's digest in O(1) and the tree above is brought up to date lazily
+    //
+    //entries are hashed from their encoded bytes, so equal digests mean equal entries
+    public void enableMerkleDigests(BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec) {
+        enableMerkleDigests(new MerkleDigests(capacity, keyCodec, valueCodec));
+    }
+    
+    //same from hashCodes alone, differing digests still mean differing entries but matching
+    //ones can hide changes between equal hashCodes, so syncFrom compares every bucket
+    public void enableMerkleDigests() {
+        enableMerkleDigests(new MerkleDigests(capacity));
+    }
+    
+    private void enableMerkleDigests(MerkleDigests digests) {
+        if (merkle != null) return;
+        for (int i = 0; i < capacity; i++) {
+            for (KeyValuePair<K, V> pair : buckets[i].getAllKeyValuePairs()) {
+                digests.add(i, digests.entryHash(pair.getKey(), pair.getValue()));
+            }
+        }
+        merkle = digests;
+    }
+    
+    public boolean isMerkleDigestsEnabled() {
+        return merkle != null;
+    }
+    
+    //digest of the whole table, with codecs equal roots mean equal entries
+    public long getRootDigest() {
+        return requireMerkle().root();
+    }
+    
+    //indexes of the buckets whose entries differ from the other table's, in ascending order
+    public int[] diffBuckets(HashTableWithAVL<K, V> other) {
+        if (capacity != other.capacity) {
+            throw new IllegalArgumentException("Capacities differ: " + capacity + " and " + other.capacity);
+        }
+        MerkleDigests ours = requireMerkle();
+        MerkleDigests theirs = other.requireMerkle();
+        if (!ours.sameHashing(theirs)) {
+            throw new IllegalArgumentException("Digests of the two tables are built with different codecs");
+        }
+        return MerkleDigests.diff(ours, theirs);
+    }
+    
+    //entries of one bucket in key order, what a replica ships for a bucket that differs
+    public List<KeyValuePair<K, V>> getBucketEntries(int index) {
+        return buckets[index].getAllKeyValuePairs();
+    }
+    
+    //make this table hold exactly the source's entries, only buckets whose digests differ
+    //are compared entry by entry, returns how many keys were inserted, updated or deleted,
+    //digests built from hashCodes can't rule a bucket out, so then every bucket is compared
+    public int syncFrom(HashTableWithAVL<K, V> source) {
+        List<K> stale = new ArrayList<>();
+        List<KeyValuePair<K, V>> fresh = new ArrayList<>();
+        if (requireMerkle().isExact()) {
+            for (int index : diffBuckets(source)) {
+                collectDifferences(buckets[index].getAllKeyValuePairs(), source.getBucketEntries(index), stale, fresh);
+            }
+        } else {
+            for (int index = 0; index < capacity; index++) {
+                collectDifferences(buckets[index].getAllKeyValuePairs(), source.getBucketEntries(index), stale, fresh);
+            }
+        }
+
+        //deletes go first and shrinking waits, so the size never passes the source's on the way
+        //and both tables end up at the same capacity
+        deferShrink = true;
+        try {
+            for (K key : stale) {
+                delete(key);
+            }
+            for (KeyValuePair<K, V> pair : fresh) {
+                insert(pair.getKey(), pair.getValue());
+            }
+        } finally {
+            deferShrink = false;
+        }
+        shrinkIfNeeded();
+        return stale.size() + fresh.size();
+    }
+    
+    //walk two key-ordered buckets side by side, keys only we have are stale and keys
+    //whose value is missing or different here are fresh
+    private void collectDifferences(List<KeyValuePair<K, V>> ours, List<KeyValuePair<K, V>> theirs,
+                                    List<K> stale, List<KeyValuePair<K, V>> fresh) {
+        int i = 0, j = 0;
+        while (i < ours.size() || j < theirs.size()) {
+            int cmp;
+            if (i == ours.size()) {
+                cmp = 1;
+            } else if (j == theirs.size()) {
+                cmp = -1;
+            } else {
+                cmp = ours.get(i).getKey().compareTo(theirs.get(j).getKey());
+            }
+
+            if (cmp < 0) {
+                stale.add(ours.get(i++).getKey());
+            } else if (cmp > 0) {
+                fresh.add(theirs.get(j++));
+            } else {
+                if (!Objects.equals(ours.get(i).getValue(), theirs.get(j).getValue())) fresh.add(theirs.get(j));
+                i++;
+                j++;
+            }
+        }
+    }
+    
+    private MerkleDigests requireMerkle() {
+        if (merkle == null) {
+            throw new IllegalStateException("Merkle digests are not enabled");
+        }
+        return merkle;
+    }
+    
+    //publish every insert, update and delete as a Mutation with a gap-free sequence number,
+    //subscribers are served from a ring of bufferSize events on their own threads in
+    //batches as far as their demand goes, and the table waits for the slowest one when it
+    //falls a whole ring behind, with no subscribers writes pay a null check and nothing else
+    public void enableMutationStream() {
+        enableMutationStream(MutationStream.DEFAULT_BUFFER_SIZE);
+    }
+    
+    public void enableMutationStream(int bufferSize) {
+        if (mutations != null) return;
+        mutations = new MutationStream<>(bufferSize);
+    }
+    
+    public boolean isMutationStreamEnabled() {
+        return mutations != null;
+    }
+    
+    public Flow.Publisher<Mutation<K, V>> getMutationStream() {
+        return requireMutationStream();
+    }
+    
+    //complete every subscriber once it has taken what was published so far
+    public void closeMutationStream() {
+        requireMutationStream().close();
+        mutations = null;
+    }
+    
+    //sequence number the next mutation will get
+    public long getMutationSequence() {
+        return requireMutationStream().getSequence();
+    }
+    
+    //how many times a write waited for the slowest subscriber
+    public long getMutationStreamWaits() {
+        return requireMutationStream().getWriterWaits();
+    }
+    
+    private MutationStream<K, V> requireMutationStream() {
+        if (mutations == null) {
+            throw new IllegalStateException("Mutation stream is not enabled");
+        }
+        return mutations;
+    }
+
+    //entries of either table, a key in both keeps the other table's value, the result is
+    //a new table with this one's settings
+    //
+    //this and the set operations below merge the two tables bucket by bucket as sorted
+    //lists, in linear time and without hashing a key when the capacities are equal or one
+    //divides the other, both tables must use the same hash function and must not change
+    //while the operation runs
+    public HashTableWithAVL<K, V> union(HashTableWithAVL<K, V> other) {
+        return BucketSetOperations.combine(this, other, BucketSetOperations.Operation.UNION);
+    }
+    
+    //entries of this table whose key is also in the other one
+    public HashTableWithAVL<K, V> intersection(HashTableWithAVL<K, V> other) {
+        return BucketSetOperations.combine(this, other, BucketSetOperations.Operation.INTERSECTION);
+    }
+    
+    //entries of this table whose key is not in the other one
+    public HashTableWithAVL<K, V> difference(HashTableWithAVL<K, V> other) {
+        return BucketSetOperations.combine(this, other, BucketSetOperations.Operation.DIFFERENCE);
+    }
+    
+    //whether both tables map the same keys to equal values
+    public boolean contentEquals(HashTableWithAVL<K, V> other) {
+        return BucketSetOperations.contentEquals(this, other);
+    }
+    
+    //a bucket of this table's kind holding the given key-ordered entries, may be called from
+    //several threads at once, so it never takes buckets or nodes from the pool
+    Bucket<K, V> bucketFor(List<KeyValuePair<K, V>> sortedPairs) {
+        Bucket<K, V> bucket = wideBucketThreshold > 0 && sortedPairs.size() > wideBucketThreshold
+            ? new BTreeBucket<>() : unpooledBucketFactory().get();
+        if (!sortedPairs.isEmpty()) bucket.loadSorted(sortedPairs);
+        return bucket;
+    }
+    
+    //a table with this one's settings around buckets filled by bucketFor, grown or shrunk
+    //to fit its load factor
+    HashTableWithAVL<K, V> withBuckets(Bucket<K, V>[] filled, int entries) {
+        HashTableWithAVL<K, V> table = new HashTableWithAVL<>(filled, entries, loadFactorThreshold, hashFunction,
+            unpooledBucketFactory());
+        table.wideBucketThreshold = wideBucketThreshold;
+        int target = table.capacity;
+        while ((double) entries / target > loadFactorThreshold) {
+            target *= 2;
+        }
+        if (target != table.capacity) {
+            table.rehashTo(target);
+        }
+        table.shrinkIfNeeded();
+        return table;
+    }
+    
+    private Supplier<Bucket<K, V>> unpooledBucketFactory() {
+        return pool != null ? AVLTree::new : bucketFactory;
+    }
+    
+    //move a bucket's entries into another bucket implementation
+    private void swapBucket(int index, Bucket<K, V> replacement) {
+        Bucket<K, V> old = buckets[index];
+        replacement.loadSorted(old.getAllKeyValuePairs());
+        beginWrite(index);
+        buckets[index] = replacement;
+        countHeight(old.getHeight(), -1);
+        countHeight(replacement.getHeight(), 1);
+        rotationTotal += replacement.getRotationCount() - old.getRotationCount();
+        if (pool != null) recycle(old);
+        endWrite(index);
+    }
+    
+    //recycle node and bucket objects through per-table free lists holding at most
+    //maxPooled of each: a deleted entry's node is reused by the next insert and a rehash
+    //moves nodes into the new buckets and keeps the emptied buckets for the next one,
+    //so steady insert/delete churn allocates next to nothing, needs AVL buckets
     @SuppressWarnings("unchecked")
+    public void enableNodePooling(int maxPooled) {
+        if (pool != null) return;
+        if (!(bucketFactory.get() instanceof AVLTree)) {
+            throw new IllegalStateException("Node pooling needs AVL buckets");
+        }
+        pool = new NodePool<>(maxPooled);
+        Supplier<Bucket<K, V>> pooledFactory = pool::acquireBucket;
+        bucketFactory = pooledFactory;
+        for (Bucket<K, V> bucket : buckets) {
+            if (bucket instanceof AVLTree) ((AVLTree<K, V>) bucket).setPool(pool);
+        }
+    }
+    
+    public boolean isNodePoolingEnabled() {
+        return pool != null;
+    }
+    
+    //nodes waiting in the pool for reuse, 0 when pooling is off
+    public int getPooledNodeCount() {
+        return pool == null ? 0 : pool.getPooledNodeCount();
+    }
+    
+    //fraction of new nodes that came from the pool, 0 when pooling is off
+    public double getNodeReuseRatio() {
+        return pool == null ? 0 : pool.getReuseRatio();
+    }
+    
+    //return a bucket that left the table to the pool
+    private void recycle(Bucket<K, V> bucket) {
+        if (bucket instanceof AVLTree) pool.releaseBucket((AVLTree<K, V>) bucket);
+    }
+    
+    //a fresh bucket for the given number of entries, wide once it is past the threshold
+    private Bucket<K, V> newBucket(int entries) {
+        if (wideBucketThreshold > 0 && entries > wideBucketThreshold) {
+            return new BTreeBucket<>();
+        }
+        return bucketFactory.get();
+    }
+    
+    //set the bucket size past which buckets become B+-trees, 0 or less turns swapping off
+    //and converts wide buckets back to the regular kind
+    public void setWideBucketThreshold(int threshold) {
+        this.wideBucketThreshold = threshold;
+        for (int i = 0; i < capacity; i++) {
+            Bucket<K, V> bucket = buckets[i];
+            boolean wide = bucket instanceof BTreeBucket;
+            boolean shouldBeWide = threshold > 0 && bucket.getSize() > threshold;
+            if (wide != shouldBeWide) {
+                swapBucket(i, shouldBeWide ? new BTreeBucket<>() : bucketFactory.get());
+            }
+        }
+    }
+    
+    public int getWideBucketThreshold() {
+        return wideBucketThreshold;
+    }
+    
+    //number of buckets currently stored as B+-trees
+    public int getWideBucketCount() {
+        int count = 0;
+        for (Bucket<K, V> bucket : buckets) {
+            if (bucket instanceof BTreeBucket) count++;
+        }
+        return count;
+    }
+    
+    //resize the hash table
     private void resize() {
-        int oldCapacity = capacity;
-        capacity *= 2;
+        rehashTo(capacity * 2);
+    }
+    
+    //move every entry into a fresh set of buckets
+    @SuppressWarnings("unchecked")
+    private void rehashTo(int newCapacity) {
+        boolean held = beginWriteAll();
+        try {
+            int oldCapacity = capacity;
+            capacity = newCapacity;
 
-        AVLTree<K, V>[] oldBuckets = buckets;
+            Bucket<K, V>[] oldBuckets = buckets;
+            
+            buckets = new Bucket[capacity];
+            for (int i = 0; i < capacity; i++) {
+                buckets[i] = bucketFactory.get();
+            }
+            //the re-inserts below bring the statistics up from the empty buckets
+            recountStats();
+
+            size = 0;
+            
+            //re-inserting would count every key twice, the filter is rebuilt at the new size after
+            //and the ordered index, whose keys don't change, is left out of it
+            CountingBloomFilter oldFilter = filter;
+            filter = null;
+            OrderedIndex<K> index = orderedIndex;
+            orderedIndex = null;
+            //entries only move, subscribers don't hear about it
+            MutationStream<K, V> stream = mutations;
+            mutations = null;
+            //the digests are laid out by bucket, so they start over and fill up again as entries move
+            if (merkle != null) merkle = merkle.emptyCopy(capacity);
+            for (int i = 0; i < oldCapacity; i++) {
+                if (pool != null && oldBuckets[i] instanceof AVLTree) {
+                    //nodes go back to the pool one by one and come straight out again for the new bucket
+                    AVLTree<K, V> tree = (AVLTree<K, V>) oldBuckets[i];
+                    tree.drainTo(this::insert);
+                    pool.releaseBucket(tree);
+                } else {
+                    rehashBucket(oldBuckets[i]);
+                }
+            }
+            if (oldFilter != null) {
+                rebuildFilter();
+            }
+            orderedIndex = index;
+            mutations = stream;
+        } finally {
+            endWriteAll(held);
+        }
+    }
+    
+    //halve the bucket count, for an even capacity abs(hash) % (capacity / 2) is the old
+    //index mod capacity / 2, so buckets i and i + capacity / 2 merge into bucket i and
+    //every entry keeps its order, the merged bucket is loaded from the sorted entries
+    @SuppressWarnings("unchecked")
+    private void halve() {
+        int half = capacity / 2;
+        Bucket<K, V>[] oldBuckets = buckets;
         
-        buckets = new AVLTree[capacity];
-        for (int i = 0; i < capacity; i++) {
-            buckets[i] = new AVLTree<>();
+        Bucket<K, V>[] merged = new Bucket[half];
+        for (int i = 0; i < half; i++) {
+            Bucket<K, V> low = oldBuckets[i];
+            Bucket<K, V> high = oldBuckets[i + half];
+            if (high.getSize() == 0) {
+                merged[i] = low;
+            } else if (low.getSize() == 0) {
+                merged[i] = high;
+            } else {
+                merged[i] = newBucket(low.getSize() + high.getSize());
+                merged[i].loadSorted(mergeSorted(low.getAllKeyValuePairs(), high.getAllKeyValuePairs()));
+            }
         }
-
-        size = 0;
         
-        for (int i = 0; i < oldCapacity; i++) {
-            rehashBucket(oldBuckets[i]);
+        //the old buckets are left untouched, so readers only need to notice the swap
+        boolean held = beginWriteAll();
+        buckets = merged;
+        capacity = half;
+        recountStats();
+        if (merkle != null) merkle = merkle.halve();
+        if (pool != null) {
+            for (int i = 0; i < half; i++) {
+                if (merged[i] != oldBuckets[i]) recycle(oldBuckets[i]);
+                if (merged[i] != oldBuckets[i + half]) recycle(oldBuckets[i + half]);
+            }
         }
+        endWriteAll(held);
+    }
+    
+    private List<KeyValuePair<K, V>> mergeSorted(List<KeyValuePair<K, V>> a, List<KeyValuePair<K, V>> b) {
+        List<KeyValuePair<K, V>> merged = new ArrayList<>(a.size() + b.size());
+        int i = 0, j = 0;
+        while (i < a.size() && j < b.size()) {
+            if (a.get(i).getKey().compareTo(b.get(j).getKey()) < 0) {
+                merged.add(a.get(i++));
+            } else {
+                merged.add(b.get(j++));
+            }
+        }
+        while (i < a.size()) merged.add(a.get(i++));
+        while (j < b.size()) merged.add(b.get(j++));
+        return merged;
+    }
+    
+    //shrink to the smallest power-of-two capacity that keeps the load factor under the threshold
+    public void trimToSize() {
+        int target = 1;
+        while ((double) size / target > loadFactorThreshold) {
+            target *= 2;
+        }
+        if (target >= capacity) return;
+        
+        //merge bucket pairs while the capacity halves evenly down to the target
+        while (capacity > target && capacity % 2 == 0 && capacity / 2 >= target) {
+            halve();
+        }
+        
+        //capacities that are not a power of two can't reach the target by halving, rehash instead
+        if (capacity != target) {
+            rehashTo(target);
+        }
+        minCapacity = Math.min(minCapacity, capacity);
     }
     
     //helper to rehash a bucket during resize
-    private void rehashBucket(AVLTree<K, V> tree) {
+    private void rehashBucket(Bucket<K, V> tree) {
         List<KeyValuePair<K, V>> pairs = tree.getAllKeyValuePairs();
         for (KeyValuePair<K, V> pair : pairs) {
             insert(pair.getKey(), pair.getValue());
@@ -117,34 +1258,116 @@ public class HashTableWithAVL<K extends Comparable<K>, V> {
         return (double) size / capacity;
     }
     
-    //get max height of all AVL trees
-    public int getMaxHeight() {
-        int maxHeight = 0;
-        for (AVLTree<K, V> bucket : buckets) {
-            maxHeight = Math.max(maxHeight, bucket.getHeight());
+    //height and rotation count of a bucket in one long, taken before a write to it
+    private static long shapeOf(Bucket<?, ?> bucket) {
+        return (long) bucket.getHeight() << 32 | bucket.getRotationCount() & 0xFFFFFFFFL;
+    }
+    
+    //fold one write to a bucket into the statistics, runs inside the write so stats()
+    //can validate against the stamps like a search does
+    private void bucketStatsChanged(Bucket<K, V> bucket, int oldSize, long oldShape) {
+        int oldHeight = (int) (oldShape >>> 32);
+        int height = bucket.getHeight();
+        if (height != oldHeight) {
+            countHeight(oldHeight, -1);
+            countHeight(height, 1);
+        }
+        rotationTotal += bucket.getRotationCount() - (int) oldShape;
+        int newSize = bucket.getSize();
+        if (oldSize == 0 && newSize > 0) {
+            occupiedBuckets++;
+        } else if (oldSize > 0 && newSize == 0) {
+            occupiedBuckets--;
+        }
+    }
+    
+    private void countHeight(int height, int delta) {
+        if (height >= heightCounts.length) {
+            heightCounts = Arrays.copyOf(heightCounts, Math.max(height + 1, heightCounts.length * 2));
+        }
+        heightCounts[height] += delta;
+        heightTotal += (long) height * delta;
+    }
+    
+    //start the statistics over from the buckets as they are, only when all of them were replaced
+    private void recountStats() {
+        heightCounts = new int[8];
+        heightTotal = 0;
+        rotationTotal = 0;
+        occupiedBuckets = 0;
+        for (Bucket<K, V> bucket : buckets) {
+            countHeight(bucket.getHeight(), 1);
+            rotationTotal += bucket.getRotationCount();
+            if (bucket.getSize() > 0) occupiedBuckets++;
         }
+    }
+    
+    //get max height of all buckets, O(max height)
+    public int getMaxHeight() {
+        int maxHeight = heightCounts.length - 1;
+        while (maxHeight > 0 && heightCounts[maxHeight] == 0) maxHeight--;
         return maxHeight;
     }
     
-    //get average height of all AVL trees
+    //get average height of all buckets
     public double getAverageHeight() {
-        double totalHeight = 0;
-        for (AVLTree<K, V> bucket : buckets) {
-            totalHeight += bucket.getHeight();
-        }
-        return totalHeight / capacity;
+        return (double) heightTotal / capacity;
     }
     
-    //get total rotation count from all AVL trees
+    //get total rotation count from all buckets
     public int getTotalRotationCount() {
-        int totalRotations = 0;
-        for (AVLTree<K, V> bucket : buckets) {
-            totalRotations += bucket.getRotationCount();
+        return (int) rotationTotal;
+    }
+    
+    //get number of buckets holding at least one entry
+    public int getOccupiedBucketCount() {
+        return occupiedBuckets;
+    }
+    
+    //get number of buckets of each height, index h holds the count for height h, O(max height)
+    public int[] getHeightHistogram() {
+        return Arrays.copyOf(heightCounts, getMaxHeight() + 1);
+    }
+    
+    //all of the above in one snapshot, taken between writes, with optimistic reads on it may
+    //be taken on any thread and is retried until no write overlapped it
+    public TableStats stats() {
+        if (stamps == null) return collectStats();
+        while (true) {
+            long[] seen = new long[STAMP_STRIPES];
+            boolean quiet = true;
+            for (int i = 0; i < STAMP_STRIPES; i++) {
+                seen[i] = stamps.getAcquire(i * STAMP_PADDING);
+                if ((seen[i] & 1) != 0) quiet = false;
+            }
+            if (quiet) {
+                try {
+                    TableStats stats = collectStats();
+                    VarHandle.acquireFence();
+                    if (stampsUnchanged(seen)) return stats;
+                } catch (RuntimeException e) {
+                    //the histogram was regrown or replaced under us, take it again
+                }
+            }
+            Thread.onSpinWait();
         }
-        return totalRotations;
     }
     
-    //get heights of all buckets (for visualization)
+    private boolean stampsUnchanged(long[] seen) {
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            if (stamps.get(i * STAMP_PADDING) != seen[i]) return false;
+        }
+        return true;
+    }
+    
+    private TableStats collectStats() {
+        int[] counts = heightCounts;
+        int maxHeight = counts.length - 1;
+        while (maxHeight > 0 && counts[maxHeight] == 0) maxHeight--;
+        return new TableStats(capacity, occupiedBuckets, Arrays.copyOf(counts, maxHeight + 1), heightTotal, rotationTotal);
+    }
+    
+    //get heights of all buckets (for visualization), this one is still a scan of every bucket
     public int[] getBucketHeights() {
         int[] heights = new int[capacity];
         for (int i = 0; i < capacity; i++) {
@@ -0,0 +1,120 @@
+package main.datastructure;
+
+//small 2-way set-associative cache of (hashCode, key, value) in front of the buckets of a
+//HashTableWithAVL, so keys that are searched over and over skip the hash function, the
+//modulo and the tree descent, on a hit the key is compared once with equals
+//
+//a set is picked from the key's own hashCode, which String and the boxed types keep at
+//hand, a lookup reads the two hashes of its set first and touches keys and values only
+//when one matches, lookups never write the arrays: a store whose slot depends on the key
+//stalls the loads of the following lookups and costs more than the descent it saves
+//
+//for the same reason only every ADMIT_EVERY-th bucket hit is copied in, a key that is
+//searched often gets in soon anyway, it goes to way 0 and pushes way 0 down to way 1
+//
+//when a window of lookups hits less than MIN_HIT_PERCENT the cache is bypassed for the
+//next BYPASS_WINDOWS windows, so uniform traffic doesn't pay for the probe, and then tried again
+//
+//the table drops a key from the cache before any write to it, not thread-safe
+final class HotKeyCache<K, V> {
+    private static final int ADMIT_EVERY = 16;
+    private static final int WINDOW = 1 << 16;
+    private static final int MIN_HIT_PERCENT = 5;
+    private static final int BYPASS_WINDOWS = 15;
+
+    private final int setMask;
+    private final int[] hashes;
+    private final Object[] keys;
+    private final Object[] values;
+
+    private int admitCountdown = ADMIT_EVERY;
+    private int windowLookups;
+    private int windowHits;
+    private long bypassLeft;
+
+    private long hits;
+    private long lookups;
+
+    //rounded up to a power of two number of sets of two entries
+    HotKeyCache(int entries) {
+        int sets = Integer.highestOneBit(Math.max(1, entries / 2 - 1)) << 1;
+        this.setMask = sets - 1;
+        this.hashes = new int[sets * 2];
+        this.keys = new Object[sets * 2];
+        this.values = new Object[sets * 2];
+    }
+
+    //false while the cache is being bypassed, the caller then goes straight to the bucket
+    boolean shouldProbe() {
+        lookups++;
+        if (bypassLeft == 0) return true;
+        bypassLeft--;
+        return false;
+    }
+
+    //the cached value or null
+    @SuppressWarnings("unchecked")
+    V get(K key, int hash) {
+        int slot = slotFor(hash);
+        V value = null;
+        if (hashes[slot] == hash && matches(keys[slot], key)) {
+            value = (V) values[slot];
+        } else if (hashes[slot + 1] == hash && matches(keys[slot + 1], key)) {
+            value = (V) values[slot + 1];
+        }
+
+        if (value != null) {
+            hits++;
+            windowHits++;
+        }
+        if (++windowLookups == WINDOW) {
+            if (windowHits * 100L < (long) WINDOW * MIN_HIT_PERCENT) bypassLeft = (long) WINDOW * BYPASS_WINDOWS;
+            windowLookups = 0;
+            windowHits = 0;
+        }
+        return value;
+    }
+
+    private static boolean matches(Object cached, Object key) {
+        return cached != null && (cached == key || cached.equals(key));
+    }
+
+    //offer a key the bucket just found, only every ADMIT_EVERY-th offer is taken
+    void offer(K key, int hash, V value) {
+        if (--admitCountdown > 0) return;
+        admitCountdown = ADMIT_EVERY;
+
+        int slot = slotFor(hash);
+        keys[slot + 1] = keys[slot];
+        values[slot + 1] = values[slot];
+        hashes[slot + 1] = hashes[slot];
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+    }
+
+    void invalidate(K key, int hash) {
+        int slot = slotFor(hash);
+        for (int way = slot; way < slot + 2; way++) {
+            if (hashes[way] == hash && matches(keys[way], key)) {
+                keys[way] = null;
+                values[way] = null;
+            }
+        }
+    }
+
+    int getEntryCapacity() {
+        return keys.length;
+    }
+
+    //fraction of all searches answered from the cache, bypassed ones included
+    double getHitRate() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    //spread the hashCode so keys with similar low bits still land in different sets
+    private int slotFor(int hash) {
+        int h = hash * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & setMask) << 1;
+    }
+}
@@ -0,0 +1,95 @@
+package main.datastructure;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+//finds an int key in a small block of keys, LANES keys per compare with the Vector API
+//when jdk.incubator.vector is resolved at runtime (--add-modules jdk.incubator.vector),
+//a plain loop otherwise
+//
+//the incubator module is bound through method handles instead of imports so the tree
+//still compiles without extra flags, the handles are constants and the JIT inlines them
+//down to the same vector instructions a direct call would give
+//
+//blocks are allocated in multiples of LANES so a full vector load never reads past the end,
+//lanes at or beyond count may hold stale keys and are ignored
+final class IntBlockProbe {
+    static final int LANES;
+    private static final MethodHandle FROM_ARRAY;
+    private static final MethodHandle EQ;
+    private static final MethodHandle FIRST_TRUE;
+
+    static {
+        int lanes = 8;
+        MethodHandle fromArray = null, eq = null, firstTrue = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> vectorClass = Class.forName("jdk.incubator.vector.IntVector");
+            Class<?> speciesClass = Class.forName("jdk.incubator.vector.VectorSpecies");
+            Class<?> maskClass = Class.forName("jdk.incubator.vector.VectorMask");
+            Object species = vectorClass.getField("SPECIES_PREFERRED").get(null);
+            int speciesLanes = (int) speciesClass.getMethod("length").invoke(species);
+
+            fromArray = MethodHandles.insertArguments(
+                    lookup.findStatic(vectorClass, "fromArray", MethodType.methodType(vectorClass, speciesClass, int[].class, int.class)), 0, species)
+                .asType(MethodType.methodType(Object.class, int[].class, int.class));
+            eq = lookup.findVirtual(vectorClass, "eq", MethodType.methodType(maskClass, int.class))
+                .asType(MethodType.methodType(Object.class, Object.class, int.class));
+            firstTrue = lookup.findVirtual(maskClass, "firstTrue", MethodType.methodType(int.class))
+                .asType(MethodType.methodType(int.class, Object.class));
+            lanes = speciesLanes;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            //module not resolved or not present, stay scalar
+            fromArray = null;
+            eq = null;
+            firstTrue = null;
+        }
+        LANES = lanes;
+        FROM_ARRAY = fromArray;
+        EQ = eq;
+        FIRST_TRUE = firstTrue;
+    }
+
+    private IntBlockProbe() {
+    }
+
+    static boolean isVectorAvailable() {
+        return FROM_ARRAY != null;
+    }
+
+    //index of key among the first count keys, or -1
+    static int indexOf(int[] keys, int count, int key, boolean vector) {
+        if (vector && FROM_ARRAY != null) return vectorIndexOf(keys, count, key);
+        return scalarIndexOf(keys, count, key);
+    }
+
+    private static int vectorIndexOf(int[] keys, int count, int key) {
+        try {
+            for (int i = 0; i < count; i += LANES) {
+                Object block = (Object) FROM_ARRAY.invokeExact(keys, i);
+                Object mask = (Object) EQ.invokeExact(block, key);
+                int lane = (int) FIRST_TRUE.invokeExact(mask);
+                if (lane < LANES) {
+                    int index = i + lane;
+                    return index < count ? index : -1;
+                }
+            }
+            return -1;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Vector probe failed", e);
+        }
+    }
+
+    private static int scalarIndexOf(int[] keys, int count, int key) {
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    //smallest multiple of LANES that holds count keys
+    static int blockLength(int count) {
+        return Math.max(LANES, (count + LANES - 1) / LANES * LANES);
+    }
+}
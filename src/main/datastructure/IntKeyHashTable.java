@@ -0,0 +1,273 @@
+package main.datastructure;
+
+import main.utils.KeyValuePair;
+import java.util.Arrays;
+
+//int -> V hash table whose short buckets are contiguous int[] key blocks next to an
+//Object[] of values, a search compares the key against a whole block LANES keys at a time
+//(see IntBlockProbe) instead of following AVLTree.Node pointers and unboxing each key
+//
+//a bucket that grows past blockThreshold entries turns into an AVLTree, so a flood of
+//colliding keys still costs O(log n), it turns back into a block when a delete takes it
+//down to half the threshold, blockThreshold 0 keeps every bucket a tree
+public class IntKeyHashTable<V> {
+    private static final int DEFAULT_BLOCK_THRESHOLD = 32;
+
+    //per bucket either a key block, a tree or neither when the bucket is empty
+    private int[][] keyBlocks;
+    private Object[][] valueBlocks;
+    private int[] blockSizes;
+    private AVLTree<Integer, V>[] trees;
+
+    private int size;
+    private int capacity;
+    private double loadFactorThreshold;
+    private final int blockThreshold;
+    private final boolean vectorProbing;
+    private int treeBucketCount;
+
+    public IntKeyHashTable() {
+        this(16, 0.75);
+    }
+
+    public IntKeyHashTable(int initialCapacity, double loadFactorThreshold) {
+        this(initialCapacity, loadFactorThreshold, DEFAULT_BLOCK_THRESHOLD, true);
+    }
+
+    //vectorProbing false forces the scalar loop even when the Vector API is available
+    public IntKeyHashTable(int initialCapacity, double loadFactorThreshold, int blockThreshold, boolean vectorProbing) {
+        if (blockThreshold < 0) throw new IllegalArgumentException("Block threshold must be >= 0");
+        this.capacity = Integer.highestOneBit(Math.max(initialCapacity - 1, 1)) << 1;
+        this.loadFactorThreshold = loadFactorThreshold;
+        this.blockThreshold = blockThreshold;
+        this.vectorProbing = vectorProbing;
+        allocate(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int buckets) {
+        keyBlocks = new int[buckets][];
+        valueBlocks = new Object[buckets][];
+        blockSizes = new int[buckets];
+        trees = new AVLTree[buckets];
+    }
+
+    //murmur3 finalizer, the bucket index comes from the low bits
+    private static int indexFor(int key, int capacity) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & (capacity - 1);
+    }
+
+    //insert a key-value pair, returns the previous value
+    @SuppressWarnings("unchecked")
+    public V insert(int key, V value) {
+        int index = indexFor(key, capacity);
+        AVLTree<Integer, V> tree = trees[index];
+        if (tree != null) {
+            int before = tree.getSize();
+            V previous = tree.insert(key, value);
+            size += tree.getSize() - before;
+            resizeIfNeeded();
+            return previous;
+        }
+
+        int[] keys = keyBlocks[index];
+        int count = blockSizes[index];
+        int slot = keys == null ? -1 : IntBlockProbe.indexOf(keys, count, key, vectorProbing);
+        if (slot >= 0) {
+            V previous = (V) valueBlocks[index][slot];
+            valueBlocks[index][slot] = value;
+            return previous;
+        }
+
+        if (count >= blockThreshold) {
+            toTree(index).insert(key, value);
+        } else {
+            if (keys == null || count == keys.length) {
+                int length = IntBlockProbe.blockLength(Math.min(blockThreshold, Math.max(count * 2, 1)));
+                keys = keyBlocks[index] = keys == null ? new int[length] : Arrays.copyOf(keys, length);
+                valueBlocks[index] = valueBlocks[index] == null ? new Object[length] : Arrays.copyOf(valueBlocks[index], length);
+            }
+            keys[count] = key;
+            valueBlocks[index][count] = value;
+            blockSizes[index] = count + 1;
+        }
+        size++;
+        resizeIfNeeded();
+        return null;
+    }
+
+    //search for a key, returns null when it is absent
+    @SuppressWarnings("unchecked")
+    public V search(int key) {
+        int index = indexFor(key, capacity);
+        int[] keys = keyBlocks[index];
+        if (keys != null) {
+            int slot = IntBlockProbe.indexOf(keys, blockSizes[index], key, vectorProbing);
+            return slot < 0 ? null : (V) valueBlocks[index][slot];
+        }
+        AVLTree<Integer, V> tree = trees[index];
+        return tree == null ? null : tree.search(key);
+    }
+
+    public boolean containsKey(int key) {
+        int index = indexFor(key, capacity);
+        int[] keys = keyBlocks[index];
+        if (keys != null) return IntBlockProbe.indexOf(keys, blockSizes[index], key, vectorProbing) >= 0;
+        AVLTree<Integer, V> tree = trees[index];
+        return tree != null && tree.search(key) != null;
+    }
+
+    //delete a key, returns its value or null if it was absent
+    @SuppressWarnings("unchecked")
+    public V delete(int key) {
+        int index = indexFor(key, capacity);
+        AVLTree<Integer, V> tree = trees[index];
+        if (tree != null) {
+            int before = tree.getSize();
+            V removed = tree.delete(key);
+            size -= before - tree.getSize();
+            if (tree.getSize() <= blockThreshold / 2) toBlock(index);
+            return removed;
+        }
+
+        int[] keys = keyBlocks[index];
+        int count = blockSizes[index];
+        int slot = keys == null ? -1 : IntBlockProbe.indexOf(keys, count, key, vectorProbing);
+        if (slot < 0) return null;
+
+        //order within a block doesn't matter, the last entry fills the hole
+        Object[] values = valueBlocks[index];
+        V removed = (V) values[slot];
+        keys[slot] = keys[count - 1];
+        values[slot] = values[count - 1];
+        values[count - 1] = null;
+        blockSizes[index] = count - 1;
+        if (count == 1) {
+            keyBlocks[index] = null;
+            valueBlocks[index] = null;
+        }
+        size--;
+        return removed;
+    }
+
+    //move a full block into a new tree
+    @SuppressWarnings("unchecked")
+    private AVLTree<Integer, V> toTree(int index) {
+        AVLTree<Integer, V> tree = new AVLTree<>();
+        int[] keys = keyBlocks[index];
+        for (int i = 0; i < blockSizes[index]; i++) {
+            tree.insert(keys[i], (V) valueBlocks[index][i]);
+        }
+        keyBlocks[index] = null;
+        valueBlocks[index] = null;
+        blockSizes[index] = 0;
+        trees[index] = tree;
+        treeBucketCount++;
+        return tree;
+    }
+
+    private void toBlock(int index) {
+        AVLTree<Integer, V> tree = trees[index];
+        trees[index] = null;
+        treeBucketCount--;
+        for (KeyValuePair<Integer, V> pair : tree.getAllKeyValuePairs()) {
+            appendToBlock(index, pair.getKey(), pair.getValue());
+        }
+    }
+
+    //append a key known to be absent, used when moving entries between buckets
+    private void appendToBlock(int index, int key, V value) {
+        int count = blockSizes[index];
+        int[] keys = keyBlocks[index];
+        if (keys == null || count == keys.length) {
+            int length = IntBlockProbe.blockLength(Math.max(count * 2, 1));
+            keyBlocks[index] = keys == null ? new int[length] : Arrays.copyOf(keys, length);
+            valueBlocks[index] = valueBlocks[index] == null ? new Object[length] : Arrays.copyOf(valueBlocks[index], length);
+        }
+        keyBlocks[index][count] = key;
+        valueBlocks[index][count] = value;
+        blockSizes[index] = count + 1;
+    }
+
+    private void resizeIfNeeded() {
+        if ((double) size / capacity > loadFactorThreshold) {
+            resize();
+        }
+    }
+
+    //double the bucket count and move every entry to its new bucket, a bucket that ends
+    //up over the threshold becomes a tree again
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        int[][] oldKeys = keyBlocks;
+        Object[][] oldValues = valueBlocks;
+        int[] oldSizes = blockSizes;
+        AVLTree<Integer, V>[] oldTrees = trees;
+
+        capacity *= 2;
+        allocate(capacity);
+        treeBucketCount = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                for (int j = 0; j < oldSizes[i]; j++) {
+                    moveEntry(oldKeys[i][j], (V) oldValues[i][j]);
+                }
+            } else if (oldTrees[i] != null) {
+                for (KeyValuePair<Integer, V> pair : oldTrees[i].getAllKeyValuePairs()) {
+                    moveEntry(pair.getKey(), pair.getValue());
+                }
+            }
+        }
+    }
+
+    private void moveEntry(int key, V value) {
+        int index = indexFor(key, capacity);
+        if (trees[index] != null) {
+            trees[index].insert(key, value);
+        } else if (blockSizes[index] >= blockThreshold) {
+            toTree(index).insert(key, value);
+        } else {
+            appendToBlock(index, key, value);
+        }
+    }
+
+    //whether searches use the Vector API, false when jdk.incubator.vector isn't resolved
+    public boolean isVectorProbing() {
+        return vectorProbing && IntBlockProbe.isVectorAvailable();
+    }
+
+    //keys compared per vector instruction
+    public static int getVectorLanes() {
+        return IntBlockProbe.LANES;
+    }
+
+    //get total number of entries
+    public int getSize() {
+        return size;
+    }
+
+    //get number of buckets
+    public int getCapacity() {
+        return capacity;
+    }
+
+    //get current load factor
+    public double getCurrentLoadFactor() {
+        return (double) size / capacity;
+    }
+
+    public int getBlockThreshold() {
+        return blockThreshold;
+    }
+
+    //get number of buckets that are AVL trees instead of key blocks
+    public int getTreeBucketCount() {
+        return treeBucketCount;
+    }
+}
@@ -0,0 +1,197 @@
+package main.datastructure;
+
+import main.utils.BinaryCodec;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//per-bucket digests of a HashTableWithAVL rolled up into a Merkle tree over bucket ranges,
+//walking down only where nodes differ finds the d differing buckets in O(d log capacity)
+//
+//with codecs an entry is hashed from its key's and value's encoded bytes into 64 bits, so
+//two tables with the same capacity and hash function hold equal entries exactly when their
+//roots match (up to 64-bit collisions), without codecs only hashCodes go in and a match is
+//a hint: an update between values with equal hashCodes ("Aa" to "BB") leaves it unchanged
+//
+//a bucket's digest is the sum of its entries' hashes, so it is independent of the order
+//entries arrived in and an insert, update or delete adjusts it in O(1), inner nodes are
+//only marked dirty on the way up and recomputed when a root or diff is asked for
+final class MerkleDigests {
+    private static final long KEY_SEED = 0x9E3779B97F4A7C15L;
+    private static final long VALUE_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    private final int bucketCount;
+    //null when entries are hashed from their hashCodes
+    private final BinaryCodec<Object> keyCodec;
+    private final BinaryCodec<Object> valueCodec;
+    private ByteBuffer scratch;
+
+    //leaves rounded up to a power of two, node 1 is the root and leaf i is node leafCount + i
+    private final int leafCount;
+    private final long[] nodes;
+    private final boolean[] dirty;
+
+    MerkleDigests(int bucketCount) {
+        this(bucketCount, null, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    MerkleDigests(int bucketCount, BinaryCodec<?> keyCodec, BinaryCodec<?> valueCodec) {
+        this.bucketCount = bucketCount;
+        this.keyCodec = (BinaryCodec<Object>) keyCodec;
+        this.valueCodec = (BinaryCodec<Object>) valueCodec;
+        this.leafCount = Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1;
+        this.nodes = new long[leafCount * 2];
+        this.dirty = new boolean[leafCount];
+        Arrays.fill(dirty, 1, leafCount, true);
+    }
+
+    int getBucketCount() {
+        return bucketCount;
+    }
+
+    //empty digests for another bucket count, hashing entries the same way
+    MerkleDigests emptyCopy(int bucketCount) {
+        return new MerkleDigests(bucketCount, keyCodec, valueCodec);
+    }
+
+    //whether equal digests mean equal entries rather than equal hashCodes
+    boolean isExact() {
+        return keyCodec != null;
+    }
+
+    //digests are only comparable between tables that hash entries the same way
+    boolean sameHashing(MerkleDigests other) {
+        return keyCodec == other.keyCodec && valueCodec == other.valueCodec;
+    }
+
+    //hash of one entry, key and value are hashed apart and combined order-dependently, so
+    //two keys swapping their values changes the sum, replicas in other processes agree on it
+    long entryHash(Object key, Object value) {
+        if (keyCodec == null) {
+            long h = ((long) key.hashCode() << 32) | (value == null ? 0 : value.hashCode() & 0xFFFFFFFFL);
+            return mix(h);
+        }
+        long keyHash = contentHash(keyCodec, key, KEY_SEED);
+        long valueHash = value == null ? 0 : contentHash(valueCodec, value, VALUE_SEED);
+        return mix(keyHash * 0x9E3779B97F4A7C15L + valueHash);
+    }
+
+    //64-bit hash of the encoded bytes, eight at a time and the tail zero-padded
+    private long contentHash(BinaryCodec<Object> codec, Object value, long seed) {
+        int length = codec.sizeOf(value);
+        if (scratch == null || scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(Math.max(64, Integer.highestOneBit(Math.max(1, length - 1)) << 1));
+        }
+        scratch.clear();
+        codec.write(scratch, value);
+        long h = seed ^ length;
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            h = mix(h ^ scratch.getLong(i)) * 0x9E3779B97F4A7C15L;
+        }
+        if (i < length) {
+            long tail = 0;
+            for (; i < length; i++) {
+                tail = tail << 8 | (scratch.get(i) & 0xFF);
+            }
+            h = mix(h ^ tail) * 0x9E3779B97F4A7C15L;
+        }
+        return mix(h);
+    }
+
+    void add(int bucket, long entryHash) {
+        nodes[leafCount + bucket] += entryHash;
+        markDirty(leafCount + bucket);
+    }
+
+    void remove(int bucket, long entryHash) {
+        nodes[leafCount + bucket] -= entryHash;
+        markDirty(leafCount + bucket);
+    }
+
+    //the value of an entry went from oldHash to newHash
+    void replace(int bucket, long oldHash, long newHash) {
+        nodes[leafCount + bucket] += newHash - oldHash;
+        markDirty(leafCount + bucket);
+    }
+
+    private void markDirty(int node) {
+        for (node >>>= 1; node > 0 && !dirty[node]; node >>>= 1) {
+            dirty[node] = true;
+        }
+    }
+
+    //digests for half as many buckets, buckets i and i + bucketCount / 2 merge into bucket i
+    MerkleDigests halve() {
+        int half = bucketCount / 2;
+        MerkleDigests halved = emptyCopy(half);
+        for (int i = 0; i < half; i++) {
+            halved.nodes[halved.leafCount + i] = nodes[leafCount + i] + nodes[leafCount + i + half];
+        }
+        return halved;
+    }
+
+    long bucketDigest(int bucket) {
+        return nodes[leafCount + bucket];
+    }
+
+    long root() {
+        return refresh(1);
+    }
+
+    private long refresh(int node) {
+        if (node >= leafCount || !dirty[node]) return nodes[node];
+        long digest = combine(refresh(node * 2), refresh(node * 2 + 1));
+        nodes[node] = digest;
+        dirty[node] = false;
+        return digest;
+    }
+
+    //indexes of the buckets whose digests differ, in ascending order
+    static int[] diff(MerkleDigests a, MerkleDigests b) {
+        if (a.bucketCount != b.bucketCount) {
+            throw new IllegalArgumentException("Digests cover " + a.bucketCount + " and " + b.bucketCount + " buckets");
+        }
+        a.root();
+        b.root();
+        int[] differing = new int[16];
+        int count = 0;
+
+        //depth-first, left to right, the stack never holds more than two nodes per level
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 1;
+        while (top > 0) {
+            int node = stack[--top];
+            if (a.nodes[node] == b.nodes[node]) continue;
+            if (node >= a.leafCount) {
+                if (count == differing.length) differing = Arrays.copyOf(differing, count * 2);
+                differing[count++] = node - a.leafCount;
+            } else {
+                stack[top++] = node * 2 + 1;
+                stack[top++] = node * 2;
+            }
+        }
+        return Arrays.copyOf(differing, count);
+    }
+
+    //bytes taken by the tree
+    long getMemoryBytes() {
+        return nodes.length * 8L + dirty.length;
+    }
+
+    //order-dependent, so swapping two subtrees changes the parent
+    private static long combine(long left, long right) {
+        return mix(left * 0x9E3779B97F4A7C15L + right);
+    }
+
+    //murmur3 64-bit finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
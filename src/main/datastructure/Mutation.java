@@ -0,0 +1,48 @@
+package main.datastructure;
+
+//one change to an entry of a HashTableWithAVL as a mutation stream subscriber sees it,
+//sequences count the mutations published while anyone was subscribed, without gaps,
+//oldValue is null for an insert and value is null for a delete
+public final class Mutation<K, V> {
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final long sequence;
+    private final K key;
+    private final V oldValue;
+    private final V value;
+
+    Mutation(long sequence, K key, V oldValue, V value) {
+        this.sequence = sequence;
+        this.key = key;
+        this.oldValue = oldValue;
+        this.value = value;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        if (oldValue == null) return Type.INSERT;
+        return value == null ? Type.DELETE : Type.UPDATE;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    public V getOldValue() {
+        return oldValue;
+    }
+
+    public V getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + getType() + " " + key + ": " + oldValue + " -> " + value;
+    }
+}
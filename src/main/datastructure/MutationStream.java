@@ -0,0 +1,264 @@
+package main.datastructure;
+
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//publisher of a HashTableWithAVL's mutations, the table's writer thread appends each change
+//to a ring of key / old value / new value slots and moves the cursor, nothing is allocated
+//or copied on the write path and with no subscribers publish() returns right away
+//
+//every subscriber has its own delivery thread that takes up to MAX_BATCH events per wake-up
+//as far as the subscriber's demand allows, so request(n) is the subscriber's backpressure,
+//a subscriber starts at the first mutation after it subscribed
+//
+//the slowest subscriber gates the writer: once it is a whole ring behind, the next write
+//waits until it catches up, no event is dropped and a stalled subscriber stalls the table,
+//the ring keeps references to the last bufferSize keys and values alive
+final class MutationStream<K, V> implements Flow.Publisher<Mutation<K, V>> {
+    static final int DEFAULT_BUFFER_SIZE = 1 << 14;
+    private static final int MAX_BATCH = 256;
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long WRITER_WAIT_NANOS = 10_000;
+    private static final int WAKE_EVERY = 64;
+    private static final long IDLE_PARK_NANOS = 100_000;
+
+    @SuppressWarnings("unchecked")
+    private static final Delivery<?, ?>[] NONE = new Delivery[0];
+
+    private final int mask;
+    private final Object[] keys;
+    private final Object[] oldValues;
+    private final Object[] values;
+
+    //next sequence to be written, only the table's writer moves it
+    private final AtomicLong cursor = new AtomicLong();
+    //the writer may write below this sequence without looking at the subscribers again
+    private long gate;
+    private long writerWaits;
+
+    private volatile Delivery<K, V>[] deliveries = noDeliveries();
+    private volatile boolean closed;
+    private int threadCount;
+
+    //bufferSize is rounded up to a power of two
+    MutationStream(int bufferSize) {
+        int slots = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+        this.mask = slots - 1;
+        this.keys = new Object[slots];
+        this.oldValues = new Object[slots];
+        this.values = new Object[slots];
+        this.gate = slots;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Delivery<K, V>[] noDeliveries() {
+        return (Delivery<K, V>[]) NONE;
+    }
+
+    boolean hasSubscribers() {
+        return deliveries.length != 0;
+    }
+
+    //called by the table's writer thread for every changed entry
+    void publish(K key, V oldValue, V value) {
+        Delivery<K, V>[] current = deliveries;
+        if (current.length == 0) return;
+
+        long sequence = cursor.get();
+        if (sequence >= gate) awaitSpace(sequence);
+        int slot = (int) sequence & mask;
+        keys[slot] = key;
+        oldValues[slot] = oldValue;
+        values[slot] = value;
+        cursor.lazySet(sequence + 1);
+        //waking a subscriber for every event would cost a context switch per write, it gets
+        //woken every WAKE_EVERY events and otherwise looks again after IDLE_PARK_NANOS
+        if ((sequence & (WAKE_EVERY - 1)) == 0) {
+            for (Delivery<K, V> delivery : current) {
+                if (delivery.idle) LockSupport.unpark(delivery.thread);
+            }
+        }
+    }
+
+    //wait until the slowest subscriber is less than a ring behind
+    private void awaitSpace(long sequence) {
+        while (true) {
+            long slowest = sequence;
+            for (Delivery<K, V> delivery : deliveries) {
+                slowest = Math.min(slowest, delivery.consumed);
+            }
+            gate = slowest + keys.length;
+            if (sequence < gate) return;
+            writerWaits++;
+            LockSupport.parkNanos(WRITER_WAIT_NANOS);
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Mutation<K, V>> subscriber) {
+        if (subscriber == null) throw new NullPointerException("subscriber");
+        Delivery<K, V> delivery;
+        synchronized (this) {
+            if (closed) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onComplete();
+                return;
+            }
+            delivery = new Delivery<>(this, subscriber, threadCount++);
+            //gate the writer at the current cursor before joining, then start from the
+            //cursor as it is once the writer can see us, nothing in between gets overwritten
+            delivery.consumed = cursor.get();
+            Delivery<K, V>[] grown = Arrays.copyOf(deliveries, deliveries.length + 1);
+            grown[grown.length - 1] = delivery;
+            deliveries = grown;
+            delivery.consumed = cursor.get();
+        }
+        delivery.thread.start();
+    }
+
+    private synchronized void remove(Delivery<K, V> delivery) {
+        Delivery<K, V>[] current = deliveries;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == delivery) {
+                Delivery<K, V>[] shrunk = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                deliveries = shrunk;
+                return;
+            }
+        }
+    }
+
+    //no more mutations, subscribers get onComplete once they have taken everything before this
+    synchronized void close() {
+        closed = true;
+        for (Delivery<K, V> delivery : deliveries) {
+            LockSupport.unpark(delivery.thread);
+        }
+    }
+
+    //next sequence number to be published
+    long getSequence() {
+        return cursor.get();
+    }
+
+    //how often the writer had to wait for the slowest subscriber
+    long getWriterWaits() {
+        return writerWaits;
+    }
+
+    private static final class Delivery<K, V> implements Flow.Subscription, Runnable {
+        final MutationStream<K, V> stream;
+        final Flow.Subscriber<? super Mutation<K, V>> subscriber;
+        final Thread thread;
+        final AtomicLong demand = new AtomicLong();
+        //every sequence below this one has been taken out of the ring
+        volatile long consumed;
+        volatile boolean idle;
+        volatile boolean cancelled;
+        volatile Throwable failure;
+
+        Delivery(MutationStream<K, V> stream, Flow.Subscriber<? super Mutation<K, V>> subscriber, int index) {
+            this.stream = stream;
+            this.subscriber = subscriber;
+            this.thread = new Thread(this, "mutation-stream-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("request must be positive, was " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            stream.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            try {
+                subscriber.onSubscribe(this);
+            } catch (Throwable e) {
+                cancel();
+                return;
+            }
+
+            Mutation<K, V>[] batch = new Mutation[MAX_BATCH];
+            long next = consumed;
+            int spins = 0;
+            while (!cancelled) {
+                if (failure != null) {
+                    cancel();
+                    subscriber.onError(failure);
+                    return;
+                }
+                //read closed before the cursor, a closed stream's cursor doesn't move anymore
+                boolean done = stream.closed;
+                long available = stream.cursor.get() - next;
+                long wanted = demand.get();
+                int count = (int) Math.min(MAX_BATCH, Math.min(available, wanted));
+                if (count > 0) {
+                    //copy the batch out and free its slots before handing it over
+                    for (int i = 0; i < count; i++) {
+                        int slot = (int) (next + i) & stream.mask;
+                        batch[i] = new Mutation<>(next + i, (K) stream.keys[slot], (V) stream.oldValues[slot],
+                            (V) stream.values[slot]);
+                    }
+                    next += count;
+                    consumed = next;
+                    if (wanted != Long.MAX_VALUE) demand.addAndGet(-count);
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            subscriber.onNext(batch[i]);
+                        }
+                    } catch (Throwable e) {
+                        //a subscriber that throws is broken, stop delivering to it
+                        cancel();
+                        return;
+                    }
+                    Arrays.fill(batch, 0, count, null);
+                    spins = 0;
+                    continue;
+                }
+
+                if (done && available == 0) {
+                    stream.remove(this);
+                    subscriber.onComplete();
+                    return;
+                }
+                if (++spins < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (available == 0) {
+                    //waiting for the writer, publish idle before the last look
+                    idle = true;
+                    if (stream.cursor.get() == next && !stream.closed && !cancelled) LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    idle = false;
+                } else {
+                    //waiting for demand, request() wakes us
+                    if (demand.get() == 0 && failure == null && !cancelled) LockSupport.park(this);
+                }
+                spins = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package main.datastructure;
+
+import java.util.Arrays;
+
+//bounded free lists of AVL nodes and empty AVL buckets for one table, so a table with
+//a steady stream of inserts and deletes reuses the objects it drops instead of leaving
+//them to the GC, not thread-safe, it belongs to the table's writer
+//
+//released nodes drop their key and value right away so the pool never keeps entries alive,
+//an optimistic reader still walking a released node trips over the null key and retries
+final class NodePool<K extends Comparable<K>, V> {
+    private final int maxPooled;
+
+    //nodes are chained through their left link
+    private AVLTree.Node<K, V> freeNodes;
+    private int freeNodeCount;
+    private AVLTree<K, V>[] freeBuckets;
+    private int freeBucketCount;
+
+    private long reusedNodes;
+    private long createdNodes;
+
+    @SuppressWarnings("unchecked")
+    NodePool(int maxPooled) {
+        this.maxPooled = maxPooled;
+        this.freeBuckets = new AVLTree[Math.min(maxPooled, 16)];
+    }
+
+    AVLTree.Node<K, V> acquireNode(K key, V value) {
+        AVLTree.Node<K, V> node = freeNodes;
+        if (node == null) {
+            createdNodes++;
+            return new AVLTree.Node<>(key, value);
+        }
+        freeNodes = node.left;
+        freeNodeCount--;
+        reusedNodes++;
+
+        node.key = key;
+        node.value = value;
+        node.left = null;
+        node.height = 1;
+        return node;
+    }
+
+    void releaseNode(AVLTree.Node<K, V> node) {
+        if (freeNodeCount >= maxPooled) return;
+        node.key = null;
+        node.value = null;
+        node.right = null;
+        node.left = freeNodes;
+        freeNodes = node;
+        freeNodeCount++;
+    }
+
+    //an empty bucket that allocates its nodes from this pool
+    AVLTree<K, V> acquireBucket() {
+        if (freeBucketCount == 0) return new AVLTree<>(this);
+        AVLTree<K, V> bucket = freeBuckets[--freeBucketCount];
+        freeBuckets[freeBucketCount] = null;
+        return bucket;
+    }
+
+    //take back a bucket, its nodes go to the node list and the bucket is left empty
+    void releaseBucket(AVLTree<K, V> bucket) {
+        bucket.drainTo(null);
+        if (freeBucketCount >= maxPooled) return;
+        if (freeBucketCount == freeBuckets.length) {
+            freeBuckets = Arrays.copyOf(freeBuckets, Math.min(maxPooled, freeBucketCount * 2));
+        }
+        freeBuckets[freeBucketCount++] = bucket;
+    }
+
+    int getPooledNodeCount() {
+        return freeNodeCount;
+    }
+
+    int getPooledBucketCount() {
+        return freeBucketCount;
+    }
+
+    //fraction of node requests served from the free list
+    double getReuseRatio() {
+        long total = reusedNodes + createdNodes;
+        return total == 0 ? 0 : (double) reusedNodes / total;
+    }
+}
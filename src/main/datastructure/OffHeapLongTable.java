@@ -0,0 +1,419 @@
+package main.datastructure;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+//long -> long hash table with AVL buckets kept entirely off-heap, nodes live in
+//direct memory chunks and link to each other by index, so a table of any size adds
+//no objects for the GC to trace, memory is released by close()
+public class OffHeapLongTable implements AutoCloseable {
+    //node layout: key(8) value(8) left(4) right(4) height(4) padding(4)
+    private static final int NODE_BYTES = 32;
+    private static final int KEY = 0;
+    private static final int VALUE = 8;
+    private static final int LEFT = 16;
+    private static final int RIGHT = 20;
+    private static final int HEIGHT = 24;
+
+    private static final int NODE_CHUNK_SHIFT = 16; //64k nodes (2MB) per chunk
+    private static final int NODE_CHUNK_MASK = (1 << NODE_CHUNK_SHIFT) - 1;
+    private static final int BUCKET_CHUNK_SHIFT = 20; //1M buckets (4MB) per chunk
+    private static final int BUCKET_CHUNK_MASK = (1 << BUCKET_CHUNK_SHIFT) - 1;
+
+    //index 0 is the null link
+    private static final int NIL = 0;
+
+    private ByteBuffer[] nodeChunks = new ByteBuffer[0];
+    private int nodeChunkCount;
+    private ByteBuffer[] bucketChunks;
+    private int nextNode;
+    private int freeList;
+    private int size;
+    private int capacity;
+    private double loadFactorThreshold;
+    private long rotationCount;
+    private boolean closed;
+
+    //result of the last insert/delete descent
+    private boolean changed;
+
+    public OffHeapLongTable() {
+        this(16, 0.75);
+    }
+
+    public OffHeapLongTable(int initialCapacity, double loadFactorThreshold) {
+        this.capacity = Integer.highestOneBit(Math.max(initialCapacity - 1, 1)) << 1;
+        this.loadFactorThreshold = loadFactorThreshold;
+        this.size = 0;
+        this.nextNode = 1;
+        this.freeList = NIL;
+        this.bucketChunks = allocateBuckets(capacity);
+    }
+
+    //insert a key-value pair
+    public void insert(long key, long value) {
+        checkOpen();
+        int bucketIndex = getBucketIndex(key);
+        changed = false;
+        setRoot(bucketIndex, insertRec(getRoot(bucketIndex), key, value));
+
+        if (changed) {
+            size++;
+            if ((double) size / capacity > loadFactorThreshold) {
+                resize();
+            }
+        }
+    }
+
+    //search for a key, returns defaultValue when it is absent
+    public long search(long key, long defaultValue) {
+        int node = find(key);
+        return node == NIL ? defaultValue : getLong(node, VALUE);
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) != NIL;
+    }
+
+    //delete a key, returns true if it was present
+    public boolean delete(long key) {
+        checkOpen();
+        int bucketIndex = getBucketIndex(key);
+        changed = false;
+        setRoot(bucketIndex, deleteRec(getRoot(bucketIndex), key));
+
+        if (changed) {
+            size--;
+        }
+        return changed;
+    }
+
+    private int find(long key) {
+        checkOpen();
+        int node = getRoot(getBucketIndex(key));
+        while (node != NIL) {
+            long nodeKey = getLong(node, KEY);
+            if (key == nodeKey) return node;
+            node = getInt(node, key < nodeKey ? LEFT : RIGHT);
+        }
+        return NIL;
+    }
+
+    private int getBucketIndex(long key) {
+        //murmur3 finalizer, the bucket index comes from the low bits
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & (capacity - 1);
+    }
+
+    private int insertRec(int node, long key, long value) {
+        if (node == NIL) {
+            changed = true;
+            int created = allocateNode();
+            putLong(created, KEY, key);
+            putLong(created, VALUE, value);
+            return created;
+        }
+
+        long nodeKey = getLong(node, KEY);
+        if (key < nodeKey) {
+            putInt(node, LEFT, insertRec(getInt(node, LEFT), key, value));
+        } else if (key > nodeKey) {
+            putInt(node, RIGHT, insertRec(getInt(node, RIGHT), key, value));
+        } else {
+            //key already exists, update value
+            putLong(node, VALUE, value);
+            return node;
+        }
+
+        return changed ? rebalance(node) : node;
+    }
+
+    private int deleteRec(int node, long key) {
+        if (node == NIL) return NIL;
+
+        long nodeKey = getLong(node, KEY);
+        if (key < nodeKey) {
+            putInt(node, LEFT, deleteRec(getInt(node, LEFT), key));
+        } else if (key > nodeKey) {
+            putInt(node, RIGHT, deleteRec(getInt(node, RIGHT), key));
+        } else {
+            changed = true;
+            int left = getInt(node, LEFT);
+            int right = getInt(node, RIGHT);
+
+            //node with only one child or no child
+            if (left == NIL || right == NIL) {
+                freeNode(node);
+                return left == NIL ? right : left;
+            }
+
+            //node with two children, take over the inorder successor's entry
+            int successor = right;
+            while (getInt(successor, LEFT) != NIL) {
+                successor = getInt(successor, LEFT);
+            }
+            long successorKey = getLong(successor, KEY);
+            putLong(node, KEY, successorKey);
+            putLong(node, VALUE, getLong(successor, VALUE));
+            putInt(node, RIGHT, deleteRec(right, successorKey));
+        }
+
+        return changed ? rebalance(node) : node;
+    }
+
+    private int rebalance(int node) {
+        updateHeight(node);
+        int balance = getBalanceFactor(node);
+
+        if (balance > 1) {
+            int left = getInt(node, LEFT);
+            if (getBalanceFactor(left) < 0) {
+                putInt(node, LEFT, leftRotate(left));
+            }
+            return rightRotate(node);
+        }
+        if (balance < -1) {
+            int right = getInt(node, RIGHT);
+            if (getBalanceFactor(right) > 0) {
+                putInt(node, RIGHT, rightRotate(right));
+            }
+            return leftRotate(node);
+        }
+        return node;
+    }
+
+    private int height(int node) {
+        return node == NIL ? 0 : getInt(node, HEIGHT);
+    }
+
+    private void updateHeight(int node) {
+        putInt(node, HEIGHT, 1 + Math.max(height(getInt(node, LEFT)), height(getInt(node, RIGHT))));
+    }
+
+    private int getBalanceFactor(int node) {
+        if (node == NIL) return 0;
+        return height(getInt(node, LEFT)) - height(getInt(node, RIGHT));
+    }
+
+    private int rightRotate(int y) {
+        int x = getInt(y, LEFT);
+        putInt(y, LEFT, getInt(x, RIGHT));
+        putInt(x, RIGHT, y);
+        updateHeight(y);
+        updateHeight(x);
+        rotationCount++;
+        return x;
+    }
+
+    private int leftRotate(int x) {
+        int y = getInt(x, RIGHT);
+        putInt(x, RIGHT, getInt(y, LEFT));
+        putInt(y, LEFT, x);
+        updateHeight(x);
+        updateHeight(y);
+        rotationCount++;
+        return y;
+    }
+
+    //double the bucket count and relink every existing node into its new bucket
+    private void resize() {
+        int oldCapacity = capacity;
+        ByteBuffer[] oldBuckets = bucketChunks;
+        capacity *= 2;
+        bucketChunks = allocateBuckets(capacity);
+
+        int[] stack = new int[128];
+        for (int i = 0; i < oldCapacity; i++) {
+            int root = oldBuckets[i >>> BUCKET_CHUNK_SHIFT].getInt((i & BUCKET_CHUNK_MASK) * Integer.BYTES);
+            if (root == NIL) continue;
+
+            //walk the old tree with an explicit stack, detaching nodes as we go
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int node = stack[--top];
+                int left = getInt(node, LEFT);
+                int right = getInt(node, RIGHT);
+                if (left != NIL) stack[top++] = left;
+                if (right != NIL) stack[top++] = right;
+
+                putInt(node, LEFT, NIL);
+                putInt(node, RIGHT, NIL);
+                putInt(node, HEIGHT, 1);
+                int bucketIndex = getBucketIndex(getLong(node, KEY));
+                setRoot(bucketIndex, insertNode(getRoot(bucketIndex), node));
+            }
+        }
+        for (ByteBuffer chunk : oldBuckets) {
+            release(chunk);
+        }
+    }
+
+    private int insertNode(int node, int detached) {
+        if (node == NIL) return detached;
+
+        if (getLong(detached, KEY) < getLong(node, KEY)) {
+            putInt(node, LEFT, insertNode(getInt(node, LEFT), detached));
+        } else {
+            putInt(node, RIGHT, insertNode(getInt(node, RIGHT), detached));
+        }
+        return rebalance(node);
+    }
+
+    private int allocateNode() {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = getInt(node, LEFT);
+        } else {
+            node = nextNode++;
+            if ((node >>> NODE_CHUNK_SHIFT) >= nodeChunkCount) {
+                if (nodeChunkCount == nodeChunks.length) {
+                    nodeChunks = Arrays.copyOf(nodeChunks, Math.max(4, nodeChunkCount * 2));
+                }
+                nodeChunks[nodeChunkCount++] = ByteBuffer.allocateDirect(NODE_BYTES << NODE_CHUNK_SHIFT).order(ByteOrder.nativeOrder());
+            }
+        }
+        putInt(node, LEFT, NIL);
+        putInt(node, RIGHT, NIL);
+        putInt(node, HEIGHT, 1);
+        return node;
+    }
+
+    //freed nodes are chained through their left link
+    private void freeNode(int node) {
+        putInt(node, LEFT, freeList);
+        freeList = node;
+    }
+
+    private static ByteBuffer[] allocateBuckets(int capacity) {
+        int chunks = Math.max(1, capacity >>> BUCKET_CHUNK_SHIFT);
+        int perChunk = Math.min(capacity, 1 << BUCKET_CHUNK_SHIFT);
+        ByteBuffer[] result = new ByteBuffer[chunks];
+        for (int i = 0; i < chunks; i++) {
+            //direct buffers start zeroed, so every bucket starts out NIL
+            result[i] = ByteBuffer.allocateDirect(perChunk * Integer.BYTES).order(ByteOrder.nativeOrder());
+        }
+        return result;
+    }
+
+    private int getRoot(int bucketIndex) {
+        return bucketChunks[bucketIndex >>> BUCKET_CHUNK_SHIFT].getInt((bucketIndex & BUCKET_CHUNK_MASK) * Integer.BYTES);
+    }
+
+    private void setRoot(int bucketIndex, int node) {
+        bucketChunks[bucketIndex >>> BUCKET_CHUNK_SHIFT].putInt((bucketIndex & BUCKET_CHUNK_MASK) * Integer.BYTES, node);
+    }
+
+    private long getLong(int node, int field) {
+        return nodeChunks[node >>> NODE_CHUNK_SHIFT].getLong((node & NODE_CHUNK_MASK) * NODE_BYTES + field);
+    }
+
+    private void putLong(int node, int field, long value) {
+        nodeChunks[node >>> NODE_CHUNK_SHIFT].putLong((node & NODE_CHUNK_MASK) * NODE_BYTES + field, value);
+    }
+
+    private int getInt(int node, int field) {
+        return nodeChunks[node >>> NODE_CHUNK_SHIFT].getInt((node & NODE_CHUNK_MASK) * NODE_BYTES + field);
+    }
+
+    private void putInt(int node, int field, int value) {
+        nodeChunks[node >>> NODE_CHUNK_SHIFT].putInt((node & NODE_CHUNK_MASK) * NODE_BYTES + field, value);
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("Table is closed");
+    }
+
+    //free all off-heap memory, the table cannot be used afterwards
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        for (int i = 0; i < nodeChunkCount; i++) {
+            release(nodeChunks[i]);
+        }
+        for (ByteBuffer chunk : bucketChunks) {
+            release(chunk);
+        }
+        nodeChunks = new ByteBuffer[0];
+        nodeChunkCount = 0;
+        bucketChunks = new ByteBuffer[0];
+    }
+
+    //free a direct buffer now instead of waiting for the GC to find it unreachable
+    private static void release(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //no access to the cleaner, the buffer is freed once it becomes unreachable
+        }
+    }
+
+    //get total number of entries
+    public int getSize() {
+        return size;
+    }
+
+    //get number of buckets
+    public int getCapacity() {
+        return capacity;
+    }
+
+    //get current load factor
+    public double getCurrentLoadFactor() {
+        return (double) size / capacity;
+    }
+
+    //get off-heap bytes held by nodes and buckets
+    public long getOffHeapBytes() {
+        return (long) nodeChunkCount * (NODE_BYTES << NODE_CHUNK_SHIFT) + (long) capacity * Integer.BYTES;
+    }
+
+    //get max height of all AVL trees
+    public int getMaxHeight() {
+        checkOpen();
+        int maxHeight = 0;
+        for (int i = 0; i < capacity; i++) {
+            maxHeight = Math.max(maxHeight, height(getRoot(i)));
+        }
+        return maxHeight;
+    }
+
+    //get average height of all AVL trees
+    public double getAverageHeight() {
+        checkOpen();
+        double totalHeight = 0;
+        for (int i = 0; i < capacity; i++) {
+            totalHeight += height(getRoot(i));
+        }
+        return totalHeight / capacity;
+    }
+
+    //get total rotation count from all AVL trees
+    public long getTotalRotationCount() {
+        return rotationCount;
+    }
+
+    //get heights of all buckets (for visualization)
+    public int[] getBucketHeights() {
+        checkOpen();
+        int[] heights = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            heights[i] = height(getRoot(i));
+        }
+        return heights;
+    }
+}
@@ -0,0 +1,234 @@
+package main.datastructure;
+
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+//AVL tree over every key of a HashTableWithAVL, kept next to the buckets so the table can
+//answer floor/ceiling/range queries and iterate in key order, it holds keys only, values
+//are looked up through the buckets, so updating a value never touches the index
+final class OrderedIndex<K extends Comparable<K>> {
+    private Node<K> root;
+    private int size;
+    private int modCount;
+
+    //whether the last add/remove changed the shape
+    private boolean structureChanged;
+
+    static final class Node<K> {
+        final K key;
+        Node<K> left, right;
+        int height;
+
+        Node(K key) {
+            this.key = key;
+            this.height = 1;
+        }
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    private static <K> int height(Node<K> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <K> void updateHeight(Node<K> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    private static <K> int getBalanceFactor(Node<K> node) {
+        return node == null ? 0 : height(node.left) - height(node.right);
+    }
+
+    private static <K> Node<K> rightRotate(Node<K> y) {
+        Node<K> x = y.left;
+        y.left = x.right;
+        x.right = y;
+        updateHeight(y);
+        updateHeight(x);
+        return x;
+    }
+
+    private static <K> Node<K> leftRotate(Node<K> x) {
+        Node<K> y = x.right;
+        x.right = y.left;
+        y.left = x;
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    private static <K> Node<K> rebalance(Node<K> node) {
+        updateHeight(node);
+        int balance = getBalanceFactor(node);
+
+        if (balance > 1) {
+            if (getBalanceFactor(node.left) < 0) node.left = leftRotate(node.left);
+            return rightRotate(node);
+        }
+        if (balance < -1) {
+            if (getBalanceFactor(node.right) > 0) node.right = rightRotate(node.right);
+            return leftRotate(node);
+        }
+        return node;
+    }
+
+    //add a key that is not in the index yet
+    void add(K key) {
+        structureChanged = false;
+        root = addRec(root, key);
+        if (structureChanged) {
+            size++;
+            modCount++;
+        }
+    }
+
+    private Node<K> addRec(Node<K> node, K key) {
+        if (node == null) {
+            structureChanged = true;
+            return new Node<>(key);
+        }
+
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = addRec(node.left, key);
+        } else if (cmp > 0) {
+            node.right = addRec(node.right, key);
+        } else {
+            return node;
+        }
+        return structureChanged ? rebalance(node) : node;
+    }
+
+    void remove(K key) {
+        structureChanged = false;
+        root = removeRec(root, key);
+        if (structureChanged) {
+            size--;
+            modCount++;
+        }
+    }
+
+    private Node<K> removeRec(Node<K> node, K key) {
+        if (node == null) return null;
+
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = removeRec(node.left, key);
+        } else if (cmp > 0) {
+            node.right = removeRec(node.right, key);
+        } else {
+            structureChanged = true;
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+
+            //replace the node by its inorder successor node
+            Node<K> successor = node.right;
+            while (successor.left != null) successor = successor.left;
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            return rebalance(successor);
+        }
+        return structureChanged ? rebalance(node) : node;
+    }
+
+    private static <K> Node<K> removeMin(Node<K> node) {
+        if (node.left == null) return node.right;
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    //fill an empty index from sorted, distinct keys as a perfectly balanced tree
+    void loadSorted(List<K> keys) {
+        root = buildBalanced(keys, 0, keys.size() - 1);
+        size = keys.size();
+        modCount++;
+    }
+
+    private static <K> Node<K> buildBalanced(List<K> keys, int lo, int hi) {
+        if (lo > hi) return null;
+
+        int mid = (lo + hi) >>> 1;
+        Node<K> node = new Node<>(keys.get(mid));
+        node.left = buildBalanced(keys, lo, mid - 1);
+        node.right = buildBalanced(keys, mid + 1, hi);
+        updateHeight(node);
+        return node;
+    }
+
+    //greatest key less than or equal to the given one, or null
+    K floor(K key) {
+        K best = null;
+        Node<K> node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.key;
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                best = node.key;
+                node = node.right;
+            }
+        }
+        return best;
+    }
+
+    //least key greater than or equal to the given one, or null
+    K ceiling(K key) {
+        K best = null;
+        Node<K> node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.key;
+            if (cmp > 0) {
+                node = node.right;
+            } else {
+                best = node.key;
+                node = node.left;
+            }
+        }
+        return best;
+    }
+
+    //keys from fromInclusive (null for the smallest) up to toExclusive (null for no end),
+    //in order and one at a time, the stack holds the path of nodes still to visit
+    Iterator<K> iterator(K fromInclusive, K toExclusive) {
+        return new Iterator<K>() {
+            private final ArrayDeque<Node<K>> stack = new ArrayDeque<>();
+            private final int expectedModCount = modCount;
+
+            {
+                Node<K> node = root;
+                while (node != null) {
+                    if (fromInclusive == null || fromInclusive.compareTo(node.key) <= 0) {
+                        stack.push(node);
+                        node = node.left;
+                    } else {
+                        node = node.right;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (stack.isEmpty()) return false;
+                return toExclusive == null || stack.peek().key.compareTo(toExclusive) < 0;
+            }
+
+            @Override
+            public K next() {
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                if (!hasNext()) throw new NoSuchElementException();
+                Node<K> node = stack.pop();
+                for (Node<K> child = node.right; child != null; child = child.left) {
+                    stack.push(child);
+                }
+                return node.key;
+            }
+        };
+    }
+}
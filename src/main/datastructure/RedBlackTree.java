@@ -0,0 +1,383 @@
+package main.datastructure;
+
+import main.utils.KeyValuePair;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+//red-black tree bucket with the same insert/delete fixups as java.util.TreeMap,
+//so it stands in for the trees Java's HashMap uses for collided bins
+//
+//nodes also carry their height so getHeight() stays O(1), heights are fixed by
+//walking up from the changed node and stopping as soon as a height is unchanged
+public class RedBlackTree<K extends Comparable<K>, V> implements Bucket<K, V> {
+    private static final boolean RED = false;
+    private static final boolean BLACK = true;
+
+    private Node<K, V> root;
+    private int size;
+    private int rotationCount;
+
+    static final class Node<K, V> {
+        K key;
+        V value;
+        Node<K, V> left, right, parent;
+        boolean color = BLACK;
+        int height = 1;
+
+        Node(K key, V value, Node<K, V> parent) {
+            this.key = key;
+            this.value = value;
+            this.parent = parent;
+        }
+    }
+
+    public RedBlackTree() {
+        this.root = null;
+        this.size = 0;
+        this.rotationCount = 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getHeight() {
+        return height(root);
+    }
+
+    @Override
+    public int getRotationCount() {
+        return rotationCount;
+    }
+
+    private static <K, V> int height(Node<K, V> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <K, V> boolean colorOf(Node<K, V> node) {
+        return node == null ? BLACK : node.color;
+    }
+
+    private static <K, V> Node<K, V> parentOf(Node<K, V> node) {
+        return node == null ? null : node.parent;
+    }
+
+    private static <K, V> void setColor(Node<K, V> node, boolean color) {
+        if (node != null) node.color = color;
+    }
+
+    private static <K, V> Node<K, V> leftOf(Node<K, V> node) {
+        return node == null ? null : node.left;
+    }
+
+    private static <K, V> Node<K, V> rightOf(Node<K, V> node) {
+        return node == null ? null : node.right;
+    }
+
+    //recompute heights from a node up to the root, stops once a height does not change
+    private void fixHeightsUpward(Node<K, V> node) {
+        while (node != null) {
+            int height = 1 + Math.max(height(node.left), height(node.right));
+            if (height == node.height) return;
+            node.height = height;
+            node = node.parent;
+        }
+    }
+
+    private void updateHeight(Node<K, V> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    //left rotation
+    private void rotateLeft(Node<K, V> p) {
+        if (p == null) return;
+        Node<K, V> r = p.right;
+        p.right = r.left;
+        if (r.left != null) r.left.parent = p;
+        r.parent = p.parent;
+        if (p.parent == null) {
+            root = r;
+        } else if (p.parent.left == p) {
+            p.parent.left = r;
+        } else {
+            p.parent.right = r;
+        }
+        r.left = p;
+        p.parent = r;
+
+        updateHeight(p);
+        updateHeight(r);
+        fixHeightsUpward(r.parent);
+        rotationCount++;
+    }
+
+    //right rotation
+    private void rotateRight(Node<K, V> p) {
+        if (p == null) return;
+        Node<K, V> l = p.left;
+        p.left = l.right;
+        if (l.right != null) l.right.parent = p;
+        l.parent = p.parent;
+        if (p.parent == null) {
+            root = l;
+        } else if (p.parent.right == p) {
+            p.parent.right = l;
+        } else {
+            p.parent.left = l;
+        }
+        l.right = p;
+        p.parent = l;
+
+        updateHeight(p);
+        updateHeight(l);
+        fixHeightsUpward(l.parent);
+        rotationCount++;
+    }
+
+    //insert a key-value pair, returns the previous value or null
+    @Override
+    public V insert(K key, V value) {
+        if (root == null) {
+            root = new Node<>(key, value, null);
+            size = 1;
+            return null;
+        }
+
+        Node<K, V> parent;
+        Node<K, V> node = root;
+        int cmp;
+        do {
+            parent = node;
+            cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                //key already exists, update value
+                V previous = node.value;
+                node.value = value;
+                return previous;
+            }
+        } while (node != null);
+
+        Node<K, V> added = new Node<>(key, value, parent);
+        if (cmp < 0) {
+            parent.left = added;
+        } else {
+            parent.right = added;
+        }
+        fixHeightsUpward(parent);
+        fixAfterInsertion(added);
+        size++;
+        return null;
+    }
+
+    private void fixAfterInsertion(Node<K, V> x) {
+        x.color = RED;
+
+        while (x != null && x != root && x.parent.color == RED) {
+            if (parentOf(x) == leftOf(parentOf(parentOf(x)))) {
+                Node<K, V> y = rightOf(parentOf(parentOf(x)));
+                if (colorOf(y) == RED) {
+                    setColor(parentOf(x), BLACK);
+                    setColor(y, BLACK);
+                    setColor(parentOf(parentOf(x)), RED);
+                    x = parentOf(parentOf(x));
+                } else {
+                    if (x == rightOf(parentOf(x))) {
+                        x = parentOf(x);
+                        rotateLeft(x);
+                    }
+                    setColor(parentOf(x), BLACK);
+                    setColor(parentOf(parentOf(x)), RED);
+                    rotateRight(parentOf(parentOf(x)));
+                }
+            } else {
+                Node<K, V> y = leftOf(parentOf(parentOf(x)));
+                if (colorOf(y) == RED) {
+                    setColor(parentOf(x), BLACK);
+                    setColor(y, BLACK);
+                    setColor(parentOf(parentOf(x)), RED);
+                    x = parentOf(parentOf(x));
+                } else {
+                    if (x == leftOf(parentOf(x))) {
+                        x = parentOf(x);
+                        rotateRight(x);
+                    }
+                    setColor(parentOf(x), BLACK);
+                    setColor(parentOf(parentOf(x)), RED);
+                    rotateLeft(parentOf(parentOf(x)));
+                }
+            }
+        }
+        root.color = BLACK;
+    }
+
+    //search for a key
+    @Override
+    public V search(K key) {
+        Node<K, V> node = getNode(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public V searchOptimistic(K key) {
+        //bounded walk, see AVLTree
+        int budget = size + 1;
+        Node<K, V> node = root;
+        while (node != null) {
+            if (--budget < 0) throw new ConcurrentModificationException();
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.value;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private Node<K, V> getNode(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    //delete a key, returns the removed value or null
+    @Override
+    public V delete(K key) {
+        Node<K, V> node = getNode(key);
+        if (node == null) return null;
+
+        V previous = node.value;
+        deleteNode(node);
+        return previous;
+    }
+
+    private void deleteNode(Node<K, V> p) {
+        size--;
+
+        //a node with two children takes over its successor's entry, the successor is unlinked instead
+        if (p.left != null && p.right != null) {
+            Node<K, V> s = p.right;
+            while (s.left != null) s = s.left;
+            p.key = s.key;
+            p.value = s.value;
+            p = s;
+        }
+
+        Node<K, V> replacement = p.left != null ? p.left : p.right;
+
+        if (replacement != null) {
+            replacement.parent = p.parent;
+            if (p.parent == null) {
+                root = replacement;
+            } else if (p == p.parent.left) {
+                p.parent.left = replacement;
+            } else {
+                p.parent.right = replacement;
+            }
+            Node<K, V> parent = p.parent;
+            p.left = p.right = p.parent = null;
+            fixHeightsUpward(parent);
+
+            if (p.color == BLACK) fixAfterDeletion(replacement);
+        } else if (p.parent == null) {
+            root = null;
+        } else {
+            //no children, use the node itself as the phantom replacement and unlink it afterwards
+            if (p.color == BLACK) fixAfterDeletion(p);
+
+            if (p.parent != null) {
+                Node<K, V> parent = p.parent;
+                if (p == parent.left) {
+                    parent.left = null;
+                } else if (p == parent.right) {
+                    parent.right = null;
+                }
+                p.parent = null;
+                fixHeightsUpward(parent);
+            }
+        }
+    }
+
+    private void fixAfterDeletion(Node<K, V> x) {
+        while (x != root && colorOf(x) == BLACK) {
+            if (x == leftOf(parentOf(x))) {
+                Node<K, V> sib = rightOf(parentOf(x));
+
+                if (colorOf(sib) == RED) {
+                    setColor(sib, BLACK);
+                    setColor(parentOf(x), RED);
+                    rotateLeft(parentOf(x));
+                    sib = rightOf(parentOf(x));
+                }
+
+                if (colorOf(leftOf(sib)) == BLACK && colorOf(rightOf(sib)) == BLACK) {
+                    setColor(sib, RED);
+                    x = parentOf(x);
+                } else {
+                    if (colorOf(rightOf(sib)) == BLACK) {
+                        setColor(leftOf(sib), BLACK);
+                        setColor(sib, RED);
+                        rotateRight(sib);
+                        sib = rightOf(parentOf(x));
+                    }
+                    setColor(sib, colorOf(parentOf(x)));
+                    setColor(parentOf(x), BLACK);
+                    setColor(rightOf(sib), BLACK);
+                    rotateLeft(parentOf(x));
+                    x = root;
+                }
+            } else {
+                Node<K, V> sib = leftOf(parentOf(x));
+
+                if (colorOf(sib) == RED) {
+                    setColor(sib, BLACK);
+                    setColor(parentOf(x), RED);
+                    rotateRight(parentOf(x));
+                    sib = leftOf(parentOf(x));
+                }
+
+                if (colorOf(rightOf(sib)) == BLACK && colorOf(leftOf(sib)) == BLACK) {
+                    setColor(sib, RED);
+                    x = parentOf(x);
+                } else {
+                    if (colorOf(leftOf(sib)) == BLACK) {
+                        setColor(rightOf(sib), BLACK);
+                        setColor(sib, RED);
+                        rotateLeft(sib);
+                        sib = leftOf(parentOf(x));
+                    }
+                    setColor(sib, colorOf(parentOf(x)));
+                    setColor(parentOf(x), BLACK);
+                    setColor(leftOf(sib), BLACK);
+                    rotateRight(parentOf(x));
+                    x = root;
+                }
+            }
+        }
+
+        setColor(x, BLACK);
+    }
+
+    @Override
+    public List<KeyValuePair<K, V>> getAllKeyValuePairs() {
+        List<KeyValuePair<K, V>> pairs = new ArrayList<>();
+        collectKeyValuePairs(root, pairs);
+        return pairs;
+    }
+
+    private void collectKeyValuePairs(Node<K, V> node, List<KeyValuePair<K, V>> pairs) {
+        if (node == null) return;
+
+        collectKeyValuePairs(node.left, pairs);
+        pairs.add(new KeyValuePair<>(node.key, node.value));
+        collectKeyValuePairs(node.right, pairs);
+    }
+}
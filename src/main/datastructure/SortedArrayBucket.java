@@ -0,0 +1,128 @@
+package main.datastructure;
+
+import main.utils.KeyValuePair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//bucket kept as parallel sorted arrays with binary search, no nodes and no rotations
+//but inserts and deletes shift the tail of the arrays, so it only pays off for small buckets
+public class SortedArrayBucket<K extends Comparable<K>, V> implements Bucket<K, V> {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private Object[] keys;
+    private Object[] values;
+    private int size;
+
+    public SortedArrayBucket() {
+        this.keys = new Object[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    //number of probes of a binary search, the equivalent of a perfectly balanced tree
+    @Override
+    public int getHeight() {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+
+    @Override
+    public int getRotationCount() {
+        return 0;
+    }
+
+    //index of the key, or -(insertion point) - 1 if absent
+    @SuppressWarnings("unchecked")
+    private int indexOf(K key) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = ((K) keys[mid]).compareTo(key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    //insert a key-value pair, returns the previous value or null
+    @Override
+    @SuppressWarnings("unchecked")
+    public V insert(K key, V value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            V previous = (V) values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        index = -index - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        return null;
+    }
+
+    //search for a key
+    @Override
+    @SuppressWarnings("unchecked")
+    public V search(K key) {
+        int index = indexOf(key);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    //delete a key, returns the removed value or null
+    @Override
+    @SuppressWarnings("unchecked")
+    public V delete(K key) {
+        int index = indexOf(key);
+        if (index < 0) return null;
+
+        V previous = (V) values[index];
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        return previous;
+    }
+
+    //fill an empty bucket from sorted, distinct pairs
+    @Override
+    public void loadSorted(List<KeyValuePair<K, V>> pairs) {
+        int capacity = Math.max(INITIAL_CAPACITY, pairs.size());
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < pairs.size(); i++) {
+            keys[i] = pairs.get(i).getKey();
+            values[i] = pairs.get(i).getValue();
+        }
+        size = pairs.size();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<KeyValuePair<K, V>> getAllKeyValuePairs() {
+        List<KeyValuePair<K, V>> pairs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            pairs.add(new KeyValuePair<>((K) keys[i], (V) values[i]));
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,294 @@
+package main.datastructure;
+
+import main.hash.HashFunction;
+import main.utils.BinaryCodec;
+import main.utils.KeyValuePair;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+//memory-mapped snapshot of a HashTableWithAVL
+//
+//file layout:
+//  data     every non-empty bucket's AVL tree in pre-order, each node is
+//           [flags:1][height:1][rightOffset:4][key][value], the left child directly
+//           follows its parent and rightOffset is relative to the start of the bucket
+//  index    one int offset per bucket into data, -1 for empty buckets
+//  trailer  magic, version, capacity, size, data length, data crc, index crc, trailer crc
+//
+//open() only maps the file and checks the trailer and index, lookups then run directly
+//against the mapped bytes so the snapshot is queryable right away, and toTable()
+//rebuilds a live table from the stored tree shapes without any rebalancing
+public class TableSnapshot<K extends Comparable<K>, V> {
+    private static final int MAGIC = 0x41564c53; //"AVLS"
+    private static final int VERSION = 1;
+    private static final int TRAILER_BYTES = 36;
+    private static final int NODE_HEADER_BYTES = 6;
+    private static final int HAS_LEFT = 1;
+    private static final int HAS_RIGHT = 2;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private final MappedByteBuffer buffer;
+    private final BinaryCodec<K> keyCodec;
+    private final BinaryCodec<V> valueCodec;
+    private final HashFunction<K> hashFunction;
+    private final int capacity;
+    private final int size;
+    private final int dataLength;
+    private final int dataCrc;
+
+    private TableSnapshot(MappedByteBuffer buffer, BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec,
+                          HashFunction<K> hashFunction, int capacity, int size, int dataLength, int dataCrc) {
+        this.buffer = buffer;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.hashFunction = hashFunction;
+        this.capacity = capacity;
+        this.size = size;
+        this.dataLength = dataLength;
+        this.dataCrc = dataCrc;
+    }
+
+    //write a snapshot of the table, the bucket layout is kept so the same hash function must be used to open it
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<K>, V> void write(HashTableWithAVL<K, V> table, Path path,
+                                                          BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int capacity = table.getCapacity();
+            int[] index = new int[capacity];
+            ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            CRC32C dataCrc = new CRC32C();
+            long written = 0;
+
+            for (int i = 0; i < capacity; i++) {
+                Bucket<K, V> bucket = table.getBucket(i);
+                if (bucket.getSize() == 0) {
+                    index[i] = -1;
+                    continue;
+                }
+                //AVL buckets are written as they are, other bucket types as a balanced tree over their sorted entries
+                AVLTree.Node<K, V> root = bucket instanceof AVLTree ? ((AVLTree<K, V>) bucket).getRoot() : null;
+                List<KeyValuePair<K, V>> pairs = root == null ? bucket.getAllKeyValuePairs() : null;
+
+                //a bucket is written in one piece so right offsets can be patched in place,
+                //flush or grow the buffer and retry if it does not fit
+                while (true) {
+                    int bucketStart = out.position();
+                    try {
+                        if (root != null) {
+                            writeNode(out, bucketStart, root, keyCodec, valueCodec);
+                        } else {
+                            writeSorted(out, bucketStart, pairs, 0, pairs.size() - 1, keyCodec, valueCodec);
+                        }
+                        if (written + bucketStart > Integer.MAX_VALUE) {
+                            throw new IOException("Snapshot data larger than 2GB is not supported");
+                        }
+                        index[i] = (int) (written + bucketStart);
+                        break;
+                    } catch (BufferOverflowException e) {
+                        out.position(bucketStart);
+                        if (bucketStart > 0) {
+                            written += flush(channel, out, dataCrc);
+                        } else {
+                            out = ByteBuffer.allocate(out.capacity() * 2);
+                        }
+                    }
+                }
+            }
+            written += flush(channel, out, dataCrc);
+
+            CRC32C indexCrc = new CRC32C();
+            for (int i = 0; i < capacity; i++) {
+                if (out.remaining() < Integer.BYTES) flush(channel, out, indexCrc);
+                out.putInt(index[i]);
+            }
+            flush(channel, out, indexCrc);
+
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(capacity);
+            out.putInt(table.getSize());
+            out.putLong(written);
+            out.putInt((int) dataCrc.getValue());
+            out.putInt((int) indexCrc.getValue());
+            CRC32C trailerCrc = new CRC32C();
+            trailerCrc.update(out.array(), 0, out.position());
+            out.putInt((int) trailerCrc.getValue());
+            flush(channel, out, new CRC32C());
+        }
+    }
+
+    private static <K, V> void writeNode(ByteBuffer out, int bucketStart, AVLTree.Node<K, V> node,
+                                         BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec) {
+        int start = out.position();
+        int flags = (node.left != null ? HAS_LEFT : 0) | (node.right != null ? HAS_RIGHT : 0);
+        out.put((byte) flags);
+        out.put((byte) node.height);
+        out.putInt(0);
+        keyCodec.write(out, node.key);
+        valueCodec.write(out, node.value);
+
+        if (node.left != null) {
+            writeNode(out, bucketStart, node.left, keyCodec, valueCodec);
+        }
+        if (node.right != null) {
+            out.putInt(start + 2, out.position() - bucketStart);
+            writeNode(out, bucketStart, node.right, keyCodec, valueCodec);
+        }
+    }
+
+    private static <K, V> void writeSorted(ByteBuffer out, int bucketStart, List<KeyValuePair<K, V>> pairs, int lo, int hi,
+                                           BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec) {
+        int start = out.position();
+        int mid = (lo + hi) >>> 1;
+        int flags = (mid > lo ? HAS_LEFT : 0) | (mid < hi ? HAS_RIGHT : 0);
+        out.put((byte) flags);
+        out.put((byte) (32 - Integer.numberOfLeadingZeros(hi - lo + 1)));
+        out.putInt(0);
+        keyCodec.write(out, pairs.get(mid).getKey());
+        valueCodec.write(out, pairs.get(mid).getValue());
+
+        if (mid > lo) {
+            writeSorted(out, bucketStart, pairs, lo, mid - 1, keyCodec, valueCodec);
+        }
+        if (mid < hi) {
+            out.putInt(start + 2, out.position() - bucketStart);
+            writeSorted(out, bucketStart, pairs, mid + 1, hi, keyCodec, valueCodec);
+        }
+    }
+
+    private static int flush(FileChannel channel, ByteBuffer out, CRC32C crc) throws IOException {
+        out.flip();
+        int bytes = out.remaining();
+        crc.update(out.duplicate());
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+        return bytes;
+    }
+
+    //map a snapshot file, only the trailer and bucket index are checked here, call verify() for the data
+    public static <K extends Comparable<K>, V> TableSnapshot<K, V> open(Path path, BinaryCodec<K> keyCodec,
+                                                                       BinaryCodec<V> valueCodec,
+                                                                       HashFunction<K> hashFunction) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < TRAILER_BYTES || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+
+            int trailer = (int) fileSize - TRAILER_BYTES;
+            CRC32C trailerCrc = new CRC32C();
+            trailerCrc.update(buffer.slice(trailer, TRAILER_BYTES - Integer.BYTES));
+            if (buffer.getInt(trailer) != MAGIC || buffer.getInt(trailer + 32) != (int) trailerCrc.getValue()) {
+                throw new IOException("Corrupt snapshot trailer: " + path);
+            }
+            if (buffer.getInt(trailer + 4) != VERSION) {
+                throw new IOException("Unsupported snapshot version " + buffer.getInt(trailer + 4));
+            }
+
+            int capacity = buffer.getInt(trailer + 8);
+            int size = buffer.getInt(trailer + 12);
+            long dataLength = buffer.getLong(trailer + 16);
+            if (dataLength + (long) capacity * Integer.BYTES + TRAILER_BYTES != fileSize) {
+                throw new IOException("Truncated snapshot: " + path);
+            }
+
+            CRC32C indexCrc = new CRC32C();
+            indexCrc.update(buffer.slice((int) dataLength, capacity * Integer.BYTES));
+            if (buffer.getInt(trailer + 28) != (int) indexCrc.getValue()) {
+                throw new IOException("Corrupt snapshot index: " + path);
+            }
+
+            return new TableSnapshot<>(buffer, keyCodec, valueCodec, hashFunction, capacity, size,
+                (int) dataLength, buffer.getInt(trailer + 24));
+        }
+    }
+
+    //search for a key directly in the mapped file
+    public V search(K key) {
+        int position = buffer.getInt(dataLength + HashTableWithAVL.indexFor(hashFunction.hash(key), capacity) * Integer.BYTES);
+        if (position < 0) return null;
+        int bucketStart = position;
+
+        while (true) {
+            int flags = buffer.get(position);
+            int keyOffset = position + NODE_HEADER_BYTES;
+            int cmp = keyCodec.compareAt(buffer, keyOffset, key);
+            int valueOffset = keyOffset + keyCodec.sizeAt(buffer, keyOffset);
+
+            if (cmp == 0) return valueCodec.read(buffer, valueOffset);
+            if (cmp < 0) {
+                if ((flags & HAS_LEFT) == 0) return null;
+                position = valueOffset + valueCodec.sizeAt(buffer, valueOffset);
+            } else {
+                if ((flags & HAS_RIGHT) == 0) return null;
+                position = bucketStart + buffer.getInt(position + 2);
+            }
+        }
+    }
+
+    //check the data section against its checksum
+    public boolean verify() {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, dataLength));
+        return (int) crc.getValue() == dataCrc;
+    }
+
+    //rebuild a live table with the same bucket layout and tree shapes, the buckets are always AVL trees
+    @SuppressWarnings("unchecked")
+    public HashTableWithAVL<K, V> toTable(double loadFactorThreshold) throws IOException {
+        if (!verify()) {
+            throw new IOException("Snapshot data checksum mismatch");
+        }
+
+        Bucket<K, V>[] buckets = new Bucket[capacity];
+        int[] count = new int[1];
+        for (int i = 0; i < capacity; i++) {
+            AVLTree<K, V> tree = new AVLTree<>();
+            int position = buffer.getInt(dataLength + i * Integer.BYTES);
+            if (position >= 0) {
+                count[0] = 0;
+                AVLTree.Node<K, V> root = readNode(position, position, count);
+                tree.setRoot(root, count[0]);
+            }
+            buckets[i] = tree;
+        }
+        return new HashTableWithAVL<>(buckets, size, loadFactorThreshold, hashFunction);
+    }
+
+    private AVLTree.Node<K, V> readNode(int position, int bucketStart, int[] count) {
+        int flags = buffer.get(position);
+        int keyOffset = position + NODE_HEADER_BYTES;
+        int valueOffset = keyOffset + keyCodec.sizeAt(buffer, keyOffset);
+
+        AVLTree.Node<K, V> node = new AVLTree.Node<>(keyCodec.read(buffer, keyOffset), valueCodec.read(buffer, valueOffset));
+        node.height = buffer.get(position + 1);
+        count[0]++;
+
+        if ((flags & HAS_LEFT) != 0) {
+            node.left = readNode(valueOffset + valueCodec.sizeAt(buffer, valueOffset), bucketStart, count);
+        }
+        if ((flags & HAS_RIGHT) != 0) {
+            node.right = readNode(bucketStart + buffer.getInt(position + 2), bucketStart, count);
+        }
+        return node;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
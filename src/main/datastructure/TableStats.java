@@ -0,0 +1,61 @@
+package main.datastructure;
+
+import java.util.Arrays;
+
+//bucket statistics of a HashTableWithAVL taken at one point in time, every figure comes
+//from the same state of the table, heightHistogram[h] is the number of buckets of height h
+public final class TableStats {
+    private final int capacity;
+    private final int occupiedBuckets;
+    private final int[] heightHistogram;
+    private final long heightTotal;
+    private final long totalRotations;
+
+    TableStats(int capacity, int occupiedBuckets, int[] heightHistogram, long heightTotal, long totalRotations) {
+        this.capacity = capacity;
+        this.occupiedBuckets = occupiedBuckets;
+        this.heightHistogram = heightHistogram;
+        this.heightTotal = heightTotal;
+        this.totalRotations = totalRotations;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getOccupiedBuckets() {
+        return occupiedBuckets;
+    }
+
+    public double getOccupancy() {
+        return (double) occupiedBuckets / capacity;
+    }
+
+    public int getMaxHeight() {
+        return heightHistogram.length - 1;
+    }
+
+    public double getAverageHeight() {
+        return (double) heightTotal / capacity;
+    }
+
+    //average over the buckets that hold anything, what a search for a present key walks
+    public double getAverageOccupiedHeight() {
+        return occupiedBuckets == 0 ? 0 : (double) heightTotal / occupiedBuckets;
+    }
+
+    public long getTotalRotations() {
+        return totalRotations;
+    }
+
+    public int[] getHeightHistogram() {
+        return heightHistogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "buckets=" + capacity + " occupied=" + occupiedBuckets + " maxHeight=" + getMaxHeight()
+            + " avgHeight=" + String.format("%.3f", getAverageHeight()) + " rotations=" + totalRotations
+            + " heights=" + Arrays.toString(heightHistogram);
+    }
+}
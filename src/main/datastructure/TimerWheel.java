@@ -0,0 +1,161 @@
+package main.datastructure;
+
+import java.util.function.Consumer;
+
+//hierarchical timer wheel, each level has 64 slots and each slot of level i spans
+//the whole wheel of level i-1, so scheduling and cancelling are O(1) and every
+//entry is only moved down a level a constant number of times before it expires
+public class TimerWheel<K, V> {
+    private static final int SLOTS = 64;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    //level i slot width is 2^SHIFT[i] ns (~1ms, ~67ms, ~4.3s, ~4.6min, ~4.9h)
+    private static final int[] SHIFT = {20, 26, 32, 38, 44};
+
+    private final Entry<K, V>[][] wheel;
+    private final Consumer<Entry<K, V>> onExpire;
+    private long nanos;
+    private int scheduled;
+
+    public static class Entry<K, V> {
+        final K key;
+        V value;
+        long ttl;
+        long expiresAt;
+        Entry<K, V> prev, next;
+
+        Entry(K key, V value, long ttl) {
+            this.key = key;
+            this.value = value;
+            this.ttl = ttl;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long nanos, Consumer<Entry<K, V>> onExpire) {
+        this.nanos = nanos;
+        this.onExpire = onExpire;
+        this.scheduled = 0;
+
+        //every slot is a circular list with a sentinel head
+        wheel = new Entry[SHIFT.length][SLOTS];
+        for (int i = 0; i < SHIFT.length; i++) {
+            for (int j = 0; j < SLOTS; j++) {
+                Entry<K, V> sentinel = new Entry<>(null, null, 0);
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    public int getScheduledCount() {
+        return scheduled;
+    }
+
+    //add an entry that is not currently in the wheel
+    public void schedule(Entry<K, V> entry) {
+        link(findSlot(entry.expiresAt), entry);
+        scheduled++;
+    }
+
+    //move an entry after its deadline changed
+    public void reschedule(Entry<K, V> entry) {
+        if (entry.next != null) {
+            unlink(entry);
+            link(findSlot(entry.expiresAt), entry);
+        } else {
+            schedule(entry);
+        }
+    }
+
+    //remove an entry from the wheel without expiring it
+    public void deschedule(Entry<K, V> entry) {
+        if (entry.next != null) {
+            unlink(entry);
+            entry.prev = null;
+            entry.next = null;
+            scheduled--;
+        }
+    }
+
+    //advance the wheel to the given time, expiring every entry that is due
+    public void advance(long currentNanos) {
+        long previousNanos = nanos;
+        nanos = currentNanos;
+
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousNanos >>> SHIFT[i];
+            long currentTicks = currentNanos >>> SHIFT[i];
+            long delta = currentTicks - previousTicks;
+            if (delta <= 0) break;
+            expireSlots(i, previousTicks, delta);
+        }
+    }
+
+    //walk the slots a level passed over, expiring entries that are due and
+    //cascading the rest into lower levels
+    private void expireSlots(int level, long previousTicks, long delta) {
+        int steps = (int) Math.min(delta + 1, SLOTS);
+        int start = (int) (previousTicks & SLOT_MASK);
+
+        for (int i = start; i < start + steps; i++) {
+            Entry<K, V> sentinel = wheel[level][i & SLOT_MASK];
+            Entry<K, V> node = sentinel.next;
+
+            //detach the whole list first since entries may be relinked into this slot
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+
+            while (node != sentinel) {
+                Entry<K, V> next = node.next;
+                node.prev = null;
+                node.next = null;
+
+                if (node.expiresAt - nanos > 0) {
+                    link(findSlot(node.expiresAt), node);
+                } else {
+                    scheduled--;
+                    onExpire.accept(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    //find the slot for a deadline, picking the lowest level whose wheel covers it
+    private Entry<K, V> findSlot(long expiresAt) {
+        long duration = expiresAt - nanos;
+        int last = SHIFT.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < (1L << SHIFT[i + 1])) {
+                return wheel[i][(int) ((expiresAt >>> SHIFT[i]) & SLOT_MASK)];
+            }
+        }
+        return wheel[last][(int) ((expiresAt >>> SHIFT[last]) & SLOT_MASK)];
+    }
+
+    private void link(Entry<K, V> sentinel, Entry<K, V> entry) {
+        entry.prev = sentinel.prev;
+        entry.next = sentinel;
+        sentinel.prev.next = entry;
+        sentinel.prev = entry;
+    }
+
+    private void unlink(Entry<K, V> entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+    }
+}
@@ -0,0 +1,212 @@
+package main.datastructure;
+
+import main.utils.KeyValuePair;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+//treap bucket: a binary search tree on keys and a max-heap on random priorities,
+//balanced only in expectation but with at most ~2 rotations per update on average
+public class Treap<K extends Comparable<K>, V> implements Bucket<K, V> {
+    private Node<K, V> root;
+    private int size;
+    private int rotationCount;
+
+    //outcome of the last descent, see AVLTree
+    private V previous;
+    private boolean structureChanged;
+
+    static final class Node<K, V> {
+        K key;
+        V value;
+        Node<K, V> left, right;
+        final int priority;
+        int height;
+
+        Node(K key, V value, int priority) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.height = 1;
+        }
+    }
+
+    public Treap() {
+        this.root = null;
+        this.size = 0;
+        this.rotationCount = 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getHeight() {
+        return height(root);
+    }
+
+    @Override
+    public int getRotationCount() {
+        return rotationCount;
+    }
+
+    private int height(Node<K, V> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private void updateHeight(Node<K, V> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    //right rotation
+    private Node<K, V> rightRotate(Node<K, V> y) {
+        Node<K, V> x = y.left;
+        y.left = x.right;
+        x.right = y;
+
+        updateHeight(y);
+        updateHeight(x);
+
+        rotationCount++;
+        return x;
+    }
+
+    //left rotation
+    private Node<K, V> leftRotate(Node<K, V> x) {
+        Node<K, V> y = x.right;
+        x.right = y.left;
+        y.left = x;
+
+        updateHeight(x);
+        updateHeight(y);
+
+        rotationCount++;
+        return y;
+    }
+
+    //insert a key-value pair, returns the previous value or null
+    @Override
+    public V insert(K key, V value) {
+        previous = null;
+        structureChanged = false;
+        root = insertRec(root, key, value);
+        return previous;
+    }
+
+    private Node<K, V> insertRec(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            size++;
+            structureChanged = true;
+            return new Node<>(key, value, ThreadLocalRandom.current().nextInt());
+        }
+
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = insertRec(node.left, key, value);
+            if (!structureChanged) return node;
+            //the new node bubbles up while it outranks its parent
+            if (node.left.priority > node.priority) return rightRotate(node);
+        } else if (cmp > 0) {
+            node.right = insertRec(node.right, key, value);
+            if (!structureChanged) return node;
+            if (node.right.priority > node.priority) return leftRotate(node);
+        } else {
+            //key already exists, update value
+            previous = node.value;
+            node.value = value;
+            return node;
+        }
+
+        updateHeight(node);
+        return node;
+    }
+
+    //search for a key
+    @Override
+    public V search(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.value;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    @Override
+    public V searchOptimistic(K key) {
+        //bounded walk, see AVLTree
+        int budget = size + 1;
+        Node<K, V> node = root;
+        while (node != null) {
+            if (--budget < 0) throw new ConcurrentModificationException();
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.value;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    //delete a key, returns the removed value or null
+    @Override
+    public V delete(K key) {
+        previous = null;
+        structureChanged = false;
+        root = deleteRec(root, key);
+        return previous;
+    }
+
+    private Node<K, V> deleteRec(Node<K, V> node, K key) {
+        if (node == null) return null;
+
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = deleteRec(node.left, key);
+        } else if (cmp > 0) {
+            node.right = deleteRec(node.right, key);
+        } else {
+            previous = node.value;
+            size--;
+            structureChanged = true;
+            return sinkAndRemove(node);
+        }
+
+        if (structureChanged) updateHeight(node);
+        return node;
+    }
+
+    //rotate the node down below its higher priority child until it has at most one child
+    private Node<K, V> sinkAndRemove(Node<K, V> node) {
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+
+        Node<K, V> top;
+        if (node.left.priority > node.right.priority) {
+            top = rightRotate(node);
+            top.right = sinkAndRemove(node);
+        } else {
+            top = leftRotate(node);
+            top.left = sinkAndRemove(node);
+        }
+        updateHeight(top);
+        return top;
+    }
+
+    @Override
+    public List<KeyValuePair<K, V>> getAllKeyValuePairs() {
+        List<KeyValuePair<K, V>> pairs = new ArrayList<>();
+        collectKeyValuePairs(root, pairs);
+        return pairs;
+    }
+
+    private void collectKeyValuePairs(Node<K, V> node, List<KeyValuePair<K, V>> pairs) {
+        if (node == null) return;
+
+        collectKeyValuePairs(node.left, pairs);
+        pairs.add(new KeyValuePair<>(node.key, node.value));
+        collectKeyValuePairs(node.right, pairs);
+    }
+}
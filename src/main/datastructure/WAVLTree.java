@@ -0,0 +1,348 @@
+package main.datastructure;
+
+import main.utils.KeyValuePair;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+//weak AVL tree bucket (Haeupler, Sen and Tarjan), balanced by ranks instead of heights
+//
+//every rank difference is 1 or 2 and leaves have rank 0 (missing nodes count as -1),
+//insertion rebalances exactly like AVL but deletion does at most two rotations and
+//usually only demotes, which is where it saves work over AVLTree
+public class WAVLTree<K extends Comparable<K>, V> implements Bucket<K, V> {
+    private Node<K, V> root;
+    private int size;
+    private int rotationCount;
+
+    //outcome of the last descent, see AVLTree
+    private V previous;
+    private boolean structureChanged;
+    private Node<K, V> removedMin;
+
+    static final class Node<K, V> {
+        K key;
+        V value;
+        Node<K, V> left, right;
+        int rank;
+        int height;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+            this.rank = 0;
+            this.height = 1;
+        }
+    }
+
+    public WAVLTree() {
+        this.root = null;
+        this.size = 0;
+        this.rotationCount = 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getHeight() {
+        return height(root);
+    }
+
+    @Override
+    public int getRotationCount() {
+        return rotationCount;
+    }
+
+    private int rank(Node<K, V> node) {
+        return node == null ? -1 : node.rank;
+    }
+
+    private int height(Node<K, V> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private void updateHeight(Node<K, V> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    //right rotation, ranks are left to the caller
+    private Node<K, V> rightRotate(Node<K, V> y) {
+        Node<K, V> x = y.left;
+        y.left = x.right;
+        x.right = y;
+
+        updateHeight(y);
+        updateHeight(x);
+
+        rotationCount++;
+        return x;
+    }
+
+    //left rotation, ranks are left to the caller
+    private Node<K, V> leftRotate(Node<K, V> x) {
+        Node<K, V> y = x.right;
+        x.right = y.left;
+        y.left = x;
+
+        updateHeight(x);
+        updateHeight(y);
+
+        rotationCount++;
+        return y;
+    }
+
+    //insert a key-value pair, returns the previous value or null
+    @Override
+    public V insert(K key, V value) {
+        previous = null;
+        structureChanged = false;
+        root = insertRec(root, key, value);
+        return previous;
+    }
+
+    private Node<K, V> insertRec(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            size++;
+            structureChanged = true;
+            return new Node<>(key, value);
+        }
+
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = insertRec(node.left, key, value);
+            if (!structureChanged) return node;
+            updateHeight(node);
+            return fixLeftInsert(node);
+        } else if (cmp > 0) {
+            node.right = insertRec(node.right, key, value);
+            if (!structureChanged) return node;
+            updateHeight(node);
+            return fixRightInsert(node);
+        }
+
+        //key already exists, update value
+        previous = node.value;
+        node.value = value;
+        return node;
+    }
+
+    //the left child may have been promoted to the same rank as its parent (a 0-child)
+    private Node<K, V> fixLeftInsert(Node<K, V> x) {
+        Node<K, V> y = x.left;
+        if (rank(x) != rank(y)) return x;
+
+        //x is 0,1: promote and let the parent look at it
+        if (rank(x) - rank(x.right) == 1) {
+            x.rank++;
+            return x;
+        }
+
+        //x is 0,2
+        Node<K, V> z = y.right;
+        if (rank(y) - rank(z) == 2) {
+            x.rank--;
+            return rightRotate(x);
+        }
+
+        y.rank--;
+        x.rank--;
+        z.rank++;
+        x.left = leftRotate(y);
+        return rightRotate(x);
+    }
+
+    private Node<K, V> fixRightInsert(Node<K, V> x) {
+        Node<K, V> y = x.right;
+        if (rank(x) != rank(y)) return x;
+
+        if (rank(x) - rank(x.left) == 1) {
+            x.rank++;
+            return x;
+        }
+
+        Node<K, V> z = y.left;
+        if (rank(y) - rank(z) == 2) {
+            x.rank--;
+            return leftRotate(x);
+        }
+
+        y.rank--;
+        x.rank--;
+        z.rank++;
+        x.right = rightRotate(y);
+        return leftRotate(x);
+    }
+
+    //search for a key
+    @Override
+    public V search(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.value;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    @Override
+    public V searchOptimistic(K key) {
+        //bounded walk, see AVLTree
+        int budget = size + 1;
+        Node<K, V> node = root;
+        while (node != null) {
+            if (--budget < 0) throw new ConcurrentModificationException();
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.value;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    //delete a key, returns the removed value or null
+    @Override
+    public V delete(K key) {
+        previous = null;
+        structureChanged = false;
+        root = deleteRec(root, key);
+        return previous;
+    }
+
+    private Node<K, V> deleteRec(Node<K, V> node, K key) {
+        if (node == null) return null;
+
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = deleteRec(node.left, key);
+            if (!structureChanged) return node;
+            updateHeight(node);
+            return fixLeftDelete(node);
+        } else if (cmp > 0) {
+            node.right = deleteRec(node.right, key);
+            if (!structureChanged) return node;
+            updateHeight(node);
+            return fixRightDelete(node);
+        }
+
+        previous = node.value;
+        size--;
+        structureChanged = true;
+
+        //a leaf or unary node is replaced by its child, which is one rank lower
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+
+        //two children: the successor takes the node's place and rank
+        Node<K, V> right = removeMin(node.right);
+        Node<K, V> successor = removedMin;
+        removedMin = null;
+        successor.left = node.left;
+        successor.right = right;
+        successor.rank = node.rank;
+        updateHeight(successor);
+        return fixRightDelete(successor);
+    }
+
+    private Node<K, V> removeMin(Node<K, V> node) {
+        if (node.left == null) {
+            removedMin = node;
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        updateHeight(node);
+        return fixLeftDelete(node);
+    }
+
+    //the left subtree lost a level: fix a 2,2 leaf or a 3-child
+    private Node<K, V> fixLeftDelete(Node<K, V> x) {
+        if (x.left == null && x.right == null) {
+            x.rank = 0;
+            return x;
+        }
+        if (rank(x) - rank(x.left) != 3) return x;
+
+        Node<K, V> y = x.right;
+        //x is 3,2: demote and let the parent look at it
+        if (rank(x) - rank(y) == 2) {
+            x.rank--;
+            return x;
+        }
+
+        //y is 2,2: demote both
+        Node<K, V> w = y.right;
+        Node<K, V> v = y.left;
+        if (rank(y) - rank(w) == 2 && rank(y) - rank(v) == 2) {
+            x.rank--;
+            y.rank--;
+            return x;
+        }
+
+        //outer child of y is a 1-child: single rotation
+        if (rank(y) - rank(w) == 1) {
+            y.rank++;
+            x.rank--;
+            if (x.left == null && v == null) x.rank--;
+            return leftRotate(x);
+        }
+
+        //inner child of y is the 1-child: double rotation
+        v.rank += 2;
+        y.rank--;
+        x.rank -= 2;
+        x.right = rightRotate(y);
+        return leftRotate(x);
+    }
+
+    private Node<K, V> fixRightDelete(Node<K, V> x) {
+        if (x.left == null && x.right == null) {
+            x.rank = 0;
+            return x;
+        }
+        if (rank(x) - rank(x.right) != 3) return x;
+
+        Node<K, V> y = x.left;
+        if (rank(x) - rank(y) == 2) {
+            x.rank--;
+            return x;
+        }
+
+        Node<K, V> w = y.left;
+        Node<K, V> v = y.right;
+        if (rank(y) - rank(w) == 2 && rank(y) - rank(v) == 2) {
+            x.rank--;
+            y.rank--;
+            return x;
+        }
+
+        if (rank(y) - rank(w) == 1) {
+            y.rank++;
+            x.rank--;
+            if (x.right == null && v == null) x.rank--;
+            return rightRotate(x);
+        }
+
+        v.rank += 2;
+        y.rank--;
+        x.rank -= 2;
+        x.left = leftRotate(y);
+        return rightRotate(x);
+    }
+
+    @Override
+    public List<KeyValuePair<K, V>> getAllKeyValuePairs() {
+        List<KeyValuePair<K, V>> pairs = new ArrayList<>();
+        collectKeyValuePairs(root, pairs);
+        return pairs;
+    }
+
+    private void collectKeyValuePairs(Node<K, V> node, List<KeyValuePair<K, V>> pairs) {
+        if (node == null) return;
+
+        collectKeyValuePairs(node.left, pairs);
+        pairs.add(new KeyValuePair<>(node.key, node.value));
+        collectKeyValuePairs(node.right, pairs);
+    }
+}
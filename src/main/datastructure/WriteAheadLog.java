@@ -0,0 +1,244 @@
+package main.datastructure;
+
+import main.utils.BinaryCodec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+//append-only log of insert/delete operations
+//
+//record layout: [payload length:4][op:1][key][value, inserts only][crc of op+key+value:4]
+//
+//writers append into a shared buffer and then wait for their sequence number to become
+//durable, the first waiter writes and fsyncs everything buffered so far while the others
+//wait on it, so concurrent writers share one fsync (group commit)
+public class WriteAheadLog<K, V> implements Closeable {
+    public enum SyncPolicy {
+        EVERY_OP, //fsync before an operation returns, batched across concurrent writers
+        INTERVAL, //fsync from a background thread every N ms
+        OS        //write to the page cache and let the OS decide when to flush
+    }
+
+    static final byte INSERT = 1;
+    static final byte DELETE = 2;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final BinaryCodec<K> keyCodec;
+    private final BinaryCodec<V> valueCodec;
+    private final SyncPolicy syncPolicy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+    private ScheduledExecutorService syncer;
+
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private long appendedSeq;
+    private long flushedSeq;
+    private boolean flushing;
+    private IOException failure;
+    private long syncCount;
+
+    public WriteAheadLog(Path path, BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec,
+                         SyncPolicy syncPolicy, long syncIntervalMillis) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.syncPolicy = syncPolicy;
+        this.pending = ByteBuffer.allocate(64 * 1024);
+        this.spare = ByteBuffer.allocate(64 * 1024);
+
+        if (syncPolicy == SyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleAtFixedRate(() -> {
+                try {
+                    sync();
+                } catch (IOException e) {
+                    //kept in failure and rethrown to the next caller
+                }
+            }, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    //buffer a record and return its sequence number, callers must append in the order they apply
+    public long append(byte op, K key, V value) {
+        int payload = 1 + keyCodec.sizeOf(key) + (op == INSERT ? valueCodec.sizeOf(value) : 0);
+
+        lock.lock();
+        try {
+            if (pending.remaining() < payload + RECORD_OVERHEAD) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + payload + RECORD_OVERHEAD));
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+
+            pending.putInt(payload);
+            int start = pending.position();
+            pending.put(op);
+            keyCodec.write(pending, key);
+            if (op == INSERT) valueCodec.write(pending, value);
+
+            crc.reset();
+            crc.update(pending.array(), start, payload);
+            pending.putInt((int) crc.getValue());
+            return ++appendedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //block until the record is as durable as the sync policy promises
+    public void await(long seq) throws IOException {
+        if (syncPolicy == SyncPolicy.INTERVAL) return;
+        flushUpTo(seq, syncPolicy == SyncPolicy.EVERY_OP);
+    }
+
+    //write and fsync everything appended so far
+    public void sync() throws IOException {
+        long seq;
+        lock.lock();
+        try {
+            seq = appendedSeq;
+        } finally {
+            lock.unlock();
+        }
+        flushUpTo(seq, true);
+    }
+
+    private void flushUpTo(long seq, boolean force) throws IOException {
+        lock.lock();
+        try {
+            while (flushedSeq < seq) {
+                if (failure != null) throw failure;
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+
+                //become the leader, take the whole buffer and write it without holding the lock
+                flushing = true;
+                ByteBuffer batch = pending;
+                long batchSeq = appendedSeq;
+                pending = spare;
+                lock.unlock();
+                try {
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    if (force) {
+                        channel.force(false);
+                    }
+                } catch (IOException e) {
+                    lock.lock();
+                    failure = e;
+                    flushing = false;
+                    flushed.signalAll();
+                    throw e;
+                }
+                lock.lock();
+                batch.clear();
+                spare = batch;
+                flushedSeq = batchSeq;
+                flushing = false;
+                if (force) syncCount++;
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //bytes written to the file so far
+    public long getFileSize() throws IOException {
+        return channel.size();
+    }
+
+    public long getSyncCount() {
+        lock.lock();
+        try {
+            return syncCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            //no interrupts, an interrupted force() would close the channel under us
+            syncer.shutdown();
+            try {
+                syncer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    //replay every intact record into the table, a torn or corrupt tail is cut off so new
+    //records are appended after the last good one, returns the number of records applied
+    public static <K extends Comparable<K>, V> long replay(Path path, HashTableWithAVL<K, V> table,
+                                                           BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec) throws IOException {
+        if (!Files.exists(path)) return 0;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32C crc = new CRC32C();
+        long applied = 0;
+        int valid = 0;
+
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int start = buffer.position();
+            int payload = buffer.getInt(start);
+            if (payload <= 0 || payload > buffer.remaining() - RECORD_OVERHEAD) break;
+
+            crc.reset();
+            crc.update(buffer.array(), start + Integer.BYTES, payload);
+            if (buffer.getInt(start + Integer.BYTES + payload) != (int) crc.getValue()) break;
+
+            int offset = start + Integer.BYTES;
+            byte op = buffer.get(offset);
+            K key = keyCodec.read(buffer, offset + 1);
+            if (op == INSERT) {
+                table.insert(key, valueCodec.read(buffer, offset + 1 + keyCodec.sizeAt(buffer, offset + 1)));
+            } else if (op == DELETE) {
+                table.delete(key);
+            } else {
+                break;
+            }
+
+            applied++;
+            valid = start + payload + RECORD_OVERHEAD;
+            buffer.position(valid);
+        }
+
+        if (valid < buffer.capacity()) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,116 @@
+package main.datastructure;
+
+import java.util.Arrays;
+
+//static xor filter with 8-bit fingerprints over 32-bit key hashes, built once for a
+//FrozenTable: ~9.9 bits per key and a 1/256 false positive rate, a query reads three bytes
+//
+//every key maps to one slot in each third of the table, construction peels keys that are
+//alone in a slot until none are left, then assigns fingerprints in reverse peel order so
+//the three slots of each key xor to its fingerprint, a failed peel retries with a new seed
+//
+//keys with the same hash are the same key to the filter, so hashes are de-duplicated first
+public class XorFilter {
+    private final byte[] fingerprints;
+    private final int blockLength;
+    private long seed;
+
+    public XorFilter(int[] hashes) {
+        int[] keys = distinct(hashes);
+        int size = keys.length;
+        int capacity = 32 + (int) Math.ceil(1.23 * size);
+        this.blockLength = capacity / 3;
+        this.fingerprints = new byte[blockLength * 3];
+
+        long[] xorMask = new long[blockLength * 3];
+        int[] count = new int[blockLength * 3];
+        int[] queue = new int[blockLength * 3];
+        long[] stackHash = new long[size];
+        int[] stackSlot = new int[size];
+
+        seed = 0x9E3779B97F4A7C15L;
+        while (true) {
+            Arrays.fill(xorMask, 0);
+            Arrays.fill(count, 0);
+            for (int key : keys) {
+                long hash = keyHash(key);
+                for (int j = 0; j < 3; j++) {
+                    int slot = slot(hash, j);
+                    xorMask[slot] ^= hash;
+                    count[slot]++;
+                }
+            }
+
+            int queued = 0;
+            for (int slot = 0; slot < count.length; slot++) {
+                if (count[slot] == 1) queue[queued++] = slot;
+            }
+            int stacked = 0;
+            while (queued > 0) {
+                int slot = queue[--queued];
+                if (count[slot] != 1) continue;
+                long hash = xorMask[slot];
+                stackHash[stacked] = hash;
+                stackSlot[stacked++] = slot;
+                for (int j = 0; j < 3; j++) {
+                    int other = slot(hash, j);
+                    xorMask[other] ^= hash;
+                    if (--count[other] == 1) queue[queued++] = other;
+                }
+            }
+            if (stacked == size) break;
+            seed = seed * 0x5851F42D4C957F2DL + 1;
+        }
+
+        for (int i = size - 1; i >= 0; i--) {
+            long hash = stackHash[i];
+            int slot = stackSlot[i];
+            int fingerprint = fingerprint(hash);
+            for (int j = 0; j < 3; j++) {
+                int other = slot(hash, j);
+                if (other != slot) fingerprint ^= fingerprints[other];
+            }
+            fingerprints[slot] = (byte) fingerprint;
+        }
+    }
+
+    //false means no key with this hash was in the build set, true means there may be one
+    public boolean mightContain(int keyHash) {
+        long hash = keyHash(keyHash);
+        int fingerprint = fingerprint(hash)
+            ^ fingerprints[slot(hash, 0)] ^ fingerprints[slot(hash, 1)] ^ fingerprints[slot(hash, 2)];
+        return (fingerprint & 0xFF) == 0;
+    }
+
+    private static int[] distinct(int[] hashes) {
+        int[] sorted = hashes.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) sorted[count++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    //spread the 32-bit key hash over 64 bits (murmur3 finalizer)
+    private long keyHash(int keyHash) {
+        long h = keyHash + seed;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    //slot j of a key lies in the j-th third, each picked by a different 21-bit rotation
+    private int slot(long hash, int j) {
+        long r = Long.rotateLeft(hash, 21 * j) & 0xFFFFFFFFL;
+        return (int) ((r * blockLength) >>> 32) + j * blockLength;
+    }
+
+    private static int fingerprint(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & 0xFF;
+    }
+
+    public long getMemoryBytes() {
+        return fingerprints.length;
+    }
+}
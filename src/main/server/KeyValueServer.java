@@ -0,0 +1,438 @@
+package main.server;
+
+import main.concurrent.ShardedHashTable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//local key-value server over a ShardedHashTable<String, byte[]> speaking a RESP subset:
+//GET, SET, DEL, MGET and PING, keys are binary-safe (one char per byte)
+//
+//every connection gets its own thread doing blocking channel I/O, a virtual thread when
+//the runtime has them (Thread.ofVirtual, looked up reflectively) and a small-stack platform
+//thread otherwise
+//
+//requests are pipelined: one read parses every complete command in the buffer, writes go
+//to the shard writers without waiting and all replies of that read leave in a single write,
+//a GET or MGET first waits for the writes queued before it on the same connection so each
+//connection still sees its own commands in order
+public class KeyValueServer implements AutoCloseable {
+    private static final int BACKLOG = 4096;
+    private static final int INITIAL_BUFFER_BYTES = 4096;
+    private static final int MAX_COMMAND_BYTES = 16 << 20;
+    private static final int MAX_ARGUMENTS = 1 << 20;
+    private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+
+    private static final byte[] OK = ascii("+OK\r\n");
+    private static final byte[] PONG = ascii("+PONG\r\n");
+    private static final byte[] NIL = ascii("$-1\r\n");
+    private static final byte[] ZERO = ascii(":0\r\n");
+    private static final byte[] ONE = ascii(":1\r\n");
+
+    private final ShardedHashTable<String, byte[]> table;
+    private final ThreadFactory connectionThreads;
+    private final boolean virtualThreads;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder commandCount = new LongAdder();
+    private final LongAdder readCount = new LongAdder();
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+    private volatile boolean closed;
+
+    //the table stays owned by the caller, close() doesn't close it
+    public KeyValueServer(ShardedHashTable<String, byte[]> table) {
+        this.table = table;
+        ThreadFactory virtual = virtualThreadFactory();
+        this.virtualThreads = virtual != null;
+        this.connectionThreads = virtual != null ? virtual : runnable -> {
+            Thread thread = new Thread(null, runnable, "kv-connection-" + acceptedCount.get(), PLATFORM_STACK_BYTES);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    //Thread.ofVirtual().name("kv-connection-", 0).factory() on runtimes that have it
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "kv-connection-", 0L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //no virtual threads here, or only as a disabled preview
+            return null;
+        }
+    }
+
+    //listen on the loopback interface, port 0 picks a free one, returns the bound port
+    public int start(int port) throws IOException {
+        return start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public synchronized int start(InetSocketAddress address) throws IOException {
+        if (serverChannel != null) throw new IllegalStateException("Server already started");
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, BACKLOG);
+        acceptor = new Thread(this::acceptLoop, "kv-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return getPort();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                //out of file descriptors or similar, keep serving the connections we have
+                continue;
+            }
+            try {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connections.add(channel);
+                //close() sets closed before closing the set's channels, so either it saw this
+                //channel or we see closed here
+                if (closed) {
+                    connections.remove(channel);
+                    closeQuietly(channel);
+                    return;
+                }
+                acceptedCount.incrementAndGet();
+                connectionThreads.newThread(() -> serve(channel)).start();
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                //no thread for it, drop the connection rather than the server
+                connections.remove(channel);
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        Connection connection = new Connection(channel);
+        try {
+            while (connection.readAndReply()) {
+                readCount.increment();
+            }
+        } catch (AsynchronousCloseException e) {
+            //closed by close() while blocked in a read
+        } catch (IOException e) {
+            //peer reset or protocol error, nothing more to say on this connection
+        } finally {
+            connections.remove(channel);
+            closeQuietly(channel);
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+        private byte[] out = new byte[INITIAL_BUFFER_BYTES];
+        private int outLength;
+        //replies of the current read, encoded bytes or a pending write's future
+        private final List<Object> replies = new ArrayList<>();
+        private boolean pendingWrites;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        //one read, then every complete command in the buffer, then one write, false at end of stream
+        boolean readAndReply() throws IOException {
+            if (!in.hasRemaining()) {
+                if (in.capacity() >= MAX_COMMAND_BYTES) {
+                    fail("command too large");
+                }
+                in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+            }
+            if (channel.read(in) < 0) return false;
+
+            in.flip();
+            try {
+                byte[][] command;
+                while ((command = parseCommand()) != null) {
+                    execute(command);
+                }
+            } catch (ProtocolException e) {
+                replies.add(error("Protocol error: " + e.getMessage()));
+                flush();
+                throw e;
+            } finally {
+                in.compact();
+            }
+            flush();
+            return true;
+        }
+
+        //the next command as its arguments, or null when the buffer ends inside it
+        private byte[][] parseCommand() throws ProtocolException {
+            int start = in.position();
+            if (start == in.limit()) return null;
+            if (in.get(start) != '*') throw new ProtocolException("expected '*', inline commands are not supported");
+            long count = readNumber();
+            if (count == Long.MIN_VALUE) return rewind(start);
+            if (count < 1 || count > MAX_ARGUMENTS) throw new ProtocolException("bad argument count");
+
+            byte[][] arguments = new byte[(int) count][];
+            for (int i = 0; i < count; i++) {
+                if (in.position() == in.limit()) return rewind(start);
+                if (in.get(in.position()) != '$') throw new ProtocolException("expected '$'");
+                long length = readNumber();
+                if (length == Long.MIN_VALUE) return rewind(start);
+                if (length < 0 || length > MAX_COMMAND_BYTES) throw new ProtocolException("bad bulk length");
+                if (in.remaining() < length + 2) return rewind(start);
+                arguments[i] = new byte[(int) length];
+                in.get(arguments[i]);
+                if (in.get() != '\r' || in.get() != '\n') throw new ProtocolException("expected CRLF");
+            }
+            return arguments;
+        }
+
+        private byte[][] rewind(int start) {
+            in.position(start);
+            return null;
+        }
+
+        //a type byte, digits and CRLF, Long.MIN_VALUE when the line isn't complete yet
+        private long readNumber() throws ProtocolException {
+            int position = in.position() + 1;
+            boolean negative = position < in.limit() && in.get(position) == '-';
+            if (negative) position++;
+            long value = 0;
+            int digits = 0;
+            while (position < in.limit()) {
+                byte b = in.get(position++);
+                if (b == '\r') {
+                    if (position == in.limit()) return Long.MIN_VALUE;
+                    if (in.get(position) != '\n' || digits == 0) throw new ProtocolException("bad number");
+                    in.position(position + 1);
+                    return negative ? -value : value;
+                }
+                if (b < '0' || b > '9' || ++digits > 18) throw new ProtocolException("bad number");
+                value = value * 10 + (b - '0');
+            }
+            return Long.MIN_VALUE;
+        }
+
+        private void execute(byte[][] command) {
+            commandCount.increment();
+            String name = new String(command[0], StandardCharsets.ISO_8859_1).toUpperCase();
+            try {
+                switch (name) {
+                    case "GET":
+                        if (command.length != 2) {
+                            replies.add(wrongArguments(name));
+                        } else {
+                            awaitPendingWrites();
+                            replies.add(bulk(table.search(key(command[1]))));
+                        }
+                        break;
+                    case "SET":
+                        if (command.length != 3) {
+                            replies.add(wrongArguments(name));
+                        } else {
+                            replies.add(table.insertAsync(key(command[1]), command[2]).thenApply(previous -> OK));
+                            pendingWrites = true;
+                        }
+                        break;
+                    case "DEL":
+                        if (command.length < 2) {
+                            replies.add(wrongArguments(name));
+                        } else {
+                            String[] keys = new String[command.length - 1];
+                            for (int i = 0; i < keys.length; i++) {
+                                keys[i] = key(command[i + 1]);
+                            }
+                            replies.add(table.deleteAll(keys).thenApply(KeyValueServer::integer));
+                            pendingWrites = true;
+                        }
+                        break;
+                    case "MGET":
+                        if (command.length < 2) {
+                            replies.add(wrongArguments(name));
+                        } else {
+                            awaitPendingWrites();
+                            replies.add(ascii("*" + (command.length - 1) + "\r\n"));
+                            for (int i = 1; i < command.length; i++) {
+                                replies.add(bulk(table.search(key(command[i]))));
+                            }
+                        }
+                        break;
+                    case "PING":
+                        replies.add(PONG);
+                        break;
+                    default:
+                        replies.add(error("unknown command '" + name + "'"));
+                }
+            } catch (IllegalStateException e) {
+                //the table was closed under us
+                replies.add(error(e.getMessage()));
+            }
+        }
+
+        private void awaitPendingWrites() {
+            if (!pendingWrites) return;
+            for (Object reply : replies) {
+                if (!(reply instanceof CompletableFuture)) continue;
+                try {
+                    ((CompletableFuture<?>) reply).join();
+                } catch (RuntimeException e) {
+                    //only waiting here, flush() turns the failure into the write's error reply
+                }
+            }
+            pendingWrites = false;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void flush() throws IOException {
+            if (replies.isEmpty()) return;
+            for (Object reply : replies) {
+                byte[] bytes;
+                if (reply instanceof CompletableFuture) {
+                    try {
+                        bytes = ((CompletableFuture<byte[]>) reply).join();
+                    } catch (RuntimeException e) {
+                        bytes = error("write failed");
+                    }
+                } else {
+                    bytes = (byte[]) reply;
+                }
+                append(bytes);
+            }
+            replies.clear();
+            pendingWrites = false;
+
+            ByteBuffer buffer = ByteBuffer.wrap(out, 0, outLength);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            outLength = 0;
+        }
+
+        private void append(byte[] bytes) {
+            if (outLength + bytes.length > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, outLength + bytes.length));
+            }
+            System.arraycopy(bytes, 0, out, outLength, bytes.length);
+            outLength += bytes.length;
+        }
+
+        private void fail(String message) throws IOException {
+            replies.add(error(message));
+            flush();
+            throw new ProtocolException(message);
+        }
+    }
+
+    private static String key(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] bulk(byte[] value) {
+        if (value == null) return NIL;
+        byte[] header = ascii("$" + value.length + "\r\n");
+        byte[] reply = Arrays.copyOf(header, header.length + value.length + 2);
+        System.arraycopy(value, 0, reply, header.length, value.length);
+        reply[reply.length - 2] = '\r';
+        reply[reply.length - 1] = '\n';
+        return reply;
+    }
+
+    private static byte[] integer(int value) {
+        if (value == 0) return ZERO;
+        if (value == 1) return ONE;
+        return ascii(":" + value + "\r\n");
+    }
+
+    private static byte[] wrongArguments(String name) {
+        return error("wrong number of arguments for '" + name + "'");
+    }
+
+    private static byte[] error(String message) {
+        return ascii("-ERR " + message + "\r\n");
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //already gone
+        }
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    //whether connections run on virtual threads, false on runtimes without them
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getCommandCount() {
+        return commandCount.sum();
+    }
+
+    //average commands answered per read, above 1 when clients pipeline
+    public double getAverageCommandsPerRead() {
+        long reads = readCount.sum();
+        return reads == 0 ? 0 : (double) commandCount.sum() / reads;
+    }
+
+    //stop accepting, close every connection and wait for the acceptor to exit, an interrupt
+    //doesn't cut the wait short, it is passed on once the acceptor is gone
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            if (serverChannel != null) serverChannel.close();
+        } catch (IOException e) {
+            //closing anyway
+        }
+        for (SocketChannel channel : connections) {
+            closeQuietly(channel);
+        }
+        if (acceptor == null) return;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                acceptor.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,293 @@
+package main.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+//closed-loop load client for KeyValueServer or any RESP server: one selector thread keeps
+//pipelineDepth requests in flight on each of many connections, sends the next request as
+//soon as a reply comes back and records the latency of every reply in the measured window
+//
+//the key space is preloaded with SET before the clients start, requests are GETs and
+//SETs of 32-byte values over uniformly picked keys
+//
+//run as its own process to stay within one process's file descriptor limit:
+//  java main.server.LoadGenerator <host> <port> <connections> <pipelineDepth> [getPercent] [measureMillis]
+public class LoadGenerator {
+    private static final int KEY_SPACE = 100_000;
+    private static final int VALUE_BYTES = 32;
+    private static final int WARMUP_MILLIS = 1000;
+    private static final int BUFFER_BYTES = 8192;
+
+    public static final class Result {
+        private final int connections;
+        private final int pipelineDepth;
+        private final long requests;
+        private final double seconds;
+        private final long[] latencies;
+
+        Result(int connections, int pipelineDepth, long requests, double seconds, long[] latencies) {
+            this.connections = connections;
+            this.pipelineDepth = pipelineDepth;
+            this.requests = requests;
+            this.seconds = seconds;
+            this.latencies = latencies;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public int getPipelineDepth() {
+            return pipelineDepth;
+        }
+
+        public double getThroughput() {
+            return requests / seconds;
+        }
+
+        //latency in microseconds at the given percentile, 0-100
+        public double getLatencyMicros(double percentile) {
+            if (latencies.length == 0) return 0;
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(percentile / 100 * latencies.length) - 1);
+            return latencies[Math.max(0, index)] / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%6d conns x%-3d %9.0f req/s  p50 %8.0f us  p99 %8.0f us  p99.9 %8.0f us",
+                connections, pipelineDepth, getThroughput(), getLatencyMicros(50), getLatencyMicros(99), getLatencyMicros(99.9));
+        }
+    }
+
+    private static final class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        //send times of the requests in flight, oldest at head
+        final long[] sent;
+        int head;
+        int inFlight;
+
+        Client(SocketChannel channel, int pipelineDepth) {
+            this.channel = channel;
+            this.sent = new long[pipelineDepth];
+        }
+    }
+
+    private final byte[][] getRequests = new byte[KEY_SPACE][];
+    private final byte[][] setRequests = new byte[KEY_SPACE][];
+    private final Random random = new Random(42);
+    private final int getPercent;
+
+    private LoadGenerator(int getPercent) {
+        this.getPercent = getPercent;
+        byte[] value = new byte[VALUE_BYTES];
+        Arrays.fill(value, (byte) 'v');
+        for (int i = 0; i < KEY_SPACE; i++) {
+            getRequests[i] = encode("GET".getBytes(StandardCharsets.ISO_8859_1), ("key:" + i).getBytes(StandardCharsets.ISO_8859_1));
+            setRequests[i] = encode("SET".getBytes(StandardCharsets.ISO_8859_1), ("key:" + i).getBytes(StandardCharsets.ISO_8859_1), value);
+        }
+    }
+
+    public static Result run(InetSocketAddress address, int connections, int pipelineDepth, int getPercent,
+                             int measureMillis) throws IOException {
+        return new LoadGenerator(getPercent).load(address, connections, pipelineDepth, measureMillis);
+    }
+
+    private Result load(InetSocketAddress address, int connections, int pipelineDepth, int measureMillis) throws IOException {
+        preload(address);
+
+        Selector selector = Selector.open();
+        Client[] clients = new Client[connections];
+        try {
+            //connect one at a time so the accept backlog never overflows, then go non-blocking
+            for (int i = 0; i < connections; i++) {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.configureBlocking(false);
+                clients[i] = new Client(channel, pipelineDepth);
+                channel.register(selector, SelectionKey.OP_READ, clients[i]);
+            }
+            for (Client client : clients) {
+                while (client.inFlight < pipelineDepth) {
+                    send(client, System.nanoTime());
+                }
+                flush(client, selector);
+            }
+
+            long start = System.nanoTime();
+            long measureFrom = start + WARMUP_MILLIS * 1_000_000L;
+            long measureTo = measureFrom + measureMillis * 1_000_000L;
+            long[] latencies = new long[1 << 16];
+            int recorded = 0;
+            long now = start;
+            while (now < measureTo) {
+                selector.select(10);
+                now = System.nanoTime();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Client client = (Client) key.attachment();
+                    if (key.isValid() && key.isWritable()) flush(client, selector);
+                    if (!key.isValid() || !key.isReadable()) continue;
+                    if (client.channel.read(client.in) < 0) throw new IOException("Server closed a connection");
+
+                    client.in.flip();
+                    int end;
+                    while ((end = replyEnd(client.in, client.in.position())) >= 0) {
+                        client.in.position(end);
+                        long latency = now - client.sent[client.head];
+                        client.head = (client.head + 1) % pipelineDepth;
+                        client.inFlight--;
+                        if (now >= measureFrom && now < measureTo) {
+                            if (recorded == latencies.length) latencies = Arrays.copyOf(latencies, recorded * 2);
+                            latencies[recorded++] = latency;
+                        }
+                        send(client, now);
+                    }
+                    client.in.compact();
+                    flush(client, selector);
+                }
+                selector.selectedKeys().clear();
+            }
+
+            long[] measured = Arrays.copyOf(latencies, recorded);
+            Arrays.sort(measured);
+            return new Result(connections, pipelineDepth, recorded, measureMillis / 1000.0, measured);
+        } finally {
+            for (Client client : clients) {
+                if (client != null) client.channel.close();
+            }
+            selector.close();
+        }
+    }
+
+    //fill the key space over one blocking connection, pipelined in chunks
+    private void preload(InetSocketAddress address) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            ByteBuffer in = ByteBuffer.allocate(1 << 16);
+            int chunk = 1000;
+            for (int from = 0; from < KEY_SPACE; from += chunk) {
+                int to = Math.min(KEY_SPACE, from + chunk);
+                int bytes = 0;
+                for (int i = from; i < to; i++) bytes += setRequests[i].length;
+                ByteBuffer out = ByteBuffer.allocate(bytes);
+                for (int i = from; i < to; i++) out.put(setRequests[i]);
+                out.flip();
+                while (out.hasRemaining()) channel.write(out);
+
+                int replies = 0;
+                while (replies < to - from) {
+                    if (channel.read(in) < 0) throw new IOException("Server closed the preload connection");
+                    in.flip();
+                    int end;
+                    while ((end = replyEnd(in, in.position())) >= 0) {
+                        in.position(end);
+                        replies++;
+                    }
+                    in.compact();
+                }
+            }
+        }
+    }
+
+    private void send(Client client, long now) {
+        int key = random.nextInt(KEY_SPACE);
+        byte[] request = random.nextInt(100) < getPercent ? getRequests[key] : setRequests[key];
+        if (client.out.remaining() < request.length) {
+            client.out = ByteBuffer.allocate(Math.max(client.out.capacity() * 2, client.out.position() + request.length))
+                .put(client.out.flip());
+        }
+        client.out.put(request);
+        client.sent[(client.head + client.inFlight) % client.sent.length] = now;
+        client.inFlight++;
+    }
+
+    //write what the socket takes now, wait for OP_WRITE for the rest
+    private static void flush(Client client, Selector selector) throws IOException {
+        client.out.flip();
+        client.channel.write(client.out);
+        boolean pending = client.out.hasRemaining();
+        client.out.compact();
+        SelectionKey key = client.channel.keyFor(selector);
+        key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    //end of the complete reply starting at position, -1 if the buffer ends inside it
+    static int replyEnd(ByteBuffer buffer, int position) {
+        if (position >= buffer.limit()) return -1;
+        byte type = buffer.get(position);
+        int lineEnd = lineEnd(buffer, position);
+        if (lineEnd < 0) return -1;
+        if (type == '+' || type == '-' || type == ':') return lineEnd;
+
+        long number = parseNumber(buffer, position + 1, lineEnd - 2);
+        if (type == '$') {
+            if (number < 0) return lineEnd;
+            long end = lineEnd + number + 2;
+            return end <= buffer.limit() ? (int) end : -1;
+        }
+        if (type == '*') {
+            int end = lineEnd;
+            for (long i = 0; i < number && end >= 0; i++) {
+                end = replyEnd(buffer, end);
+            }
+            return end;
+        }
+        throw new IllegalStateException("Unexpected reply type '" + (char) type + "'");
+    }
+
+    //position after the CRLF ending the line at position, -1 if it isn't complete
+    private static int lineEnd(ByteBuffer buffer, int position) {
+        for (int i = position; i + 1 < buffer.limit(); i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') return i + 2;
+        }
+        return -1;
+    }
+
+    private static long parseNumber(ByteBuffer buffer, int from, int to) {
+        boolean negative = buffer.get(from) == '-';
+        long value = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            value = value * 10 + (buffer.get(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    static byte[] encode(byte[]... arguments) {
+        int bytes = 0;
+        for (byte[] argument : arguments) bytes += argument.length;
+        byte[] request = new byte[bytes + 16 * arguments.length + 16];
+        int length = put(request, 0, "*" + arguments.length + "\r\n");
+        for (byte[] argument : arguments) {
+            length = put(request, length, "$" + argument.length + "\r\n");
+            System.arraycopy(argument, 0, request, length, argument.length);
+            length += argument.length;
+            length = put(request, length, "\r\n");
+        }
+        return Arrays.copyOf(request, length);
+    }
+
+    private static int put(byte[] target, int offset, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(bytes, 0, target, offset, bytes.length);
+        return offset + bytes.length;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: LoadGenerator <host> <port> <connections> <pipelineDepth> [getPercent] [measureMillis]");
+            System.exit(2);
+        }
+        InetSocketAddress address = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        int getPercent = args.length > 4 ? Integer.parseInt(args[4]) : 90;
+        int measureMillis = args.length > 5 ? Integer.parseInt(args[5]) : 3000;
+        System.out.println(run(address, Integer.parseInt(args[2]), Integer.parseInt(args[3]), getPercent, measureMillis));
+    }
+}
@@ -0,0 +1,122 @@
+package main.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//encodes keys and values for the binary file formats (snapshots, write-ahead log)
+public interface BinaryCodec<T> {
+    //number of bytes write() will produce for this value
+    int sizeOf(T value);
+
+    //write the value at the buffer's position
+    void write(ByteBuffer buffer, T value);
+
+    //read the value stored at an absolute offset
+    T read(ByteBuffer buffer, int offset);
+
+    //number of bytes the value stored at an absolute offset takes
+    int sizeAt(ByteBuffer buffer, int offset);
+
+    //compare a key against the value stored at an absolute offset, same sign as key.compareTo(stored)
+    @SuppressWarnings("unchecked")
+    default int compareAt(ByteBuffer buffer, int offset, T key) {
+        return ((Comparable<T>) key).compareTo(read(buffer, offset));
+    }
+
+    BinaryCodec<Integer> INTEGER = new BinaryCodec<Integer>() {
+        @Override
+        public int sizeOf(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, Integer value) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+
+        @Override
+        public int sizeAt(ByteBuffer buffer, int offset) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public int compareAt(ByteBuffer buffer, int offset, Integer key) {
+            return Integer.compare(key, buffer.getInt(offset));
+        }
+    };
+
+    BinaryCodec<Long> LONG = new BinaryCodec<Long>() {
+        @Override
+        public int sizeOf(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, Long value) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+
+        @Override
+        public int sizeAt(ByteBuffer buffer, int offset) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public int compareAt(ByteBuffer buffer, int offset, Long key) {
+            return Long.compare(key, buffer.getLong(offset));
+        }
+    };
+
+    //int length followed by UTF-8 bytes
+    BinaryCodec<String> STRING = new BinaryCodec<String>() {
+        @Override
+        public int sizeOf(String value) {
+            return Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        @Override
+        public String read(ByteBuffer buffer, int offset) {
+            byte[] bytes = new byte[buffer.getInt(offset)];
+            buffer.get(offset + Integer.BYTES, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int sizeAt(ByteBuffer buffer, int offset) {
+            return Integer.BYTES + buffer.getInt(offset);
+        }
+
+        @Override
+        public int compareAt(ByteBuffer buffer, int offset, String key) {
+            //ASCII bytes map 1:1 to chars, so compare in place and only decode on other input
+            int length = buffer.getInt(offset);
+            int start = offset + Integer.BYTES;
+            int limit = Math.min(length, key.length());
+            for (int i = 0; i < limit; i++) {
+                int b = buffer.get(start + i);
+                if (b < 0) return key.compareTo(read(buffer, offset));
+                int diff = key.charAt(i) - b;
+                if (diff != 0) return diff;
+            }
+            //every char so far was one byte, so a longer byte string is a longer string
+            return key.length() - length;
+        }
+    };
+}
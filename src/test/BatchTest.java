@@ -0,0 +1,163 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+public class BatchTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+    private static final int BATCH_SIZE = 10_000;
+    private static final int NUM_BATCHES = 200;
+
+    public static void main(String[] args) {
+        testAgainstHashMap();
+        searchBenchmark("Well Spread Keys", new HashTableWithAVL.DefaultHashFunction<Integer>());
+        //256 buckets of ~4000 entries each, kept as AVL trees so the merged traversal is what gets measured
+        searchBenchmark("Collided Keys (256 buckets)", key -> key & 255);
+        insertDeleteBenchmark();
+    }
+
+    private static void testAgainstHashMap() {
+        System.out.println("===== Batch Operations Test =====");
+
+        //a few buckets so batches share deep trees
+        HashFunction<Integer> fewBuckets = key -> key % 7;
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>(16, 0.75, fewBuckets);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        boolean matches = true;
+
+        for (int round = 0; round < 200 && matches; round++) {
+            int length = random.nextInt(2000);
+            Integer[] keys = new Integer[length];
+            Integer[] values = new Integer[length];
+            for (int i = 0; i < length; i++) {
+                //duplicates inside a batch on purpose
+                keys[i] = random.nextInt(5000);
+                values[i] = random.nextInt();
+            }
+
+            switch (round % 3) {
+                case 0:
+                    hashTable.insertAll(keys, values);
+                    for (int i = 0; i < length; i++) {
+                        expected.put(keys[i], values[i]);
+                    }
+                    break;
+                case 1:
+                    int removed = hashTable.deleteAll(keys);
+                    int expectedRemoved = 0;
+                    for (Integer key : keys) {
+                        if (expected.remove(key) != null) expectedRemoved++;
+                    }
+                    matches = removed == expectedRemoved;
+                    break;
+                default:
+                    Integer[] out = new Integer[length];
+                    hashTable.searchAll(keys, out);
+                    for (int i = 0; i < length && matches; i++) {
+                        matches = Objects.equals(out[i], expected.get(keys[i]));
+                    }
+                    break;
+            }
+            matches = matches && hashTable.getSize() == expected.size();
+            if (!matches) {
+                System.out.println("Mismatch in round " + round);
+            }
+        }
+
+        System.out.println("Matches HashMap: " + matches);
+        System.out.println("Entries: " + hashTable.getSize());
+        System.out.println("Table size: " + hashTable.getCapacity());
+    }
+
+    private static void searchBenchmark(String title, HashFunction<Integer> hashFunction) {
+        System.out.println("\n===== Batch Search Benchmark: " + title + " =====");
+
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>(16, 0.75, hashFunction);
+        hashTable.setWideBucketThreshold(0);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            hashTable.insert(i, i);
+        }
+
+        Random random = new Random(7);
+        Integer[][] batches = new Integer[NUM_BATCHES][BATCH_SIZE];
+        for (Integer[] batch : batches) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch[i] = random.nextInt(NUM_ENTRIES * 2);
+            }
+        }
+        Integer[] out = new Integer[BATCH_SIZE];
+
+        //alternate a few rounds and keep the best of each, the first rounds are mostly JIT warm-up
+        long loopTime = Long.MAX_VALUE;
+        long batchTime = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            loopTime = Math.min(loopTime, runLoop(hashTable, batches, out));
+            batchTime = Math.min(batchTime, runBatch(hashTable, batches, out));
+        }
+        double lookups = (double) NUM_BATCHES * BATCH_SIZE;
+
+        System.out.printf("search() loop: %.1f ns/key%n", loopTime / lookups);
+        System.out.printf("searchAll(): %.1f ns/key%n", batchTime / lookups);
+    }
+
+    private static long runLoop(HashTableWithAVL<Integer, Integer> hashTable, Integer[][] batches, Integer[] out) {
+        long startTime = System.nanoTime();
+        for (Integer[] batch : batches) {
+            for (int i = 0; i < batch.length; i++) {
+                out[i] = hashTable.search(batch[i]);
+            }
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private static long runBatch(HashTableWithAVL<Integer, Integer> hashTable, Integer[][] batches, Integer[] out) {
+        long startTime = System.nanoTime();
+        for (Integer[] batch : batches) {
+            hashTable.searchAll(batch, out);
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private static void insertDeleteBenchmark() {
+        System.out.println("\n===== Batch Insert/Delete Benchmark =====");
+
+        Random random = new Random(11);
+        Integer[] keys = new Integer[NUM_ENTRIES];
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            keys[i] = random.nextInt();
+        }
+
+        HashTableWithAVL<Integer, Integer> looped = new HashTableWithAVL<>();
+        long startTime = System.nanoTime();
+        for (Integer key : keys) {
+            looped.insert(key, key);
+        }
+        long loopInsertTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (Integer key : keys) {
+            looped.delete(key);
+        }
+        long loopDeleteTime = System.nanoTime() - startTime;
+
+        HashTableWithAVL<Integer, Integer> batched = new HashTableWithAVL<>();
+        startTime = System.nanoTime();
+        batched.insertAll(keys, keys);
+        long batchInsertTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        batched.deleteAll(keys);
+        long batchDeleteTime = System.nanoTime() - startTime;
+
+        System.out.printf("insert() loop: %.3f ms, insertAll(): %.3f ms%n",
+            loopInsertTime / 1_000_000.0, batchInsertTime / 1_000_000.0);
+        System.out.printf("delete() loop: %.3f ms, deleteAll(): %.3f ms%n",
+            loopDeleteTime / 1_000_000.0, batchDeleteTime / 1_000_000.0);
+        System.out.println("Both tables empty: " + (looped.getSize() == 0 && batched.getSize() == 0));
+    }
+}
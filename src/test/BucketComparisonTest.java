@@ -0,0 +1,148 @@
+package test;
+
+import main.datastructure.AVLTree;
+import main.datastructure.Bucket;
+import main.datastructure.HashTableWithAVL;
+import main.datastructure.RedBlackTree;
+import main.datastructure.SortedArrayBucket;
+import main.datastructure.Treap;
+import main.datastructure.WAVLTree;
+import main.hash.HashFunction;
+import main.utils.KeyValuePair;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+public class BucketComparisonTest {
+    private static final int NUM_KEYS = 500_000;
+    private static final int NUM_ADVERSARIAL_KEYS = 20_000;
+
+    private static final String[] NAMES = {"AVL", "Red-black", "WAVL", "Treap", "Sorted array"};
+
+    @SuppressWarnings("unchecked")
+    private static final Supplier<Bucket<Integer, String>>[] FACTORIES = new Supplier[] {
+        (Supplier<Bucket<Integer, String>>) AVLTree::new,
+        (Supplier<Bucket<Integer, String>>) RedBlackTree::new,
+        (Supplier<Bucket<Integer, String>>) WAVLTree::new,
+        (Supplier<Bucket<Integer, String>>) Treap::new,
+        (Supplier<Bucket<Integer, String>>) SortedArrayBucket::new
+    };
+
+    public static void main(String[] args) {
+        testAgainstTreeMap();
+
+        int[] random = new int[NUM_KEYS];
+        Random rng = new Random(42);
+        for (int i = 0; i < NUM_KEYS; i++) {
+            random[i] = rng.nextInt();
+        }
+        int[] sequential = new int[NUM_KEYS];
+        for (int i = 0; i < NUM_KEYS; i++) {
+            sequential[i] = i;
+        }
+        int[] adversarial = new int[NUM_ADVERSARIAL_KEYS];
+        for (int i = 0; i < NUM_ADVERSARIAL_KEYS; i++) {
+            adversarial[i] = i;
+        }
+
+        HashFunction<Integer> defaultHash = new HashTableWithAVL.DefaultHashFunction<Integer>();
+        //every key lands in the same bucket, so the bucket structure is all that matters
+        HashFunction<Integer> constantHash = key -> 42;
+
+        benchmark("Random Keys", random, defaultHash);
+        benchmark("Sequential Keys", sequential, defaultHash);
+        benchmark("Adversarial Keys (single bucket)", adversarial, constantHash);
+    }
+
+    private static void testAgainstTreeMap() {
+        System.out.println("===== Bucket Correctness Test =====");
+
+        for (int s = 0; s < FACTORIES.length; s++) {
+            Bucket<Integer, String> bucket = FACTORIES[s].get();
+            Map<Integer, String> expected = new TreeMap<>();
+            Random random = new Random(7);
+            boolean matches = true;
+
+            for (int i = 0; i < 200000 && matches; i++) {
+                int key = random.nextInt(3000);
+                Object actual;
+                Object wanted;
+                if (random.nextInt(3) == 0) {
+                    actual = bucket.delete(key);
+                    wanted = expected.remove(key);
+                } else {
+                    actual = bucket.insert(key, "Value-" + i);
+                    wanted = expected.put(key, "Value-" + i);
+                }
+                if (!Objects.equals(actual, wanted) || bucket.getSize() != expected.size()) {
+                    matches = false;
+                    System.out.println("Mismatch at operation " + i + " for key " + key);
+                }
+            }
+
+            //in-order walk must match the sorted map exactly
+            List<KeyValuePair<Integer, String>> pairs = bucket.getAllKeyValuePairs();
+            int index = 0;
+            for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+                KeyValuePair<Integer, String> pair = pairs.get(index++);
+                if (!entry.getKey().equals(pair.getKey()) || !entry.getValue().equals(pair.getValue())) {
+                    matches = false;
+                    break;
+                }
+            }
+
+            System.out.printf("%-13s matches TreeMap: %b, height %d for %d entries%n",
+                NAMES[s], matches, bucket.getHeight(), bucket.getSize());
+        }
+    }
+
+    private static void benchmark(String title, int[] keys, HashFunction<Integer> hashFunction) {
+        System.out.println("\n===== " + title + ": " + keys.length + " keys =====");
+        System.out.printf("%-13s %12s %12s %12s %8s %14s %14s%n",
+            "Bucket", "insert op/s", "search op/s", "delete op/s", "height", "ins rotations", "del rotations");
+
+        for (int s = 0; s < FACTORIES.length; s++) {
+            HashTableWithAVL<Integer, String> hashTable =
+                new HashTableWithAVL<>(16, 0.75, hashFunction, FACTORIES[s]);
+            //keep every bucket in the strategy under test
+            hashTable.setWideBucketThreshold(0);
+
+            long startTime = System.nanoTime();
+            for (int key : keys) {
+                hashTable.insert(key, "Value");
+            }
+            long insertTime = System.nanoTime() - startTime;
+            int height = hashTable.getMaxHeight();
+            int insertRotations = hashTable.getTotalRotationCount();
+
+            startTime = System.nanoTime();
+            int found = 0;
+            for (int key : keys) {
+                if (hashTable.search(key) != null) found++;
+            }
+            long searchTime = System.nanoTime() - startTime;
+
+            //delete every other key, which stays above the shrink threshold so no bucket is rebuilt
+            startTime = System.nanoTime();
+            for (int i = 0; i < keys.length; i += 2) {
+                hashTable.delete(keys[i]);
+            }
+            long deleteTime = System.nanoTime() - startTime;
+            int deleteRotations = hashTable.getTotalRotationCount() - insertRotations;
+
+            if (found != keys.length) {
+                System.out.println(NAMES[s] + " lost keys: found " + found);
+            }
+            System.out.printf("%-13s %12.0f %12.0f %12.0f %8d %14d %14d%n", NAMES[s],
+                opsPerSecond(keys.length, insertTime), opsPerSecond(keys.length, searchTime),
+                opsPerSecond((keys.length + 1) / 2, deleteTime), height, insertRotations, deleteRotations);
+        }
+    }
+
+    private static double opsPerSecond(int operations, long nanos) {
+        return operations * 1_000_000_000.0 / nanos;
+    }
+}
@@ -0,0 +1,142 @@
+package test;
+
+import main.datastructure.CompactStringTable;
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+public class CompactStringTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+    private static final int NUM_SEARCHES = 3_000_000;
+
+    //only the tenant picks the bucket, so every bucket holds thousands of keys with a long shared prefix
+    private static final HashFunction<String> TENANT_HASH = key -> key.substring(0, Math.min(13, key.length())).hashCode();
+
+    public static void main(String[] args) {
+        testMatchesHashMap("Spread Keys", new HashTableWithAVL.DefaultHashFunction<>());
+        testMatchesHashMap("Collided Keys", TENANT_HASH);
+        memoryBenchmark();
+        searchBenchmark("Spread Keys", new HashTableWithAVL.DefaultHashFunction<>());
+        searchBenchmark("Collided Keys", TENANT_HASH);
+    }
+
+    //tenant ids and paths sharing long prefixes, ~40 ASCII bytes
+    private static String key(int i) {
+        return String.format("tenant-%05d/users/%09d/profile", i % 64, i);
+    }
+
+    private static void testMatchesHashMap(String title, HashFunction<String> hashFunction) {
+        System.out.println("===== Compact String Table Test: " + title + " =====");
+
+        CompactStringTable<Integer> table = new CompactStringTable<>(16, 0.75, hashFunction);
+        Map<String, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+        boolean matches = true;
+
+        //heavy churn so deleted keys pile up in the arena and get compacted
+        for (int i = 0; i < 400000 && matches; i++) {
+            int id = random.nextInt(50000);
+            String key = id % 97 == 0 ? "tenant-\u00fc/" + id + "/\u043a\u043b\u044e\u0447" : key(id);
+            if (random.nextInt(3) == 0) {
+                matches = same(reference.remove(key), table.delete(key));
+            } else {
+                matches = same(reference.put(key, i), table.insert(key, i));
+            }
+        }
+        for (int id = 0; id < 50000 && matches; id++) {
+            String key = key(id);
+            matches = same(reference.get(key), table.search(key)) && reference.containsKey(key) == table.containsKey(key);
+            String unicodeKey = "tenant-\u00fc/" + id + "/\u043a\u043b\u044e\u0447";
+            matches = matches && same(reference.get(unicodeKey), table.search(unicodeKey));
+        }
+        matches = matches && table.search("tenant-") == null && table.search("") == null;
+
+        System.out.println("Matches HashMap: " + matches); // Should be true
+        System.out.println("Size: " + table.getSize() + " / " + reference.size());
+        System.out.println("Max height: " + table.getMaxHeight());
+        System.out.println("Arena bytes: " + table.getArenaBytes());
+    }
+
+    private static boolean same(Integer expected, Integer actual) {
+        return expected == null ? actual == null : expected.equals(actual);
+    }
+
+    private static void memoryBenchmark() {
+        System.out.println("\n===== Memory: " + NUM_ENTRIES + " String keys =====");
+        Integer[] values = new Integer[NUM_ENTRIES];
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            values[i] = i;
+        }
+
+        long before = usedMemory();
+        HashTableWithAVL<String, Integer> hashTable = new HashTableWithAVL<>();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            hashTable.insert(key(i), values[i]);
+        }
+        long avlBytes = usedMemory() - before;
+        System.out.printf("HashTableWithAVL: %.1f bytes/entry%n", avlBytes / (double) NUM_ENTRIES);
+        hashTable = null;
+
+        before = usedMemory();
+        CompactStringTable<Integer> compact = new CompactStringTable<>();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            compact.insert(key(i), values[i]);
+        }
+        long compactBytes = usedMemory() - before;
+        System.out.printf("CompactStringTable: %.1f bytes/entry (%.1f of them in the arena)%n",
+            compactBytes / (double) NUM_ENTRIES, compact.getArenaBytes() / (double) NUM_ENTRIES);
+        if (compact.getSize() != NUM_ENTRIES) System.out.println("Wrong size");
+    }
+
+    private static void searchBenchmark(String title, HashFunction<String> hashFunction) {
+        System.out.println("\n===== Search: " + title + " =====");
+
+        HashTableWithAVL<String, Integer> hashTable = new HashTableWithAVL<>(16, 0.75, hashFunction);
+        //compare AVL buckets with AVL buckets
+        hashTable.setWideBucketThreshold(0);
+        CompactStringTable<Integer> compact = new CompactStringTable<>(16, 0.75, hashFunction);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            String key = key(i);
+            hashTable.insert(key, i);
+            compact.insert(key, i);
+        }
+
+        //fresh String objects, so neither table benefits from identity or a warm key
+        Random random = new Random(7);
+        String[] probes = new String[NUM_SEARCHES];
+        for (int i = 0; i < NUM_SEARCHES; i++) {
+            probes[i] = key(random.nextInt(NUM_ENTRIES * 2));
+        }
+
+        System.out.println("Max height: " + hashTable.getMaxHeight() + " / " + compact.getMaxHeight());
+        System.out.printf("HashTableWithAVL: %.1f ns/op%n", time(probes, hashTable::search));
+        System.out.printf("CompactStringTable: %.1f ns/op%n", time(probes, compact::search));
+    }
+
+    //best of 3 rounds
+    private static double time(String[] probes, Function<String, Integer> search) {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < 3; round++) {
+            long startTime = System.nanoTime();
+            for (String probe : probes) {
+                Integer value = search.apply(probe);
+                if (value != null) checksum += value;
+            }
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        if (checksum == 42) System.out.println();
+        return best / (double) probes.length;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
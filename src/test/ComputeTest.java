@@ -0,0 +1,115 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+public class ComputeTest {
+    private static final int NUM_OPERATIONS = 1_000_000;
+
+    public static void main(String[] args) {
+        testAgainstHashMap();
+        countingBenchmark();
+    }
+
+    private static void testAgainstHashMap() {
+        System.out.println("===== Compute Operations Test =====");
+
+        //a few buckets so the trees get deep and removals hit two-child nodes
+        HashFunction<Integer> fewBuckets = key -> key % 3;
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>(16, 0.75, fewBuckets);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        boolean matches = true;
+
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(2000);
+            int value = random.nextInt(10);
+            Object actualResult;
+            Object expectedResult;
+
+            switch (random.nextInt(7)) {
+                case 0:
+                    actualResult = hashTable.insert(key, value);
+                    expectedResult = expected.put(key, value);
+                    break;
+                case 1:
+                    actualResult = hashTable.putIfAbsent(key, value);
+                    expectedResult = expected.putIfAbsent(key, value);
+                    break;
+                case 2:
+                    actualResult = hashTable.computeIfAbsent(key, k -> value == 0 ? null : value);
+                    expectedResult = expected.computeIfAbsent(key, k -> value == 0 ? null : value);
+                    break;
+                case 3:
+                    actualResult = hashTable.computeIfPresent(key, (k, v) -> v > 5 ? null : v + value);
+                    expectedResult = expected.computeIfPresent(key, (k, v) -> v > 5 ? null : v + value);
+                    break;
+                case 4:
+                    actualResult = hashTable.compute(key, (k, v) -> v == null ? Integer.valueOf(value) : (v > 7 ? null : v + 1));
+                    expectedResult = expected.compute(key, (k, v) -> v == null ? Integer.valueOf(value) : (v > 7 ? null : v + 1));
+                    break;
+                case 5:
+                    actualResult = hashTable.merge(key, value, (a, b) -> a + b > 12 ? null : a + b);
+                    expectedResult = expected.merge(key, value, (a, b) -> a + b > 12 ? null : a + b);
+                    break;
+                default:
+                    actualResult = hashTable.delete(key);
+                    expectedResult = expected.remove(key);
+                    break;
+            }
+
+            if (!Objects.equals(actualResult, expectedResult) || hashTable.getSize() != expected.size()) {
+                matches = false;
+                System.out.println("Mismatch at operation " + i + " for key " + key);
+                break;
+            }
+        }
+
+        for (int key = 0; key < 2000 && matches; key++) {
+            if (!Objects.equals(hashTable.search(key), expected.get(key))) {
+                matches = false;
+                System.out.println("Value mismatch for key: " + key);
+            }
+        }
+
+        System.out.println("Matches HashMap: " + matches);
+        System.out.println("Entries: " + hashTable.getSize());
+        System.out.println("Max AVL tree height: " + hashTable.getMaxHeight());
+        System.out.println("Total rotations: " + hashTable.getTotalRotationCount());
+    }
+
+    private static void countingBenchmark() {
+        System.out.println("\n===== Counting Benchmark =====");
+
+        Random random = new Random(42);
+        int[] keys = new int[NUM_OPERATIONS];
+        for (int i = 0; i < NUM_OPERATIONS; i++) {
+            keys[i] = random.nextInt(NUM_OPERATIONS / 10);
+        }
+
+        //search followed by insert
+        HashTableWithAVL<Integer, Integer> searchInsert = new HashTableWithAVL<>();
+        long startTime = System.nanoTime();
+        for (int key : keys) {
+            Integer count = searchInsert.search(key);
+            searchInsert.insert(key, count == null ? 1 : count + 1);
+        }
+        long searchInsertTime = System.nanoTime() - startTime;
+
+        //single descent merge
+        HashTableWithAVL<Integer, Integer> merged = new HashTableWithAVL<>();
+        startTime = System.nanoTime();
+        for (int key : keys) {
+            merged.merge(key, 1, Integer::sum);
+        }
+        long mergeTime = System.nanoTime() - startTime;
+
+        System.out.printf("search + insert: %.3f ms%n", searchInsertTime / 1_000_000.0);
+        System.out.printf("merge: %.3f ms%n", mergeTime / 1_000_000.0);
+        System.out.println("Same counts: " + (searchInsert.search(keys[0]).equals(merged.search(keys[0]))));
+    }
+}
@@ -0,0 +1,214 @@
+package test;
+
+import main.concurrent.CounterTable;
+import main.datastructure.HashTableWithAVL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CounterTableTest {
+    private static final long BENCHMARK_MILLIS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        testMatchesMap();
+        testConcurrentIncrements();
+        testRemoveDuringIncrements();
+        benchmark();
+    }
+
+    private static void testMatchesMap() {
+        System.out.println("===== Counter Table Test =====");
+
+        CounterTable<Integer> counters = new CounterTable<>();
+        Map<Integer, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        boolean matches = true;
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5000);
+            int op = random.nextInt(20);
+            if (op == 0) {
+                Long removed = expected.remove(key);
+                if (counters.remove(key) != (removed == null ? 0 : removed)) matches = false;
+            } else if (op == 1) {
+                Long reset = expected.put(key, 0L);
+                if (reset == null) expected.remove(key);
+                if (counters.sumThenReset(key) != (reset == null ? 0 : reset)) matches = false;
+            } else {
+                long delta = random.nextInt(10) - 3;
+                long value = expected.merge(key, delta, Long::sum);
+                if (counters.addAndGet(key, delta) != value) matches = false;
+            }
+        }
+        for (int key = 0; key < 5000; key++) {
+            if (counters.get(key) != expected.getOrDefault(key, 0L)) matches = false;
+            if (counters.containsKey(key) != expected.containsKey(key)) matches = false;
+        }
+        System.out.println("Matches HashMap: " + matches); // Should be true
+        System.out.println("Size matches: " + (counters.getSize() == expected.size())); // Should be true
+
+        CounterTable<String> words = new CounterTable<>();
+        words.increment("a");
+        words.increment("a");
+        words.addAndGet("b", 5);
+        System.out.println("a=" + words.get("a") + " b=" + words.get("b") + " c=" + words.get("c")); // Should be a=2 b=5 c=0
+        System.out.println("sumThenReset(b): " + words.sumThenReset("b") + ", then " + words.get("b")); // Should be 5, then 0
+        System.out.println("remove(a): " + words.remove("a") + ", contains " + words.containsKey("a")); // Should be 2, contains false
+
+        //counts wrap at 63 bits, no count a key can reach may read as removed
+        CounterTable<String> extremes = new CounterTable<>();
+        long floor = -(1L << 62);
+        System.out.println("Add the smallest count: " + (extremes.addAndGet("x", floor) == floor)); // Should be true
+        System.out.println("Add it again: " + (extremes.addAndGet("x", floor) == 0)); // Should be true
+        extremes.addAndGet("x", Long.MIN_VALUE);
+        System.out.println("Add Long.MIN_VALUE: " + extremes.get("x") + ", contains " + extremes.containsKey("x")); // Should be 0, contains true
+        extremes.addAndGet("y", Long.MAX_VALUE >> 1);
+        System.out.println("Past the largest count wraps: " + (extremes.addAndGet("y", 1) == floor)); // Should be true
+        System.out.println("remove(y): " + (extremes.remove("y") == floor) + ", then " + extremes.get("y")); // Should be true, then 0
+    }
+
+    private static void testConcurrentIncrements() throws Exception {
+        System.out.println("\n===== Concurrent Increments Test =====");
+
+        //a few hot keys every thread hits plus a spread of keys that keep forcing resizes
+        CounterTable<Integer> counters = new CounterTable<>();
+        int threads = 8;
+        int perThread = 200_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < perThread; i++) {
+                    counters.increment(i % 2 == 0 ? random.nextInt(4) : 4 + random.nextInt(50_000));
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long total = 0;
+        for (int key = 0; key < 50_004; key++) {
+            total += counters.get(key);
+        }
+        System.out.println("No increment lost: " + (total == (long) threads * perThread)); // Should be true
+        System.out.println("Contended keys on cells: " + counters.getContendedKeyCount());
+    }
+
+    private static void testRemoveDuringIncrements() throws Exception {
+        System.out.println("\n===== Remove During Increments Test =====");
+
+        //every increment ends up either in a value remove() returned or in what is left
+        CounterTable<Integer> counters = new CounterTable<>();
+        AtomicLong removedTotal = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread remover = new Thread(() -> {
+            Random random = new Random(99);
+            while (running.get()) {
+                removedTotal.addAndGet(random.nextBoolean() ? counters.remove(random.nextInt(16))
+                    : counters.sumThenReset(random.nextInt(16)));
+            }
+        });
+        remover.start();
+
+        int threads = 4;
+        int perThread = 300_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < perThread; i++) {
+                    counters.increment(random.nextInt(16));
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        running.set(false);
+        remover.join();
+
+        long left = 0;
+        for (int key = 0; key < 16; key++) {
+            left += counters.get(key);
+        }
+        System.out.println("Removed + left = incremented: " + (removedTotal.get() + left == (long) threads * perThread)); // Should be true
+    }
+
+    private static void benchmark() throws Exception {
+        System.out.println("\n===== Increment Throughput =====");
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %-8s %18s %18s %18s %18s%n", "keys", "threads", "CounterTable/s", "AVL merge/s",
+            "AVL search+ins/s", "CHM LongAdder/s");
+
+        for (int keys : new int[]{16, 100_000}) {
+            for (int threads : new int[]{1, 16}) {
+                CounterTable<Integer> counters = new CounterTable<>();
+                HashTableWithAVL<Integer, Long> merged = new HashTableWithAVL<>();
+                HashTableWithAVL<Integer, Long> searched = new HashTableWithAVL<>();
+                ConcurrentHashMap<Integer, LongAdder> adders = new ConcurrentHashMap<>();
+
+                double counterRate = run(threads, keys, counters::increment);
+                //HashTableWithAVL is single-writer, so shared use needs a lock around it
+                double mergeRate = run(threads, keys, key -> {
+                    synchronized (merged) {
+                        merged.merge(key, 1L, Long::sum);
+                    }
+                });
+                double searchRate = run(threads, keys, key -> {
+                    synchronized (searched) {
+                        Long count = searched.search(key);
+                        searched.insert(key, count == null ? 1L : count + 1);
+                    }
+                });
+                double adderRate = run(threads, keys, key -> adders.computeIfAbsent(key, k -> new LongAdder()).increment());
+                System.out.printf("%-8d %-8d %18.0f %18.0f %18.0f %18.0f%n", keys, threads, counterRate, mergeRate,
+                    searchRate, adderRate);
+            }
+        }
+    }
+
+    private interface Increment {
+        void apply(int key);
+    }
+
+    //increments per second over BENCHMARK_MILLIS with every thread picking random keys
+    private static double run(int threads, int keys, Increment increment) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong done = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                long count = 0;
+                while (running.get()) {
+                    increment.apply(random.nextInt(keys));
+                    count++;
+                }
+                done.addAndGet(count);
+            });
+            workers.add(worker);
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        Thread.sleep(BENCHMARK_MILLIS);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return done.get() * 1e9 / (System.nanoTime() - start);
+    }
+}
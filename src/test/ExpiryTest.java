@@ -0,0 +1,87 @@
+package test;
+
+import main.datastructure.ExpiringHashTable;
+import main.datastructure.HashTableWithAVL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class ExpiryTest {
+    private static final int NUM_ENTRIES = 10_000_000;
+
+    public static void main(String[] args) {
+        testWriteExpiry();
+        testAccessExpiry();
+        expiryBenchmark();
+    }
+
+    private static void testWriteExpiry() {
+        System.out.println("===== Write TTL Test =====");
+
+        long[] clock = {0};
+        ExpiringHashTable<Integer, String> table = new ExpiringHashTable<>(16, 0.75,
+            new HashTableWithAVL.DefaultHashFunction<Integer>(), 100, TimeUnit.MILLISECONDS, false, () -> clock[0]);
+
+        for (int i = 0; i < 100; i++) {
+            table.insert(i, "Value-" + i);
+        }
+        table.insert(1000, "long lived", 1, TimeUnit.HOURS);
+
+        clock[0] = TimeUnit.MILLISECONDS.toNanos(50);
+        System.out.println("Before ttl: " + table.search(5)); // Should be Value-5
+
+        clock[0] = TimeUnit.MILLISECONDS.toNanos(200);
+        table.cleanUp();
+        System.out.println("After ttl: " + table.search(5)); // Should be null
+        System.out.println("Long ttl entry: " + table.search(1000)); // Should be long lived
+        System.out.println("Entries left: " + table.getSize()); // Should be 1
+        System.out.println("Expired by wheel: " + table.getExpiredCount()); // Should be 100
+    }
+
+    private static void testAccessExpiry() {
+        System.out.println("\n===== Access TTL Test =====");
+
+        long[] clock = {0};
+        ExpiringHashTable<Integer, String> table = new ExpiringHashTable<>(16, 0.75,
+            new HashTableWithAVL.DefaultHashFunction<Integer>(), 100, TimeUnit.MILLISECONDS, true, () -> clock[0]);
+
+        table.insert(1, "touched");
+        table.insert(2, "idle");
+
+        //keep reading key 1 so its deadline keeps moving
+        for (int ms = 50; ms <= 300; ms += 50) {
+            clock[0] = TimeUnit.MILLISECONDS.toNanos(ms);
+            table.search(1);
+            table.cleanUp();
+        }
+
+        System.out.println("Touched entry: " + table.search(1)); // Should be touched
+        System.out.println("Idle entry: " + table.search(2)); // Should be null
+    }
+
+    private static void expiryBenchmark() {
+        System.out.println("\n===== Expiry Benchmark (" + NUM_ENTRIES + " entries) =====");
+
+        //simulated clock advancing 1us per insert, 90% of entries live 100ms and 10% live 10 minutes
+        long[] clock = {0};
+        ExpiringHashTable<Integer, Integer> table = new ExpiringHashTable<>(16, 0.75,
+            new HashTableWithAVL.DefaultHashFunction<Integer>(), 100, TimeUnit.MILLISECONDS, false, () -> clock[0]);
+        Random random = new Random(42);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            clock[0] += 1_000;
+            if (random.nextInt(10) == 0) {
+                table.insert(i, i, 10, TimeUnit.MINUTES);
+            } else {
+                table.insert(i, i);
+            }
+        }
+        long endTime = System.nanoTime();
+
+        System.out.printf("Insert time: %.3f ms (%.1f ns/op)%n",
+            (endTime - startTime) / 1_000_000.0, (double) (endTime - startTime) / NUM_ENTRIES);
+        System.out.println("Live entries: " + table.getSize());
+        System.out.println("Expired entries: " + table.getExpiredCount());
+        System.out.println("Table size: " + table.getCapacity());
+    }
+}
@@ -0,0 +1,102 @@
+package test;
+
+import main.datastructure.FrozenTable;
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import java.util.Random;
+
+public class FrozenTableTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+    private static final int NUM_SEARCHES = 5_000_000;
+
+    public static void main(String[] args) {
+        testFrozenMatchesLive("Random Keys", new HashTableWithAVL.DefaultHashFunction<Integer>());
+        //64 distinct hashes, every frozen bucket is a long Eytzinger run
+        testFrozenMatchesLive("Collided Keys", key -> key % 64);
+        memoryAndThroughputBenchmark();
+    }
+
+    private static void testFrozenMatchesLive(String title, HashFunction<Integer> hashFunction) {
+        System.out.println("===== Frozen Table Test: " + title + " =====");
+
+        HashTableWithAVL<Integer, String> hashTable = new HashTableWithAVL<>(16, 0.75, hashFunction);
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(200000);
+            hashTable.insert(key, "Value-" + key);
+        }
+        FrozenTable<Integer, String> frozen = hashTable.freeze();
+
+        boolean matches = frozen.getSize() == hashTable.getSize();
+        for (int key = -10; key < 200010 && matches; key++) {
+            String expected = hashTable.search(key);
+            String actual = frozen.search(key);
+            if (expected == null ? actual != null : !expected.equals(actual)) {
+                matches = false;
+                System.out.println("Mismatch for key: " + key);
+            }
+        }
+
+        System.out.println("Matches live table: " + matches);
+        System.out.println("Entries: " + frozen.getSize());
+        System.out.println("Frozen buckets: " + frozen.getBucketCount());
+        System.out.println("Longest frozen bucket: " + frozen.getLongestBucket());
+    }
+
+    private static void memoryAndThroughputBenchmark() {
+        System.out.println("\n===== Frozen vs Live Table: " + NUM_ENTRIES + " entries =====");
+
+        long before = usedMemory();
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            hashTable.insert(i, i);
+        }
+        long liveBytes = usedMemory() - before;
+
+        before = usedMemory();
+        FrozenTable<Integer, Integer> frozen = hashTable.freeze();
+        long frozenBytes = usedMemory() - before;
+
+        //keys and values are the same boxed Integers in both, so the difference is structure
+        System.out.printf("Live table memory: %.2f MB%n", liveBytes / (1024.0 * 1024.0));
+        System.out.printf("Frozen table memory: %.2f MB (shares key and value objects)%n", frozenBytes / (1024.0 * 1024.0));
+
+        Random random = new Random(7);
+        Integer[] probes = new Integer[NUM_SEARCHES];
+        for (int i = 0; i < NUM_SEARCHES; i++) {
+            //half hits, half misses
+            probes[i] = random.nextInt(NUM_ENTRIES * 2);
+        }
+
+        long liveTime = Long.MAX_VALUE;
+        long frozenTime = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long checksum = 0;
+            long startTime = System.nanoTime();
+            for (Integer probe : probes) {
+                Integer value = hashTable.search(probe);
+                if (value != null) checksum += value;
+            }
+            liveTime = Math.min(liveTime, System.nanoTime() - startTime);
+
+            startTime = System.nanoTime();
+            for (Integer probe : probes) {
+                Integer value = frozen.search(probe);
+                if (value != null) checksum -= value;
+            }
+            frozenTime = Math.min(frozenTime, System.nanoTime() - startTime);
+            if (checksum != 0) System.out.println("Checksums differ");
+        }
+
+        System.out.printf("Live search: %.1f ns/op%n", liveTime / (double) NUM_SEARCHES);
+        System.out.printf("Frozen search: %.1f ns/op%n", frozenTime / (double) NUM_SEARCHES);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,148 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class HotKeyCacheTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+    private static final int NUM_SEARCHES = 10_000_000;
+    private static final int CACHE_ENTRIES = 4096;
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    public static void main(String[] args) {
+        testCachedTableMatchesHashMap();
+        benchmark();
+    }
+
+    private static void testCachedTableMatchesHashMap() {
+        System.out.println("===== Hot-Key Cache Consistency Test =====");
+
+        //a small cache over few deep buckets so entries are evicted and invalidated all the time
+        HashFunction<Integer> fewBuckets = key -> key % 8;
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>(16, 0.75, fewBuckets);
+        hashTable.enableHotKeyCache(256);
+        Map<Integer, Integer> reference = new HashMap<>();
+
+        Random random = new Random(42);
+        boolean matches = true;
+        for (int i = 0; i < 500000 && matches; i++) {
+            //mostly searches and half of everything on a handful of hot keys, like the workload the cache is for
+            int key = random.nextBoolean() ? random.nextInt(32) : random.nextInt(5000);
+            int op = random.nextInt(128);
+            if (op == 0) {
+                matches = same(reference.put(key, i), hashTable.insert(key, i));
+            } else if (op == 1) {
+                matches = same(reference.remove(key), hashTable.delete(key));
+            } else if (op == 2) {
+                matches = same(reference.merge(key, 1, Integer::sum), hashTable.merge(key, 1, Integer::sum));
+            } else if (op == 3) {
+                matches = same(reference.computeIfPresent(key, (k, v) -> v % 2 == 0 ? null : v + 1),
+                    hashTable.computeIfPresent(key, (k, v) -> v % 2 == 0 ? null : v + 1));
+            } else if (op == 4) {
+                Integer[] batch = {key, key + 1, key + 2};
+                for (Integer k : batch) reference.remove(k);
+                hashTable.deleteAll(batch);
+            } else {
+                matches = same(reference.get(key), hashTable.search(key));
+            }
+        }
+        for (int key = 0; key < 5000 && matches; key++) {
+            matches = same(reference.get(key), hashTable.search(key));
+        }
+
+        System.out.println("Matches HashMap: " + matches); // Should be true
+        System.out.println("Size: " + hashTable.getSize() + " / " + reference.size());
+        System.out.printf("Hit rate: %.2f%n", hashTable.getHotKeyHitRate());
+    }
+
+    private static boolean same(Integer expected, Integer actual) {
+        return expected == null ? actual == null : expected.equals(actual);
+    }
+
+    private static void benchmark() {
+        System.out.println("\n===== Search: " + NUM_ENTRIES + " entries, " + NUM_SEARCHES + " searches, "
+            + CACHE_ENTRIES + "-entry cache =====");
+
+        Integer[] keys = new Integer[NUM_ENTRIES];
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            keys[i] = i;
+        }
+        Integer[] zipf = zipfSearches(keys, new Random(7));
+        Integer[] uniform = new Integer[NUM_SEARCHES];
+        Random random = new Random(8);
+        for (int i = 0; i < NUM_SEARCHES; i++) {
+            uniform[i] = keys[random.nextInt(NUM_ENTRIES)];
+        }
+
+        //spread keys have one or two entries per bucket, collided keys about 250 per bucket
+        HashFunction<Integer> weakHash = key -> key % 4096;
+        System.out.printf("%-30s %10s %10s %9s%n", "", "no cache", "cache", "hit rate");
+        run("Spread keys, Zipf " + ZIPF_EXPONENT, new HashTableWithAVL.DefaultHashFunction<>(), keys, zipf);
+        run("Spread keys, uniform", new HashTableWithAVL.DefaultHashFunction<>(), keys, uniform);
+        run("Collided keys, Zipf " + ZIPF_EXPONENT, weakHash, keys, zipf);
+        run("Collided keys, uniform", weakHash, keys, uniform);
+    }
+
+    //both tables are timed in turns, best of three passes each
+    private static void run(String name, HashFunction<Integer> hash, Integer[] keys, Integer[] searches) {
+        HashTableWithAVL<Integer, Integer> plain = new HashTableWithAVL<>(16, 0.75, hash);
+        HashTableWithAVL<Integer, Integer> cached = new HashTableWithAVL<>(16, 0.75, hash);
+        plain.setWideBucketThreshold(0);
+        cached.setWideBucketThreshold(0);
+        for (Integer key : keys) {
+            plain.insert(key, key);
+            cached.insert(key, key);
+        }
+        cached.enableHotKeyCache(CACHE_ENTRIES);
+
+        double plainNanos = Double.MAX_VALUE;
+        double cachedNanos = Double.MAX_VALUE;
+        for (int pass = 0; pass < 3; pass++) {
+            plainNanos = Math.min(plainNanos, time(plain, searches));
+            cachedNanos = Math.min(cachedNanos, time(cached, searches));
+        }
+        System.out.printf("%-30s %7.1f ns %7.1f ns %8.1f%%%n", name, plainNanos, cachedNanos, cached.getHotKeyHitRate() * 100);
+    }
+
+    private static double time(HashTableWithAVL<Integer, Integer> hashTable, Integer[] searches) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (Integer key : searches) {
+            sum += hashTable.search(key);
+        }
+        double nanos = (System.nanoTime() - start) / (double) searches.length;
+        if (sum == 42) System.out.println();
+        return nanos;
+    }
+
+    //searches whose ranks follow a Zipf distribution, rank r is drawn with probability
+    //proportional to 1 / r^s and ranks map to keys in random order, so hot keys are spread
+    //over the buckets
+    private static Integer[] zipfSearches(Integer[] keys, Random random) {
+        double[] cumulative = new double[keys.length];
+        double total = 0;
+        for (int rank = 0; rank < keys.length; rank++) {
+            total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = total;
+        }
+        Integer[] byRank = keys.clone();
+        for (int i = byRank.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer swap = byRank[i];
+            byRank[i] = byRank[j];
+            byRank[j] = swap;
+        }
+
+        Integer[] searches = new Integer[NUM_SEARCHES];
+        for (int i = 0; i < NUM_SEARCHES; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            if (rank < 0) rank = -rank - 1;
+            searches[i] = byRank[Math.min(rank, keys.length - 1)];
+        }
+        return searches;
+    }
+}
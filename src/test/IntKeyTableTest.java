@@ -0,0 +1,108 @@
+package test;
+
+import main.datastructure.IntKeyHashTable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+//run with --add-modules jdk.incubator.vector to probe with the Vector API, without it
+//both columns of the benchmark are the scalar loop
+public class IntKeyTableTest {
+    private static final int SMALL_TABLE = 1 << 14;
+    private static final int LARGE_TABLE = 1 << 20;
+    private static final int NUM_SEARCHES = 4_000_000;
+
+    public static void main(String[] args) {
+        System.out.println("Vector API: " + (new IntKeyHashTable<Integer>().isVectorProbing()
+            ? IntKeyHashTable.getVectorLanes() + " lanes" : "not available, scalar probing"));
+        testMatchesHashMap();
+        //a table that stays in cache shows the probe itself, the large one adds a miss per block
+        benchmark(SMALL_TABLE);
+        benchmark(LARGE_TABLE);
+    }
+
+    private static void testMatchesHashMap() {
+        System.out.println("===== Int-Keyed Table Random Operations Test =====");
+
+        //a low threshold and a high load factor so buckets keep turning into trees and back
+        boolean matches = true;
+        for (boolean vector : new boolean[]{true, false}) {
+            IntKeyHashTable<Integer> table = new IntKeyHashTable<>(16, 12.0, 8, vector);
+            Map<Integer, Integer> expected = new HashMap<>();
+            Random random = new Random(42);
+            for (int i = 0; i < 300000 && matches; i++) {
+                int key = random.nextInt(20000) - 10000;
+                int op = random.nextInt(3);
+                if (op == 0) {
+                    matches = same(expected.remove(key), table.delete(key));
+                } else if (op == 1) {
+                    matches = same(expected.put(key, i), table.insert(key, i));
+                } else {
+                    matches = same(expected.get(key), table.search(key))
+                        && expected.containsKey(key) == table.containsKey(key);
+                }
+            }
+            for (int key = -10000; key < 10000 && matches; key++) {
+                matches = same(expected.get(key), table.search(key));
+            }
+            matches = matches && expected.size() == table.getSize();
+            System.out.println((vector ? "Vector" : "Scalar") + " probing, size " + table.getSize()
+                + ", " + table.getTreeBucketCount() + " tree buckets of " + table.getCapacity());
+        }
+        System.out.println("Matches HashMap: " + matches); // Should be true
+    }
+
+    private static boolean same(Integer expected, Integer actual) {
+        return expected == null ? actual == null : expected.equals(actual);
+    }
+
+    private static void benchmark(int entries) {
+        System.out.println("\n===== Search: " + entries + " entries, " + NUM_SEARCHES + " searches by average bucket size =====");
+
+        Random random = new Random(7);
+        int[] keys = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = random.nextInt();
+        }
+        int[] searches = new int[NUM_SEARCHES];
+        for (int i = 0; i < NUM_SEARCHES; i++) {
+            searches[i] = keys[random.nextInt(entries)];
+        }
+
+        //the load factor is the average bucket size, the capacity is set so the table never resizes
+        System.out.printf("%-12s %10s %10s %10s%n", "bucket size", "vector", "scalar", "AVL tree");
+        for (int bucketSize : new int[]{1, 4, 8, 16, 32}) {
+            IntKeyHashTable<Integer> vector = build(keys, bucketSize, 64, true);
+            IntKeyHashTable<Integer> scalar = build(keys, bucketSize, 64, false);
+            IntKeyHashTable<Integer> tree = build(keys, bucketSize, 0, false);
+
+            //timed in turns, best of three passes each
+            double vectorNanos = Double.MAX_VALUE, scalarNanos = Double.MAX_VALUE, treeNanos = Double.MAX_VALUE;
+            for (int pass = 0; pass < 3; pass++) {
+                vectorNanos = Math.min(vectorNanos, time(vector, searches));
+                scalarNanos = Math.min(scalarNanos, time(scalar, searches));
+                treeNanos = Math.min(treeNanos, time(tree, searches));
+            }
+            System.out.printf("%-12d %7.1f ns %7.1f ns %7.1f ns%n", bucketSize, vectorNanos, scalarNanos, treeNanos);
+        }
+    }
+
+    private static IntKeyHashTable<Integer> build(int[] keys, int bucketSize, int blockThreshold, boolean vector) {
+        IntKeyHashTable<Integer> table = new IntKeyHashTable<>(keys.length / bucketSize, bucketSize, blockThreshold, vector);
+        for (int key : keys) {
+            table.insert(key, key);
+        }
+        return table;
+    }
+
+    private static double time(IntKeyHashTable<Integer> table, int[] searches) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int key : searches) {
+            sum += table.search(key);
+        }
+        double nanos = (System.nanoTime() - start) / (double) searches.length;
+        if (sum == 42) System.out.println();
+        return nanos;
+    }
+}
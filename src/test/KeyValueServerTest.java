@@ -0,0 +1,211 @@
+package test;
+
+import main.concurrent.ShardedHashTable;
+import main.server.KeyValueServer;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class KeyValueServerTest {
+    //the load generator runs as its own process, each side of a connection takes a file descriptor
+    private static final int[] CONNECTIONS = {1000, 2000, 5000, 10000};
+
+    public static void main(String[] args) throws Exception {
+        testProtocol();
+        testConcurrentClients();
+        testFailedWrite();
+        benchmark();
+    }
+
+    private static void testProtocol() throws Exception {
+        System.out.println("===== Key-Value Server Protocol Test =====");
+
+        try (ShardedHashTable<String, byte[]> table = new ShardedHashTable<>(4);
+             KeyValueServer server = new KeyValueServer(table)) {
+            int port = server.start(0);
+            System.out.println("Virtual threads: " + server.isVirtualThreads());
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                //everything in one write, so the server answers it from a single read
+                send(socket, command("SET", "a", "1"), command("GET", "a"), command("SET", "b", "22"),
+                    command("MGET", "a", "b", "c"), command("DEL", "a", "c"), command("GET", "a"),
+                    command("PING"), command("INCR", "a"), command("GET"));
+                String expected = "+OK\r\n$1\r\n1\r\n+OK\r\n*3\r\n$1\r\n1\r\n$2\r\n22\r\n$-1\r\n:1\r\n$-1\r\n+PONG\r\n"
+                    + "-ERR unknown command 'INCR'\r\n-ERR wrong number of arguments for 'GET'\r\n";
+                String replies = read(socket.getInputStream(), expected.length());
+                System.out.println("Pipelined replies match: " + expected.equals(replies)); // Should be true
+
+                //a command split over several writes
+                byte[] set = command("SET", "split", "value");
+                for (byte b : set) {
+                    socket.getOutputStream().write(b);
+                    socket.getOutputStream().flush();
+                }
+                send(socket, command("GET", "split"));
+                System.out.println("Split command: " + read(socket.getInputStream(), 16).replace("\r\n", " ")); // Should be +OK $5 value
+            }
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                socket.getOutputStream().write("GET a\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                System.out.println("Inline command: " + reader.readLine()); // Should be an ERR Protocol error
+                System.out.println("Closed after protocol error: " + (reader.readLine() == null)); // Should be true
+            }
+            System.out.println("Commands served: " + server.getCommandCount()); // Should be 11
+        }
+    }
+
+    private static void testConcurrentClients() throws Exception {
+        System.out.println("\n===== Key-Value Server Concurrent Clients Test =====");
+
+        try (ShardedHashTable<String, byte[]> table = new ShardedHashTable<>(4);
+             KeyValueServer server = new KeyValueServer(table)) {
+            int port = server.start(0);
+            AtomicBoolean matches = new AtomicBoolean(true);
+            List<Thread> clients = new ArrayList<>();
+            for (int c = 0; c < 16; c++) {
+                int client = c;
+                Thread thread = new Thread(() -> {
+                    try {
+                        if (!runClient(port, client)) matches.set(false);
+                    } catch (IOException e) {
+                        matches.set(false);
+                    }
+                });
+                clients.add(thread);
+                thread.start();
+            }
+            for (Thread thread : clients) {
+                thread.join();
+            }
+            System.out.println("Every client saw its own writes: " + matches.get()); // Should be true
+            System.out.printf("Commands per read: %.1f%n", server.getAverageCommandsPerRead());
+        }
+    }
+
+    private static void testFailedWrite() throws Exception {
+        System.out.println("\n===== Key-Value Server Failed Write Test =====");
+
+        //a read pipelined behind a write that fails waits for it and must still get its reply
+        try (ShardedHashTable<String, byte[]> table = new ShardedHashTable<>(2) {
+                 @Override
+                 public CompletableFuture<byte[]> insertAsync(String key, byte[] value) {
+                     return CompletableFuture.failedFuture(new IllegalStateException("disk full"));
+                 }
+             };
+             KeyValueServer server = new KeyValueServer(table)) {
+            int port = server.start(0);
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                send(socket, command("SET", "a", "1"), command("GET", "a"), command("PING"));
+                String expected = "-ERR write failed\r\n$-1\r\n+PONG\r\n";
+                System.out.println("Replies after the failed write: " + expected.equals(read(socket.getInputStream(), expected.length()))); // Should be true
+                send(socket, command("PING"));
+                System.out.println("Connection still open: " + read(socket.getInputStream(), 7).trim()); // Should be +PONG
+            }
+        }
+    }
+
+    //each client owns its keys and sends random commands ten at a time, checked against a HashMap
+    private static boolean runClient(int port, int client) throws IOException {
+        Map<String, String> expected = new HashMap<>();
+        Random random = new Random(client);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            InputStream in = socket.getInputStream();
+            for (int round = 0; round < 500; round++) {
+                byte[][] commands = new byte[10][];
+                StringBuilder replies = new StringBuilder();
+                for (int i = 0; i < commands.length; i++) {
+                    String key = "c" + client + ":" + random.nextInt(50);
+                    int op = random.nextInt(3);
+                    if (op == 0) {
+                        String value = "v" + random.nextInt(1000);
+                        commands[i] = command("SET", key, value);
+                        expected.put(key, value);
+                        replies.append("+OK\r\n");
+                    } else if (op == 1) {
+                        commands[i] = command("DEL", key);
+                        replies.append(expected.remove(key) != null ? ":1\r\n" : ":0\r\n");
+                    } else {
+                        commands[i] = command("GET", key);
+                        String value = expected.get(key);
+                        replies.append(value == null ? "$-1\r\n" : "$" + value.length() + "\r\n" + value + "\r\n");
+                    }
+                }
+                send(socket, commands);
+                if (!replies.toString().equals(read(in, replies.length()))) return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] command(String... arguments) {
+        StringBuilder request = new StringBuilder("*" + arguments.length + "\r\n");
+        for (String argument : arguments) {
+            request.append('$').append(argument.length()).append("\r\n").append(argument).append("\r\n");
+        }
+        return request.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void send(Socket socket, byte[]... commands) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] command : commands) {
+            bytes.write(command);
+        }
+        OutputStream out = socket.getOutputStream();
+        out.write(bytes.toByteArray());
+        out.flush();
+    }
+
+    private static String read(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void benchmark() throws Exception {
+        System.out.println("\n===== Key-Value Server: 90% GET / 10% SET over 100000 keys, loopback =====");
+
+        try (ShardedHashTable<String, byte[]> table = new ShardedHashTable<>(4);
+             KeyValueServer server = new KeyValueServer(table)) {
+            int port = server.start(0);
+            System.out.println("Connection threads: " + (server.isVirtualThreads() ? "virtual" : "platform"));
+            for (int connections : CONNECTIONS) {
+                runLoadGenerator(server, port, connections, 1);
+            }
+            //the same load with requests pipelined, so each read carries a batch
+            runLoadGenerator(server, port, 1000, 16);
+        }
+    }
+
+    private static void runLoadGenerator(KeyValueServer server, int port, int connections, int depth) throws Exception {
+        long commandsBefore = server.getCommandCount();
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process process = new ProcessBuilder(java, "-Xmx1g", "-cp", System.getProperty("java.class.path"),
+            "main.server.LoadGenerator", "127.0.0.1", String.valueOf(port), String.valueOf(connections), String.valueOf(depth))
+            .redirectErrorStream(true)
+            .start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                System.out.println(line);
+            }
+        }
+        process.waitFor();
+        //let the server threads of the closed connections finish before the next run
+        while (server.getConnectionCount() > 0) {
+            Thread.sleep(50);
+        }
+        System.out.printf("       %d commands served%n", server.getCommandCount() - commandsBefore);
+    }
+}
@@ -0,0 +1,183 @@
+package test;
+
+import main.datastructure.CountingBloomFilter;
+import main.datastructure.FrozenTable;
+import main.datastructure.HashTableWithAVL;
+import main.datastructure.XorFilter;
+import main.hash.HashFunction;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+public class MembershipFilterTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+    private static final int NUM_SEARCHES = 5_000_000;
+
+    public static void main(String[] args) {
+        testFilteredTableMatchesHashMap();
+        falsePositiveRates();
+        missHeavyBenchmark("Spread Keys", new HashTableWithAVL.DefaultHashFunction<>());
+        //a few thousand buckets, every miss walks a deep bucket without the filter
+        missHeavyBenchmark("Collided Keys", key -> key & 4095);
+    }
+
+    private static void testFilteredTableMatchesHashMap() {
+        System.out.println("===== Membership Filter Consistency Test =====");
+
+        HashFunction<Integer> fewBuckets = key -> key % 64;
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>(16, 0.75, fewBuckets);
+        hashTable.insert(-1, -1);
+        hashTable.enableMembershipFilter();
+        Map<Integer, Integer> reference = new HashMap<>();
+        reference.put(-1, -1);
+
+        //grows and shrinks the table several times, so the filter is rebuilt along the way
+        Random random = new Random(42);
+        boolean matches = true;
+        for (int i = 0; i < 300000 && matches; i++) {
+            int key = random.nextInt(20000);
+            int op = random.nextInt(3);
+            if (op == 0) {
+                hashTable.insert(key, i);
+                reference.put(key, i);
+            } else if (op == 1) {
+                hashTable.delete(key);
+                reference.remove(key);
+            } else {
+                hashTable.merge(key, 1, Integer::sum);
+                reference.merge(key, 1, Integer::sum);
+            }
+            int probe = random.nextInt(20000);
+            matches = same(reference.get(probe), hashTable.search(probe));
+        }
+        for (int key = -1; key < 20000 && matches; key++) {
+            matches = same(reference.get(key), hashTable.search(key));
+        }
+
+        System.out.println("Matches HashMap: " + matches); // Should be true
+        System.out.println("Size: " + hashTable.getSize() + " / " + reference.size());
+        System.out.println("Filter enabled: " + hashTable.isMembershipFilterEnabled());
+
+        Integer[] keys = new Integer[10000];
+        for (int i = 0; i < keys.length; i++) keys[i] = 50000 + i;
+        hashTable.insertAll(keys, keys);
+        System.out.println("Batch inserted keys found: " + (hashTable.search(59999) != null)); // Should be true
+        hashTable.deleteAll(keys);
+        System.out.println("Batch deleted keys gone: " + (hashTable.search(59999) == null)); // Should be true
+    }
+
+    private static boolean same(Integer expected, Integer actual) {
+        return expected == null ? actual == null : expected.equals(actual);
+    }
+
+    private static void falsePositiveRates() {
+        System.out.println("\n===== False Positive Rate: " + NUM_ENTRIES + " keys =====");
+
+        Random random = new Random(7);
+        int[] present = new int[NUM_ENTRIES];
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            present[i] = random.nextInt() & ~1; //even hashes are members, odd ones never are
+        }
+
+        CountingBloomFilter bloom = new CountingBloomFilter(NUM_ENTRIES);
+        for (int hash : present) bloom.add(hash);
+        //remove half again, the rest must all still be reported
+        for (int i = 0; i < NUM_ENTRIES / 2; i++) bloom.remove(present[i]);
+        XorFilter xor = new XorFilter(present);
+
+        int bloomMissing = 0;
+        int xorMissing = 0;
+        for (int i = NUM_ENTRIES / 2; i < NUM_ENTRIES; i++) {
+            if (!bloom.mightContain(present[i])) bloomMissing++;
+        }
+        for (int hash : present) {
+            if (!xor.mightContain(hash)) xorMissing++;
+        }
+
+        int bloomHits = 0;
+        int xorHits = 0;
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            int absent = random.nextInt() | 1;
+            if (bloom.mightContain(absent)) bloomHits++;
+            if (xor.mightContain(absent)) xorHits++;
+        }
+
+        System.out.println("Counting Bloom false negatives: " + bloomMissing); // Should be 0
+        System.out.println("Xor false negatives: " + xorMissing); // Should be 0
+        //the Bloom filter holds half its keys after the removals, so it is at half load here
+        System.out.printf("Counting Bloom: %.3f%% false positives at half load, %.1f bits/key at full load%n",
+            100.0 * bloomHits / NUM_ENTRIES, bloom.getMemoryBytes() * 8.0 / NUM_ENTRIES);
+        System.out.printf("Xor: %.3f%% false positives, %.1f bits/key%n",
+            100.0 * xorHits / NUM_ENTRIES, xor.getMemoryBytes() * 8.0 / NUM_ENTRIES);
+
+        CountingBloomFilter full = new CountingBloomFilter(NUM_ENTRIES);
+        for (int hash : present) full.add(hash);
+        int fullHits = 0;
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            if (full.mightContain(random.nextInt() | 1)) fullHits++;
+        }
+        System.out.printf("Counting Bloom: %.3f%% false positives at full load%n", 100.0 * fullHits / NUM_ENTRIES);
+    }
+
+    private static void missHeavyBenchmark(String title, HashFunction<Integer> hashFunction) {
+        System.out.println("\n===== Miss-Heavy Search (90% misses): " + title + " =====");
+
+        //random keys, so absent keys land in the same buckets as present ones
+        Random random = new Random(11);
+        Set<Integer> present = new HashSet<>();
+        while (present.size() < NUM_ENTRIES) {
+            present.add(random.nextInt());
+        }
+        Integer[] presentKeys = present.toArray(new Integer[0]);
+
+        HashTableWithAVL<Integer, Integer> plain = new HashTableWithAVL<>(16, 0.75, hashFunction);
+        HashTableWithAVL<Integer, Integer> filtered = new HashTableWithAVL<>(16, 0.75, hashFunction);
+        filtered.enableMembershipFilter();
+        for (Integer key : presentKeys) {
+            plain.insert(key, key);
+            filtered.insert(key, key);
+        }
+        FrozenTable<Integer, Integer> frozen = plain.freeze();
+        FrozenTable<Integer, Integer> frozenFiltered = plain.freeze(true);
+
+        Integer[] probes = new Integer[NUM_SEARCHES];
+        for (int i = 0; i < NUM_SEARCHES; i++) {
+            if (random.nextInt(10) == 0) {
+                probes[i] = presentKeys[random.nextInt(NUM_ENTRIES)];
+            } else {
+                int key;
+                do {
+                    key = random.nextInt();
+                } while (present.contains(key));
+                probes[i] = key;
+            }
+        }
+
+        System.out.printf("Filter memory: %.1f bits/key (counting Bloom), %.1f bits/key (xor)%n",
+            filtered.getMembershipFilterBytes() * 8.0 / NUM_ENTRIES,
+            frozenFiltered.getMembershipFilterBytes() * 8.0 / NUM_ENTRIES);
+        System.out.printf("Live, no filter: %.1f ns/op%n", time(probes, plain::search));
+        System.out.printf("Live, counting Bloom: %.1f ns/op%n", time(probes, filtered::search));
+        System.out.printf("Frozen, no filter: %.1f ns/op%n", time(probes, frozen::search));
+        System.out.printf("Frozen, xor: %.1f ns/op%n", time(probes, frozenFiltered::search));
+    }
+
+    //best of 3 rounds
+    private static double time(Integer[] probes, Function<Integer, Integer> search) {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < 3; round++) {
+            long startTime = System.nanoTime();
+            for (Integer probe : probes) {
+                Integer value = search.apply(probe);
+                if (value != null) checksum += value;
+            }
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        if (checksum == 42) System.out.println();
+        return best / (double) probes.length;
+    }
+}
@@ -0,0 +1,236 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import main.utils.BinaryCodec;
+import main.utils.KeyValuePair;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class MerkleSyncTest {
+    private static final int NUM_ENTRIES = 10_000_000;
+    private static final double DIVERGENCE = 0.01;
+
+    public static void main(String[] args) {
+        testSyncMatchesSource();
+        testCollidingHashCodes();
+        benchmark();
+    }
+
+    private static void testSyncMatchesSource() {
+        System.out.println("===== Merkle Sync Consistency Test =====");
+
+        //few buckets so some of them turn wide, and both tables grow and shrink on the way
+        HashFunction<Integer> fewBuckets = key -> key % 8;
+        HashTableWithAVL<Integer, Integer> source = new HashTableWithAVL<>(16, 0.75, fewBuckets);
+        HashTableWithAVL<Integer, Integer> replica = new HashTableWithAVL<>(16, 0.75, fewBuckets);
+        source.setWideBucketThreshold(64);
+        replica.setWideBucketThreshold(64);
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(50000);
+            source.insert(key, i);
+            replica.insert(key, i);
+        }
+        source.enableMerkleDigests(BinaryCodec.INTEGER, BinaryCodec.INTEGER);
+        replica.enableMerkleDigests(BinaryCodec.INTEGER, BinaryCodec.INTEGER);
+        System.out.println("Equal roots after the same inserts: " + (source.getRootDigest() == replica.getRootDigest())); // Should be true
+
+        boolean matches = true;
+        for (int round = 0; round < 20 && matches; round++) {
+            //both take the same shared writes, then each goes its own way for a while
+            for (int i = 0; i < 5000; i++) {
+                int key = random.nextInt(50000);
+                int value = random.nextInt(100);
+                applyRandom(source, random.nextInt(5), key, value);
+                applyRandom(replica, random.nextInt(5), key, value);
+            }
+            if (source.getCapacity() != replica.getCapacity()) {
+                //replicas of different size can't be compared bucket by bucket, start them over
+                replica.trimToSize();
+                source.trimToSize();
+                if (source.getCapacity() != replica.getCapacity()) continue;
+            }
+
+            int differing = replica.diffBuckets(source).length;
+            int changed = replica.syncFrom(source);
+            matches = source.getRootDigest() == replica.getRootDigest()
+                && source.diffBuckets(replica).length == 0
+                && sameEntries(source, replica);
+            if (round % 5 == 0) {
+                System.out.println("Round " + round + ": " + differing + " of " + source.getCapacity()
+                    + " buckets differed, " + changed + " keys changed, size " + source.getSize());
+            }
+        }
+        System.out.println("Replica matches source after every sync: " + matches); // Should be true
+
+        //a changed value alone must show up in the digests
+        replica.insert(7, -1);
+        System.out.println("Differing buckets after one update: " + replica.diffBuckets(source).length); // Should be 1
+        replica.syncFrom(source);
+        System.out.println("Equal roots after syncing it back: " + (source.getRootDigest() == replica.getRootDigest())); // Should be true
+
+        try {
+            new HashTableWithAVL<Integer, Integer>().getRootDigest();
+            System.out.println("Root without digests: no exception");
+        } catch (IllegalStateException e) {
+            System.out.println("Root without digests: " + e.getMessage()); // Should be "Merkle digests are not enabled"
+        }
+    }
+
+    private static void testCollidingHashCodes() {
+        System.out.println("\n===== Merkle Digests With Colliding hashCodes =====");
+
+        //"Aa" and "BB" share a hashCode, digests from encoded bytes still tell them apart
+        HashTableWithAVL<String, String> source = new HashTableWithAVL<>();
+        HashTableWithAVL<String, String> replica = new HashTableWithAVL<>();
+        source.enableMerkleDigests(BinaryCodec.STRING, BinaryCodec.STRING);
+        replica.enableMerkleDigests(BinaryCodec.STRING, BinaryCodec.STRING);
+        source.insert("k", "Aa");
+        replica.insert("k", "BB");
+        System.out.println("Update between colliding values seen: " + (replica.diffBuckets(source).length == 1)); // Should be true
+
+        //two colliding keys in one bucket swapping their values
+        source.insert("Aa", "x");
+        source.insert("BB", "y");
+        replica.insert("Aa", "y");
+        replica.insert("BB", "x");
+        replica.insert("k", "Aa");
+        System.out.println("Swapped values seen: " + (replica.diffBuckets(source).length == 1)); // Should be true
+        replica.syncFrom(source);
+        System.out.println("Synced: " + replica.search("Aa") + replica.search("BB")); // Should be xy
+
+        //from hashCodes alone the digests can't see it, so syncFrom compares every bucket
+        HashTableWithAVL<String, String> hinted = new HashTableWithAVL<>();
+        HashTableWithAVL<String, String> hintedSource = new HashTableWithAVL<>();
+        hinted.enableMerkleDigests();
+        hintedSource.enableMerkleDigests();
+        hintedSource.insert("k", "Aa");
+        hinted.insert("k", "BB");
+        System.out.println("hashCode digests match anyway: " + (hinted.diffBuckets(hintedSource).length == 0)); // Should be true
+        System.out.println("Keys changed by sync: " + hinted.syncFrom(hintedSource) + ", value " + hinted.search("k")); // Should be 1, value Aa
+
+        try {
+            hinted.diffBuckets(source);
+            System.out.println("Mixed digests: no exception");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Mixed digests rejected: true"); // Should be true
+        }
+    }
+
+    private static void applyRandom(HashTableWithAVL<Integer, Integer> table, int op, int key, int value) {
+        if (op == 0) {
+            table.insert(key, value);
+        } else if (op == 1) {
+            table.delete(key);
+        } else if (op == 2) {
+            table.merge(key, value, Integer::sum);
+        } else if (op == 3) {
+            table.computeIfPresent(key, (k, v) -> v % 3 == 0 ? null : v + 1);
+        } else {
+            table.putIfAbsent(key, value);
+        }
+    }
+
+    private static boolean sameEntries(HashTableWithAVL<Integer, Integer> a, HashTableWithAVL<Integer, Integer> b) {
+        if (a.getSize() != b.getSize()) return false;
+        for (int i = 0; i < a.getCapacity(); i++) {
+            for (KeyValuePair<Integer, Integer> pair : a.getBucketEntries(i)) {
+                if (!pair.getValue().equals(b.search(pair.getKey()))) return false;
+            }
+        }
+        return true;
+    }
+
+    private static void benchmark() {
+        System.out.println("\n===== Anti-Entropy Sync: " + NUM_ENTRIES + " entries, "
+            + (int) (DIVERGENCE * 100) + "% divergence =====");
+
+        //keys and values are boxed once and shared by both tables to fit two replicas in memory
+        Integer[] keys = new Integer[NUM_ENTRIES];
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            keys[i] = i * 2;
+        }
+
+        long start = System.nanoTime();
+        HashTableWithAVL<Integer, Integer> source = new HashTableWithAVL<>();
+        source.enableMerkleDigests(BinaryCodec.INTEGER, BinaryCodec.INTEGER);
+        for (Integer key : keys) source.insert(key, key);
+        long digestedInsert = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        HashTableWithAVL<Integer, Integer> replica = new HashTableWithAVL<>();
+        for (Integer key : keys) replica.insert(key, key);
+        long plainInsert = System.nanoTime() - start;
+        replica.enableMerkleDigests(BinaryCodec.INTEGER, BinaryCodec.INTEGER);
+        System.out.printf("Insert: %.0f ns with digests, %.0f ns without%n",
+            digestedInsert / (double) NUM_ENTRIES, plainInsert / (double) NUM_ENTRIES);
+
+        for (int round = 0; round < 2; round++) {
+            int diverged = diverge(replica, keys, new Random(round));
+            start = System.nanoTime();
+            int[] differing = replica.diffBuckets(source);
+            long diffTime = System.nanoTime() - start;
+            long shipped = 0;
+            for (int index : differing) {
+                shipped += source.getBucketEntries(index).size();
+            }
+            start = System.nanoTime();
+            int changed = replica.syncFrom(source);
+            long syncTime = System.nanoTime() - start;
+            System.out.printf("Merkle sync:    %4d ms (diff %3d ms), %d buckets differ, %d entries shipped, %d keys changed of %d diverged, roots equal %b%n",
+                syncTime / 1_000_000, diffTime / 1_000_000, differing.length, shipped, changed, diverged,
+                source.getRootDigest() == replica.getRootDigest());
+
+            diverge(replica, keys, new Random(round));
+            start = System.nanoTime();
+            int reconciled = fullIterationSync(source, replica);
+            long fullTime = System.nanoTime() - start;
+            System.out.printf("Full iteration: %4d ms, %d entries shipped, %d keys changed, roots equal %b%n",
+                fullTime / 1_000_000, source.getSize(), reconciled, source.getRootDigest() == replica.getRootDigest());
+        }
+    }
+
+    //change a fraction of the replica: a third of it updated, deleted and newly inserted
+    private static int diverge(HashTableWithAVL<Integer, Integer> replica, Integer[] keys, Random random) {
+        int changes = (int) (NUM_ENTRIES * DIVERGENCE);
+        Map<Integer, Integer> touched = new HashMap<>();
+        for (int i = 0; i < changes; i++) {
+            Integer key = keys[random.nextInt(NUM_ENTRIES)];
+            if (touched.put(key, i) != null) continue;
+            int op = i % 3;
+            if (op == 0) {
+                replica.insert(key, -key);
+            } else if (op == 1) {
+                replica.delete(key);
+            } else {
+                replica.insert(key + 1, key);
+            }
+        }
+        return touched.size();
+    }
+
+    //reconcile the way replicas did before: every source entry is looked up in the replica
+    //and every replica entry in the source
+    private static int fullIterationSync(HashTableWithAVL<Integer, Integer> source, HashTableWithAVL<Integer, Integer> replica) {
+        int changed = 0;
+        for (int i = 0; i < source.getCapacity(); i++) {
+            for (KeyValuePair<Integer, Integer> pair : source.getBucketEntries(i)) {
+                if (!pair.getValue().equals(replica.search(pair.getKey()))) {
+                    replica.insert(pair.getKey(), pair.getValue());
+                    changed++;
+                }
+            }
+        }
+        for (int i = 0; i < replica.getCapacity(); i++) {
+            for (KeyValuePair<Integer, Integer> pair : replica.getBucketEntries(i)) {
+                if (source.search(pair.getKey()) == null) {
+                    replica.delete(pair.getKey());
+                    changed++;
+                }
+            }
+        }
+        return changed;
+    }
+}
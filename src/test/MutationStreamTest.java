@@ -0,0 +1,233 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.datastructure.Mutation;
+import main.hash.HashFunction;
+import main.utils.KeyValuePair;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+public class MutationStreamTest {
+    private static final int NUM_WRITES = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        testReplicaFollowsTable();
+        testSubscribeDuringRemap();
+        benchmark();
+    }
+
+    //applies every mutation to a map, asking for a few at a time
+    private static class ReplicaSubscriber implements Flow.Subscriber<Mutation<Integer, Integer>> {
+        final Map<Integer, Integer> replica = new HashMap<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        final int chunk;
+        Flow.Subscription subscription;
+        long expectedSequence = -1;
+        boolean gapFree = true;
+        boolean oldValuesMatch = true;
+        int received;
+
+        ReplicaSubscriber(int chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(chunk);
+        }
+
+        @Override
+        public void onNext(Mutation<Integer, Integer> mutation) {
+            if (expectedSequence >= 0 && mutation.getSequence() != expectedSequence) gapFree = false;
+            expectedSequence = mutation.getSequence() + 1;
+            Integer previous = mutation.getType() == Mutation.Type.DELETE
+                ? replica.remove(mutation.getKey())
+                : replica.put(mutation.getKey(), mutation.getValue());
+            if (!same(previous, mutation.getOldValue())) oldValuesMatch = false;
+            if (++received % chunk == 0) subscription.request(chunk);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    private static void testReplicaFollowsTable() throws Exception {
+        System.out.println("===== Mutation Stream Replica Test =====");
+
+        //a small ring and small requests so the writer keeps waiting on the subscribers
+        HashFunction<Integer> fewBuckets = key -> key % 8;
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>(16, 0.75, fewBuckets);
+        hashTable.setWideBucketThreshold(64);
+        hashTable.enableMutationStream(256);
+        ReplicaSubscriber slow = new ReplicaSubscriber(7);
+        ReplicaSubscriber fast = new ReplicaSubscriber(1000);
+        hashTable.getMutationStream().subscribe(slow);
+        hashTable.getMutationStream().subscribe(fast);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 300000; i++) {
+            int key = random.nextInt(5000);
+            switch (random.nextInt(7)) {
+                case 0:
+                    hashTable.insert(key, i);
+                    break;
+                case 1:
+                    hashTable.delete(key);
+                    break;
+                case 2:
+                    hashTable.merge(key, 1, Integer::sum);
+                    break;
+                case 3:
+                    hashTable.computeIfPresent(key, (k, v) -> v % 2 == 0 ? null : v + 1);
+                    break;
+                case 4:
+                    hashTable.putIfAbsent(key, i);
+                    break;
+                case 5:
+                    hashTable.insertAll(new Integer[]{key, key + 1, key + 2}, new Integer[]{i, i, i});
+                    break;
+                default:
+                    hashTable.deleteAll(new Integer[]{key, key + 3});
+            }
+        }
+        long published = hashTable.getMutationSequence();
+        hashTable.closeMutationStream();
+        boolean completed = slow.completed.await(30, TimeUnit.SECONDS) && fast.completed.await(30, TimeUnit.SECONDS);
+
+        System.out.println("Both subscribers completed: " + completed); // Should be true
+        System.out.println("Every mutation delivered: " + (slow.received == published && fast.received == published)); // Should be true
+        System.out.println("Sequences gap-free: " + (slow.gapFree && fast.gapFree)); // Should be true
+        System.out.println("Old values match the replica: " + (slow.oldValuesMatch && fast.oldValuesMatch)); // Should be true
+        System.out.println("Replicas match table: " + (sameEntries(hashTable, slow.replica) && sameEntries(hashTable, fast.replica))); // Should be true
+        System.out.println("Mutations: " + published + ", size " + hashTable.getSize() + ", capacity " + hashTable.getCapacity());
+
+        try {
+            hashTable.getMutationStream();
+            System.out.println("Stream after close: no exception");
+        } catch (IllegalStateException e) {
+            System.out.println("Stream after close: " + e.getMessage()); // Should be "Mutation stream is not enabled"
+        }
+    }
+
+    private static void testSubscribeDuringRemap() throws Exception {
+        System.out.println("\n===== Subscribe During Remap Test =====");
+
+        //a subscriber that joins while a merge runs must still get that merge
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>();
+        hashTable.enableMutationStream();
+        hashTable.insert(1, 1);
+        ReplicaSubscriber late = new ReplicaSubscriber(16);
+        hashTable.merge(1, 1, (old, value) -> {
+            hashTable.getMutationStream().subscribe(late);
+            return old + value;
+        });
+        hashTable.closeMutationStream();
+        boolean completed = late.completed.await(30, TimeUnit.SECONDS);
+        System.out.println("Merge delivered: " + (completed && late.received == 1 && same(2, late.replica.get(1)))); // Should be true
+    }
+
+    private static boolean same(Integer expected, Integer actual) {
+        return expected == null ? actual == null : expected.equals(actual);
+    }
+
+    private static boolean sameEntries(HashTableWithAVL<Integer, Integer> table, Map<Integer, Integer> replica) {
+        if (table.getSize() != replica.size()) return false;
+        for (int i = 0; i < table.getCapacity(); i++) {
+            for (KeyValuePair<Integer, Integer> pair : table.getBucketEntries(i)) {
+                if (!pair.getValue().equals(replica.get(pair.getKey()))) return false;
+            }
+        }
+        return true;
+    }
+
+    //takes everything and only folds the keys, so the numbers show the cost of delivery
+    private static class CountingSubscriber implements Flow.Subscriber<Mutation<Integer, Integer>> {
+        final CountDownLatch completed = new CountDownLatch(1);
+        long count;
+        long checksum;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Mutation<Integer, Integer> mutation) {
+            count++;
+            checksum += mutation.getKey();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    private static void benchmark() throws Exception {
+        System.out.println("\n===== Write Throughput: " + NUM_WRITES + " inserts and deletes =====");
+
+        Integer[] keys = new Integer[NUM_WRITES];
+        Random random = new Random(7);
+        for (int i = 0; i < NUM_WRITES; i++) {
+            keys[i] = random.nextInt(NUM_WRITES / 2);
+        }
+
+        //best of three rounds each
+        System.out.printf("%-26s %12s %10s%n", "", "writes/s", "waits");
+        run("Stream disabled", keys, -1);
+        run("0 subscribers", keys, 0);
+        run("1 subscriber", keys, 1);
+        run("4 subscribers", keys, 4);
+    }
+
+    private static void run(String name, Integer[] keys, int subscribers) throws Exception {
+        double best = 0;
+        long waits = 0;
+        for (int round = 0; round < 3; round++) {
+            HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>();
+            CountingSubscriber[] counting = new CountingSubscriber[Math.max(0, subscribers)];
+            if (subscribers >= 0) hashTable.enableMutationStream();
+            for (int i = 0; i < counting.length; i++) {
+                counting[i] = new CountingSubscriber();
+                hashTable.getMutationStream().subscribe(counting[i]);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < keys.length; i++) {
+                if (i % 4 == 3) {
+                    hashTable.delete(keys[i]);
+                } else {
+                    hashTable.insert(keys[i], i);
+                }
+            }
+            //the writes are done once every subscriber has taken them
+            if (subscribers >= 0) {
+                waits = hashTable.getMutationStreamWaits();
+                hashTable.closeMutationStream();
+            }
+            for (CountingSubscriber subscriber : counting) {
+                subscriber.completed.await();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            best = Math.max(best, keys.length / seconds);
+        }
+        System.out.printf("%-26s %12.0f %10d%n", name, best, waits);
+    }
+}
@@ -0,0 +1,113 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class NodePoolTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+    private static final int NUM_OPS = 10_000_000;
+
+    public static void main(String[] args) {
+        testPooledTableMatchesHashMap();
+        steadyChurnAllocation();
+    }
+
+    private static void testPooledTableMatchesHashMap() {
+        System.out.println("===== Node Pool Consistency Test =====");
+
+        //few buckets so some of them turn wide and back while nodes are recycled
+        HashFunction<Integer> fewBuckets = key -> key % 8;
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>(16, 0.75, fewBuckets);
+        hashTable.enableNodePooling(10000);
+        Map<Integer, Integer> reference = new HashMap<>();
+
+        //grow to 20000 entries and back down to almost nothing, twice
+        Random random = new Random(42);
+        boolean matches = true;
+        for (int phase = 0; phase < 4 && matches; phase++) {
+            boolean growing = phase % 2 == 0;
+            for (int i = 0; i < 200000 && matches; i++) {
+                int key = random.nextInt(20000);
+                if (growing ? random.nextInt(4) != 0 : random.nextInt(4) == 0) {
+                    matches = same(reference.put(key, i), hashTable.insert(key, i));
+                } else {
+                    matches = same(reference.remove(key), hashTable.delete(key));
+                }
+            }
+            for (int key = 0; key < 20000 && matches; key++) {
+                matches = same(reference.get(key), hashTable.search(key));
+            }
+            System.out.println("Phase " + phase + ": size " + hashTable.getSize() + ", capacity "
+                + hashTable.getCapacity() + ", wide buckets " + hashTable.getWideBucketCount());
+        }
+
+        System.out.println("Matches HashMap: " + matches); // Should be true
+        System.out.println("Size: " + hashTable.getSize() + " / " + reference.size());
+        System.out.println("Pooled nodes: " + hashTable.getPooledNodeCount()); // Should be at most 10000
+        System.out.printf("Node reuse ratio: %.2f%n", hashTable.getNodeReuseRatio());
+    }
+
+    private static boolean same(Integer expected, Integer actual) {
+        return expected == null ? actual == null : expected.equals(actual);
+    }
+
+    private static void steadyChurnAllocation() {
+        System.out.println("\n===== Steady Churn: " + NUM_ENTRIES + " entries, " + NUM_OPS + " delete+insert pairs =====");
+
+        //keys are boxed up front so the table's own allocation is all that is measured
+        Integer[] keys = new Integer[NUM_ENTRIES * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+
+        for (boolean pooled : new boolean[] {false, true}) {
+            HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>();
+            if (pooled) hashTable.enableNodePooling(4096);
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                hashTable.insert(keys[i], keys[i]);
+            }
+
+            //every round deletes the oldest key and inserts a new one, so the size never moves
+            churn(hashTable, keys, NUM_OPS / 10);
+            long allocatedBefore = allocatedBytes();
+            long gcCountBefore = gcCount();
+            long startTime = System.nanoTime();
+            churn(hashTable, keys, NUM_OPS);
+            long elapsed = System.nanoTime() - startTime;
+            long allocated = allocatedBytes() - allocatedBefore;
+
+            System.out.printf("%-9s %6.2f bytes/op, %4d GCs, %5.1f ns/op, reuse %.3f%n",
+                pooled ? "Pooled:" : "Unpooled:", allocated / (double) NUM_OPS,
+                gcCount() - gcCountBefore, elapsed / (double) NUM_OPS, hashTable.getNodeReuseRatio());
+        }
+    }
+
+    private static int next;
+
+    private static void churn(HashTableWithAVL<Integer, Integer> hashTable, Integer[] keys, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            hashTable.delete(keys[next % keys.length]);
+            Integer key = keys[(next + NUM_ENTRIES) % keys.length];
+            hashTable.insert(key, key);
+            next++;
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+}
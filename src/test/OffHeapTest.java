@@ -0,0 +1,113 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.datastructure.OffHeapLongTable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class OffHeapTest {
+    private static final int NUM_ENTRIES = 10_000_000;
+
+    public static void main(String[] args) {
+        testAgainstHashMap();
+        gcBenchmark();
+    }
+
+    private static void testAgainstHashMap() {
+        System.out.println("===== Off-Heap Random Operations Test =====");
+
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        boolean matches = true;
+
+        try (OffHeapLongTable table = new OffHeapLongTable()) {
+            for (int i = 0; i < 200000; i++) {
+                long key = random.nextInt(50000);
+                if (random.nextInt(3) == 0) {
+                    boolean removed = table.delete(key);
+                    if (removed != (expected.remove(key) != null)) matches = false;
+                } else {
+                    table.insert(key, i);
+                    expected.put(key, (long) i);
+                }
+            }
+
+            for (long key = 0; key < 50000; key++) {
+                Long value = expected.get(key);
+                if (value == null ? table.containsKey(key) : table.search(key, -1) != value) {
+                    matches = false;
+                }
+            }
+
+            System.out.println("Matches HashMap: " + matches);
+            System.out.println("Entries: " + table.getSize() + " (expected " + expected.size() + ")");
+            System.out.println("Max AVL tree height: " + table.getMaxHeight());
+            System.out.println("Total rotations: " + table.getTotalRotationCount());
+        }
+    }
+
+    private static void gcBenchmark() {
+        System.out.println("\n===== Off-Heap vs On-Heap Benchmark (" + NUM_ENTRIES + " entries) =====");
+
+        //on-heap table
+        System.gc();
+        long gcBefore = gcTimeMillis();
+        long gcCountBefore = gcCount();
+        long startTime = System.nanoTime();
+        HashTableWithAVL<Long, Long> heapTable = new HashTableWithAVL<>();
+        for (long i = 0; i < NUM_ENTRIES; i++) {
+            heapTable.insert(i * 31, i);
+        }
+        long insertTime = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        for (long i = 0; i < NUM_ENTRIES; i++) {
+            heapTable.search(i * 31);
+        }
+        long searchTime = System.nanoTime() - startTime;
+        printResult("On-heap", insertTime, searchTime, gcTimeMillis() - gcBefore, gcCount() - gcCountBefore);
+        heapTable = null;
+
+        //off-heap table
+        System.gc();
+        gcBefore = gcTimeMillis();
+        gcCountBefore = gcCount();
+        try (OffHeapLongTable offHeapTable = new OffHeapLongTable()) {
+            startTime = System.nanoTime();
+            for (long i = 0; i < NUM_ENTRIES; i++) {
+                offHeapTable.insert(i * 31, i);
+            }
+            insertTime = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (long i = 0; i < NUM_ENTRIES; i++) {
+                offHeapTable.search(i * 31, -1);
+            }
+            searchTime = System.nanoTime() - startTime;
+            printResult("Off-heap", insertTime, searchTime, gcTimeMillis() - gcBefore, gcCount() - gcCountBefore);
+            System.out.printf("Off-heap memory: %.2f MB%n", offHeapTable.getOffHeapBytes() / (1024.0 * 1024.0));
+        }
+    }
+
+    private static void printResult(String name, long insertTime, long searchTime, long gcMillis, long gcCount) {
+        System.out.printf("%-9s insert: %8.0f ops/ms, search: %8.0f ops/ms, GC: %d collections, %d ms total pause%n",
+            name, NUM_ENTRIES / (insertTime / 1_000_000.0), NUM_ENTRIES / (searchTime / 1_000_000.0), gcCount, gcMillis);
+    }
+
+    private static long gcTimeMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+}
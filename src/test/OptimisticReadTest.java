@@ -0,0 +1,167 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+public class OptimisticReadTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+    private static final long RUN_MILLIS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        testReadersNeverSeeTornState();
+        readScalabilityBenchmark();
+    }
+
+    private static void testReadersNeverSeeTornState() throws Exception {
+        System.out.println("===== Optimistic Read Consistency Test =====");
+
+        //few buckets so readers walk deep trees while the writer rotates them
+        HashFunction<Integer> fewBuckets = key -> key % 8;
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>(16, 0.75, fewBuckets);
+        hashTable.enableOptimisticReads();
+        for (int i = 0; i < 1000; i++) {
+            hashTable.insert(i, i);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong errors = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+
+        //keys below 1000 always stay, keys above churn in and out, growing and shrinking the table
+        Thread writer = new Thread(() -> {
+            Random random = new Random(42);
+            while (running.get()) {
+                int key = 1000 + random.nextInt(50000);
+                if (random.nextBoolean()) {
+                    hashTable.insert(key, key);
+                } else {
+                    hashTable.delete(key);
+                }
+            }
+        });
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (running.get()) {
+                    int stable = random.nextInt(1000);
+                    Integer value = hashTable.search(stable);
+                    if (value == null || value != stable) errors.incrementAndGet();
+
+                    int churning = 1000 + random.nextInt(50000);
+                    value = hashTable.search(churning);
+                    if (value != null && value != churning) errors.incrementAndGet();
+                    count += 2;
+                }
+                reads.addAndGet(count);
+            }));
+        }
+
+        writer.start();
+        readers.forEach(Thread::start);
+        Thread.sleep(2000);
+        running.set(false);
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        System.out.println("Reads checked: " + reads.get());
+        System.out.println("Wrong or missing values: " + errors.get()); // Should be 0
+        System.out.println("Table size at the end: " + hashTable.getCapacity());
+    }
+
+    private static void readScalabilityBenchmark() throws Exception {
+        System.out.println("\n===== Read Scalability: Optimistic vs ReentrantReadWriteLock =====");
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %18s %18s%n", "Readers", "optimistic reads/s", "rw-lock reads/s");
+
+        HashTableWithAVL<Integer, Integer> optimistic = new HashTableWithAVL<>();
+        HashTableWithAVL<Integer, Integer> locked = new HashTableWithAVL<>();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            optimistic.insert(i, i);
+            locked.insert(i, i);
+        }
+        optimistic.enableOptimisticReads();
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        for (int readers = 1; readers <= 8; readers *= 2) {
+            double optimisticRate = run(readers,
+                key -> optimistic.search(key),
+                key -> optimistic.insert(key, key));
+            double lockedRate = run(readers,
+                key -> {
+                    lock.readLock().lock();
+                    try {
+                        return locked.search(key);
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                },
+                key -> {
+                    lock.writeLock().lock();
+                    try {
+                        return locked.insert(key, key);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                });
+            System.out.printf("%-8d %18.0f %18.0f%n", readers, optimisticRate, lockedRate);
+        }
+    }
+
+    //readers search as fast as they can while one writer updates a key every few microseconds
+    private static double run(int readerCount, IntFunction<Integer> read,
+                              IntFunction<Integer> write) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+
+        Thread writer = new Thread(() -> {
+            Random random = new Random(7);
+            while (running.get()) {
+                write.apply(random.nextInt(NUM_ENTRIES));
+                LockSupport.parkNanos(10_000);
+            }
+        });
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < readerCount; r++) {
+            readers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                long checksum = 0;
+                while (running.get()) {
+                    for (int i = 0; i < 1000; i++) {
+                        Integer value = read.apply(random.nextInt(NUM_ENTRIES));
+                        if (value != null) checksum += value;
+                    }
+                    count += 1000;
+                }
+                reads.addAndGet(count + (checksum == 42 ? 1 : 0));
+            }));
+        }
+
+        writer.start();
+        readers.forEach(Thread::start);
+        long startTime = System.nanoTime();
+        Thread.sleep(RUN_MILLIS);
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        long endTime = System.nanoTime();
+        writer.join();
+        return reads.get() * 1_000_000_000.0 / (endTime - startTime);
+    }
+}
@@ -0,0 +1,156 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.utils.KeyValuePair;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class OrderedIndexTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+    private static final int NUM_QUERIES = 1_000_000;
+    private static final int RANGE_LENGTH = 100;
+
+    public static void main(String[] args) {
+        testMatchesTreeMap();
+        benchmark();
+    }
+
+    private static void testMatchesTreeMap() {
+        System.out.println("===== Ordered Index Consistency Test =====");
+
+        HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>();
+        TreeMap<Integer, Integer> reference = new TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(100000);
+            hashTable.insert(key, i);
+            reference.put(key, i);
+        }
+        //enabled on a filled table, then kept up to date through growing and shrinking
+        hashTable.enableOrderedIndex();
+
+        boolean matches = true;
+        for (int i = 0; i < 300000 && matches; i++) {
+            int key = random.nextInt(100000);
+            int op = random.nextInt(4);
+            if (op == 0) {
+                hashTable.insert(key, i);
+                reference.put(key, i);
+            } else if (op == 1) {
+                hashTable.delete(key);
+                reference.remove(key);
+            } else if (op == 2) {
+                hashTable.merge(key, 1, Integer::sum);
+                reference.merge(key, 1, Integer::sum);
+            } else {
+                matches = same(reference.floorEntry(key), hashTable.floor(key))
+                    && same(reference.ceilingEntry(key), hashTable.ceiling(key));
+                int to = key + random.nextInt(2000);
+                matches = matches && sameRange(reference.subMap(key, to), hashTable.range(key, to));
+            }
+        }
+
+        Iterator<KeyValuePair<Integer, Integer>> iterator = hashTable.orderedIterator();
+        for (Map.Entry<Integer, Integer> entry : reference.entrySet()) {
+            matches = matches && iterator.hasNext() && same(entry, iterator.next());
+        }
+        matches = matches && !iterator.hasNext();
+
+        System.out.println("Matches TreeMap: " + matches); // Should be true
+        System.out.println("Size: " + hashTable.getSize() + " / " + reference.size());
+        System.out.println("Floor below smallest: " + hashTable.floor(-1)); // Should be null
+
+        Iterator<KeyValuePair<Integer, Integer>> stale = hashTable.orderedIterator();
+        hashTable.insert(-5, -5);
+        try {
+            stale.next();
+            System.out.println("Iterator noticed the change: false");
+        } catch (ConcurrentModificationException e) {
+            System.out.println("Iterator noticed the change: true"); // Should be true
+        }
+    }
+
+    private static boolean same(Map.Entry<Integer, Integer> expected, KeyValuePair<Integer, Integer> actual) {
+        if (expected == null || actual == null) return expected == null && actual == null;
+        return expected.getKey().equals(actual.getKey()) && expected.getValue().equals(actual.getValue());
+    }
+
+    private static boolean sameRange(Map<Integer, Integer> expected, List<KeyValuePair<Integer, Integer>> actual) {
+        if (expected.size() != actual.size()) return false;
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            if (!same(entry, actual.get(i++))) return false;
+        }
+        return true;
+    }
+
+    private static void benchmark() {
+        System.out.println("\n===== Ordered Queries: " + NUM_ENTRIES + " entries =====");
+
+        Random random = new Random(7);
+        Integer[] keys = new Integer[NUM_ENTRIES];
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            keys[i] = random.nextInt(NUM_ENTRIES * 10);
+        }
+        Integer[] probes = new Integer[NUM_QUERIES];
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            probes[i] = random.nextInt(NUM_ENTRIES * 10);
+        }
+
+        //keys are spread over ten times their count, so a range of 100 holds ~10 entries
+        System.out.printf("%-22s %10s %10s %10s %14s%n", "", "insert", "search", "floor", "range(100)");
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            HashTableWithAVL<Integer, Integer> hashTable = new HashTableWithAVL<>();
+            hashTable.enableOrderedIndex();
+            for (Integer key : keys) hashTable.insert(key, key);
+            long insert = System.nanoTime() - start;
+            report("HashTableWithAVL", insert,
+                () -> { long sum = 0; for (Integer p : probes) { Integer v = hashTable.search(p); if (v != null) sum += v; } return sum; },
+                () -> { long sum = 0; for (Integer p : probes) { KeyValuePair<Integer, Integer> e = hashTable.floor(p); if (e != null) sum += e.getValue(); } return sum; },
+                () -> { long sum = 0; for (Integer p : probes) sum += hashTable.range(p, p + RANGE_LENGTH).size(); return sum; });
+
+            start = System.nanoTime();
+            HashTableWithAVL<Integer, Integer> unordered = new HashTableWithAVL<>();
+            for (Integer key : keys) unordered.insert(key, key);
+            long unorderedInsert = System.nanoTime() - start;
+            System.out.printf("%-22s %7.0f ns%n", "  (without the index)", unorderedInsert / (double) NUM_ENTRIES);
+
+            benchmarkNavigable("TreeMap", new TreeMap<>(), keys, probes);
+            benchmarkNavigable("ConcurrentSkipListMap", new ConcurrentSkipListMap<>(), keys, probes);
+        }
+    }
+
+    private static void benchmarkNavigable(String name, NavigableMap<Integer, Integer> map, Integer[] keys, Integer[] probes) {
+        long start = System.nanoTime();
+        for (Integer key : keys) map.put(key, key);
+        long insert = System.nanoTime() - start;
+        report(name, insert,
+            () -> { long sum = 0; for (Integer p : probes) { Integer v = map.get(p); if (v != null) sum += v; } return sum; },
+            () -> { long sum = 0; for (Integer p : probes) { Map.Entry<Integer, Integer> e = map.floorEntry(p); if (e != null) sum += e.getValue(); } return sum; },
+            () -> { long sum = 0; for (Integer p : probes) sum += map.subMap(p, p + RANGE_LENGTH).size(); return sum; });
+    }
+
+    private interface Workload {
+        long run();
+    }
+
+    private static void report(String name, long insertNanos, Workload search, Workload floor, Workload range) {
+        System.out.printf("%-22s %7.0f ns %7.0f ns %7.0f ns %11.0f ns%n", name,
+            insertNanos / (double) NUM_ENTRIES, time(search), time(floor), time(range));
+    }
+
+    private static double time(Workload workload) {
+        long start = System.nanoTime();
+        long checksum = workload.run();
+        long elapsed = System.nanoTime() - start;
+        if (checksum == 42) System.out.println();
+        return elapsed / (double) NUM_QUERIES;
+    }
+}
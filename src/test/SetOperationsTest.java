@@ -0,0 +1,186 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import main.utils.KeyValuePair;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+public class SetOperationsTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+
+    public static void main(String[] args) {
+        testMatchesHashMap();
+        benchmark();
+    }
+
+    private static void testMatchesHashMap() {
+        System.out.println("===== Set Operations Consistency Test =====");
+
+        //equal capacities, one dividing the other, and two that don't line up at all
+        int[][] capacities = {{64, 64}, {16, 256}, {256, 16}, {10, 16}};
+        HashFunction<Integer> fewBuckets = key -> key % 8;
+        boolean matches = true;
+        for (int[] pair : capacities) {
+            for (HashFunction<Integer> hash : List.<HashFunction<Integer>>of(new HashTableWithAVL.DefaultHashFunction<>(), fewBuckets)) {
+                Random random = new Random(pair[0] * 31 + pair[1]);
+                HashTableWithAVL<Integer, Integer> a = new HashTableWithAVL<>(pair[0], 100.0, hash);
+                HashTableWithAVL<Integer, Integer> b = new HashTableWithAVL<>(pair[1], 100.0, hash);
+                a.setWideBucketThreshold(64);
+                b.setWideBucketThreshold(64);
+                Map<Integer, Integer> mapA = new HashMap<>();
+                Map<Integer, Integer> mapB = new HashMap<>();
+                for (int i = 0; i < 3000; i++) {
+                    int keyA = random.nextInt(5000);
+                    int keyB = random.nextInt(5000);
+                    a.insert(keyA, i);
+                    mapA.put(keyA, i);
+                    b.insert(keyB, -i);
+                    mapB.put(keyB, -i);
+                }
+
+                Map<Integer, Integer> union = new HashMap<>(mapA);
+                union.putAll(mapB);
+                Map<Integer, Integer> intersection = new HashMap<>(mapA);
+                intersection.keySet().retainAll(mapB.keySet());
+                Map<Integer, Integer> difference = new HashMap<>(mapA);
+                difference.keySet().removeAll(mapB.keySet());
+
+                matches = matches
+                    && same(union, a.union(b))
+                    && same(intersection, a.intersection(b))
+                    && same(difference, a.difference(b))
+                    && !a.contentEquals(b)
+                    && a.contentEquals(copy(a, pair[1], hash))
+                    && b.union(a).contentEquals(a.union(b).union(a));
+            }
+        }
+        System.out.println("Matches HashMap for every capacity pair: " + matches); // Should be true
+
+        HashTableWithAVL<Integer, Integer> a = new HashTableWithAVL<>();
+        HashTableWithAVL<Integer, Integer> b = new HashTableWithAVL<>();
+        a.insert(1, 1);
+        b.insert(1, 2);
+        System.out.println("Equal keys, different values: " + a.contentEquals(b)); // Should be false
+        System.out.println("Union takes the other's value: " + a.union(b).search(1)); // Should be 2
+        System.out.println("Intersection keeps its own: " + a.intersection(b).search(1)); // Should be 1
+    }
+
+    private static HashTableWithAVL<Integer, Integer> copy(HashTableWithAVL<Integer, Integer> table, int capacity,
+                                                           HashFunction<Integer> hash) {
+        HashTableWithAVL<Integer, Integer> copy = new HashTableWithAVL<>(capacity, 100.0, hash);
+        for (int i = 0; i < table.getCapacity(); i++) {
+            for (KeyValuePair<Integer, Integer> pair : table.getBucketEntries(i)) {
+                copy.insert(pair.getKey(), pair.getValue());
+            }
+        }
+        return copy;
+    }
+
+    private static boolean same(Map<Integer, Integer> expected, HashTableWithAVL<Integer, Integer> actual) {
+        if (expected.size() != actual.getSize()) return false;
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            if (!entry.getValue().equals(actual.search(entry.getKey()))) return false;
+        }
+        return true;
+    }
+
+    private static void benchmark() {
+        //about one entry per bucket with the default load factor, then eight per bucket
+        benchmark(0.75);
+        benchmark(8.0);
+    }
+
+    private static void benchmark(double loadFactor) {
+        System.out.println("\n===== Set Operations: two tables of " + NUM_ENTRIES + " entries, half of the keys shared, load factor "
+            + loadFactor + " =====");
+
+        HashFunction<Integer> hash = new HashTableWithAVL.DefaultHashFunction<>();
+        HashTableWithAVL<Integer, Integer> a = new HashTableWithAVL<>(16, loadFactor, hash);
+        HashTableWithAVL<Integer, Integer> b = new HashTableWithAVL<>(16, loadFactor, hash);
+        HashTableWithAVL<Integer, Integer> sameAsA = new HashTableWithAVL<>(16, loadFactor, hash);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            a.insert(i, i);
+            b.insert(i + NUM_ENTRIES / 2, i);
+            sameAsA.insert(i, i);
+        }
+        //b's entries at half the capacity, so every bucket pair has to be re-aligned
+        HashTableWithAVL<Integer, Integer> halfCapacity = new HashTableWithAVL<>(a.getCapacity() / 2, loadFactor * 2, hash);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            halfCapacity.insert(i + NUM_ENTRIES / 2, i);
+        }
+
+        //best of three rounds
+        System.out.printf("%-14s %12s %12s %16s%n", "", "bucket merge", "naive", "merge, realigned");
+        report("union", () -> a.union(b).getSize(), () -> naiveUnion(a, b).getSize(), () -> a.union(halfCapacity).getSize());
+        report("intersection", () -> a.intersection(b).getSize(), () -> naiveIntersection(a, b).getSize(),
+            () -> a.intersection(halfCapacity).getSize());
+        report("difference", () -> a.difference(b).getSize(), () -> naiveDifference(a, b).getSize(),
+            () -> a.difference(halfCapacity).getSize());
+        report("equals", () -> a.contentEquals(sameAsA) ? 1 : 0, () -> naiveEquals(a, sameAsA) ? 1 : 0,
+            () -> b.contentEquals(halfCapacity) ? 1 : 0);
+    }
+
+    private static void report(String name, Supplier<Integer> merge, Supplier<Integer> naive, Supplier<Integer> realigned) {
+        System.out.printf("%-14s %9.0f ms %9.0f ms %13.0f ms%n", name, best(merge), best(naive), best(realigned));
+    }
+
+    private static double best(Supplier<Integer> operation) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            int result = operation.get();
+            long elapsed = System.nanoTime() - start;
+            if (result == 42) System.out.println();
+            best = Math.min(best, elapsed / 1e6);
+        }
+        return best;
+    }
+
+    //the iterate-and-search versions, every key is hashed and searched in the other table
+    //and hashed again on its way into the result
+    private static HashTableWithAVL<Integer, Integer> naiveUnion(HashTableWithAVL<Integer, Integer> a, HashTableWithAVL<Integer, Integer> b) {
+        HashTableWithAVL<Integer, Integer> result = new HashTableWithAVL<>();
+        forEach(a, (key, value) -> result.insert(key, value));
+        forEach(b, (key, value) -> result.insert(key, value));
+        return result;
+    }
+
+    private static HashTableWithAVL<Integer, Integer> naiveIntersection(HashTableWithAVL<Integer, Integer> a, HashTableWithAVL<Integer, Integer> b) {
+        HashTableWithAVL<Integer, Integer> result = new HashTableWithAVL<>();
+        forEach(a, (key, value) -> {
+            if (b.search(key) != null) result.insert(key, value);
+        });
+        return result;
+    }
+
+    private static HashTableWithAVL<Integer, Integer> naiveDifference(HashTableWithAVL<Integer, Integer> a, HashTableWithAVL<Integer, Integer> b) {
+        HashTableWithAVL<Integer, Integer> result = new HashTableWithAVL<>();
+        forEach(a, (key, value) -> {
+            if (b.search(key) == null) result.insert(key, value);
+        });
+        return result;
+    }
+
+    private static boolean naiveEquals(HashTableWithAVL<Integer, Integer> a, HashTableWithAVL<Integer, Integer> b) {
+        if (a.getSize() != b.getSize()) return false;
+        for (int i = 0; i < a.getCapacity(); i++) {
+            for (KeyValuePair<Integer, Integer> pair : a.getBucketEntries(i)) {
+                if (!pair.getValue().equals(b.search(pair.getKey()))) return false;
+            }
+        }
+        return true;
+    }
+
+    private static void forEach(HashTableWithAVL<Integer, Integer> table, BiConsumer<Integer, Integer> action) {
+        for (int i = 0; i < table.getCapacity(); i++) {
+            for (KeyValuePair<Integer, Integer> pair : table.getBucketEntries(i)) {
+                action.accept(pair.getKey(), pair.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package test;
+
+import main.concurrent.ShardedHashTable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ShardedTest {
+    private static final int OPS_PER_THREAD = 200_000;
+    private static final int BATCH_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        testConcurrentProducers();
+        testBatchApi();
+        testCloseWhileSubmitting();
+        testWriterSurvivesError();
+        scalabilityBenchmark();
+    }
+
+    private static void testConcurrentProducers() throws Exception {
+        System.out.println("===== Sharded Table Concurrent Producers Test =====");
+
+        try (ShardedHashTable<Integer, String> table = new ShardedHashTable<>(4)) {
+            int threads = 8;
+            int perThread = 20000;
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * perThread;
+                Thread producer = new Thread(() -> {
+                    CompletableFuture<?>[] pending = new CompletableFuture<?>[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        pending[i] = table.insertAsync(base + i, "Value-" + (base + i));
+                    }
+                    CompletableFuture.allOf(pending).join();
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            //every insert future completed, so direct reads see them all
+            boolean allFound = true;
+            for (int i = 0; i < threads * perThread; i++) {
+                if (!("Value-" + i).equals(table.search(i))) {
+                    allFound = false;
+                    System.out.println("Value not found for key: " + i);
+                    break;
+                }
+            }
+            System.out.println("All values retrieved correctly: " + allFound);
+            System.out.println("Entries: " + table.getSize()); // Should be 160000
+
+            String previous = table.insert(5, "updated");
+            System.out.println("Previous value on update: " + previous); // Should be Value-5
+            System.out.println("Deleted value: " + table.delete(5)); // Should be updated
+            System.out.println("Search after delete: " + table.search(5)); // Should be null
+        }
+    }
+
+    private static void testBatchApi() throws Exception {
+        System.out.println("\n===== Sharded Table Batch API Test =====");
+
+        try (ShardedHashTable<Integer, Integer> table = new ShardedHashTable<>(8)) {
+            Integer[] keys = new Integer[50000];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = i;
+            }
+            table.insertAll(keys, keys).join();
+            System.out.println("Entries after insertAll: " + table.getSize()); // Should be 50000
+
+            Integer[] half = new Integer[25000];
+            for (int i = 0; i < half.length; i++) {
+                half[i] = i * 2;
+            }
+            int removed = table.deleteAll(half).join();
+            System.out.println("Removed by deleteAll: " + removed); // Should be 25000
+            System.out.println("Entries after deleteAll: " + table.getSize()); // Should be 25000
+            System.out.println("Odd key kept: " + table.search(4321)); // Should be 4321
+            System.out.println("Even key gone: " + table.search(4320)); // Should be null
+        }
+    }
+
+    private static void testCloseWhileSubmitting() throws Exception {
+        System.out.println("\n===== Close While Submitting Test =====");
+
+        //every future handed out has to complete, applied or failed, even when close() races the submit
+        boolean allCompleted = true;
+        AtomicLong failed = new AtomicLong();
+        for (int round = 0; round < 50; round++) {
+            ShardedHashTable<Integer, Integer> table = new ShardedHashTable<>(2);
+            List<CompletableFuture<?>> futures = new ArrayList<>();
+            Thread producer = new Thread(() -> {
+                for (int i = 0; ; i++) {
+                    try {
+                        CompletableFuture<Integer> future = table.insertAsync(i, i);
+                        synchronized (futures) {
+                            futures.add(future);
+                        }
+                    } catch (IllegalStateException e) {
+                        return;
+                    }
+                }
+            });
+            producer.start();
+            Thread.sleep(2);
+            table.close();
+            producer.join();
+            synchronized (futures) {
+                for (CompletableFuture<?> future : futures) {
+                    try {
+                        future.get(5, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        failed.incrementAndGet();
+                    } catch (TimeoutException e) {
+                        allCompleted = false;
+                    }
+                }
+            }
+        }
+        System.out.println("Every future completed: " + allCompleted + " (" + failed.get() + " failed as closed)"); // Should be true
+    }
+
+    //compareTo throws an Error for a poisoned key, all keys share a hash so they meet in one bucket
+    private static final class FlakyKey implements Comparable<FlakyKey> {
+        final int id;
+        final boolean poisoned;
+
+        FlakyKey(int id, boolean poisoned) {
+            this.id = id;
+            this.poisoned = poisoned;
+        }
+
+        @Override
+        public int compareTo(FlakyKey other) {
+            if (poisoned || other.poisoned) throw new AssertionError("poisoned key");
+            return Integer.compare(id, other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+
+    private static void testWriterSurvivesError() {
+        System.out.println("\n===== Writer Survives Error Test =====");
+
+        try (ShardedHashTable<FlakyKey, String> table = new ShardedHashTable<>(1)) {
+            table.insert(new FlakyKey(1, false), "one");
+            try {
+                table.insert(new FlakyKey(2, true), "poisoned");
+            } catch (CompletionException e) {
+                System.out.println("Failed with: " + e.getCause().getMessage()); // Should be poisoned key
+            }
+            table.insert(new FlakyKey(3, false), "three");
+            System.out.println("Writer still applies ops: " + table.getSize()); // Should be 2
+        }
+    }
+
+    private static void scalabilityBenchmark() throws Exception {
+        System.out.println("\n===== Write Scalability (one shard per producer) =====");
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %16s %16s %12s%n", "Threads", "async ops/sec", "batch ops/sec", "avg batch");
+
+        for (int threads = 1; threads <= 32; threads *= 2) {
+            double asyncRate;
+            double batchRate;
+            double averageBatch;
+
+            try (ShardedHashTable<Integer, Integer> table = new ShardedHashTable<>(threads)) {
+                asyncRate = runProducers(table, threads, false);
+                averageBatch = table.getAverageBatchSize();
+            }
+            try (ShardedHashTable<Integer, Integer> table = new ShardedHashTable<>(threads)) {
+                batchRate = runProducers(table, threads, true);
+            }
+
+            System.out.printf("%-8d %16.0f %16.0f %12.1f%n", threads, asyncRate, batchRate, averageBatch);
+        }
+    }
+
+    private static double runProducers(ShardedHashTable<Integer, Integer> table, int threads, boolean batched)
+            throws InterruptedException {
+        List<Thread> producers = new ArrayList<>();
+        long startTime = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int base = t * OPS_PER_THREAD;
+            Thread producer = new Thread(() -> {
+                if (batched) {
+                    Integer[] keys = new Integer[BATCH_SIZE];
+                    List<CompletableFuture<Void>> pending = new ArrayList<>();
+                    for (int i = 0; i < OPS_PER_THREAD; i += BATCH_SIZE) {
+                        for (int j = 0; j < BATCH_SIZE; j++) {
+                            keys[j] = base + i + j;
+                        }
+                        pending.add(table.insertAll(keys.clone(), keys.clone()));
+                    }
+                    pending.forEach(CompletableFuture::join);
+                } else {
+                    CompletableFuture<?>[] pending = new CompletableFuture<?>[OPS_PER_THREAD];
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        pending[i] = table.insertAsync(base + i, i);
+                    }
+                    CompletableFuture.allOf(pending).join();
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        long endTime = System.nanoTime();
+        return (double) threads * OPS_PER_THREAD * 1_000_000_000.0 / (endTime - startTime);
+    }
+}
@@ -0,0 +1,100 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+
+public class ShrinkTest {
+    private static final int NUM_ENTRIES = 1_000_000;
+
+    public static void main(String[] args) {
+        testShrinkOnDelete();
+        testNoThrashing();
+        testTrimToSize();
+    }
+
+    private static void testShrinkOnDelete() {
+        System.out.println("===== Shrink On Delete Test =====");
+
+        HashTableWithAVL<Integer, String> hashTable = new HashTableWithAVL<>();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            hashTable.insert(i, "Value-" + i);
+        }
+        System.out.println("Table size at peak: " + hashTable.getCapacity());
+
+        //drain down to 1% of the peak
+        for (int i = 0; i < NUM_ENTRIES - NUM_ENTRIES / 100; i++) {
+            hashTable.delete(i);
+        }
+        printStatistics(hashTable);
+
+        boolean allFound = true;
+        for (int i = NUM_ENTRIES - NUM_ENTRIES / 100; i < NUM_ENTRIES; i++) {
+            if (!("Value-" + i).equals(hashTable.search(i))) {
+                allFound = false;
+                System.out.println("Value not found for key: " + i);
+                break;
+            }
+        }
+        System.out.println("All values retrieved correctly: " + allFound);
+    }
+
+    private static void testNoThrashing() {
+        System.out.println("\n===== Boundary Thrashing Test =====");
+
+        HashTableWithAVL<Integer, String> hashTable = new HashTableWithAVL<>();
+        for (int i = 0; i < 1000; i++) {
+            hashTable.insert(i, "Value-" + i);
+        }
+
+        //delete until the first shrink, then bounce around that size
+        int next = 0;
+        int capacity = hashTable.getCapacity();
+        while (hashTable.getCapacity() == capacity) {
+            hashTable.delete(next++);
+        }
+
+        int resizes = 0;
+        capacity = hashTable.getCapacity();
+        for (int round = 0; round < 10000; round++) {
+            hashTable.insert(-1 - round % 4, "bounce");
+            hashTable.delete(-1 - (round + 2) % 4);
+            if (hashTable.getCapacity() != capacity) {
+                resizes++;
+                capacity = hashTable.getCapacity();
+            }
+        }
+        System.out.println("Capacity changes while bouncing at the boundary: " + resizes); // Should be 0
+    }
+
+    private static void testTrimToSize() {
+        System.out.println("\n===== trimToSize Test =====");
+
+        HashTableWithAVL<Integer, String> hashTable =
+            new HashTableWithAVL<Integer, String>(1 << 16, 0.75, new HashTableWithAVL.DefaultHashFunction<Integer>());
+        for (int i = 0; i < 1000; i++) {
+            hashTable.insert(i, "Value-" + i);
+        }
+        System.out.println("Table size before trim: " + hashTable.getCapacity());
+
+        long startTime = System.nanoTime();
+        hashTable.trimToSize();
+        long endTime = System.nanoTime();
+        printStatistics(hashTable); // Table size should be 2048
+        System.out.printf("Trim time: %.3f ms%n", (endTime - startTime) / 1_000_000.0);
+
+        boolean allFound = true;
+        for (int i = 0; i < 1000; i++) {
+            if (!("Value-" + i).equals(hashTable.search(i))) {
+                allFound = false;
+                break;
+            }
+        }
+        System.out.println("All values retrieved correctly: " + allFound);
+    }
+
+    private static void printStatistics(HashTableWithAVL<?, ?> hashTable) {
+        System.out.println("Entries: " + hashTable.getSize());
+        System.out.println("Table size: " + hashTable.getCapacity());
+        System.out.println("Current load factor: " + hashTable.getCurrentLoadFactor());
+        System.out.println("Max AVL tree height: " + hashTable.getMaxHeight());
+    }
+}
@@ -0,0 +1,128 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.datastructure.TableSnapshot;
+import main.utils.BinaryCodec;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class SnapshotTest {
+    private static final int NUM_ENTRIES = 10_000_000;
+
+    public static void main(String[] args) throws IOException {
+        testRoundTrip();
+        testCorruption();
+        warmStartBenchmark();
+    }
+
+    private static void testRoundTrip() throws IOException {
+        System.out.println("===== Snapshot Round Trip Test =====");
+
+        HashTableWithAVL<String, Integer> table = new HashTableWithAVL<>();
+        for (int i = 0; i < 10000; i++) {
+            table.insert("key-" + i, i);
+        }
+        table.insert("\u043a\u043b\u044e\u0447", -1); //non-ASCII key takes the decoding compare path
+
+        Path file = Files.createTempFile("snapshot", ".avls");
+        TableSnapshot.write(table, file, BinaryCodec.STRING, BinaryCodec.INTEGER);
+
+        TableSnapshot<String, Integer> snapshot = TableSnapshot.open(file, BinaryCodec.STRING, BinaryCodec.INTEGER,
+            new HashTableWithAVL.DefaultHashFunction<String>());
+        HashTableWithAVL<String, Integer> loaded = snapshot.toTable(0.75);
+
+        boolean allFound = true;
+        for (int i = 0; i < 10000; i++) {
+            Integer mapped = snapshot.search("key-" + i);
+            Integer rebuilt = loaded.search("key-" + i);
+            if (mapped == null || mapped != i || rebuilt == null || rebuilt != i) {
+                allFound = false;
+                System.out.println("Value not found for key: key-" + i);
+                break;
+            }
+        }
+
+        System.out.println("All values retrieved correctly: " + allFound);
+        System.out.println("Non-ASCII key: " + snapshot.search("\u043a\u043b\u044e\u0447")); // Should be -1
+        System.out.println("Missing key: " + snapshot.search("missing")); // Should be null
+        System.out.println("Checksum valid: " + snapshot.verify()); // Should be true
+        System.out.println("Same size: " + (loaded.getSize() == table.getSize()));
+        System.out.println("Same max height: " + (loaded.getMaxHeight() == table.getMaxHeight()));
+        Files.delete(file);
+    }
+
+    private static void testCorruption() throws IOException {
+        System.out.println("\n===== Snapshot Corruption Test =====");
+
+        HashTableWithAVL<Integer, Integer> table = new HashTableWithAVL<>();
+        for (int i = 0; i < 1000; i++) {
+            table.insert(i, i);
+        }
+
+        Path file = Files.createTempFile("snapshot", ".avls");
+        TableSnapshot.write(table, file, BinaryCodec.INTEGER, BinaryCodec.INTEGER);
+
+        //flip a byte inside the data section
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(100);
+            int b = raf.read();
+            raf.seek(100);
+            raf.write(b ^ 0xFF);
+        }
+
+        TableSnapshot<Integer, Integer> snapshot = TableSnapshot.open(file, BinaryCodec.INTEGER, BinaryCodec.INTEGER,
+            new HashTableWithAVL.DefaultHashFunction<Integer>());
+        System.out.println("Checksum valid: " + snapshot.verify()); // Should be false
+
+        try {
+            snapshot.toTable(0.75);
+            System.out.println("Corruption not detected");
+        } catch (IOException e) {
+            System.out.println("Corruption detected: " + e.getMessage());
+        }
+        Files.delete(file);
+    }
+
+    private static void warmStartBenchmark() throws IOException {
+        System.out.println("\n===== Warm Start Benchmark (" + NUM_ENTRIES + " entries) =====");
+
+        HashTableWithAVL<Integer, Integer> table = new HashTableWithAVL<>();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            table.insert(i, i);
+        }
+        long insertTime = System.nanoTime() - startTime;
+
+        Path file = Files.createTempFile("snapshot", ".avls");
+        startTime = System.nanoTime();
+        TableSnapshot.write(table, file, BinaryCodec.INTEGER, BinaryCodec.INTEGER);
+        long writeTime = System.nanoTime() - startTime;
+        table = null;
+
+        startTime = System.nanoTime();
+        TableSnapshot<Integer, Integer> snapshot = TableSnapshot.open(file, BinaryCodec.INTEGER, BinaryCodec.INTEGER,
+            new HashTableWithAVL.DefaultHashFunction<Integer>());
+        Integer first = snapshot.search(NUM_ENTRIES / 2);
+        long openTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            snapshot.search(i);
+        }
+        long mappedSearchTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        HashTableWithAVL<Integer, Integer> loaded = snapshot.toTable(0.75);
+        long loadTime = System.nanoTime() - startTime;
+
+        System.out.printf("Snapshot file size: %.2f MB%n", Files.size(file) / (1024.0 * 1024.0));
+        System.out.printf("Rebuild by inserting: %.3f ms%n", insertTime / 1_000_000.0);
+        System.out.printf("Snapshot write: %.3f ms%n", writeTime / 1_000_000.0);
+        System.out.printf("Open and first query (%d): %.3f ms%n", first, openTime / 1_000_000.0);
+        System.out.printf("Mapped search: %.1f ns/op%n", (double) mappedSearchTime / NUM_ENTRIES);
+        System.out.printf("Full load into live table: %.3f ms (%d entries)%n", loadTime / 1_000_000.0, loaded.getSize());
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,165 @@
+package test;
+
+import main.datastructure.HashTableWithAVL;
+import main.datastructure.SortedArrayBucket;
+import main.datastructure.TableStats;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TableStatsTest {
+    public static void main(String[] args) throws Exception {
+        testMatchesScan();
+        testConcurrentSnapshots();
+        benchmark();
+    }
+
+    private static void testMatchesScan() {
+        System.out.println("===== Table Stats Test =====");
+
+        //grow, shrink, wide buckets, pooling and batches all move entries between buckets
+        HashTableWithAVL<Integer, Integer> table = new HashTableWithAVL<>();
+        table.setWideBucketThreshold(16);
+        table.enableNodePooling(1024);
+        boolean matches = true;
+        Random random = new Random(3);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 5000; i++) {
+                //a narrow key range with a colliding hash keeps some buckets deep
+                int key = random.nextInt(round < 10 ? 40_000 : 2000);
+                switch (random.nextInt(6)) {
+                    case 0 -> table.delete(key);
+                    case 1 -> table.merge(key, 1, Integer::sum);
+                    case 2 -> table.compute(key, (k, v) -> v == null ? 1 : null);
+                    case 3 -> table.insert(key * 1024, key);
+                    default -> table.insert(key, key);
+                }
+            }
+            Integer[] batch = new Integer[500];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = random.nextInt(40_000);
+            }
+            if (round % 2 == 0) {
+                table.insertAll(batch, batch);
+            } else {
+                table.deleteAll(batch);
+            }
+            if (!matchesScan(table)) matches = false;
+        }
+        table.setWideBucketThreshold(0);
+        if (!matchesScan(table)) matches = false;
+        table.trimToSize();
+        if (!matchesScan(table)) matches = false;
+        System.out.println("Matches a full scan after every round: " + matches); // Should be true
+
+        HashTableWithAVL<Integer, Integer> sorted = new HashTableWithAVL<>(16, 0.75,
+            new HashTableWithAVL.DefaultHashFunction<Integer>(), SortedArrayBucket::new);
+        for (int i = 0; i < 10_000; i++) {
+            sorted.insert(i, i);
+        }
+        System.out.println("Sorted array buckets match: " + matchesScan(sorted)); // Should be true
+        System.out.println("No rotations without trees: " + sorted.stats().getTotalRotations()); // Should be 0
+
+        HashTableWithAVL<Integer, Integer> empty = new HashTableWithAVL<>();
+        System.out.println("Empty: " + empty.stats()); // Should be buckets=16 occupied=0 maxHeight=0 avgHeight=0.000 rotations=0 heights=[16]
+    }
+
+    //the incremental figures against what a walk over every bucket gives
+    private static boolean matchesScan(HashTableWithAVL<Integer, Integer> table) {
+        int[] heights = table.getBucketHeights();
+        int max = 0;
+        long total = 0;
+        int occupied = 0;
+        for (int height : heights) {
+            max = Math.max(max, height);
+            total += height;
+            if (height > 0) occupied++;
+        }
+        int[] histogram = new int[max + 1];
+        for (int height : heights) {
+            histogram[height]++;
+        }
+        TableStats stats = table.stats();
+        return table.getMaxHeight() == max && stats.getMaxHeight() == max
+            && table.getAverageHeight() == (double) total / heights.length
+            && table.getOccupiedBucketCount() == occupied && stats.getOccupiedBuckets() == occupied
+            && Arrays.equals(table.getHeightHistogram(), histogram) && Arrays.equals(stats.getHeightHistogram(), histogram)
+            && stats.getCapacity() == table.getCapacity() && table.getTotalRotationCount() >= 0;
+    }
+
+    private static void testConcurrentSnapshots() throws Exception {
+        System.out.println("\n===== Concurrent Stats Snapshot Test =====");
+
+        //a poller on another thread must never see a histogram that disagrees with itself
+        HashTableWithAVL<Integer, Integer> table = new HashTableWithAVL<>();
+        table.enableOptimisticReads();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean consistent = new AtomicBoolean(true);
+        long[] polls = new long[1];
+        Thread poller = new Thread(() -> {
+            while (running.get()) {
+                TableStats stats = table.stats();
+                int buckets = 0;
+                int occupied = 0;
+                for (int h = 0; h < stats.getHeightHistogram().length; h++) {
+                    buckets += stats.getHeightHistogram()[h];
+                    if (h > 0) occupied += stats.getHeightHistogram()[h];
+                }
+                if (buckets != stats.getCapacity() || occupied != stats.getOccupiedBuckets()) consistent.set(false);
+                polls[0]++;
+            }
+        });
+        poller.start();
+        Random random = new Random(5);
+        for (int i = 0; i < 2_000_000; i++) {
+            int key = random.nextInt(200_000);
+            if (random.nextInt(3) == 0) {
+                table.delete(key);
+            } else {
+                table.insert(key, i);
+            }
+        }
+        running.set(false);
+        poller.join();
+        System.out.println("Every snapshot consistent: " + consistent.get() + " (" + polls[0] + " polls)"); // Should be true
+    }
+
+    private static void benchmark() {
+        System.out.println("\n===== Stats Polling Cost =====");
+        System.out.printf("%-10s %16s %16s %16s%n", "buckets", "stats() ns", "getMaxHeight ns", "scan ns");
+
+        for (int capacity : new int[]{1 << 16, 1 << 20, 1 << 23}) {
+            HashTableWithAVL<Integer, Integer> table = new HashTableWithAVL<>(capacity, 0.75,
+                new HashTableWithAVL.DefaultHashFunction<Integer>());
+            Random random = new Random(1);
+            for (int i = 0; i < capacity / 2; i++) {
+                table.insert(random.nextInt(), i);
+            }
+
+            long sink = 0;
+            int polls = 100_000;
+            long start = System.nanoTime();
+            for (int i = 0; i < polls; i++) {
+                sink += table.stats().getMaxHeight();
+            }
+            double statsNs = (System.nanoTime() - start) / (double) polls;
+            start = System.nanoTime();
+            for (int i = 0; i < polls; i++) {
+                sink += table.getMaxHeight();
+            }
+            double maxNs = (System.nanoTime() - start) / (double) polls;
+
+            //what every getter cost before: one walk over the whole bucket array
+            int scans = 20;
+            start = System.nanoTime();
+            for (int i = 0; i < scans; i++) {
+                for (int height : table.getBucketHeights()) {
+                    sink += height;
+                }
+            }
+            double scanNs = (System.nanoTime() - start) / (double) scans;
+            System.out.printf("%-10d %16.0f %16.0f %16.0f%n", capacity, statsNs, maxNs, scanNs);
+            if (sink == 42) System.out.println();
+        }
+    }
+}
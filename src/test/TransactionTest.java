@@ -0,0 +1,262 @@
+package test;
+
+import main.concurrent.TransactionalHashTable;
+import main.datastructure.HashTableWithAVL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransactionTest {
+    private static final int INITIAL_BALANCE = 1000;
+    private static final long BENCHMARK_MILLIS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        testSemantics();
+        testTransfersKeepTotal();
+        testFailedCommitReleasesStripes();
+        testKeysEqualByCompareTo();
+        contentionBenchmark();
+    }
+
+    private static void testSemantics() {
+        System.out.println("===== Transaction Semantics Test =====");
+
+        TransactionalHashTable<String, Integer> table = new TransactionalHashTable<>(16);
+        table.insert("a", 10);
+        table.insert("b", 5);
+
+        //move a value from one key to another
+        table.atomically(tx -> {
+            Integer value = tx.delete("a");
+            tx.insert("c", value);
+        });
+        System.out.println("Moved: a=" + table.search("a") + " c=" + table.search("c")); // Should be a=null c=10
+
+        int seen = table.atomicallyGet(tx -> {
+            tx.insert("b", tx.search("b") + 1);
+            return tx.search("b");
+        });
+        System.out.println("Reads its own write: " + seen); // Should be 6
+
+        try {
+            table.atomically(tx -> {
+                tx.insert("b", 100);
+                tx.delete("c");
+                throw new IllegalStateException("abort");
+            });
+        } catch (IllegalStateException e) {
+            System.out.println("Body threw: " + e.getMessage()); // Should be abort
+        }
+        System.out.println("Nothing applied: b=" + table.search("b") + " c=" + table.search("c")); // Should be b=6 c=10
+        System.out.println("Size: " + table.getSize()); // Should be 2
+    }
+
+    private static void testTransfersKeepTotal() throws Exception {
+        System.out.println("\n===== Concurrent Transfers Test =====");
+
+        //few accounts so transfers keep colliding, and an auditor summing all of them in one transaction
+        int accounts = 32;
+        TransactionalHashTable<Integer, Integer> table = new TransactionalHashTable<>(8);
+        for (int i = 0; i < accounts; i++) {
+            table.insert(i, INITIAL_BALANCE);
+        }
+        long expectedTotal = (long) accounts * INITIAL_BALANCE;
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean auditsBalanced = new AtomicBoolean(true);
+        AtomicLong audits = new AtomicLong();
+        Thread auditor = new Thread(() -> {
+            while (running.get()) {
+                long total = table.atomicallyGet(tx -> {
+                    long sum = 0;
+                    for (int i = 0; i < accounts; i++) {
+                        sum += tx.search(i);
+                    }
+                    return sum;
+                });
+                if (total != expectedTotal) auditsBalanced.set(false);
+                audits.incrementAndGet();
+            }
+        });
+        auditor.start();
+
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 50000; i++) {
+                    transfer(table, random.nextInt(accounts), random.nextInt(accounts), random.nextInt(10));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        running.set(false);
+        auditor.join();
+
+        long total = 0;
+        for (int i = 0; i < accounts; i++) {
+            total += table.search(i);
+        }
+        System.out.println("Total unchanged: " + (total == expectedTotal)); // Should be true
+        System.out.println("Every audit balanced: " + auditsBalanced.get() + " (" + audits.get() + " audits)"); // Should be true
+        System.out.println("Commits: " + table.getCommitCount() + ", retries: " + table.getRetryCount());
+    }
+
+    private static void transfer(TransactionalHashTable<Integer, Integer> table, int from, int to, int amount) {
+        table.atomically(tx -> {
+            tx.insert(from, tx.search(from) - amount);
+            tx.insert(to, tx.search(to) + amount);
+        });
+    }
+
+    //compareTo throws while failing is set, every key shares a hash so keys meet in one bucket
+    private static final class FlakyKey implements Comparable<FlakyKey> {
+        static volatile boolean failing;
+        final int id;
+
+        FlakyKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(FlakyKey other) {
+            if (failing) throw new AssertionError("compareTo failed");
+            return Integer.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FlakyKey && ((FlakyKey) other).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+
+    private static void testFailedCommitReleasesStripes() {
+        System.out.println("\n===== Failed Commit Test =====");
+
+        TransactionalHashTable<FlakyKey, Integer> table = new TransactionalHashTable<>(1);
+        table.insert(new FlakyKey(1), 1);
+        try {
+            //the reads pass, then applying the write at commit throws
+            table.atomically(tx -> {
+                tx.insert(new FlakyKey(2), 2);
+                FlakyKey.failing = true;
+            });
+        } catch (AssertionError e) {
+            System.out.println("Commit threw: " + e.getMessage()); // Should be compareTo failed
+        } finally {
+            FlakyKey.failing = false;
+        }
+        //would spin forever on a stripe left locked
+        table.insert(new FlakyKey(3), 3);
+        System.out.println("Stripe usable after failure: " + table.search(new FlakyKey(3))); // Should be 3
+    }
+
+    //equal under compareTo and hashCode but not under equals, which Object leaves as identity
+    private static final class LooseKey implements Comparable<LooseKey> {
+        final int id;
+
+        LooseKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(LooseKey other) {
+            return Integer.compare(id, other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    private static void testKeysEqualByCompareTo() {
+        System.out.println("\n===== Keys Equal By compareTo Test =====");
+
+        TransactionalHashTable<LooseKey, Integer> table = new TransactionalHashTable<>(4);
+        table.insert(new LooseKey(1), 1);
+        int seen = table.atomicallyGet(tx -> {
+            tx.insert(new LooseKey(1), 2);
+            tx.insert(new LooseKey(1), 3);
+            return tx.search(new LooseKey(1));
+        });
+        System.out.println("Reads its own write: " + seen); // Should be 3
+        table.atomically(tx -> {
+            tx.delete(new LooseKey(1));
+            tx.insert(new LooseKey(2), tx.search(new LooseKey(1)) == null ? 20 : -1);
+        });
+        System.out.println("Delete seen: " + table.search(new LooseKey(1)) + " " + table.search(new LooseKey(2))); // Should be null 20
+        System.out.println("Size: " + table.getSize()); // Should be 1
+    }
+
+    private static void contentionBenchmark() throws Exception {
+        System.out.println("\n===== Transfer Throughput: transactions vs one global lock =====");
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %-8s %16s %16s %10s%n", "accounts", "threads", "tx transfers/s", "lock transfers/s", "retry %");
+
+        for (int accounts : new int[]{16, 100_000}) {
+            for (int threads = 1; threads <= 8; threads *= 2) {
+                TransactionalHashTable<Integer, Integer> table = new TransactionalHashTable<>(64);
+                HashTableWithAVL<Integer, Integer> locked = new HashTableWithAVL<>();
+                for (int i = 0; i < accounts; i++) {
+                    table.insert(i, INITIAL_BALANCE);
+                    locked.insert(i, INITIAL_BALANCE);
+                }
+
+                double txRate = run(threads, accounts, (from, to) -> transfer(table, from, to, 1));
+                double lockRate = run(threads, accounts, (from, to) -> {
+                    synchronized (locked) {
+                        locked.insert(from, locked.search(from) - 1);
+                        locked.insert(to, locked.search(to) + 1);
+                    }
+                });
+                double retryPercent = 100.0 * table.getRetryCount() / Math.max(1, table.getCommitCount());
+                System.out.printf("%-10d %-8d %16.0f %16.0f %9.1f%%%n", accounts, threads, txRate, lockRate, retryPercent);
+            }
+        }
+    }
+
+    private interface Transfer {
+        void apply(int from, int to);
+    }
+
+    //transfers per second over BENCHMARK_MILLIS with every thread picking random pairs
+    private static double run(int threads, int accounts, Transfer transfer) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong done = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                long count = 0;
+                while (running.get()) {
+                    transfer.apply(random.nextInt(accounts), random.nextInt(accounts));
+                    count++;
+                }
+                done.addAndGet(count);
+            });
+            workers.add(worker);
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        Thread.sleep(BENCHMARK_MILLIS);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return done.get() * 1e9 / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,147 @@
+package test;
+
+import main.datastructure.AVLTree;
+import main.datastructure.BTreeBucket;
+import main.datastructure.Bucket;
+import main.datastructure.HashTableWithAVL;
+import main.hash.HashFunction;
+import main.utils.KeyValuePair;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class WideBucketTest {
+    private static final int NUM_SEARCHES = 2_000_000;
+
+    public static void main(String[] args) {
+        testAgainstTreeMap();
+        testAutomaticSwap();
+        searchLatencyBenchmark();
+    }
+
+    private static void testAgainstTreeMap() {
+        System.out.println("===== B+-Tree Bucket Correctness Test =====");
+
+        BTreeBucket<Integer, String> bucket = new BTreeBucket<>();
+        Map<Integer, String> expected = new TreeMap<>();
+        Random random = new Random(42);
+        boolean matches = true;
+
+        //alternate growing and draining phases so splits, empty leaves and root collapses all happen
+        for (int i = 0; i < 500000 && matches; i++) {
+            int key = random.nextInt(20000);
+            boolean draining = (i / 50000) % 2 == 1;
+            Object actual;
+            Object wanted;
+            if (random.nextInt(10) < (draining ? 8 : 2)) {
+                actual = bucket.delete(key);
+                wanted = expected.remove(key);
+            } else {
+                actual = bucket.insert(key, "Value-" + i);
+                wanted = expected.put(key, "Value-" + i);
+            }
+            if (!Objects.equals(actual, wanted) || bucket.getSize() != expected.size()) {
+                matches = false;
+                System.out.println("Mismatch at operation " + i + " for key " + key);
+            }
+        }
+
+        for (int key = 0; key < 20000 && matches; key++) {
+            if (!Objects.equals(bucket.search(key), expected.get(key))) {
+                matches = false;
+                System.out.println("Value mismatch for key: " + key);
+            }
+        }
+
+        List<KeyValuePair<Integer, String>> pairs = bucket.getAllKeyValuePairs();
+        int index = 0;
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            if (!entry.getKey().equals(pairs.get(index++).getKey())) {
+                matches = false;
+                break;
+            }
+        }
+
+        System.out.println("Matches TreeMap: " + matches);
+        System.out.println("Entries: " + bucket.getSize());
+        System.out.println("B+-tree depth: " + bucket.getHeight());
+    }
+
+    private static void testAutomaticSwap() {
+        System.out.println("\n===== Automatic Bucket Swap Test =====");
+
+        //every key lands in the same bucket
+        HashFunction<Integer> badHashFunction = key -> 42;
+        HashTableWithAVL<Integer, String> hashTable = new HashTableWithAVL<>(16, 0.75, badHashFunction);
+
+        for (int i = 0; i < 5000; i++) {
+            hashTable.insert(i, "Value-" + i);
+        }
+        System.out.println("Wide buckets after 5000 collisions: " + hashTable.getWideBucketCount()); // Should be 1
+        System.out.println("Max bucket height: " + hashTable.getMaxHeight());
+
+        for (int i = 0; i < 4600; i++) {
+            hashTable.delete(i);
+        }
+        System.out.println("Wide buckets after draining to 400: " + hashTable.getWideBucketCount()); // Should be 0
+
+        boolean allFound = true;
+        for (int i = 4600; i < 5000; i++) {
+            if (!("Value-" + i).equals(hashTable.search(i))) {
+                allFound = false;
+                System.out.println("Value not found for key: " + i);
+                break;
+            }
+        }
+        System.out.println("All values retrieved correctly: " + allFound);
+    }
+
+    private static void searchLatencyBenchmark() {
+        System.out.println("\n===== Search Latency: AVLTree vs B+-Tree Bucket =====");
+        System.out.printf("%-12s %14s %14s %10s %10s%n", "Bucket size", "AVL ns/op", "B+-tree ns/op", "AVL height", "B+ depth");
+
+        for (int bucketSize = 1000; bucketSize <= 1_000_000; bucketSize *= 10) {
+            Random random = new Random(bucketSize);
+            int[] keys = new int[bucketSize];
+            for (int i = 0; i < bucketSize; i++) {
+                keys[i] = random.nextInt();
+            }
+
+            AVLTree<Integer, Integer> avl = new AVLTree<>();
+            BTreeBucket<Integer, Integer> btree = new BTreeBucket<>();
+            for (int key : keys) {
+                avl.insert(key, key);
+                btree.insert(key, key);
+            }
+
+            //the same random probe order for both, so neither gets a friendlier access pattern
+            Integer[] probes = new Integer[NUM_SEARCHES];
+            for (int i = 0; i < NUM_SEARCHES; i++) {
+                probes[i] = keys[random.nextInt(bucketSize)];
+            }
+
+            //warm up both before timing
+            timeSearches(avl, probes);
+            timeSearches(btree, probes);
+            double avlTime = timeSearches(avl, probes);
+            double btreeTime = timeSearches(btree, probes);
+
+            System.out.printf("%-12d %14.1f %14.1f %10d %10d%n",
+                bucketSize, avlTime, btreeTime, avl.getHeight(), btree.getHeight());
+        }
+    }
+
+    private static double timeSearches(Bucket<Integer, Integer> bucket, Integer[] probes) {
+        long checksum = 0;
+        long startTime = System.nanoTime();
+        for (Integer probe : probes) {
+            checksum += bucket.search(probe);
+        }
+        long endTime = System.nanoTime();
+        //use the checksum so the JIT keeps the loop
+        if (checksum == 42) System.out.println();
+        return (endTime - startTime) / (double) probes.length;
+    }
+}
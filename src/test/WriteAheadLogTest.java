@@ -0,0 +1,166 @@
+package test;
+
+import main.datastructure.DurableHashTable;
+import main.datastructure.WriteAheadLog;
+import main.utils.BinaryCodec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class WriteAheadLogTest {
+    private static final int NUM_OPERATIONS = 20000;
+    private static final int NUM_THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        testRecovery();
+        testTornTail();
+        testCheckpoint();
+        testFailedCheckpoint();
+        syncPolicyBenchmark();
+    }
+
+    private static void testRecovery() throws IOException {
+        System.out.println("===== WAL Recovery Test =====");
+
+        Path dir = Files.createTempDirectory("wal");
+        try (DurableHashTable<Integer, String> table = open(dir, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+            for (int i = 0; i < 1000; i++) {
+                table.insert(i, "Value-" + i);
+            }
+            for (int i = 0; i < 1000; i += 2) {
+                table.delete(i);
+            }
+        }
+
+        try (DurableHashTable<Integer, String> table = open(dir, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+            System.out.println("Recovered records: " + table.getRecoveredRecords()); // Should be 1500
+            System.out.println("Entries: " + table.getSize()); // Should be 500
+            System.out.println("Deleted key 2: " + table.search(2)); // Should be null
+            System.out.println("Kept key 3: " + table.search(3)); // Should be Value-3
+        }
+        deleteDirectory(dir);
+    }
+
+    private static void testTornTail() throws IOException {
+        System.out.println("\n===== WAL Torn Tail Test =====");
+
+        Path dir = Files.createTempDirectory("wal");
+        try (DurableHashTable<Integer, String> table = open(dir, WriteAheadLog.SyncPolicy.OS, 0)) {
+            for (int i = 0; i < 100; i++) {
+                table.insert(i, "Value-" + i);
+            }
+        }
+
+        //simulate a crash in the middle of a record
+        Files.write(dir.resolve("table.wal"), new byte[] {0, 0, 0, 20, 1, 7}, StandardOpenOption.APPEND);
+
+        try (DurableHashTable<Integer, String> table = open(dir, WriteAheadLog.SyncPolicy.OS, 0)) {
+            System.out.println("Recovered records: " + table.getRecoveredRecords()); // Should be 100
+            table.insert(100, "after crash");
+        }
+        try (DurableHashTable<Integer, String> table = open(dir, WriteAheadLog.SyncPolicy.OS, 0)) {
+            System.out.println("Record after torn tail: " + table.search(100)); // Should be after crash
+        }
+        deleteDirectory(dir);
+    }
+
+    private static void testCheckpoint() throws IOException {
+        System.out.println("\n===== WAL Compaction Test =====");
+
+        Path dir = Files.createTempDirectory("wal");
+        try (DurableHashTable<Integer, String> table = open(dir, WriteAheadLog.SyncPolicy.OS, 64 * 1024)) {
+            //rewrite the same 100 keys so the log keeps growing while the table does not
+            for (int i = 0; i < 20000; i++) {
+                table.insert(i % 100, "Value-" + i);
+            }
+        }
+
+        System.out.printf("Log size after compaction: %d bytes%n", Files.size(dir.resolve("table.wal")));
+        try (DurableHashTable<Integer, String> table = open(dir, WriteAheadLog.SyncPolicy.OS, 64 * 1024)) {
+            System.out.println("Entries: " + table.getSize()); // Should be 100
+            System.out.println("Latest value: " + table.search(99)); // Should be Value-19999
+        }
+        deleteDirectory(dir);
+    }
+
+    private static void testFailedCheckpoint() throws IOException {
+        System.out.println("\n===== Failed Checkpoint Test =====");
+
+        //a directory where the snapshot's temp file goes makes the snapshot write fail
+        Path dir = Files.createTempDirectory("wal");
+        Path blocker = dir.resolve("table.snapshot.tmp");
+        try (DurableHashTable<Integer, String> table = open(dir, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+            table.insert(1, "before");
+            Files.createDirectory(blocker);
+            Files.createFile(blocker.resolve("keep"));
+            try {
+                table.checkpoint();
+                System.out.println("Checkpoint failed: false");
+            } catch (IOException e) {
+                System.out.println("Checkpoint failed: true"); // Should be true
+            }
+            table.insert(2, "after");
+            System.out.println("Writes still work: " + table.search(2)); // Should be after
+            Files.delete(blocker.resolve("keep"));
+            Files.delete(blocker);
+            table.checkpoint();
+            table.insert(3, "logged");
+        }
+        try (DurableHashTable<Integer, String> table = open(dir, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+            System.out.println("Recovered: " + table.search(1) + " " + table.search(2) + " " + table.search(3)); // Should be before after logged
+        }
+        deleteDirectory(dir);
+    }
+
+    private static void syncPolicyBenchmark() throws Exception {
+        System.out.println("\n===== Sync Policy Benchmark (" + NUM_THREADS + " writers) =====");
+
+        for (WriteAheadLog.SyncPolicy policy : WriteAheadLog.SyncPolicy.values()) {
+            Path dir = Files.createTempDirectory("wal");
+            try (DurableHashTable<Integer, String> table = open(dir, policy, 0)) {
+                List<Thread> threads = new ArrayList<>();
+                int perThread = NUM_OPERATIONS / NUM_THREADS;
+
+                long startTime = System.nanoTime();
+                for (int t = 0; t < NUM_THREADS; t++) {
+                    int base = t * perThread;
+                    Thread thread = new Thread(() -> {
+                        try {
+                            for (int i = base; i < base + perThread; i++) {
+                                table.insert(i, "Value-" + i);
+                            }
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    threads.add(thread);
+                    thread.start();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                long elapsed = System.nanoTime() - startTime;
+
+                System.out.printf("%-8s %10.0f ops/sec, %d fsyncs for %d ops%n", policy,
+                    NUM_OPERATIONS / (elapsed / 1_000_000_000.0), table.getSyncCount(), NUM_OPERATIONS);
+            }
+            deleteDirectory(dir);
+        }
+    }
+
+    private static DurableHashTable<Integer, String> open(Path dir, WriteAheadLog.SyncPolicy policy,
+                                                          long compactionBytes) throws IOException {
+        return new DurableHashTable<>(dir, BinaryCodec.INTEGER, BinaryCodec.STRING, policy, 10, compactionBytes);
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}